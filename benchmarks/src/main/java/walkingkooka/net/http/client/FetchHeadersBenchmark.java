@@ -0,0 +1,117 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.net.http.client;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import walkingkooka.net.http.HttpEntity;
+
+import java.net.http.HttpHeaders;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures turning raw response headers into a {@link HttpEntity}, for the browser from the single string returned by
+ * getAllResponseHeaders and for the JVM from {@link HttpHeaders}, along with building the entity alone.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FetchHeadersBenchmark {
+
+    /**
+     * The number of headers in addition to the content-type and content-length.
+     */
+    @Param({"0", "10", "50"})
+    public int extraHeaders;
+
+    @Setup
+    public void setup() {
+        final Map<String, List<String>> map = new LinkedHashMap<>();
+        map.put("Content-Type", List.of("text/plain;charset=UTF-8"));
+        map.put("Content-Length", List.of("123"));
+        for (int i = 0; i < this.extraHeaders; i++) {
+            map.put("X-Header-" + i, List.of("value-" + i));
+        }
+
+        final StringBuilder text = new StringBuilder();
+        for (final Map.Entry<String, List<String>> nameAndValues : map.entrySet()) {
+            text.append(nameAndValues.getKey())
+                    .append(": ")
+                    .append(nameAndValues.getValue().get(0))
+                    .append("\r\n");
+        }
+        this.text = text.toString();
+
+        this.httpHeaders = HttpHeaders.of(map, (n, v) -> true);
+        this.fetchHeaders = FetchElemental2XmlHttpRequest.headers(this.text);
+    }
+
+    /**
+     * Scanning and entity building as done for every browser response.
+     */
+    @Benchmark
+    public HttpEntity parseHeaders() {
+        return FetchElemental2XmlHttpRequest.parseHeaders(this.text);
+    }
+
+    /**
+     * Only scanning the header text into raw names and values.
+     */
+    @Benchmark
+    public FetchHeaders scanHeaders() {
+        return FetchElemental2XmlHttpRequest.headers(this.text);
+    }
+
+    /**
+     * Only building the {@link HttpEntity}, which parses every value, from raw headers.
+     */
+    @Benchmark
+    public HttpEntity entity() {
+        return this.fetchHeaders.entity();
+    }
+
+    /**
+     * Copying and entity building as done for every JVM response.
+     */
+    @Benchmark
+    public HttpEntity javaNetHttpHeaders() {
+        return FetchJavaNetHttpClient.headers(this.httpHeaders)
+                .entity();
+    }
+
+    private String text;
+
+    private HttpHeaders httpHeaders;
+
+    private FetchHeaders fetchHeaders;
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.net.http.client;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import walkingkooka.Binary;
+import walkingkooka.Cast;
+import walkingkooka.net.AbsoluteUrl;
+import walkingkooka.net.HostAddress;
+import walkingkooka.net.IpPort;
+import walkingkooka.net.RelativeUrl;
+import walkingkooka.net.Url;
+import walkingkooka.net.UrlCredentials;
+import walkingkooka.net.UrlScheme;
+import walkingkooka.net.header.HttpHeaderName;
+import walkingkooka.net.header.MediaType;
+import walkingkooka.net.http.HttpEntity;
+import walkingkooka.net.http.HttpMethod;
+import walkingkooka.net.http.HttpProtocolVersion;
+import walkingkooka.net.http.HttpStatusCode;
+import walkingkooka.net.http.HttpTransport;
+import walkingkooka.net.http.server.HttpRequest;
+import walkingkooka.net.http.server.HttpRequests;
+import walkingkooka.net.http.server.HttpResponse;
+import walkingkooka.net.http.server.HttpServer;
+import walkingkooka.net.http.server.jetty.JettyHttpServer;
+
+import java.net.http.HttpClient.Version;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link FetchJavaNetHttpClient} end to end against a {@link JettyHttpServer} running in the same JVM, which
+ * includes building the request, the loopback exchange and building the {@link HttpResponse}. Absolute numbers mostly
+ * reflect the server and the network stack, and are only comparable between runs on the same machine.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FetchJavaNetHttpClientBenchmark {
+
+    private final static HostAddress SERVER = HostAddress.with("localhost");
+
+    private final static RelativeUrl SMALL = Url.parseRelative("/small");
+    private final static RelativeUrl LARGE = Url.parseRelative("/large");
+    private final static RelativeUrl HEADERS = Url.parseRelative("/headers");
+
+    /**
+     * The size of the large response body, which is text so the charset decoding is included.
+     */
+    private final static int LARGE_SIZE = 1024 * 1024;
+
+    /**
+     * The number of extra headers in the many headers response.
+     */
+    private final static int HEADER_COUNT = 50;
+
+    @Setup(Level.Trial)
+    public void start() {
+        final StringBuilder large = new StringBuilder();
+        for (int i = 0; i < LARGE_SIZE; i++) {
+            large.append((char) ('a' + i % 26));
+        }
+
+        final MediaType textPlain = MediaType.parse("text/plain;charset=UTF-8");
+        this.smallEntity = HttpEntity.EMPTY
+                .addHeader(HttpHeaderName.CONTENT_TYPE, textPlain)
+                .setBodyText("Hello");
+        this.largeEntity = HttpEntity.EMPTY
+                .addHeader(HttpHeaderName.CONTENT_TYPE, textPlain)
+                .setBody(Binary.with(large.toString().getBytes(StandardCharsets.UTF_8)));
+
+        HttpEntity headers = this.smallEntity;
+        for (int i = 0; i < HEADER_COUNT; i++) {
+            headers = headers.addHeader(HttpHeaderName.with("X-Header-" + i), Cast.to("value-" + i));
+        }
+        this.headersEntity = headers;
+
+        final IpPort port = IpPort.free();
+        this.server = JettyHttpServer.with(SERVER, port, this::handle);
+        this.server.start();
+
+        this.fetch = FetchJavaNetHttpClient.with(customizer(port));
+
+        this.small = request(SMALL);
+        this.large = request(LARGE);
+        this.headers = request(HEADERS);
+    }
+
+    private void handle(final HttpRequest request,
+                        final HttpResponse response) {
+        final RelativeUrl url = request.url();
+        final HttpEntity entity;
+        if (SMALL.equals(url)) {
+            entity = this.smallEntity;
+        } else if (LARGE.equals(url)) {
+            entity = this.largeEntity;
+        } else if (HEADERS.equals(url)) {
+            entity = this.headersEntity;
+        } else {
+            entity = null;
+        }
+
+        if (null != entity) {
+            response.setStatus(HttpStatusCode.OK.status());
+            response.addEntity(entity);
+        } else {
+            response.setStatus(HttpStatusCode.NOT_FOUND.status());
+            response.addEntity(HttpEntity.EMPTY);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        this.fetch.close();
+        this.server.stop();
+    }
+
+    @Benchmark
+    public HttpResponse smallGet() {
+        return this.fetch.apply(this.small);
+    }
+
+    @Benchmark
+    public HttpResponse largeBody() {
+        return this.fetch.apply(this.large);
+    }
+
+    @Benchmark
+    public HttpResponse manyHeaders() {
+        return this.fetch.apply(this.headers);
+    }
+
+    /**
+     * Many callers sharing the same fetch, and therefore the same {@link java.net.http.HttpClient} and connection pool.
+     */
+    @Benchmark
+    @Threads(16)
+    public HttpResponse concurrentSmallGet() {
+        return this.fetch.apply(this.small);
+    }
+
+    private static FetchCustomizer customizer(final IpPort port) {
+        return new FakeFetchCustomizer() {
+            @Override
+            public AbsoluteUrl httpClientUrl(final HttpRequest request) {
+                return request.url()
+                        .set(UrlScheme.HTTP, UrlCredentials.NO_CREDENTIALS, SERVER, Optional.of(port));
+            }
+
+            @Override
+            public Charset defaultCharset() {
+                return StandardCharsets.UTF_8;
+            }
+
+            @Override
+            public void prepareHttpClient(final java.net.http.HttpClient.Builder client,
+                                          final java.net.http.HttpRequest.Builder request) {
+                // Jetty is not configured for h2c and upgrading every connection would only add noise
+                client.version(Version.HTTP_1_1);
+            }
+        };
+    }
+
+    private static HttpRequest request(final RelativeUrl url) {
+        return HttpRequests.value(HttpMethod.GET,
+                HttpTransport.UNSECURED,
+                url,
+                HttpProtocolVersion.VERSION_1_1,
+                HttpEntity.EMPTY);
+    }
+
+    private HttpServer server;
+
+    private FetchJavaNetHttpClient fetch;
+
+    private HttpEntity smallEntity;
+    private HttpEntity largeEntity;
+    private HttpEntity headersEntity;
+
+    private HttpRequest small;
+    private HttpRequest large;
+    private HttpRequest headers;
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.net.http.client;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.net.http.HttpResponse.ResponseInfo;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures resolving the charset of a response content-type, alone and as done by
+ * {@link FetchJavaNetHttpClientBodyHandler#apply(ResponseInfo)} when the response headers arrive.
+ * The content-types cover the standard charsets resolved without parsing, a missing charset and another charset
+ * which is parsed once and then cached.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FetchJavaNetHttpClientBodyHandlerBenchmark {
+
+    private final static Charset DEFAULT_CHARSET = StandardCharsets.UTF_8;
+
+    @Param({"text/plain;charset=UTF-8", "application/json", "text/html; charset=windows-1252"})
+    public String contentType;
+
+    @Setup
+    public void setup() {
+        this.responseInfo = new ResponseInfo() {
+            private final HttpHeaders headers = HttpHeaders.of(Map.of("Content-Type", List.of(contentType)),
+                    (n, v) -> true);
+
+            @Override
+            public int statusCode() {
+                return 200;
+            }
+
+            @Override
+            public HttpHeaders headers() {
+                return this.headers;
+            }
+
+            @Override
+            public HttpClient.Version version() {
+                return HttpClient.Version.HTTP_1_1;
+            }
+        };
+    }
+
+    @Benchmark
+    public Charset charset() {
+        return FetchJavaNetHttpClientCharsets.charset(this.contentType, DEFAULT_CHARSET);
+    }
+
+    /**
+     * Creating the handler and its {@link BodySubscriber}, which happens once for every response.
+     */
+    @Benchmark
+    public BodySubscriber<String> bodyHandler() {
+        return FetchJavaNetHttpClientBodyHandler.with(DEFAULT_CHARSET)
+                .apply(this.responseInfo);
+    }
+
+    private ResponseInfo responseInfo;
+}
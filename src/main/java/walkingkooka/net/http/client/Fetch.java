@@ -18,7 +18,9 @@
 package walkingkooka.net.http.client;
 
 
+import walkingkooka.net.header.MediaType;
 import walkingkooka.net.http.HttpEntity;
+import walkingkooka.net.http.HttpProtocolVersion;
 import walkingkooka.net.http.HttpStatus;
 import walkingkooka.net.http.server.HttpRequest;
 import walkingkooka.net.http.server.HttpResponse;
@@ -30,7 +32,7 @@ import java.util.function.Function;
 /**
  * Base class that defines the two fetcher implementations.
  */
-abstract class Fetch implements Function<HttpRequest, HttpResponse> {
+abstract class Fetch implements Function<HttpRequest, HttpResponse>, AutoCloseable {
 
     Fetch(final FetchCustomizer customizer) {
         super();
@@ -44,10 +46,50 @@ abstract class Fetch implements Function<HttpRequest, HttpResponse> {
         return this.apply0(request, this.customizer);
     }
 
-    private final FetchCustomizer customizer;
+    final FetchCustomizer customizer;
 
     abstract HttpResponse apply0(final HttpRequest request, final FetchCustomizer customizer);
 
+    /**
+     * Sends the request without blocking, eventually calling one of the {@link FetchCallback} methods.
+     */
+    final void applyCallback(final HttpRequest request,
+                             final FetchCallback callback) {
+        Objects.requireNonNull(request, "request");
+        Objects.requireNonNull(callback, "callback");
+
+        this.applyCallback0(request, this.customizer, callback);
+    }
+
+    abstract void applyCallback0(final HttpRequest request,
+                                 final FetchCustomizer customizer,
+                                 final FetchCallback callback);
+
+    /**
+     * Releases any resources such as connections held by this fetcher. The default does nothing.
+     */
+    @Override
+    public void close() {
+        // nop
+    }
+
+    /**
+     * Returns true if a request body with the given content-type is text. Other bodies such as images or
+     * application/octet-stream are binary.
+     */
+    static boolean isText(final MediaType contentType) {
+        final String type = contentType.type().toLowerCase();
+        final String subType = contentType.subType().toLowerCase();
+
+        return "text".equals(type) ||
+                "json".equals(subType) ||
+                "xml".equals(subType) ||
+                "javascript".equals(subType) ||
+                "x-www-form-urlencoded".equals(subType) ||
+                subType.endsWith("+json") ||
+                subType.endsWith("+xml");
+    }
+
     /**
      * Helper that creates a {@link HttpResponse} using the provided status and entity
      */
@@ -58,4 +100,15 @@ abstract class Fetch implements Function<HttpRequest, HttpResponse> {
         response.addEntity(entity);
         return response;
     }
+
+    /**
+     * Helper that creates a {@link HttpResponse} using the provided version, status and entity
+     */
+    static HttpResponse response(final HttpProtocolVersion version,
+                                 final HttpStatus status,
+                                 final HttpEntity entity) {
+        final HttpResponse response = response(status, entity);
+        response.setVersion(version);
+        return response;
+    }
 }
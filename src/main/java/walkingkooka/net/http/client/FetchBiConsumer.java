@@ -0,0 +1,55 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.net.http.client;
+
+import walkingkooka.net.http.server.HttpRequest;
+
+import java.util.function.BiConsumer;
+
+/**
+ * A {@link BiConsumer} that sends each request asynchronously using {@link Fetch#applyCallback(HttpRequest, FetchCallback)}.
+ */
+final class FetchBiConsumer implements BiConsumer<HttpRequest, FetchCallback>, AutoCloseable {
+
+    static FetchBiConsumer with(final Fetch fetch) {
+        return new FetchBiConsumer(fetch);
+    }
+
+    private FetchBiConsumer(final Fetch fetch) {
+        super();
+        this.fetch = fetch;
+    }
+
+    @Override
+    public void accept(final HttpRequest request,
+                       final FetchCallback callback) {
+        this.fetch.applyCallback(request, callback);
+    }
+
+    @Override
+    public void close() {
+        this.fetch.close();
+    }
+
+    private final Fetch fetch;
+
+    @Override
+    public String toString() {
+        return this.fetch.toString();
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.net.http.client;
+
+/**
+ * Thrown by a fetch created by {@link HttpClient#bulkhead(java.util.function.Function, FetchCustomizer, int, int, long)}
+ * when a request was not sent because the origin already had the maximum number of requests in flight and waiting.
+ */
+public class FetchBulkheadFullException extends FetchException {
+
+    private final static long serialVersionUID = 1L;
+
+    protected FetchBulkheadFullException() {
+        super();
+    }
+
+    public FetchBulkheadFullException(final String message) {
+        super(message);
+    }
+
+    public FetchBulkheadFullException(final String message, final Throwable cause) {
+        super(message, cause);
+    }
+
+    @Override
+    protected FetchBulkheadFullException copy() {
+        return new FetchBulkheadFullException(this.getMessage(), this);
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.net.http.client;
+
+import walkingkooka.net.http.server.HttpRequest;
+
+/**
+ * Receives a notification for each request handled by a cache created by {@link HttpClient#cache(java.util.function.Function, FetchCustomizer, int, long, FetchCacheListener)},
+ * which may be used to count hits, misses and revalidations. Methods are called on the thread sending the request
+ * and should return quickly.
+ */
+public interface FetchCacheListener {
+
+    /**
+     * Called when a fresh cached response is returned without contacting the server.
+     */
+    void onHit(final HttpRequest request);
+
+    /**
+     * Called when there was no usable cached response and the request is sent to the server.
+     */
+    void onMiss(final HttpRequest request);
+
+    /**
+     * Called when a stale cached response is revalidated by sending a conditional request to the server.
+     * The server may reply not modified, in which case the cached response is returned, or with a new response.
+     */
+    void onRevalidate(final HttpRequest request);
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.net.http.client;
+
+import walkingkooka.net.http.server.HttpResponse;
+
+/**
+ * Receives the outcome of an asynchronous fetch, exactly one of the two methods will be called once.
+ * In the browser both are called on the UI thread, while in a JVM they are called by a {@link java.net.http.HttpClient} thread.
+ */
+public interface FetchCallback {
+
+    /**
+     * Called with the {@link HttpResponse} when the request completes.
+     */
+    void onResponse(final HttpResponse response);
+
+    /**
+     * Called when the request failed for any reason including network errors and timeouts.
+     */
+    void onFailure(final FetchException cause);
+}
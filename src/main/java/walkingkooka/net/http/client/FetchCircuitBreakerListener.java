@@ -0,0 +1,32 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.net.http.client;
+
+/**
+ * Receives a notification whenever the circuit for an origin, created by {@link HttpClient#circuitBreaker(java.util.function.Function, FetchCustomizer, int, double, long, double, long, FetchCircuitBreakerListener)},
+ * changes state. Methods are called on the thread sending the request that caused the change and should return quickly.
+ */
+public interface FetchCircuitBreakerListener {
+
+    /**
+     * Called after the circuit for the origin, such as http://example.com:80, changed state.
+     */
+    void onStateChange(final String origin,
+                       final FetchCircuitBreakerState from,
+                       final FetchCircuitBreakerState to);
+}
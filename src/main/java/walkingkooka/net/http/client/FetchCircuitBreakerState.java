@@ -0,0 +1,39 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.net.http.client;
+
+/**
+ * The states of each origin within a circuit breaker created by {@link HttpClient#circuitBreaker(java.util.function.Function, FetchCustomizer, int, double, long, double, long, FetchCircuitBreakerListener)}.
+ */
+public enum FetchCircuitBreakerState {
+
+    /**
+     * Requests are sent and their outcomes recorded.
+     */
+    CLOSED,
+
+    /**
+     * Requests fail immediately with a {@link FetchCircuitBreakerOpenException} until the cool off has elapsed.
+     */
+    OPEN,
+
+    /**
+     * A few probe requests are sent, if they all succeed the circuit closes otherwise it opens again.
+     */
+    HALF_OPEN
+}
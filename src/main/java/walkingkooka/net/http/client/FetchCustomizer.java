@@ -24,6 +24,7 @@ import walkingkooka.net.Url;
 import walkingkooka.net.http.server.HttpRequest;
 
 import java.nio.charset.Charset;
+import java.util.Optional;
 
 /**
  * Unfortunately the making HTTP requests within a JVM and using XMLHttpRequest are not similar at all, each has many
@@ -43,7 +44,8 @@ public interface FetchCustomizer {
     Url browserUrl(final HttpRequest request);
 
     /**
-     * This will only be invoked within a JVM to provide a default charset if necessary to convert the request body to text.
+     * This will only be invoked within a JVM to provide a default charset if necessary to convert a request body with a
+     * text content-type to bytes, or a response body to text, when the content-type has no charset.
      */
     Charset defaultCharset();
 
@@ -54,11 +56,75 @@ public interface FetchCustomizer {
      * <li>timeout</li>>
      * <li>{@link java.net.http.HttpClient.Version}</li>
      * </ul>
+     * The JVM fetcher reuses a {@link java.net.http.HttpClient} for every request given the same configuration, comparing
+     * values such as the executor, {@link javax.net.ssl.SSLContext}, cookie handler, proxy and authenticator by identity.
+     * These should be created once and the same instances given for every request, as creating them for each call
+     * builds a new {@link java.net.http.HttpClient} with its own selector thread and connections for every request.
+     * Only the most recently used clients are kept.
      */
     @GwtIncompatible
     void prepareHttpClient(final java.net.http.HttpClient.Builder client,
                            final java.net.http.HttpRequest.Builder request);
 
+    /**
+     * The maximum number of concurrent requests the JVM fetcher will send to any single origin, with a positive value
+     * enabling the limit. Requests above the limit wait for an earlier request to complete without blocking when sent asynchronously.
+     * <br>
+     * Because the {@link java.net.http.HttpClient} is reused, HTTP/2 requests to the same origin are multiplexed as streams
+     * over a single connection, and this limit should not be greater than the SETTINGS_MAX_CONCURRENT_STREAMS of the server.
+     * HTTP/2 is the default {@link java.net.http.HttpClient.Version} unless changed by {@link #prepareHttpClient(java.net.http.HttpClient.Builder, java.net.http.HttpRequest.Builder)},
+     * and servers that do not support it are transparently sent HTTP/1.1 requests. The version actually used is available
+     * from {@link walkingkooka.net.http.server.HttpResponse#version()}.
+     * The default returns 0 which means no limit.
+     */
+    @GwtIncompatible
+    default int httpClientMaxConcurrentStreams() {
+        return 0;
+    }
+
+    /**
+     * Provides a {@link java.net.http.HttpRequest.BodyPublisher} which replaces the body of the given {@link HttpRequest},
+     * allowing large uploads to be streamed from a file or {@link java.nio.ByteBuffer} without ever loading them into the heap.
+     * The helpers {@link HttpClient#fileBody(java.nio.file.Path)}, {@link HttpClient#fileChannelBody(java.nio.channels.FileChannel, long, long)}
+     * and {@link HttpClient#byteBufferBody(java.nio.ByteBuffer)} create publishers which also send a content-length.
+     * The default returns {@link Optional#empty()} which sends the body of the {@link HttpRequest}.
+     */
+    @GwtIncompatible
+    default Optional<java.net.http.HttpRequest.BodyPublisher> httpClientBody(final HttpRequest request) {
+        return Optional.empty();
+    }
+
+    /**
+     * The size in bytes above which the body of a POST or PUT request is gzipped by the JVM fetcher as it is sent, with
+     * a Content-Encoding of gzip and no content-length. Customizers should only return a threshold for targets known to
+     * accept compressed request bodies, and requests that already have a Content-Encoding or a body from
+     * {@link #httpClientBody(HttpRequest)} are always sent unchanged. The default returns -1 which never compresses.
+     */
+    @GwtIncompatible
+    default long httpClientCompressThreshold(final HttpRequest request) {
+        return -1;
+    }
+
+    /**
+     * When true the JVM fetcher asks for compressed responses by sending an Accept-Encoding of gzip and deflate, unless the
+     * request already has an Accept-Encoding. Gzip and deflate bodies are then decompressed as they are received,
+     * before any charset decoding, and the Content-Encoding and Content-Length headers are removed from the response.
+     * Browsers always do this themselves. The default returns false.
+     */
+    @GwtIncompatible
+    default boolean httpClientDecompress() {
+        return false;
+    }
+
+    /**
+     * Returns a {@link FetchListener} which receives the {@link FetchTimings} of every request sent by either fetcher,
+     * breaking the time down into building, queueing, waiting for the response headers and reading the body.
+     * The default returns {@link Optional#empty()} and nothing is measured.
+     */
+    default Optional<FetchListener> fetchListener() {
+        return Optional.empty();
+    }
+
     /**
      * This method is only called by javascript and allows customisation of the XMLHttpRequest after open but before send.
      * The send method should not be invoked.
@@ -17,18 +17,23 @@
 
 package walkingkooka.net.http.client;
 
+import elemental2.core.Int8Array;
 import elemental2.dom.XMLHttpRequest;
+import jsinterop.base.Js;
+import jsinterop.base.JsArrayLike;
 import walkingkooka.Cast;
 import walkingkooka.net.header.HttpHeaderName;
-import walkingkooka.net.http.HasHeaders;
+import walkingkooka.net.header.MediaType;
 import walkingkooka.net.http.HttpEntity;
 import walkingkooka.net.http.HttpStatus;
 import walkingkooka.net.http.HttpStatusCode;
 import walkingkooka.net.http.server.HttpRequest;
 import walkingkooka.net.http.server.HttpResponse;
 
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.Optional;
 
 // https://github.com/gwtproject/gwt-http/blob/master/src/main/java/org/gwtproject/http/client/RequestBuilder.java
 final class FetchElemental2XmlHttpRequest extends Fetch {
@@ -44,59 +49,252 @@ final class FetchElemental2XmlHttpRequest extends Fetch {
     @Override
     HttpResponse apply0(final HttpRequest request,
                         final FetchCustomizer customizer) {
+        final FetchTimer timer = FetchTimer.start(customizer);
+        final HttpResponse response;
+
         final XMLHttpRequest xmlHttpRequest = new XMLHttpRequest();
         try {
-            xmlHttpRequest.open(request.method().value(),
-                    customizer.browserUrl(request).value(),
-                    ASYNC);
-
-            // add request headers...
-            for (final Entry<HttpHeaderName<?>, List<?>> header : request.headers().entrySet()) {
-                final HttpHeaderName<?> headerName = header.getKey();
-                final String headerNameString = headerName.value();
-                for (final Object headerValue : header.getValue()) {
-                    xmlHttpRequest.setRequestHeader(headerNameString, headerName.headerText(Cast.to(headerValue)));
-                }
-            }
-
-            customizer.prepareBrowser(xmlHttpRequest);
-
-            xmlHttpRequest.send(request.bodyText());
+            open(xmlHttpRequest, request, customizer, SYNC);
+            timer.built();
 
-            final HttpStatus status = HttpStatusCode.withCode(xmlHttpRequest.status)
-                    .setMessageOrDefault(xmlHttpRequest.statusText);
+            // a synchronous request only returns after the entire body was received, so the headers time is unknown
+            send(xmlHttpRequest, request, timer);
 
-            return response(status, parseHeaders(xmlHttpRequest.getAllResponseHeaders())
-                    .setBodyText(xmlHttpRequest.responseText));
+            response = response(xmlHttpRequest);
         } catch (final RuntimeException e) {
+            timer.failure(request, e);
             throw e;
         } catch (final Throwable e) {
-            throw new FetchException(e.getMessage(), e);
+            final FetchException failed = new FetchException(e.getMessage(), e);
+            timer.failure(request, failed);
+            throw failed;
+        }
+
+        timer.response(request, response);
+        return response;
+    }
+
+    /**
+     * Sends the request using an asynchronous {@link XMLHttpRequest}, the {@link FetchCallback} is invoked by the
+     * load, error, timeout or abort event listeners.
+     */
+    @Override
+    void applyCallback0(final HttpRequest request,
+                        final FetchCustomizer customizer,
+                        final FetchCallback callback) {
+        final FetchTimer timer = FetchTimer.start(customizer);
+
+        final XMLHttpRequest xmlHttpRequest = new XMLHttpRequest();
+        try {
+            open(xmlHttpRequest, request, customizer, ASYNC);
+            timer.built();
+
+            if (timer.isActive()) {
+                xmlHttpRequest.addEventListener("readystatechange", (e) -> {
+                    if (HEADERS_RECEIVED == xmlHttpRequest.readyState) {
+                        timer.headers();
+                    }
+                });
+            }
+            xmlHttpRequest.addEventListener("load", (e) -> {
+                final HttpResponse response;
+                try {
+                    response = response(xmlHttpRequest);
+                } catch (final RuntimeException cause) {
+                    failure(new FetchException(cause.getMessage(), cause), request, timer, callback);
+                    return;
+                }
+                timer.response(request, response);
+                callback.onResponse(response);
+            });
+            xmlHttpRequest.addEventListener("error", (e) -> failure(failed("Network error", request), request, timer, callback));
+            xmlHttpRequest.addEventListener("timeout", (e) -> failure(failed("Timeout", request), request, timer, callback));
+            xmlHttpRequest.addEventListener("abort", (e) -> failure(failed("Aborted", request), request, timer, callback));
+
+            send(xmlHttpRequest, request, timer);
+        } catch (final FetchException cause) {
+            failure(cause, request, timer, callback);
+        } catch (final Throwable cause) {
+            failure(new FetchException(cause.getMessage(), cause), request, timer, callback);
+        }
+    }
+
+    /**
+     * The {@link XMLHttpRequest#readyState} once the response headers were received.
+     */
+    private final static int HEADERS_RECEIVED = 2;
+
+    /**
+     * Reports the failure to the {@link FetchTimer} and then the {@link FetchCallback}.
+     */
+    private static void failure(final FetchException cause,
+                                final HttpRequest request,
+                                final FetchTimer timer,
+                                final FetchCallback callback) {
+        timer.failure(request, cause);
+        callback.onFailure(cause);
+    }
+
+    /**
+     * Sends the request body, a text body is given to the browser as text so it also adds its default content-type
+     * if there is none, while other bodies are copied into an {@link Int8Array} in one go and sent as is.
+     */
+    private static void send(final XMLHttpRequest xmlHttpRequest,
+                             final HttpRequest request,
+                             final FetchTimer timer) {
+        final byte[] body = request.body();
+        final String text = text(request, body);
+
+        timer.requestBytes(body.length);
+        timer.sending();
+        if (null != text) {
+            xmlHttpRequest.send(text);
+        } else {
+            xmlHttpRequest.send(new Int8Array(Js.<JsArrayLike<Double>>uncheckedCast(body)));
+        }
+    }
+
+    /**
+     * Returns the body as text if the browser would encode it back into the same bytes, which requires a missing or
+     * text content-type without a charset other than UTF-8, and a body that is valid UTF-8. Otherwise null is returned
+     * and the bytes should be sent as is.
+     */
+    // @VisibleForTesting
+    static String text(final HttpRequest request,
+                       final byte[] body) {
+        final Optional<MediaType> contentType = HttpHeaderName.CONTENT_TYPE.header(request);
+
+        String text = null;
+        if (contentType.map(c -> isText(c) && StandardCharsets.UTF_8.equals(c.contentTypeCharset(StandardCharsets.UTF_8)))
+                .orElse(true)) {
+            text = new String(body, StandardCharsets.UTF_8);
+
+            // invalid UTF-8 was decoded as replacement characters and would not be sent as the same bytes
+            if (-1 != text.indexOf('\uFFFD')) {
+                text = null;
+            }
         }
+        return text;
     }
 
+    private static FetchException failed(final String message,
+                                         final HttpRequest request) {
+        return new FetchException(message + " " + request.method() + " " + request.url());
+    }
+
+    /**
+     * Opens the {@link XMLHttpRequest}, adds the request headers and then gives the {@link FetchCustomizer} a chance
+     * to customise before the request is sent.
+     */
+    private static void open(final XMLHttpRequest xmlHttpRequest,
+                             final HttpRequest request,
+                             final FetchCustomizer customizer,
+                             final boolean async) {
+        xmlHttpRequest.open(request.method().value(),
+                customizer.browserUrl(request).value(),
+                async);
+
+        // add request headers...
+        for (final Entry<HttpHeaderName<?>, List<?>> header : request.headers().entrySet()) {
+            final HttpHeaderName<?> headerName = header.getKey();
+            final String headerNameString = headerName.value();
+            for (final Object headerValue : header.getValue()) {
+                xmlHttpRequest.setRequestHeader(headerNameString, headerName.headerText(Cast.to(headerValue)));
+            }
+        }
+
+        customizer.prepareBrowser(xmlHttpRequest);
+    }
+
+    /**
+     * Creates a {@link HttpResponse} from a completed {@link XMLHttpRequest}.
+     */
+    private static HttpResponse response(final XMLHttpRequest xmlHttpRequest) {
+        final HttpStatus status = HttpStatusCode.withCode(xmlHttpRequest.status)
+                .setMessageOrDefault(xmlHttpRequest.statusText);
+
+        return response(status, parseHeaders(xmlHttpRequest.getAllResponseHeaders())
+                .setBodyText(xmlHttpRequest.responseText));
+    }
+
+    /**
+     * Used by {@link #apply0(HttpRequest, FetchCustomizer)} which blocks until the response is received.
+     */
+    private final static boolean SYNC = false;
+
     /**
-     * Always FALSE, this function always makes synchronous requests.
+     * Used by {@link #applyCallback0(HttpRequest, FetchCustomizer, FetchCallback)} which never blocks.
      */
-    private final static boolean ASYNC = false;
+    private final static boolean ASYNC = true;
 
     /**
      * Accepts a single string holding all headers and adds all the individual header values.
      */
     static HttpEntity parseHeaders(final String headers) {
-        HttpEntity entity = HttpEntity.EMPTY;
+        return headers(headers).entity();
+    }
+
+    /**
+     * Scans a single string holding all headers into the raw header names and values, without parsing any values.
+     * Lines may end with CRLF or a bare LF and lines without a colon are ignored. The text is walked once and only
+     * the trimmed name and value of each header are allocated.
+     */
+    static FetchHeaders headers(final String headers) {
+        final FetchHeaders fetchHeaders = FetchHeaders.empty();
+        final int length = headers.length();
+
+        int start = 0;
+        while (start < length) {
+            int end = start;
+            int colon = -1;
+
+            while (end < length) {
+                final char c = headers.charAt(end);
+                if ('\r' == c || '\n' == c) {
+                    break;
+                }
+                if (-1 == colon && ':' == c) {
+                    colon = end;
+                }
+                end++;
+            }
 
-        for (final String headerLine : headers.split(HasHeaders.LINE_ENDING.toString())) {
-            final int colon = headerLine.indexOf(':');
-            if (-1 == colon) {
-                continue; // ignore bad response headers
+            // ignore bad response headers without a colon
+            if (-1 != colon) {
+                fetchHeaders.add(trim(headers, start, colon),
+                        trim(headers, colon + 1, end));
             }
 
-            final HttpHeaderName<?> headerName = HttpHeaderName.with(headerLine.substring(0, colon).trim());
-            entity = entity.addHeader(headerName, Cast.to(headerName.parse(headerLine.substring(colon + 1).trim())));
+            // skip CRLF or LF
+            if (end < length && '\r' == headers.charAt(end)) {
+                end++;
+            }
+            if (end < length && '\n' == headers.charAt(end)) {
+                end++;
+            }
+            start = end;
         }
 
-        return entity;
+        return fetchHeaders;
+    }
+
+    /**
+     * Returns the text between start and end with any leading and trailing whitespace removed, using the same rules
+     * as {@link String#trim()}.
+     */
+    private static String trim(final String text,
+                               final int start,
+                               final int end) {
+        int begin = start;
+        int last = end;
+
+        while (begin < last && text.charAt(begin) <= ' ') {
+            begin++;
+        }
+        while (last > begin && text.charAt(last - 1) <= ' ') {
+            last--;
+        }
+        return text.substring(begin, last);
     }
 
     @Override
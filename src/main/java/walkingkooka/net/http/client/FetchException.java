@@ -37,4 +37,13 @@ public class FetchException extends NetException {
     public FetchException(final String message, final Throwable cause) {
         super(message, cause);
     }
+
+    /**
+     * Returns a new exception with the same message and this as its cause. This is used when the outcome of a single
+     * request is shared by several callers, so each receives its own exception. Sub classes should override this to
+     * return their own type, otherwise callers receive a {@link FetchException}.
+     */
+    protected FetchException copy() {
+        return new FetchException(this.getMessage(), this);
+    }
 }
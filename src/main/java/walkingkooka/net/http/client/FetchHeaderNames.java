@@ -0,0 +1,195 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.net.http.client;
+
+import walkingkooka.net.header.HttpHeaderName;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * An intern cache of {@link HttpHeaderName} used to resolve response header names, so the same few names seen on every
+ * response are not created again and again. Names are looked up first using the text exactly as received, which avoids
+ * any allocation for servers that always send the same case, and then in lower case.
+ * <br>
+ * Well known headers are always resolved from a fixed table. Other names are kept in a table with a fixed number of
+ * slots, where a new name replaces whatever name shared its slot. The table never grows, needs no locking, and names
+ * from a server sending many random names are soon replaced by the names actually seen again and again.
+ */
+final class FetchHeaderNames {
+
+    /**
+     * The number of slots in the shared cache.
+     */
+    // @VisibleForTesting
+    final static int MAX = 1024;
+
+    /**
+     * Returns the {@link HttpHeaderName} for the given name, using the shared cache.
+     */
+    static HttpHeaderName<?> headerName(final String name) {
+        return SHARED.get(name);
+    }
+
+    private final static FetchHeaderNames SHARED = new FetchHeaderNames(MAX);
+
+    /**
+     * Creates a new empty cache with the given number of slots, which must be a power of two.
+     */
+    // @VisibleForTesting
+    static FetchHeaderNames with(final int capacity) {
+        if (capacity <= 0 || 0 != (capacity & (capacity - 1))) {
+            throw new IllegalArgumentException("Invalid capacity " + capacity + " not a power of two");
+        }
+        return new FetchHeaderNames(capacity);
+    }
+
+    private FetchHeaderNames(final int capacity) {
+        super();
+        this.slots = new Slot[capacity];
+    }
+
+    /**
+     * Returns the {@link HttpHeaderName} for the given name, using a cached instance if possible.
+     */
+    HttpHeaderName<?> get(final String name) {
+        Objects.requireNonNull(name, "name");
+
+        HttpHeaderName<?> headerName = WELL_KNOWN.get(name);
+        if (null == headerName) {
+            headerName = this.cached(name);
+            if (null == headerName) {
+                final String lower = name.toLowerCase();
+                headerName = WELL_KNOWN.get(lower);
+
+                // well known names in any other case are found again using their lower case name without a slot
+                if (null == headerName) {
+                    headerName = this.cached(lower);
+                    if (null == headerName) {
+                        headerName = HttpHeaderName.with(name);
+                        this.put(lower, headerName);
+                    }
+                    if (!lower.equals(name)) {
+                        this.put(name, headerName);
+                    }
+                }
+            }
+        }
+
+        return headerName;
+    }
+
+    private HttpHeaderName<?> cached(final String name) {
+        final Slot slot = this.slots[this.index(name)];
+        return null != slot && slot.name.equals(name) ?
+                slot.headerName :
+                null;
+    }
+
+    /**
+     * Replaces whatever was in the slot. Racing threads may overwrite each other which only loses a cached entry, and
+     * because {@link Slot} is immutable a reader always sees a complete name and {@link HttpHeaderName}.
+     */
+    private void put(final String name,
+                     final HttpHeaderName<?> headerName) {
+        this.slots[this.index(name)] = new Slot(name, headerName);
+    }
+
+    private int index(final String name) {
+        final int hash = name.hashCode();
+        return (hash ^ (hash >>> 16)) & (this.slots.length - 1);
+    }
+
+    /**
+     * The number of names currently cached, excluding the well known names.
+     */
+    // @VisibleForTesting
+    int size() {
+        int size = 0;
+        for (final Slot slot : this.slots) {
+            if (null != slot) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    private final Slot[] slots;
+
+    private final static class Slot {
+
+        Slot(final String name,
+             final HttpHeaderName<?> headerName) {
+            this.name = name;
+            this.headerName = headerName;
+        }
+
+        final String name;
+
+        final HttpHeaderName<?> headerName;
+    }
+
+    /**
+     * Well known headers, keyed by their usual and lower case name, which are never replaced.
+     */
+    private final static Map<String, HttpHeaderName<?>> WELL_KNOWN = new HashMap<>();
+
+    static {
+        for (final String name : new String[]{
+                "Accept-Ranges",
+                "Access-Control-Allow-Origin",
+                "Age",
+                "Cache-Control",
+                "Connection",
+                "Content-Disposition",
+                "Content-Encoding",
+                "Content-Language",
+                "Content-Length",
+                "Content-Location",
+                "Content-Range",
+                "Content-Type",
+                "Date",
+                "ETag",
+                "Expires",
+                "Keep-Alive",
+                "Last-Modified",
+                "Link",
+                "Location",
+                "Retry-After",
+                "Server",
+                "Set-Cookie",
+                "Strict-Transport-Security",
+                "Transfer-Encoding",
+                "Vary",
+                "Via",
+                "WWW-Authenticate",
+                "X-Content-Type-Options",
+                "X-Frame-Options"
+        }) {
+            final HttpHeaderName<?> headerName = HttpHeaderName.with(name);
+            WELL_KNOWN.put(name, headerName);
+            WELL_KNOWN.put(name.toLowerCase(), headerName);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.size() + "/" + this.slots.length;
+    }
+}
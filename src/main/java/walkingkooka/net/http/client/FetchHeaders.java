@@ -0,0 +1,175 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.net.http.client;
+
+import walkingkooka.Cast;
+import walkingkooka.collect.map.Maps;
+import walkingkooka.net.header.HttpHeaderName;
+import walkingkooka.net.http.HasHeaders;
+import walkingkooka.net.http.HttpEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Holds the raw response header names and values in the order they were received, without parsing any values.
+ * Code within the fetchers that needs a header, such as the content-type, reads the raw text using {@link #first(String)}.
+ * Values are only parsed when the {@link HttpEntity} is created by {@link #entity()}, which happens once per response.
+ */
+final class FetchHeaders {
+
+    /**
+     * Returns the text of the given header from any {@link HasHeaders}, with several values joined by a comma, or
+     * {@link Optional#empty()} if the header is absent.
+     */
+    static Optional<String> text(final HasHeaders hasHeaders,
+                                 final String name) {
+        final HttpHeaderName<?> header = FetchHeaderNames.headerName(name);
+        final List<?> values = hasHeaders.headers().get(header);
+
+        String text = null;
+        if (null != values && !values.isEmpty()) {
+            final StringBuilder b = new StringBuilder();
+            for (final Object value : values) {
+                if (b.length() > 0) {
+                    b.append(", ");
+                }
+                b.append(header.headerText(Cast.to(value)));
+            }
+            text = b.toString();
+        }
+        return Optional.ofNullable(text);
+    }
+
+    static FetchHeaders empty() {
+        return new FetchHeaders();
+    }
+
+    private FetchHeaders() {
+        super();
+    }
+
+    /**
+     * Adds a raw header, the value is not parsed.
+     */
+    FetchHeaders add(final String name,
+                     final String value) {
+        Objects.requireNonNull(name, "name");
+        Objects.requireNonNull(value, "value");
+
+        this.names.add(name);
+        this.values.add(value);
+        return this;
+    }
+
+    /**
+     * Removes all values of the given header, ignoring the case of the name.
+     */
+    FetchHeaders remove(final String name) {
+        Objects.requireNonNull(name, "name");
+
+        final List<String> names = this.names;
+        for (int i = names.size() - 1; i >= 0; i--) {
+            if (names.get(i).equalsIgnoreCase(name)) {
+                names.remove(i);
+                this.values.remove(i);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Returns the first raw value of the given header, ignoring the case of the name.
+     */
+    Optional<String> first(final String name) {
+        Objects.requireNonNull(name, "name");
+
+        final List<String> names = this.names;
+        final int count = names.size();
+
+        String value = null;
+        for (int i = 0; i < count; i++) {
+            if (names.get(i).equalsIgnoreCase(name)) {
+                value = this.values.get(i);
+                break;
+            }
+        }
+        return Optional.ofNullable(value);
+    }
+
+    /**
+     * The number of header values.
+     */
+    int size() {
+        return this.names.size();
+    }
+
+    /**
+     * Creates a {@link HttpEntity} with all headers, parsing each value. All values are collected into a single map
+     * which is given to {@link HttpEntity#setHeaders(Map)} once, rather than creating and copying a new entity for each header.
+     */
+    HttpEntity entity() {
+        final List<String> names = this.names;
+        final List<String> values = this.values;
+        final int count = names.size();
+
+        final HttpEntity entity;
+        if (0 == count) {
+            entity = HttpEntity.EMPTY;
+        } else {
+            final Map<HttpHeaderName<?>, List<?>> headers = Maps.ordered();
+
+            for (int i = 0; i < count; i++) {
+                final HttpHeaderName<?> header = FetchHeaderNames.headerName(names.get(i));
+
+                List<Object> headerValues = Cast.to(headers.get(header));
+                if (null == headerValues) {
+                    headerValues = new ArrayList<>(1);
+                    headers.put(header, headerValues);
+                }
+                headerValues.add(header.parse(values.get(i)));
+            }
+
+            entity = HttpEntity.EMPTY.setHeaders(headers);
+        }
+        return entity;
+    }
+
+    private final List<String> names = new ArrayList<>();
+
+    private final List<String> values = new ArrayList<>();
+
+    // Object...........................................................................................................
+
+    @Override
+    public String toString() {
+        final StringBuilder b = new StringBuilder();
+
+        final int count = this.names.size();
+        for (int i = 0; i < count; i++) {
+            b.append(this.names.get(i))
+                    .append(": ")
+                    .append(this.values.get(i))
+                    .append(HasHeaders.LINE_ENDING);
+        }
+        return b.toString();
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.net.http.client;
+
+import walkingkooka.net.http.server.HttpRequest;
+
+/**
+ * Receives a notification for each hedge sent by a fetch created by {@link HttpClient#hedge(java.util.function.Function, long, double, FetchHedgeListener)},
+ * which may be used to count hedges and how often they win. Methods may be called on any thread and should return quickly.
+ */
+public interface FetchHedgeListener {
+
+    /**
+     * Called when a second request is sent because no response arrived within the hedge delay.
+     */
+    void onHedge(final HttpRequest request);
+
+    /**
+     * Called when the response to the second request arrived first and was returned to the caller.
+     */
+    void onHedgeWon(final HttpRequest request);
+}
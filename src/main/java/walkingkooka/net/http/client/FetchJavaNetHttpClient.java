@@ -20,23 +20,45 @@ package walkingkooka.net.http.client;
 import javaemul.internal.annotations.GwtIncompatible;
 import walkingkooka.Cast;
 import walkingkooka.net.header.HttpHeaderName;
+import walkingkooka.net.header.MediaType;
 import walkingkooka.net.http.HttpEntity;
+import walkingkooka.net.http.HttpMethod;
+import walkingkooka.net.http.HttpProtocolVersion;
 import walkingkooka.net.http.HttpStatusCode;
 import walkingkooka.net.http.server.HttpRequest;
 import walkingkooka.net.http.server.HttpResponse;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
 import java.net.http.HttpRequest.BodyPublisher;
 import java.net.http.HttpRequest.BodyPublishers;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
-import java.util.stream.Collectors;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 /**
  * A {@link Fetch} that uses {@link walkingkooka.net.http.client.HttpClient}.
+ * <br>
+ * {@link HttpClient} are expensive to create, each having its own selector thread and connection pool, and are
+ * therefore cached and reused for all requests with the same configuration applied by
+ * {@link FetchCustomizer#prepareHttpClient(HttpClient.Builder, java.net.http.HttpRequest.Builder)}. At most
+ * {@link #MAX_CLIENTS} are kept, forgetting the least recently used.
  */
 final class FetchJavaNetHttpClient extends Fetch {
 
@@ -52,59 +74,542 @@ final class FetchJavaNetHttpClient extends Fetch {
     @Override
     HttpResponse apply0(final HttpRequest request,
                         final FetchCustomizer customizer) {
+        final Charset defaultCharset = customizer.defaultCharset();
+        final FetchJavaNetHttpClientBodyHandler<String> bodyHandler = decompress(FetchJavaNetHttpClientBodyHandler.with(defaultCharset), customizer);
+
+        return this.send(request,
+                customizer,
+                bodyHandler,
+                (r) -> response(r, bodyHandler));
+    }
+
+    /**
+     * Sends the request and gives the response body as an {@link InputStream} to the {@link BiConsumer} as soon as the
+     * headers are received, the body is never buffered in memory. The returned {@link HttpResponse} and the one given
+     * to the {@link BiConsumer} include the status and headers but no body. The {@link InputStream} is closed when the
+     * {@link BiConsumer} returns.
+     */
+    HttpResponse applyStream(final HttpRequest request,
+                             final BiConsumer<HttpResponse, InputStream> body) {
+        Objects.requireNonNull(request, "request");
+        Objects.requireNonNull(body, "body");
+
+        final FetchCustomizer customizer = this.customizer;
+        final FetchJavaNetHttpClientBodyHandler<InputStream> bodyHandler = decompress(FetchJavaNetHttpClientBodyHandler.inputStream(), customizer);
+
+        return this.send(request,
+                customizer,
+                bodyHandler,
+                (r) -> {
+                    final HttpResponse response = response(r, bodyHandler, entity(r.headers(), bodyHandler));
+
+                    try (final InputStream inputStream = r.body()) {
+                        body.accept(response, inputStream);
+                    } catch (final IOException cause) {
+                        throw new FetchException(cause.getMessage(), cause);
+                    }
+
+                    return response;
+                });
+    }
+
+    /**
+     * Sends the request writing the response body to the given file, returning a {@link HttpResponse} with the status
+     * and headers but no body. The body is written whatever the status, so error responses also replace the file.
+     */
+    HttpResponse applyFile(final HttpRequest request,
+                           final Path file) {
+        Objects.requireNonNull(request, "request");
+        Objects.requireNonNull(file, "file");
+
+        final FetchCustomizer customizer = this.customizer;
+        final FetchJavaNetHttpClientBodyHandler<Path> bodyHandler = decompress(FetchJavaNetHttpClientBodyHandler.file(file), customizer);
+
+        return this.send(request,
+                customizer,
+                bodyHandler,
+                (r) -> response(r, bodyHandler, entity(r.headers(), bodyHandler)));
+    }
+
+    /**
+     * Builds and sends the request blocking until the response headers are received, the {@link Function} is then
+     * used to build the {@link HttpResponse} while any permit for the origin is still held. The outcome is reported
+     * to any {@link FetchListener}.
+     */
+    private <T> HttpResponse send(final HttpRequest request,
+                                  final FetchCustomizer customizer,
+                                  final FetchJavaNetHttpClientBodyHandler<T> bodyHandler,
+                                  final Function<java.net.http.HttpResponse<T>, HttpResponse> response) {
+        final FetchTimer timer = FetchTimer.start(customizer);
+        bodyHandler.timer = timer;
+
+        final HttpResponse httpResponse;
         try {
-            final Charset defaultCharset = customizer.defaultCharset();
+            httpResponse = this.send0(request,
+                    customizer,
+                    bodyHandler,
+                    response,
+                    timer);
+        } catch (final RuntimeException cause) {
+            timer.failure(request, cause);
+            throw cause;
+        }
 
-            final java.net.http.HttpRequest.Builder requestBuilder = java.net.http.HttpRequest.newBuilder(uri(request, customizer));
-            requestBuilder.method(request.method().value(),
-                    bodyPublisher(request, defaultCharset));
+        timer.response(request, httpResponse);
+        return httpResponse;
+    }
+
+    private <T> HttpResponse send0(final HttpRequest request,
+                                   final FetchCustomizer customizer,
+                                   final FetchJavaNetHttpClientBodyHandler<T> bodyHandler,
+                                   final Function<java.net.http.HttpResponse<T>, HttpResponse> response,
+                                   final FetchTimer timer) {
+        try {
+            final java.net.http.HttpRequest.Builder requestBuilder = requestBuilder(request, customizer);
+
+            final FetchJavaNetHttpClientBuilder httpClientBuilder = FetchJavaNetHttpClientBuilder.empty();
+            customizer.prepareHttpClient(httpClientBuilder, requestBuilder);
+
+            final HttpClient client = this.httpClient(httpClientBuilder);
+            final java.net.http.HttpRequest javaNetHttpRequest = requestBuilder.build();
+            built(timer, javaNetHttpRequest);
+
+            final int maxConcurrentStreams = customizer.httpClientMaxConcurrentStreams();
+            if (maxConcurrentStreams > 0) {
+                final String origin = FetchJavaNetHttpClientStreamLimiter.origin(javaNetHttpRequest.uri());
+                this.acquireStream(origin, maxConcurrentStreams);
+                try {
+                    timer.sending();
+                    return response.apply(client.send(javaNetHttpRequest, bodyHandler));
+                } finally {
+                    this.streams.release(origin, maxConcurrentStreams);
+                }
+            }
+
+            timer.sending();
+            return response.apply(client.send(javaNetHttpRequest, bodyHandler));
+        } catch (final IOException | InterruptedException cause) {
+            throw new FetchException(cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Blocks until a permit to send another request to the origin is available.
+     */
+    private void acquireStream(final String origin,
+                               final int maxConcurrentStreams) throws InterruptedException {
+        final CompletableFuture<Void> permit = this.streams.acquire(origin, maxConcurrentStreams);
+        try {
+            permit.get();
+        } catch (final InterruptedException cause) {
+            if (!permit.cancel(false)) {
+                this.streams.release(origin, maxConcurrentStreams);
+            }
+            throw cause;
+        } catch (final ExecutionException never) {
+            throw new IllegalStateException(never);
+        }
+    }
 
-            // add request headers
-            request.headers().forEach((h, v) -> {
-                final String headerName = h.value();
-                for (final Object value : v) {
-                    requestBuilder.setHeader(headerName, h.headerText(Cast.to(value)));
+    /**
+     * Sends the request using {@link HttpClient#sendAsync(java.net.http.HttpRequest, java.net.http.HttpResponse.BodyHandler)}
+     * without blocking the caller. All failures complete the returned {@link CompletableFuture} with a {@link FetchException},
+     * and cancelling the returned future also cancels the request.
+     */
+    CompletableFuture<HttpResponse> applyAsync(final HttpRequest request) {
+        Objects.requireNonNull(request, "request");
+
+        final FetchCustomizer customizer = this.customizer;
+        final FetchTimer timer = FetchTimer.start(customizer);
+
+        final CompletableFuture<HttpResponse> future = new CompletableFuture<>();
+        if (timer.isActive()) {
+            future.whenComplete((response, cause) -> {
+                if (null != cause) {
+                    timer.failure(request, cause);
+                } else {
+                    timer.response(request, response);
                 }
             });
+        }
 
-            final HttpClient.Builder httpClientBuilder = HttpClient.newBuilder();
+        try {
+            final Charset defaultCharset = customizer.defaultCharset();
+
+            final java.net.http.HttpRequest.Builder requestBuilder = requestBuilder(request, customizer);
+
+            final FetchJavaNetHttpClientBuilder httpClientBuilder = FetchJavaNetHttpClientBuilder.empty();
             customizer.prepareHttpClient(httpClientBuilder, requestBuilder);
 
-            final FetchJavaNetHttpClientBodyHandler bodyHandler = FetchJavaNetHttpClientBodyHandler.with(defaultCharset);
+            final FetchJavaNetHttpClientBodyHandler<String> bodyHandler = decompress(FetchJavaNetHttpClientBodyHandler.with(defaultCharset), customizer);
+            bodyHandler.timer = timer;
 
-            final java.net.http.HttpResponse<String> javaNetHttpHttpResponse = httpClientBuilder.build()
-                    .send(requestBuilder.build(), bodyHandler);
+            final HttpClient client = this.httpClient(httpClientBuilder);
+            final java.net.http.HttpRequest javaNetHttpRequest = requestBuilder.build();
+            built(timer, javaNetHttpRequest);
 
-            // capture response headers
-            HttpEntity entity = HttpEntity.EMPTY;
-            for (final Entry<String, List<String>> headerAndValues : javaNetHttpHttpResponse.headers().map().entrySet()) {
-                final HttpHeaderName<?> header = HttpHeaderName.with(headerAndValues.getKey());
-                entity = entity.setHeader(header,
-                        Cast.to(headerAndValues.getValue().stream().map(header::parse).collect(Collectors.toList())));
+            final int maxConcurrentStreams = customizer.httpClientMaxConcurrentStreams();
+            if (maxConcurrentStreams > 0) {
+                final String origin = FetchJavaNetHttpClientStreamLimiter.origin(javaNetHttpRequest.uri());
+                final Runnable release = () -> this.streams.release(origin, maxConcurrentStreams);
+
+                final CompletableFuture<Void> permit = this.streams.acquire(origin, maxConcurrentStreams);
+                permit.whenComplete((granted, cause) -> {
+                    if (null == cause) {
+                        if (future.isDone()) {
+                            release.run(); // cancelled while waiting
+                        } else {
+                            sendAsync(client, javaNetHttpRequest, bodyHandler, future, release);
+                        }
+                    }
+                });
+                future.whenComplete((r, cause) -> {
+                    if (future.isCancelled()) {
+                        permit.cancel(false);
+                    }
+                });
+            } else {
+                sendAsync(client, javaNetHttpRequest, bodyHandler, future, NO_RELEASE);
             }
-            return response(HttpStatusCode.withCode(bodyHandler.status).status(), entity.setBodyText(javaNetHttpHttpResponse.body()));
-        } catch (final IOException | InterruptedException cause) {
-            throw new FetchException(cause.getMessage(), cause);
+        } catch (final RuntimeException cause) {
+            future.completeExceptionally(fetchException(cause));
         }
+        return future;
     }
 
     /**
-     * Returns a {@link URI} from the request.
+     * Sends the request completing the future with the response or failure. The release {@link Runnable} is always run
+     * when the exchange completes.
      */
-    private static URI uri(final HttpRequest request, final FetchCustomizer customizer) {
-        return URI.create(customizer.httpClientUrl(request).value());
+    private static void sendAsync(final HttpClient client,
+                                  final java.net.http.HttpRequest request,
+                                  final FetchJavaNetHttpClientBodyHandler<String> bodyHandler,
+                                  final CompletableFuture<HttpResponse> future,
+                                  final Runnable release) {
+        final CompletableFuture<java.net.http.HttpResponse<String>> send;
+        try {
+            bodyHandler.timer.sending();
+            send = client.sendAsync(request, bodyHandler);
+        } catch (final RuntimeException cause) {
+            release.run();
+            future.completeExceptionally(fetchException(cause));
+            return;
+        }
+
+        send.whenComplete((r, cause) -> {
+            release.run();
+
+            if (null != cause) {
+                future.completeExceptionally(fetchException(cause));
+            } else {
+                try {
+                    future.complete(response(r, bodyHandler));
+                } catch (final RuntimeException failed) {
+                    future.completeExceptionally(fetchException(failed));
+                }
+            }
+        });
+        future.whenComplete((r, cause) -> {
+            if (future.isCancelled()) {
+                send.cancel(true);
+            }
+        });
+    }
+
+    private final static Runnable NO_RELEASE = () -> {
+    };
+
+    /**
+     * Marks the request as built and records the length of its body, which is unknown for streamed and compressed bodies.
+     */
+    private static void built(final FetchTimer timer,
+                              final java.net.http.HttpRequest request) {
+        if (timer.isActive()) {
+            timer.built();
+            timer.requestBytes(request.bodyPublisher()
+                    .map(BodyPublisher::contentLength)
+                    .orElse(FetchTimings.UNKNOWN));
+        }
+    }
+
+    /**
+     * Limits the number of concurrent requests to any origin when {@link FetchCustomizer#httpClientMaxConcurrentStreams()} is positive.
+     */
+    // @VisibleForTesting
+    final FetchJavaNetHttpClientStreamLimiter streams = FetchJavaNetHttpClientStreamLimiter.create();
+
+    @Override
+    void applyCallback0(final HttpRequest request,
+                        final FetchCustomizer customizer,
+                        final FetchCallback callback) {
+        this.applyAsync(request)
+                .whenComplete((response, cause) -> {
+                    if (null != cause) {
+                        callback.onFailure(fetchException(cause));
+                    } else {
+                        callback.onResponse(response);
+                    }
+                });
+    }
+
+    /**
+     * Unwraps any {@link CompletionException} or {@link ExecutionException} and wraps the cause in a {@link FetchException}
+     * if necessary.
+     */
+    private static FetchException fetchException(final Throwable cause) {
+        Throwable unwrapped = cause;
+        while ((unwrapped instanceof CompletionException || unwrapped instanceof ExecutionException) && null != unwrapped.getCause()) {
+            unwrapped = unwrapped.getCause();
+        }
+
+        return unwrapped instanceof FetchException ?
+                (FetchException) unwrapped :
+                new FetchException(unwrapped.getMessage(), unwrapped);
+    }
+
+    /**
+     * Creates a {@link java.net.http.HttpRequest.Builder} with the url, method, headers and body from the given {@link HttpRequest}.
+     */
+    private static java.net.http.HttpRequest.Builder requestBuilder(final HttpRequest request,
+                                                                    final FetchCustomizer customizer) {
+        final java.net.http.HttpRequest.Builder requestBuilder = java.net.http.HttpRequest.newBuilder(uri(request, customizer));
+        final Optional<BodyPublisher> body = customizer.httpClientBody(request);
+        boolean compress = false;
+        if (body.isPresent()) {
+            requestBuilder.method(request.method().value(), body.get());
+        } else {
+            final byte[] bytes = body(request, customizer.defaultCharset());
+            compress = compress(request, bytes.length, customizer);
+            requestBuilder.method(request.method().value(),
+                    compress ?
+                            BodyPublishers.fromPublisher(FetchJavaNetHttpClientGzipPublisher.with(ByteBuffer.wrap(bytes))) :
+                            BodyPublishers.ofByteArray(bytes));
+        }
+
+        // add request headers
+        request.headers().forEach((h, v) -> {
+            final String headerName = h.value();
+            for (final Object value : v) {
+                requestBuilder.setHeader(headerName, h.headerText(Cast.to(value)));
+            }
+        });
+
+        if (compress) {
+            requestBuilder.setHeader(HttpHeaderName.CONTENT_ENCODING.value(), GZIP);
+        }
+        if (customizer.httpClientDecompress() && !FetchHeaders.text(request, "Accept-Encoding").isPresent()) {
+            requestBuilder.setHeader("Accept-Encoding", ACCEPT_ENCODING);
+        }
+
+        return requestBuilder;
+    }
+
+    /**
+     * Only the body of POST and PUT requests with no content-encoding that are larger than the
+     * {@link FetchCustomizer#httpClientCompressThreshold(HttpRequest)} are compressed.
+     */
+    private static boolean compress(final HttpRequest request,
+                                    final int length,
+                                    final FetchCustomizer customizer) {
+        final HttpMethod method = request.method();
+        final long threshold = customizer.httpClientCompressThreshold(request);
+
+        return (HttpMethod.POST.equals(method) || HttpMethod.PUT.equals(method)) &&
+                threshold >= 0 &&
+                length > threshold &&
+                !FetchHeaders.text(request, HttpHeaderName.CONTENT_ENCODING.value()).isPresent();
+    }
+
+    private final static String GZIP = "gzip";
+
+    /**
+     * The content-encodings that may be decompressed, sent when {@link FetchCustomizer#httpClientDecompress()} is true.
+     */
+    private final static String ACCEPT_ENCODING = "gzip, deflate";
+
+    /**
+     * Returns a {@link FetchJavaNetHttpClientBodyHandler} that decompresses bodies if enabled by the {@link FetchCustomizer}.
+     */
+    private static <T> FetchJavaNetHttpClientBodyHandler<T> decompress(final FetchJavaNetHttpClientBodyHandler<T> bodyHandler,
+                                                                       final FetchCustomizer customizer) {
+        return customizer.httpClientDecompress() ?
+                bodyHandler.decompress() :
+                bodyHandler;
+    }
+
+    /**
+     * Creates a {@link HttpResponse} from the {@link java.net.http.HttpResponse} capturing the status, headers and body.
+     */
+    private static HttpResponse response(final java.net.http.HttpResponse<String> javaNetHttpHttpResponse,
+                                         final FetchJavaNetHttpClientBodyHandler<String> bodyHandler) {
+        return response(javaNetHttpHttpResponse,
+                bodyHandler,
+                entity(javaNetHttpHttpResponse.headers(), bodyHandler)
+                        .setBodyText(javaNetHttpHttpResponse.body()));
+    }
+
+    /**
+     * Creates a {@link HttpResponse} with the version, the status captured by the {@link FetchJavaNetHttpClientBodyHandler}
+     * and the given {@link HttpEntity}.
+     */
+    private static HttpResponse response(final java.net.http.HttpResponse<?> javaNetHttpHttpResponse,
+                                         final FetchJavaNetHttpClientBodyHandler<?> bodyHandler,
+                                         final HttpEntity entity) {
+        return response(version(javaNetHttpHttpResponse.version()),
+                HttpStatusCode.withCode(bodyHandler.status).status(),
+                entity);
+    }
+
+    /**
+     * Creates a {@link HttpEntity} with the response headers and no body, removing the content-encoding and content-length
+     * if the body was decompressed.
+     */
+    private static HttpEntity entity(final HttpHeaders headers,
+                                     final FetchJavaNetHttpClientBodyHandler<?> bodyHandler) {
+        final FetchHeaders fetchHeaders = headers(headers);
+        if (bodyHandler.decompressed) {
+            fetchHeaders.remove(HttpHeaderName.CONTENT_ENCODING.value())
+                    .remove(HttpHeaderName.CONTENT_LENGTH.value());
+        }
+        return fetchHeaders.entity();
+    }
+
+    /**
+     * Copies the raw header names and values without parsing any values.
+     */
+    static FetchHeaders headers(final HttpHeaders headers) {
+        final FetchHeaders fetchHeaders = FetchHeaders.empty();
+
+        for (final Entry<String, List<String>> headerAndValues : headers.map().entrySet()) {
+            final String name = headerAndValues.getKey();
+            for (final String value : headerAndValues.getValue()) {
+                fetchHeaders.add(name, value);
+            }
+        }
+        return fetchHeaders;
+    }
+
+    /**
+     * Returns the {@link HttpProtocolVersion} actually used by the response, which may be HTTP/1.1 even when HTTP/2
+     * was requested if the server does not support HTTP/2.
+     */
+    static HttpProtocolVersion version(final HttpClient.Version version) {
+        final HttpProtocolVersion protocolVersion;
+
+        switch (version) {
+            case HTTP_1_1:
+                protocolVersion = HttpProtocolVersion.VERSION_1_1;
+                break;
+            case HTTP_2:
+                protocolVersion = HttpProtocolVersion.VERSION_2;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown version " + version);
+        }
+
+        return protocolVersion;
+    }
+
+    /**
+     * Returns a cached {@link HttpClient} with the same configuration as the given builder, creating one if necessary.
+     */
+    private HttpClient httpClient(final FetchJavaNetHttpClientBuilder builder) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            if (this.closed) {
+                throw new FetchException("Fetch closed");
+            }
+
+            HttpClient client = this.clients.get(builder);
+            if (null == client) {
+                client = builder.build();
+                this.clients.put(builder, client);
+            }
+            return client;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The maximum number of {@link HttpClient} kept, once reached the least recently used is forgotten.
+     */
+    // @VisibleForTesting
+    final static int MAX_CLIENTS = 16;
+
+    /**
+     * All {@link HttpClient} created by this fetch, keyed by their configuration, with the least recently used first.
+     * Forgotten clients are not closed as requests may still be using them, they release their selector thread and
+     * connections once they are no longer referenced.
+     */
+    // @VisibleForTesting
+    final Map<FetchJavaNetHttpClientBuilder, HttpClient> clients = new LinkedHashMap<>(MAX_CLIENTS, 0.75f, true) {
+        private final static long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<FetchJavaNetHttpClientBuilder, HttpClient> eldest) {
+            return this.size() > MAX_CLIENTS;
+        }
+    };
+
+    /**
+     * Guards {@link #clients} and {@link #closed}, a {@link ReentrantLock} is used so virtual threads are never pinned.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Forgets all cached {@link HttpClient}, closing them if they are {@link AutoCloseable} (JDK 21+). Older JDKs
+     * release their selector thread and connections once the client is no longer referenced.
+     * Any further requests will fail with a {@link FetchException}.
+     */
+    @Override
+    public void close() {
+        final List<HttpClient> clients;
+
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            this.closed = true;
+            clients = new ArrayList<>(this.clients.values());
+            this.clients.clear();
+        } finally {
+            lock.unlock();
+        }
+
+        for (final HttpClient client : clients) {
+            if (client instanceof AutoCloseable) {
+                try {
+                    ((AutoCloseable) client).close();
+                } catch (final Exception ignore) {
+                    // nothing to do
+                }
+            }
+        }
     }
 
+    private boolean closed;
+
     /**
-     * Returns a {@link BodyPublisher} with the given {@link String body}.
+     * Returns the bytes of the request body. A body with a text content-type is encoded using the charset from the
+     * content-type or {@link FetchCustomizer#defaultCharset()}, all other bodies including those without a
+     * content-type are sent as is.
      */
-    private static BodyPublisher bodyPublisher(final HttpRequest request,
-                                               final Charset defaultCharset) {
-        final Charset charset = HttpHeaderName.CONTENT_TYPE.header(request)
-                .map(m -> m.contentTypeCharset(defaultCharset))
-                .orElse(defaultCharset);
+    private static byte[] body(final HttpRequest request,
+                               final Charset defaultCharset) {
+        final Optional<MediaType> contentType = HttpHeaderName.CONTENT_TYPE.header(request);
+
+        return contentType.isPresent() && isText(contentType.get()) ?
+                request.bodyText()
+                        .getBytes(contentType.get().contentTypeCharset(defaultCharset)) :
+                request.body();
+    }
 
-        return BodyPublishers.ofString(request.bodyText(), charset);
+    /**
+     * Returns a {@link URI} from the request.
+     */
+    private static URI uri(final HttpRequest request, final FetchCustomizer customizer) {
+        return URI.create(customizer.httpClientUrl(request).value());
     }
 
     @Override
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.net.http.client;
+
+import walkingkooka.net.http.server.HttpRequest;
+import walkingkooka.net.http.server.HttpResponse;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * A {@link Function} that sends requests asynchronously using {@link FetchJavaNetHttpClient#applyAsync(HttpRequest)}.
+ */
+final class FetchJavaNetHttpClientAsync implements Function<HttpRequest, CompletableFuture<HttpResponse>>, AutoCloseable {
+
+    static FetchJavaNetHttpClientAsync with(final FetchJavaNetHttpClient fetch) {
+        return new FetchJavaNetHttpClientAsync(fetch);
+    }
+
+    private FetchJavaNetHttpClientAsync(final FetchJavaNetHttpClient fetch) {
+        super();
+        this.fetch = fetch;
+    }
+
+    @Override
+    public CompletableFuture<HttpResponse> apply(final HttpRequest request) {
+        return this.fetch.applyAsync(request);
+    }
+
+    @Override
+    public void close() {
+        this.fetch.close();
+    }
+
+    private final FetchJavaNetHttpClient fetch;
+
+    @Override
+    public String toString() {
+        return this.fetch.toString();
+    }
+}
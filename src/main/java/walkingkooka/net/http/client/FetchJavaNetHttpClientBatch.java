@@ -0,0 +1,151 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.net.http.client;
+
+import walkingkooka.net.http.server.HttpRequest;
+import walkingkooka.net.http.server.HttpResponse;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * A {@link Function} that sends a batch of requests using an asynchronous fetch, never having more than a maximum
+ * number of requests in flight. A future is returned for each request in the same order as the requests, each
+ * completing as soon as its own response arrives. A failed request completes its own future with a {@link FetchException}
+ * and does not stop or cancel the remaining requests.
+ */
+final class FetchJavaNetHttpClientBatch implements Function<Collection<HttpRequest>, List<CompletableFuture<HttpResponse>>>,
+        AutoCloseable {
+
+    static FetchJavaNetHttpClientBatch with(final Function<HttpRequest, CompletableFuture<HttpResponse>> fetch,
+                                            final int maxInFlight) {
+        Objects.requireNonNull(fetch, "fetch");
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("Invalid max in flight " + maxInFlight + " < 1");
+        }
+
+        return new FetchJavaNetHttpClientBatch(fetch, maxInFlight);
+    }
+
+    private FetchJavaNetHttpClientBatch(final Function<HttpRequest, CompletableFuture<HttpResponse>> fetch,
+                                        final int maxInFlight) {
+        super();
+        this.fetch = fetch;
+        this.maxInFlight = maxInFlight;
+    }
+
+    @Override
+    public List<CompletableFuture<HttpResponse>> apply(final Collection<HttpRequest> requests) {
+        Objects.requireNonNull(requests, "requests");
+
+        final HttpRequest[] copy = requests.toArray(new HttpRequest[0]);
+        final int count = copy.length;
+
+        final List<CompletableFuture<HttpResponse>> responses = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            responses.add(new CompletableFuture<>());
+        }
+
+        final AtomicInteger next = new AtomicInteger();
+        final int lanes = Math.min(this.maxInFlight, count);
+        for (int i = 0; i < lanes; i++) {
+            this.sendNext(copy, responses, next);
+        }
+
+        return responses;
+    }
+
+    /**
+     * Sends requests one after another until one is still in flight, which will send the next request when it completes.
+     * Requests that complete immediately, such as failures are handled within the loop to avoid recursion.
+     */
+    private void sendNext(final HttpRequest[] requests,
+                          final List<CompletableFuture<HttpResponse>> responses,
+                          final AtomicInteger next) {
+        for (; ; ) {
+            final int i = next.getAndIncrement();
+            if (i >= requests.length) {
+                break;
+            }
+
+            final CompletableFuture<HttpResponse> response = responses.get(i);
+            final CompletableFuture<HttpResponse> sent = this.send(requests[i]);
+
+            if (!sent.isDone()) {
+                sent.whenComplete((r, cause) -> {
+                    complete(r, cause, response);
+                    this.sendNext(requests, responses, next);
+                });
+                break;
+            }
+
+            sent.whenComplete((r, cause) -> complete(r, cause, response));
+        }
+    }
+
+    private CompletableFuture<HttpResponse> send(final HttpRequest request) {
+        CompletableFuture<HttpResponse> sent;
+        try {
+            sent = this.fetch.apply(request);
+        } catch (final RuntimeException cause) {
+            sent = new CompletableFuture<>();
+            sent.completeExceptionally(cause);
+        }
+        return sent;
+    }
+
+    private static void complete(final HttpResponse response,
+                                 final Throwable cause,
+                                 final CompletableFuture<HttpResponse> future) {
+        if (null != cause) {
+            final Throwable unwrapped = cause instanceof CompletionException && null != cause.getCause() ?
+                    cause.getCause() :
+                    cause;
+            future.completeExceptionally(unwrapped instanceof FetchException ?
+                    unwrapped :
+                    new FetchException(unwrapped.getMessage(), unwrapped));
+        } else {
+            future.complete(response);
+        }
+    }
+
+    private final Function<HttpRequest, CompletableFuture<HttpResponse>> fetch;
+
+    private final int maxInFlight;
+
+    /**
+     * Closes the wrapped fetch if it is {@link AutoCloseable}.
+     */
+    @Override
+    public void close() throws Exception {
+        if (this.fetch instanceof AutoCloseable) {
+            ((AutoCloseable) this.fetch).close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.fetch + " max " + this.maxInFlight;
+    }
+}
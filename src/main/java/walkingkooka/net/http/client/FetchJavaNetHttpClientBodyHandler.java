@@ -19,35 +19,93 @@ package walkingkooka.net.http.client;
 
 import walkingkooka.ToStringBuilder;
 import walkingkooka.net.header.HttpHeaderName;
-import walkingkooka.net.header.MediaType;
 
+import java.io.InputStream;
 import java.net.http.HttpResponse.BodyHandler;
 import java.net.http.HttpResponse.BodySubscriber;
 import java.net.http.HttpResponse.BodySubscribers;
 import java.net.http.HttpResponse.ResponseInfo;
 import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
 
 /**
- * A {@link BodyHandler} that captures the status and uses the content-type to build a {@link BodySubscriber}.
+ * A {@link BodyHandler} that captures the status and then delegates to another {@link BodyHandler} to build the
+ * {@link BodySubscriber}, which for text uses the content-type to select the charset.
  */
-final class FetchJavaNetHttpClientBodyHandler implements BodyHandler<String> {
+final class FetchJavaNetHttpClientBodyHandler<T> implements BodyHandler<T> {
 
-    static FetchJavaNetHttpClientBodyHandler with(final Charset defaultCharset) {
-        return new FetchJavaNetHttpClientBodyHandler(defaultCharset);
+    /**
+     * Decodes the response body into a {@link String} using the charset from the content-type or the default.
+     */
+    static FetchJavaNetHttpClientBodyHandler<String> with(final Charset defaultCharset) {
+        return new FetchJavaNetHttpClientBodyHandler<>((responseInfo) -> BodySubscribers.ofString(contentType(responseInfo, defaultCharset)),
+                defaultCharset);
     }
 
-    private FetchJavaNetHttpClientBodyHandler(final Charset defaultCharset) {
+    /**
+     * Makes the response body available as an {@link InputStream} as soon as the headers are received, without buffering
+     * the entire body.
+     */
+    static FetchJavaNetHttpClientBodyHandler<InputStream> inputStream() {
+        return new FetchJavaNetHttpClientBodyHandler<>((responseInfo) -> BodySubscribers.ofInputStream(),
+                null);
+    }
+
+    /**
+     * Writes the response body directly to the given file, replacing any previous content, without buffering it in the heap.
+     */
+    static FetchJavaNetHttpClientBodyHandler<Path> file(final Path file) {
+        return new FetchJavaNetHttpClientBodyHandler<>((responseInfo) -> BodySubscribers.ofFile(file,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING),
+                null);
+    }
+
+    private FetchJavaNetHttpClientBodyHandler(final BodyHandler<T> handler,
+                                              final Charset defaultCharset) {
+        this(handler, defaultCharset, false);
+    }
+
+    private FetchJavaNetHttpClientBodyHandler(final BodyHandler<T> handler,
+                                              final Charset defaultCharset,
+                                              final boolean decompress) {
         super();
+        this.handler = handler;
         this.defaultCharset = defaultCharset;
+        this.decompress = decompress;
+    }
+
+    /**
+     * Returns a {@link FetchJavaNetHttpClientBodyHandler} that also decompresses gzip and deflate bodies before they
+     * reach the {@link BodySubscriber}, so any charset decoding happens after decompression.
+     */
+    FetchJavaNetHttpClientBodyHandler<T> decompress() {
+        return new FetchJavaNetHttpClientBodyHandler<>(this.handler,
+                this.defaultCharset,
+                true);
     }
 
     // BodyHandler......................................................................................................
 
     @Override
-    public BodySubscriber<String> apply(final ResponseInfo responseInfo) {
+    public BodySubscriber<T> apply(final ResponseInfo responseInfo) {
+        final FetchTimer timer = this.timer;
+        timer.headers();
+
         this.setStatus(responseInfo);
 
-        return BodySubscribers.ofString(this.contentType(responseInfo));
+        final BodySubscriber<T> subscriber = this.handler.apply(responseInfo);
+        final BodySubscriber<T> inflating = this.decompress ?
+                this.inflate(responseInfo, subscriber) :
+                subscriber;
+
+        // counts the bytes received before any decompression
+        return timer.isActive() ?
+                FetchJavaNetHttpClientCountingBodySubscriber.with(timer, inflating) :
+                inflating;
     }
 
     private void setStatus(final ResponseInfo responseInfo) {
@@ -56,16 +114,53 @@ final class FetchJavaNetHttpClientBodyHandler implements BodyHandler<String> {
 
     int status;
 
+    /**
+     * Marks when the response headers were received and counts the body bytes, for a request with a {@link FetchListener}.
+     */
+    FetchTimer timer = FetchTimer.NONE;
+
+    private final BodyHandler<T> handler;
+
+    /**
+     * Wraps the {@link BodySubscriber} if the response has a single content-encoding of gzip or deflate.
+     */
+    private BodySubscriber<T> inflate(final ResponseInfo responseInfo,
+                                      final BodySubscriber<T> subscriber) {
+        final List<String> contentEncodings = responseInfo.headers()
+                .allValues(HttpHeaderName.CONTENT_ENCODING.value());
+
+        final FetchJavaNetHttpClientInflater inflater = 1 == contentEncodings.size() ?
+                FetchJavaNetHttpClientInflater.with(contentEncodings.get(0)) :
+                null;
+        if (null != inflater) {
+            this.decompressed = true;
+        }
+        return null != inflater ?
+                FetchJavaNetHttpClientInflatingBodySubscriber.with(inflater, subscriber) :
+                subscriber;
+    }
+
+    private final boolean decompress;
+
+    /**
+     * True when the body was decompressed, the content-encoding and content-length headers no longer describe the body.
+     */
+    boolean decompressed;
+
     /**
      * Extracts the content type from the {@link ResponseInfo}.
      */
-    private Charset contentType(final ResponseInfo responseInfo) {
+    private static Charset contentType(final ResponseInfo responseInfo,
+                                       final Charset defaultCharset) {
         return responseInfo.headers()
                 .firstValue(HttpHeaderName.CONTENT_TYPE.value())
-                .map(c -> MediaType.parse(c).contentTypeCharset(this.defaultCharset))
-                .orElse(this.defaultCharset);
+                .map(c -> FetchJavaNetHttpClientCharsets.charset(c, defaultCharset))
+                .orElse(defaultCharset);
     }
 
+    /**
+     * Only used when the body is decoded into text.
+     */
     private final Charset defaultCharset;
 
     // Object...........................................................................................................
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.net.http.client;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.http.HttpRequest.BodyPublisher;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * Factory methods for {@link BodyPublisher} which stream large request bodies from files or {@link ByteBuffer} without
+ * loading them into the heap. Each publisher knows its content-length so the request is never sent chunked.
+ */
+final class FetchJavaNetHttpClientBodyPublishers {
+
+    /**
+     * {@see BodyPublishers#ofFile(Path)}
+     */
+    static BodyPublisher file(final Path file) {
+        Objects.requireNonNull(file, "file");
+
+        try {
+            return BodyPublishers.ofFile(file);
+        } catch (final FileNotFoundException cause) {
+            throw new FetchException("File not found " + file, cause);
+        }
+    }
+
+    /**
+     * Memory maps the region of the {@link FileChannel}, which is then sent in chunks. Regions larger than the
+     * maximum size of a single {@link java.nio.MappedByteBuffer} are mapped in several pieces.
+     */
+    static BodyPublisher fileChannel(final FileChannel channel,
+                                     final long position,
+                                     final long size) {
+        Objects.requireNonNull(channel, "channel");
+        if (position < 0) {
+            throw new IllegalArgumentException("Invalid position " + position + " < 0");
+        }
+        if (size < 0) {
+            throw new IllegalArgumentException("Invalid size " + size + " < 0");
+        }
+
+        final int count = (int) ((size + Integer.MAX_VALUE - 1) / Integer.MAX_VALUE);
+        final ByteBuffer[] buffers = new ByteBuffer[count];
+
+        try {
+            long offset = position;
+            long remaining = size;
+            for (int i = 0; i < count; i++) {
+                final long length = Math.min(remaining, Integer.MAX_VALUE);
+                buffers[i] = channel.map(MapMode.READ_ONLY, offset, length);
+                offset += length;
+                remaining -= length;
+            }
+        } catch (final IOException cause) {
+            throw new FetchException("Unable to map file " + cause.getMessage(), cause);
+        }
+
+        return byteBuffers(buffers);
+    }
+
+    /**
+     * Sends the remaining bytes of the given {@link ByteBuffer} in chunks.
+     */
+    static BodyPublisher byteBuffer(final ByteBuffer buffer) {
+        Objects.requireNonNull(buffer, "buffer");
+
+        return byteBuffers(buffer);
+    }
+
+    private static BodyPublisher byteBuffers(final ByteBuffer... buffers) {
+        final FetchJavaNetHttpClientByteBufferPublisher publisher = FetchJavaNetHttpClientByteBufferPublisher.with(buffers);
+        final long contentLength = publisher.contentLength();
+
+        return 0 == contentLength ?
+                BodyPublishers.noBody() :
+                BodyPublishers.fromPublisher(publisher, contentLength);
+    }
+
+    /**
+     * Stop creation
+     */
+    private FetchJavaNetHttpClientBodyPublishers() {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.net.http.client;
+
+import walkingkooka.ToStringBuilder;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import java.net.Authenticator;
+import java.net.CookieHandler;
+import java.net.ProxySelector;
+import java.net.http.HttpClient;
+import java.net.http.HttpClient.Builder;
+import java.net.http.HttpClient.Redirect;
+import java.net.http.HttpClient.Version;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+
+/**
+ * A {@link Builder} that records the configuration applied by {@link FetchCustomizer#prepareHttpClient(Builder, java.net.http.HttpRequest.Builder)}.
+ * Instances are used as keys to find a previously built {@link HttpClient} with the same configuration, which allows
+ * connections, keep-alive and TLS sessions to be shared between requests.
+ * <br>
+ * Values such as {@link SSLContext}, {@link SSLParameters}, {@link Executor} etc are compared by identity, customizers
+ * should return the same instances each time to benefit from reuse.
+ */
+final class FetchJavaNetHttpClientBuilder implements Builder {
+
+    static FetchJavaNetHttpClientBuilder empty() {
+        return new FetchJavaNetHttpClientBuilder();
+    }
+
+    private FetchJavaNetHttpClientBuilder() {
+        super();
+    }
+
+    @Override
+    public Builder cookieHandler(final CookieHandler cookieHandler) {
+        this.cookieHandler = Objects.requireNonNull(cookieHandler, "cookieHandler");
+        return this;
+    }
+
+    private CookieHandler cookieHandler;
+
+    @Override
+    public Builder connectTimeout(final Duration connectTimeout) {
+        this.connectTimeout = Objects.requireNonNull(connectTimeout, "connectTimeout");
+        return this;
+    }
+
+    private Duration connectTimeout;
+
+    @Override
+    public Builder sslContext(final SSLContext sslContext) {
+        this.sslContext = Objects.requireNonNull(sslContext, "sslContext");
+        return this;
+    }
+
+    private SSLContext sslContext;
+
+    @Override
+    public Builder sslParameters(final SSLParameters sslParameters) {
+        this.sslParameters = Objects.requireNonNull(sslParameters, "sslParameters");
+        return this;
+    }
+
+    private SSLParameters sslParameters;
+
+    @Override
+    public Builder executor(final Executor executor) {
+        this.executor = Objects.requireNonNull(executor, "executor");
+        return this;
+    }
+
+    private Executor executor;
+
+    @Override
+    public Builder followRedirects(final Redirect followRedirects) {
+        this.followRedirects = Objects.requireNonNull(followRedirects, "followRedirects");
+        return this;
+    }
+
+    private Redirect followRedirects;
+
+    @Override
+    public Builder version(final Version version) {
+        this.version = Objects.requireNonNull(version, "version");
+        return this;
+    }
+
+    private Version version;
+
+    @Override
+    public Builder priority(final int priority) {
+        if (priority < 1 || priority > 256) {
+            throw new IllegalArgumentException("Invalid priority " + priority + " not between 1 and 256");
+        }
+        this.priority = priority;
+        return this;
+    }
+
+    private int priority;
+
+    @Override
+    public Builder proxy(final ProxySelector proxy) {
+        this.proxy = Objects.requireNonNull(proxy, "proxy");
+        return this;
+    }
+
+    private ProxySelector proxy;
+
+    @Override
+    public Builder authenticator(final Authenticator authenticator) {
+        this.authenticator = Objects.requireNonNull(authenticator, "authenticator");
+        return this;
+    }
+
+    private Authenticator authenticator;
+
+    /**
+     * Creates a new {@link HttpClient} with the recorded configuration.
+     */
+    @Override
+    public HttpClient build() {
+        final Builder builder = HttpClient.newBuilder();
+
+        if (null != this.cookieHandler) {
+            builder.cookieHandler(this.cookieHandler);
+        }
+        if (null != this.connectTimeout) {
+            builder.connectTimeout(this.connectTimeout);
+        }
+        if (null != this.sslContext) {
+            builder.sslContext(this.sslContext);
+        }
+        if (null != this.sslParameters) {
+            builder.sslParameters(this.sslParameters);
+        }
+        if (null != this.executor) {
+            builder.executor(this.executor);
+        }
+        if (null != this.followRedirects) {
+            builder.followRedirects(this.followRedirects);
+        }
+        if (null != this.version) {
+            builder.version(this.version);
+        }
+        if (0 != this.priority) {
+            builder.priority(this.priority);
+        }
+        if (null != this.proxy) {
+            builder.proxy(this.proxy);
+        }
+        if (null != this.authenticator) {
+            builder.authenticator(this.authenticator);
+        }
+
+        return builder.build();
+    }
+
+    // Object...........................................................................................................
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.connectTimeout,
+                this.followRedirects,
+                this.version,
+                this.priority);
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        return this == other ||
+                other instanceof FetchJavaNetHttpClientBuilder && this.equals0((FetchJavaNetHttpClientBuilder) other);
+    }
+
+    private boolean equals0(final FetchJavaNetHttpClientBuilder other) {
+        return this.cookieHandler == other.cookieHandler &&
+                Objects.equals(this.connectTimeout, other.connectTimeout) &&
+                this.sslContext == other.sslContext &&
+                this.sslParameters == other.sslParameters &&
+                this.executor == other.executor &&
+                this.followRedirects == other.followRedirects &&
+                this.version == other.version &&
+                this.priority == other.priority &&
+                this.proxy == other.proxy &&
+                this.authenticator == other.authenticator;
+    }
+
+    @Override
+    public String toString() {
+        return ToStringBuilder.empty()
+                .label("cookieHandler").value(this.cookieHandler)
+                .label("connectTimeout").value(this.connectTimeout)
+                .label("sslContext").value(this.sslContext)
+                .label("sslParameters").value(this.sslParameters)
+                .label("executor").value(this.executor)
+                .label("followRedirects").value(this.followRedirects)
+                .label("version").value(this.version)
+                .label("priority").value(this.priority)
+                .label("proxy").value(this.proxy)
+                .label("authenticator").value(this.authenticator)
+                .build();
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.net.http.client;
+
+import walkingkooka.net.http.server.HttpRequest;
+import walkingkooka.net.http.server.HttpResponse;
+
+import java.net.URI;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Wraps a blocking fetch limiting the number of requests in flight to each origin, so a slow origin can only tie up a
+ * bounded number of caller threads. Callers above the limit wait for a permit, but only up to a maximum number of
+ * waiters and the maximum wait, after which a {@link FetchBulkheadFullException} is thrown without sending the request.
+ * <br>
+ * Each origin has its own {@link Semaphore} and waiter count found in a {@link ConcurrentHashMap}, permits are taken
+ * with a compare and set when available and the waiter count is also bounded using compare and set, which means
+ * requests to different origins never contend with each other. An origin is removed once no caller holds or waits for
+ * one of its permits, so origins that are no longer used are not kept forever.
+ */
+final class FetchJavaNetHttpClientBulkhead implements Function<HttpRequest, HttpResponse>, AutoCloseable {
+
+    static FetchJavaNetHttpClientBulkhead with(final Function<HttpRequest, HttpResponse> fetch,
+                                               final FetchCustomizer customizer,
+                                               final int maxConcurrent,
+                                               final int maxWaiting,
+                                               final long maxWaitMillis) {
+        Objects.requireNonNull(fetch, "fetch");
+        Objects.requireNonNull(customizer, "customizer");
+        if (maxConcurrent <= 0) {
+            throw new IllegalArgumentException("Invalid maxConcurrent " + maxConcurrent + " <= 0");
+        }
+        if (maxWaiting < 0) {
+            throw new IllegalArgumentException("Invalid maxWaiting " + maxWaiting + " < 0");
+        }
+        if (maxWaitMillis < 0) {
+            throw new IllegalArgumentException("Invalid maxWaitMillis " + maxWaitMillis + " < 0");
+        }
+
+        return new FetchJavaNetHttpClientBulkhead(fetch,
+                customizer,
+                maxConcurrent,
+                maxWaiting,
+                maxWaitMillis);
+    }
+
+    private FetchJavaNetHttpClientBulkhead(final Function<HttpRequest, HttpResponse> fetch,
+                                           final FetchCustomizer customizer,
+                                           final int maxConcurrent,
+                                           final int maxWaiting,
+                                           final long maxWaitMillis) {
+        super();
+        this.fetch = fetch;
+        this.customizer = customizer;
+        this.maxConcurrent = maxConcurrent;
+        this.maxWaiting = maxWaiting;
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    @Override
+    public HttpResponse apply(final HttpRequest request) {
+        Objects.requireNonNull(request, "request");
+
+        final String origin = FetchJavaNetHttpClientStreamLimiter.origin(URI.create(this.customizer.httpClientUrl(request).value()));
+        final ConcurrentMap<String, Lane> lanes = this.lanes;
+
+        Lane lane;
+        for (; ; ) {
+            lane = lanes.computeIfAbsent(origin, (o) -> new Lane(this.maxConcurrent));
+            if (lane.enter()) {
+                break;
+            }
+            // the lane was retired by the last user leaving, help remove it and try again
+            lanes.remove(origin, lane);
+        }
+
+        try {
+            lane.acquire(origin);
+            try {
+                return this.fetch.apply(request);
+            } finally {
+                lane.permits.release();
+            }
+        } finally {
+            if (lane.exit()) {
+                lanes.remove(origin, lane);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of requests currently in flight to the given origin.
+     */
+    // @VisibleForTesting
+    int inFlight(final String origin) {
+        final Lane lane = this.lanes.get(origin);
+        return null != lane ?
+                this.maxConcurrent - lane.permits.availablePermits() :
+                0;
+    }
+
+    /**
+     * Returns the number of origins with a caller holding or waiting for a permit.
+     */
+    // @VisibleForTesting
+    int origins() {
+        return this.lanes.size();
+    }
+
+    /**
+     * Returns the number of callers currently waiting to send a request to the given origin.
+     */
+    // @VisibleForTesting
+    int waiting(final String origin) {
+        final Lane lane = this.lanes.get(origin);
+        return null != lane ?
+                lane.waiting.get() :
+                0;
+    }
+
+    private final ConcurrentMap<String, Lane> lanes = new ConcurrentHashMap<>();
+
+    /**
+     * The permits and count of waiters for a single origin.
+     */
+    private final class Lane {
+
+        /**
+         * The value of {@link #users} once the last user has left, after which the lane is never used again.
+         */
+        private final static int RETIRED = -1;
+
+        Lane(final int maxConcurrent) {
+            super();
+            this.permits = new Semaphore(maxConcurrent);
+        }
+
+        /**
+         * Counts a caller about to take or wait for a permit, returning false if the lane has been retired.
+         */
+        boolean enter() {
+            for (; ; ) {
+                final int current = this.users.get();
+                if (RETIRED == current) {
+                    return false;
+                }
+                if (this.users.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Counts a caller leaving the lane, returning true if it was the last and the lane was retired, which means
+         * every permit is available and no one is waiting.
+         */
+        boolean exit() {
+            return 0 == this.users.decrementAndGet() &&
+                    this.users.compareAndSet(0, RETIRED);
+        }
+
+        /**
+         * Takes a permit, waiting if allowed, or throws a {@link FetchBulkheadFullException}.
+         */
+        void acquire(final String origin) {
+            final Semaphore permits = this.permits;
+
+            if (!permits.tryAcquire()) {
+                final FetchJavaNetHttpClientBulkhead bulkhead = FetchJavaNetHttpClientBulkhead.this;
+                if (!this.tryWait(bulkhead.maxWaiting)) {
+                    throw new FetchBulkheadFullException("Bulkhead full for " + origin + ", " + bulkhead.maxConcurrent + " in flight and " + bulkhead.maxWaiting + " waiting");
+                }
+
+                try {
+                    if (!permits.tryAcquire(bulkhead.maxWaitMillis, TimeUnit.MILLISECONDS)) {
+                        throw new FetchBulkheadFullException("Bulkhead full for " + origin + ", waited " + bulkhead.maxWaitMillis + "ms");
+                    }
+                } catch (final InterruptedException cause) {
+                    Thread.currentThread().interrupt();
+                    throw new FetchException(cause.getMessage(), cause);
+                } finally {
+                    this.waiting.decrementAndGet();
+                }
+            }
+        }
+
+        /**
+         * Increments the waiter count unless it has reached the maximum.
+         */
+        private boolean tryWait(final int max) {
+            for (; ; ) {
+                final int current = this.waiting.get();
+                if (current >= max) {
+                    return false;
+                }
+                if (this.waiting.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        final Semaphore permits;
+
+        final AtomicInteger waiting = new AtomicInteger();
+
+        /**
+         * The callers holding or waiting for a permit, or {@link #RETIRED}.
+         */
+        private final AtomicInteger users = new AtomicInteger();
+    }
+
+    private final Function<HttpRequest, HttpResponse> fetch;
+
+    private final FetchCustomizer customizer;
+
+    private final int maxConcurrent;
+
+    private final int maxWaiting;
+
+    private final long maxWaitMillis;
+
+    @Override
+    public void close() throws Exception {
+        if (this.fetch instanceof AutoCloseable) {
+            ((AutoCloseable) this.fetch).close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.fetch + " bulkhead " + this.maxConcurrent + " in flight " + this.maxWaiting + " waiting";
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.net.http.client;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.Flow;
+
+/**
+ * A {@link Flow.Publisher} that emits read only slices of one or more {@link ByteBuffer}, never more than {@link #CHUNK}
+ * bytes at a time and only as requested by the subscriber. Slices share the content of the original buffers, which
+ * means memory mapped files are sent without being copied into the heap.
+ * <br>
+ * Each subscriber receives its own view of the buffers, so the same publisher may be sent again for example when
+ * following a redirect.
+ */
+final class FetchJavaNetHttpClientByteBufferPublisher implements Flow.Publisher<ByteBuffer> {
+
+    // @VisibleForTesting
+    final static int CHUNK = 64 * 1024;
+
+    static FetchJavaNetHttpClientByteBufferPublisher with(final ByteBuffer... buffers) {
+        Objects.requireNonNull(buffers, "buffers");
+
+        final ByteBuffer[] copy = new ByteBuffer[buffers.length];
+        for (int i = 0; i < buffers.length; i++) {
+            copy[i] = Objects.requireNonNull(buffers[i], "buffer")
+                    .asReadOnlyBuffer();
+        }
+        return new FetchJavaNetHttpClientByteBufferPublisher(copy);
+    }
+
+    private FetchJavaNetHttpClientByteBufferPublisher(final ByteBuffer[] buffers) {
+        super();
+        this.buffers = buffers;
+    }
+
+    /**
+     * The total number of bytes that will be published.
+     */
+    long contentLength() {
+        long length = 0;
+        for (final ByteBuffer buffer : this.buffers) {
+            length += buffer.remaining();
+        }
+        return length;
+    }
+
+    @Override
+    public void subscribe(final Flow.Subscriber<? super ByteBuffer> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber");
+
+        final ByteBuffer[] buffers = new ByteBuffer[this.buffers.length];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = this.buffers[i].duplicate();
+        }
+        subscriber.onSubscribe(new Subscription(subscriber, buffers));
+    }
+
+    private final ByteBuffer[] buffers;
+
+    /**
+     * Publishes slices of the buffers of a single subscriber.
+     */
+    private static final class Subscription extends FetchJavaNetHttpClientSubscription {
+
+        Subscription(final Flow.Subscriber<? super ByteBuffer> subscriber,
+                     final ByteBuffer[] buffers) {
+            super(subscriber);
+            this.buffers = buffers;
+        }
+
+        @Override
+        boolean hasNext() {
+            return null != this.current();
+        }
+
+        @Override
+        ByteBuffer next() {
+            return chunk(this.current());
+        }
+
+        /**
+         * Returns the buffer with remaining bytes or null if all have been published.
+         */
+        private ByteBuffer current() {
+            final ByteBuffer[] buffers = this.buffers;
+
+            ByteBuffer current = null;
+            while (this.index < buffers.length) {
+                final ByteBuffer buffer = buffers[this.index];
+                if (buffer.hasRemaining()) {
+                    current = buffer;
+                    break;
+                }
+                this.index++;
+            }
+            return current;
+        }
+
+        private static ByteBuffer chunk(final ByteBuffer buffer) {
+            final ByteBuffer chunk = buffer.slice();
+            final int length = Math.min(CHUNK, chunk.remaining());
+            chunk.limit(length);
+            buffer.position(buffer.position() + length);
+            return chunk;
+        }
+
+        private final ByteBuffer[] buffers;
+        private int index;
+    }
+
+    @Override
+    public String toString() {
+        return this.contentLength() + " bytes";
+    }
+}
@@ -0,0 +1,723 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.net.http.client;
+
+import walkingkooka.Binary;
+import walkingkooka.Cast;
+import walkingkooka.net.header.HttpHeaderName;
+import walkingkooka.net.http.HasHeaders;
+import walkingkooka.net.http.HttpEntity;
+import walkingkooka.net.http.HttpMethod;
+import walkingkooka.net.http.HttpProtocolVersion;
+import walkingkooka.net.http.HttpStatus;
+import walkingkooka.net.http.server.HttpRequest;
+import walkingkooka.net.http.server.HttpRequests;
+import walkingkooka.net.http.server.HttpResponse;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * An in memory HTTP cache following RFC 7234 that wraps another fetch, typically one returned by {@link HttpClient#fetch(FetchCustomizer)}.
+ * <ul>
+ * <li>Only GET responses are stored, other methods except HEAD remove any entry for the same url.</li>
+ * <li>Freshness uses Cache-Control s-maxage or max-age, then Expires, with no heuristic freshness.</li>
+ * <li>The cache is shared between all callers, so responses marked private or no-store are never stored, and responses
+ * to requests with an Authorization header are only stored if marked public, s-maxage or must-revalidate.</li>
+ * <li>Responses marked no-cache, or requests with Cache-Control no-cache, are always revalidated.</li>
+ * <li>Stale responses with an ETag or Last-Modified are revalidated using If-None-Match or If-Modified-Since, and a
+ * 304 response updates the headers of the cached response which is then returned.</li>
+ * <li>Request headers named by Vary must match the request that stored the response, Vary * is never stored.</li>
+ * </ul>
+ * Entries are evicted least recently used first once either the maximum number of entries or bytes is exceeded.
+ */
+final class FetchJavaNetHttpClientCache implements Function<HttpRequest, HttpResponse>, AutoCloseable {
+
+    static FetchJavaNetHttpClientCache with(final Function<HttpRequest, HttpResponse> fetch,
+                                            final FetchCustomizer customizer,
+                                            final int maxEntries,
+                                            final long maxBytes,
+                                            final FetchCacheListener listener) {
+        return with(fetch,
+                customizer,
+                maxEntries,
+                maxBytes,
+                listener,
+                System::currentTimeMillis);
+    }
+
+    // @VisibleForTesting
+    static FetchJavaNetHttpClientCache with(final Function<HttpRequest, HttpResponse> fetch,
+                                            final FetchCustomizer customizer,
+                                            final int maxEntries,
+                                            final long maxBytes,
+                                            final FetchCacheListener listener,
+                                            final LongSupplier clock) {
+        Objects.requireNonNull(fetch, "fetch");
+        Objects.requireNonNull(customizer, "customizer");
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Invalid maxEntries " + maxEntries + " <= 0");
+        }
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Invalid maxBytes " + maxBytes + " <= 0");
+        }
+        Objects.requireNonNull(listener, "listener");
+        Objects.requireNonNull(clock, "clock");
+
+        return new FetchJavaNetHttpClientCache(fetch,
+                customizer,
+                maxEntries,
+                maxBytes,
+                listener,
+                clock);
+    }
+
+    private FetchJavaNetHttpClientCache(final Function<HttpRequest, HttpResponse> fetch,
+                                        final FetchCustomizer customizer,
+                                        final int maxEntries,
+                                        final long maxBytes,
+                                        final FetchCacheListener listener,
+                                        final LongSupplier clock) {
+        super();
+        this.fetch = fetch;
+        this.customizer = customizer;
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.listener = listener;
+        this.clock = clock;
+    }
+
+    @Override
+    public HttpResponse apply(final HttpRequest request) {
+        Objects.requireNonNull(request, "request");
+
+        final HttpMethod method = request.method();
+        final String key = this.customizer.httpClientUrl(request).toString();
+
+        final HttpResponse response;
+        if (HttpMethod.GET.equals(method)) {
+            response = this.get(request, key);
+        } else {
+            response = this.fetch.apply(request);
+
+            if (!HttpMethod.HEAD.equals(method)) {
+                this.remove(key);
+            }
+        }
+        return response;
+    }
+
+    private HttpResponse get(final HttpRequest request,
+                             final String key) {
+        final CacheControl requestCacheControl = CacheControl.parse(request);
+
+        final HttpResponse response;
+        if (requestCacheControl.noStore) {
+            this.listener.onMiss(request);
+            response = this.fetch.apply(request);
+        } else {
+            final long now = this.clock.getAsLong();
+            final Entry entry = this.get(key);
+
+            if (null != entry && entry.matches(request)) {
+                if (!requestCacheControl.noCache && entry.isFresh(now)) {
+                    this.listener.onHit(request);
+                    response = entry.response(now);
+                } else {
+                    if (entry.hasValidators()) {
+                        this.listener.onRevalidate(request);
+                        response = this.revalidate(request, key, entry, now);
+                    } else {
+                        this.listener.onMiss(request);
+                        response = this.send(request, key, now);
+                    }
+                }
+            } else {
+                this.listener.onMiss(request);
+                response = this.send(request, key, now);
+            }
+        }
+
+        return response;
+    }
+
+    /**
+     * Sends a conditional request, returning the cached response with updated headers if it was not modified.
+     */
+    private HttpResponse revalidate(final HttpRequest request,
+                                    final String key,
+                                    final Entry entry,
+                                    final long requestTime) {
+        final HttpResponse response = this.fetch.apply(entry.conditional(request));
+        final long responseTime = this.clock.getAsLong();
+
+        final HttpResponse result;
+        if (NOT_MODIFIED == statusCode(response)) {
+            final HttpEntity entity = entry.refresh(response);
+            final Entry refreshed = Entry.with(request,
+                    entry.version,
+                    entry.status,
+                    entity,
+                    requestTime,
+                    responseTime);
+            if (null != refreshed) {
+                this.put(key, refreshed);
+                result = refreshed.response(responseTime);
+            } else {
+                this.remove(key);
+                result = response(entry.version, entry.status, entity);
+            }
+        } else {
+            result = this.store(request, key, response, requestTime, responseTime);
+        }
+        return result;
+    }
+
+    private HttpResponse send(final HttpRequest request,
+                              final String key,
+                              final long requestTime) {
+        final HttpResponse response = this.fetch.apply(request);
+        return this.store(request, key, response, requestTime, this.clock.getAsLong());
+    }
+
+    /**
+     * Stores the response if it may be cached, removing any previous entry if not.
+     */
+    private HttpResponse store(final HttpRequest request,
+                               final String key,
+                               final HttpResponse response,
+                               final long requestTime,
+                               final long responseTime) {
+        final List<HttpEntity> entities = response.entities();
+        final Optional<HttpStatus> status = response.status();
+
+        final Entry entry = 1 == entities.size() && status.isPresent() ?
+                Entry.with(request,
+                        response.version().orElse(null),
+                        status.get(),
+                        entities.get(0),
+                        requestTime,
+                        responseTime) :
+                null;
+        if (null != entry && entry.size <= this.maxBytes) {
+            this.put(key, entry);
+        } else {
+            this.remove(key);
+        }
+        return response;
+    }
+
+    // LRU..............................................................................................................
+
+    private Entry get(final String key) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return this.entries.get(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void put(final String key,
+                     final Entry entry) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            final Entry previous = this.entries.put(key, entry);
+            if (null != previous) {
+                this.bytes -= previous.size;
+            }
+            this.bytes += entry.size;
+
+            final Iterator<Entry> eldest = this.entries.values().iterator();
+            while (this.entries.size() > this.maxEntries || this.bytes > this.maxBytes) {
+                this.bytes -= eldest.next().size;
+                eldest.remove();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void remove(final String key) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            final Entry removed = this.entries.remove(key);
+            if (null != removed) {
+                this.bytes -= removed.size;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The number of cached responses.
+     */
+    // @VisibleForTesting
+    int size() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return this.entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The total size of all cached responses.
+     */
+    // @VisibleForTesting
+    long bytes() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return this.bytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Guards {@link #entries} and {@link #bytes}, a {@link ReentrantLock} is used so virtual threads are never pinned.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Entries in access order, the first being the least recently used.
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long bytes;
+
+    private final Function<HttpRequest, HttpResponse> fetch;
+
+    private final FetchCustomizer customizer;
+
+    private final int maxEntries;
+
+    private final long maxBytes;
+
+    private final FetchCacheListener listener;
+
+    private final LongSupplier clock;
+
+    /**
+     * Closes the wrapped fetch if it is {@link AutoCloseable}.
+     */
+    @Override
+    public void close() throws Exception {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            this.entries.clear();
+            this.bytes = 0;
+        } finally {
+            lock.unlock();
+        }
+        if (this.fetch instanceof AutoCloseable) {
+            ((AutoCloseable) this.fetch).close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.fetch + " cache " + this.maxEntries + " entries " + this.maxBytes + " bytes";
+    }
+
+    // helpers..........................................................................................................
+
+    private final static int NOT_MODIFIED = 304;
+
+    private static int statusCode(final HttpResponse response) {
+        return response.status()
+                .map(s -> s.value().code())
+                .orElse(0);
+    }
+
+    private static HttpResponse response(final HttpProtocolVersion version,
+                                         final HttpStatus status,
+                                         final HttpEntity entity) {
+        return null != version ?
+                Fetch.response(version, status, entity) :
+                Fetch.response(status, entity);
+    }
+
+    /**
+     * Status codes that may be cached when the response has explicit freshness or validators.
+     */
+    private static boolean isCacheable(final int status) {
+        switch (status) {
+            case 200:
+            case 203:
+            case 204:
+            case 300:
+            case 301:
+            case 308:
+            case 404:
+            case 405:
+            case 410:
+            case 414:
+            case 501:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Parses a http date such as Expires, returning -1 if the text is not a valid date.
+     */
+    private static long date(final Optional<String> text) {
+        long millis = -1;
+        if (text.isPresent()) {
+            try {
+                millis = ZonedDateTime.parse(text.get().trim(), DateTimeFormatter.RFC_1123_DATE_TIME)
+                        .toInstant()
+                        .toEpochMilli();
+            } catch (final DateTimeParseException invalid) {
+                millis = -1;
+            }
+        }
+        return millis;
+    }
+
+    private static long seconds(final Optional<String> text) {
+        long seconds = 0;
+        if (text.isPresent()) {
+            try {
+                seconds = Math.max(0, Long.parseLong(text.get().trim()));
+            } catch (final NumberFormatException invalid) {
+                seconds = 0;
+            }
+        }
+        return seconds;
+    }
+
+    private static Optional<String> header(final HasHeaders hasHeaders,
+                                           final String name) {
+        return FetchHeaders.text(hasHeaders, name);
+    }
+
+    private static HttpEntity setHeader(final HttpEntity entity,
+                                        final String name,
+                                        final String text) {
+        final HttpHeaderName<?> header = FetchHeaderNames.headerName(name);
+        return entity.setHeader(header, Cast.to(Collections.singletonList(header.parse(text))));
+    }
+
+    /**
+     * A cached response along with the values needed to calculate its age and freshness.
+     */
+    private static final class Entry {
+
+        /**
+         * Returns an {@link Entry} if the response may be stored otherwise returns null.
+         */
+        static Entry with(final HttpRequest request,
+                          final HttpProtocolVersion version,
+                          final HttpStatus status,
+                          final HttpEntity entity,
+                          final long requestTime,
+                          final long responseTime) {
+            final CacheControl cacheControl = CacheControl.parse(entity);
+            final Optional<String> vary = header(entity, "Vary");
+
+            if (!isCacheable(status.value().code()) ||
+                    cacheControl.noStore ||
+                    cacheControl.isPrivate ||
+                    vary.map(v -> v.contains("*")).orElse(false)) {
+                return null;
+            }
+            if (header(request, "Authorization").isPresent() &&
+                    !(cacheControl.isPublic || cacheControl.sMaxAge >= 0 || cacheControl.mustRevalidate)) {
+                return null;
+            }
+
+            final long date = date(header(entity, "Date"));
+            final long dateValue = -1 != date ? date : responseTime;
+
+            final long freshnessLifetime;
+            if (cacheControl.sMaxAge >= 0) {
+                freshnessLifetime = cacheControl.sMaxAge * 1000;
+            } else if (cacheControl.maxAge >= 0) {
+                freshnessLifetime = cacheControl.maxAge * 1000;
+            } else {
+                final Optional<String> expiresText = header(entity, "Expires");
+                final long expires = date(expiresText);
+                freshnessLifetime = expiresText.isPresent() && -1 != expires ?
+                        Math.max(0, expires - dateValue) :
+                        0;
+            }
+
+            final Optional<String> etag = header(entity, "ETag");
+            final Optional<String> lastModified = header(entity, "Last-Modified");
+            if (freshnessLifetime <= 0 && !etag.isPresent() && !lastModified.isPresent()) {
+                return null;
+            }
+
+            final Map<String, Optional<String>> varyHeaders = new LinkedHashMap<>();
+            if (vary.isPresent()) {
+                for (final String name : vary.get().split(",")) {
+                    final String trimmed = name.trim();
+                    if (!trimmed.isEmpty()) {
+                        varyHeaders.put(trimmed, header(request, trimmed));
+                    }
+                }
+            }
+
+            return new Entry(version,
+                    status,
+                    entity,
+                    requestTime,
+                    responseTime,
+                    seconds(header(entity, "Age")),
+                    dateValue,
+                    freshnessLifetime,
+                    cacheControl.noCache,
+                    etag,
+                    lastModified,
+                    varyHeaders);
+        }
+
+        private Entry(final HttpProtocolVersion version,
+                      final HttpStatus status,
+                      final HttpEntity entity,
+                      final long requestTime,
+                      final long responseTime,
+                      final long ageValue,
+                      final long dateValue,
+                      final long freshnessLifetime,
+                      final boolean noCache,
+                      final Optional<String> etag,
+                      final Optional<String> lastModified,
+                      final Map<String, Optional<String>> vary) {
+            this.version = version;
+            this.status = status;
+            this.entity = entity;
+            this.requestTime = requestTime;
+            this.responseTime = responseTime;
+            this.ageValue = ageValue;
+            this.dateValue = dateValue;
+            this.freshnessLifetime = freshnessLifetime;
+            this.noCache = noCache;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.vary = vary;
+            this.size = size(entity);
+        }
+
+        /**
+         * Returns true if the headers named by Vary match those of the request that stored this entry.
+         */
+        boolean matches(final HttpRequest request) {
+            boolean matches = true;
+            for (final Map.Entry<String, Optional<String>> nameAndValue : this.vary.entrySet()) {
+                if (!nameAndValue.getValue().equals(header(request, nameAndValue.getKey()))) {
+                    matches = false;
+                    break;
+                }
+            }
+            return matches;
+        }
+
+        /**
+         * RFC 7234 4.2.3 Calculating Age, in milliseconds.
+         */
+        long currentAge(final long now) {
+            final long apparentAge = Math.max(0, this.responseTime - this.dateValue);
+            final long correctedAgeValue = this.ageValue * 1000 + (this.responseTime - this.requestTime);
+            final long correctedInitialAge = Math.max(apparentAge, correctedAgeValue);
+            final long residentTime = now - this.responseTime;
+            return correctedInitialAge + residentTime;
+        }
+
+        boolean isFresh(final long now) {
+            return !this.noCache && this.freshnessLifetime > this.currentAge(now);
+        }
+
+        boolean hasValidators() {
+            return this.etag.isPresent() || this.lastModified.isPresent();
+        }
+
+        /**
+         * Creates a copy of the request with If-None-Match or If-Modified-Since.
+         */
+        HttpRequest conditional(final HttpRequest request) {
+            HttpEntity entity = HttpEntity.EMPTY.setHeaders(request.headers());
+
+            if (this.etag.isPresent()) {
+                entity = setHeader(entity, "If-None-Match", this.etag.get());
+            } else {
+                entity = setHeader(entity, "If-Modified-Since", this.lastModified.get());
+            }
+
+            final byte[] body = request.body();
+            if (null != body && body.length > 0) {
+                entity = entity.setBody(Binary.with(body));
+            }
+
+            return HttpRequests.value(request.method(),
+                    request.transport(),
+                    request.url(),
+                    request.protocolVersion(),
+                    entity);
+        }
+
+        /**
+         * Returns the cached entity with the headers of a 304 response replacing those cached.
+         */
+        HttpEntity refresh(final HttpResponse notModified) {
+            HttpEntity entity = this.entity;
+
+            for (final HttpEntity notModifiedEntity : notModified.entities()) {
+                for (final Map.Entry<HttpHeaderName<?>, List<?>> headerAndValues : notModifiedEntity.headers().entrySet()) {
+                    final HttpHeaderName<?> header = headerAndValues.getKey();
+                    if (!isBodyHeader(header)) {
+                        entity = entity.setHeader(header, Cast.to(headerAndValues.getValue()));
+                    }
+                }
+            }
+            return entity;
+        }
+
+        private static boolean isBodyHeader(final HttpHeaderName<?> header) {
+            final String name = header.value().toLowerCase(Locale.ENGLISH);
+            return "content-length".equals(name) ||
+                    "content-encoding".equals(name) ||
+                    "transfer-encoding".equals(name);
+        }
+
+        /**
+         * Creates a new {@link HttpResponse} each time, as {@link HttpResponse} is mutable, with the current Age.
+         */
+        HttpResponse response(final long now) {
+            final HttpEntity entity = setHeader(this.entity,
+                    "Age",
+                    String.valueOf(Math.max(0, this.currentAge(now) / 1000)));
+
+            return FetchJavaNetHttpClientCache.response(this.version, this.status, entity);
+        }
+
+        private static long size(final HttpEntity entity) {
+            long size = entity.body().size();
+
+            for (final Map.Entry<HttpHeaderName<?>, List<?>> headerAndValues : entity.headers().entrySet()) {
+                final HttpHeaderName<?> header = headerAndValues.getKey();
+                for (final Object value : headerAndValues.getValue()) {
+                    size += header.value().length() + header.headerText(Cast.to(value)).length();
+                }
+            }
+            return size;
+        }
+
+        final HttpProtocolVersion version;
+        final HttpStatus status;
+        final HttpEntity entity;
+        final long requestTime;
+        final long responseTime;
+        final long ageValue;
+        final long dateValue;
+        final long freshnessLifetime;
+        final boolean noCache;
+        final Optional<String> etag;
+        final Optional<String> lastModified;
+        final Map<String, Optional<String>> vary;
+        final long size;
+    }
+
+    /**
+     * The Cache-Control directives used by this cache.
+     */
+    private static final class CacheControl {
+
+        static CacheControl parse(final HasHeaders hasHeaders) {
+            final CacheControl cacheControl = new CacheControl();
+
+            final Optional<String> text = header(hasHeaders, "Cache-Control");
+            if (text.isPresent()) {
+                for (final String directive : text.get().split(",")) {
+                    final int equals = directive.indexOf('=');
+                    final String name = (-1 == equals ? directive : directive.substring(0, equals))
+                            .trim()
+                            .toLowerCase(Locale.ENGLISH);
+                    final String value = -1 == equals ?
+                            "" :
+                            directive.substring(equals + 1).trim().replace("\"", "");
+
+                    switch (name) {
+                        case "no-store":
+                            cacheControl.noStore = true;
+                            break;
+                        case "no-cache":
+                            cacheControl.noCache = true;
+                            break;
+                        case "private":
+                            cacheControl.isPrivate = true;
+                            break;
+                        case "public":
+                            cacheControl.isPublic = true;
+                            break;
+                        case "must-revalidate":
+                            cacheControl.mustRevalidate = true;
+                            break;
+                        case "max-age":
+                            cacheControl.maxAge = deltaSeconds(value);
+                            break;
+                        case "s-maxage":
+                            cacheControl.sMaxAge = deltaSeconds(value);
+                            break;
+                        default:
+                            break;
+                    }
+                }
+            }
+            return cacheControl;
+        }
+
+        /**
+         * Invalid values are treated as 0, which means stale.
+         */
+        private static long deltaSeconds(final String value) {
+            return seconds(Optional.of(value));
+        }
+
+        boolean noStore;
+        boolean noCache;
+        boolean isPrivate;
+        boolean isPublic;
+        boolean mustRevalidate;
+        long maxAge = -1;
+        long sMaxAge = -1;
+    }
+}
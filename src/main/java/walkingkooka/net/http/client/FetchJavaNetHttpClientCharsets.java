@@ -0,0 +1,209 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.net.http.client;
+
+import walkingkooka.net.header.MediaType;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Resolves the {@link Charset} of a response content-type, caching the result so the same few content-types are not
+ * parsed for every response. Content-types that name UTF-8, ISO-8859-1 or US-ASCII are resolved without parsing or a
+ * cache lookup.
+ * <br>
+ * Other content-types are kept in a table with a fixed number of slots, where a new content-type replaces whatever
+ * shared its slot. Only content-types without parameters other than charset are cached, so a server sending a unique
+ * boundary or similar parameter with every response does not push out the content-types seen again and again.
+ */
+final class FetchJavaNetHttpClientCharsets {
+
+    /**
+     * The number of slots in the shared cache.
+     */
+    // @VisibleForTesting
+    final static int MAX = 256;
+
+    /**
+     * Returns the charset for the raw text of a content-type header, or the default if it has none, using the shared cache.
+     */
+    static Charset charset(final String contentType,
+                           final Charset defaultCharset) {
+        return SHARED.get(contentType, defaultCharset);
+    }
+
+    private final static FetchJavaNetHttpClientCharsets SHARED = new FetchJavaNetHttpClientCharsets(MAX);
+
+    /**
+     * Creates a new empty cache with the given number of slots, which must be a power of two.
+     */
+    // @VisibleForTesting
+    static FetchJavaNetHttpClientCharsets with(final int capacity) {
+        if (capacity <= 0 || 0 != (capacity & (capacity - 1))) {
+            throw new IllegalArgumentException("Invalid capacity " + capacity + " not a power of two");
+        }
+        return new FetchJavaNetHttpClientCharsets(capacity);
+    }
+
+    private FetchJavaNetHttpClientCharsets(final int capacity) {
+        super();
+        this.slots = new Slot[capacity];
+    }
+
+    /**
+     * Returns the charset for the raw text of a content-type header, or the default if it has none.
+     */
+    Charset get(final String contentType,
+                final Charset defaultCharset) {
+        Objects.requireNonNull(contentType, "contentType");
+
+        Charset charset = standardCharset(contentType);
+        if (null == charset) {
+            final int index = this.index(contentType, defaultCharset);
+            final Slot slot = this.slots[index];
+            if (null != slot && slot.defaultCharset == defaultCharset && slot.contentType.equals(contentType)) {
+                charset = slot.charset;
+            } else {
+                charset = MediaType.parse(contentType)
+                        .contentTypeCharset(defaultCharset);
+
+                // a missing default is never cached as the result may be null
+                if (null != charset && cacheable(contentType)) {
+                    this.slots[index] = new Slot(contentType, defaultCharset, charset);
+                }
+            }
+        }
+        return charset;
+    }
+
+    private int index(final String contentType,
+                      final Charset defaultCharset) {
+        final int hash = contentType.hashCode() * 31 + Objects.hashCode(defaultCharset);
+        return (hash ^ (hash >>> 16)) & (this.slots.length - 1);
+    }
+
+    /**
+     * Only content-types without parameters, or with a single charset parameter, are cached.
+     */
+    // @VisibleForTesting
+    static boolean cacheable(final String contentType) {
+        final int semiColon = contentType.indexOf(';');
+        if (-1 == semiColon) {
+            return true;
+        }
+        if (-1 != contentType.indexOf(';', semiColon + 1)) {
+            return false;
+        }
+
+        int start = semiColon + 1;
+        while (start < contentType.length() && contentType.charAt(start) <= ' ') {
+            start++;
+        }
+        return contentType.regionMatches(true, start, CHARSET, 0, CHARSET.length());
+    }
+
+    /**
+     * The number of content-types currently cached.
+     */
+    // @VisibleForTesting
+    int size() {
+        int size = 0;
+        for (final Slot slot : this.slots) {
+            if (null != slot) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Racing threads may overwrite each other's slots which only loses a cached entry, and because {@link Slot} is
+     * immutable a reader always sees a complete entry.
+     */
+    private final Slot[] slots;
+
+    private final static class Slot {
+
+        Slot(final String contentType,
+             final Charset defaultCharset,
+             final Charset charset) {
+            this.contentType = contentType;
+            this.defaultCharset = defaultCharset;
+            this.charset = charset;
+        }
+
+        final String contentType;
+
+        final Charset defaultCharset;
+
+        final Charset charset;
+    }
+
+    /**
+     * Returns the {@link StandardCharsets} constant if the content-type has a single charset parameter naming UTF-8,
+     * ISO-8859-1 or US-ASCII, otherwise null is returned and the content-type should be parsed.
+     */
+    // @VisibleForTesting
+    static Charset standardCharset(final String contentType) {
+        final int semiColon = contentType.indexOf(';');
+        if (-1 == semiColon || contentType.indexOf(';', semiColon + 1) != -1 || contentType.indexOf('"') != -1) {
+            return null;
+        }
+
+        int start = semiColon + 1;
+        int end = contentType.length();
+        while (start < end && contentType.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && contentType.charAt(end - 1) <= ' ') {
+            end--;
+        }
+
+        final int length = end - start;
+        if (length <= CHARSET.length() || !contentType.regionMatches(true, start, CHARSET, 0, CHARSET.length())) {
+            return null;
+        }
+
+        final int value = start + CHARSET.length();
+        final int valueLength = end - value;
+
+        Charset charset = null;
+        for (final Charset standard : STANDARD) {
+            final String name = standard.name();
+            if (name.length() == valueLength && contentType.regionMatches(true, value, name, 0, valueLength)) {
+                charset = standard;
+                break;
+            }
+        }
+        return charset;
+    }
+
+    private final static String CHARSET = "charset=";
+
+    private final static Charset[] STANDARD = new Charset[]{
+            StandardCharsets.UTF_8,
+            StandardCharsets.ISO_8859_1,
+            StandardCharsets.US_ASCII
+    };
+
+    @Override
+    public String toString() {
+        return this.size() + "/" + this.slots.length;
+    }
+}
@@ -0,0 +1,534 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.net.http.client;
+
+import walkingkooka.net.http.server.HttpRequest;
+import walkingkooka.net.http.server.HttpResponse;
+
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Wraps a blocking fetch with a circuit breaker for each origin, so requests to an origin that is failing or very slow
+ * fail immediately with a {@link FetchCircuitBreakerOpenException} instead of tying up threads waiting for timeouts.
+ * <ul>
+ * <li>Every request that was sent records whether it failed, which is a {@link FetchException} or a 5xx status,
+ * and whether it was slow, in a sliding window of the most recent requests to the origin.</li>
+ * <li>Once the window is full and either the failure or slow call rate reaches its threshold the circuit opens.</li>
+ * <li>After the cool off the circuit is half open and the next {@link #PROBES} requests are sent as probes, if all
+ * succeed quickly the circuit closes, otherwise it opens again for another cool off. Probes that have not all returned
+ * within the cool off are abandoned and the circuit opens again.</li>
+ * </ul>
+ * Circuits with nothing in flight and no request for at least the cool off are forgotten when a circuit for a new origin
+ * is created, so origins that are no longer used are not kept forever.
+ * <br>
+ * Each origin has its own lock held only to update its window and state. Every change of state is queued under that
+ * lock and reported to the {@link FetchCircuitBreakerListener} after it is released, one thread at a time, so the
+ * listener sees the changes of an origin in the order they happened. Any exception thrown by the listener is ignored.
+ */
+final class FetchJavaNetHttpClientCircuitBreaker implements Function<HttpRequest, HttpResponse>, AutoCloseable {
+
+    /**
+     * The number of probes sent while half open, which must all succeed to close the circuit.
+     */
+    // @VisibleForTesting
+    final static int PROBES = 3;
+
+    static FetchJavaNetHttpClientCircuitBreaker with(final Function<HttpRequest, HttpResponse> fetch,
+                                                     final FetchCustomizer customizer,
+                                                     final int windowSize,
+                                                     final double failureRateThreshold,
+                                                     final long slowCallMillis,
+                                                     final double slowCallRateThreshold,
+                                                     final long openMillis,
+                                                     final FetchCircuitBreakerListener listener) {
+        return with(fetch,
+                customizer,
+                windowSize,
+                failureRateThreshold,
+                slowCallMillis,
+                slowCallRateThreshold,
+                openMillis,
+                listener,
+                System::nanoTime);
+    }
+
+    // @VisibleForTesting
+    static FetchJavaNetHttpClientCircuitBreaker with(final Function<HttpRequest, HttpResponse> fetch,
+                                                     final FetchCustomizer customizer,
+                                                     final int windowSize,
+                                                     final double failureRateThreshold,
+                                                     final long slowCallMillis,
+                                                     final double slowCallRateThreshold,
+                                                     final long openMillis,
+                                                     final FetchCircuitBreakerListener listener,
+                                                     final LongSupplier nanoTime) {
+        Objects.requireNonNull(fetch, "fetch");
+        Objects.requireNonNull(customizer, "customizer");
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("Invalid windowSize " + windowSize + " <= 0");
+        }
+        checkRate(failureRateThreshold, "failureRateThreshold");
+        if (slowCallMillis <= 0) {
+            throw new IllegalArgumentException("Invalid slowCallMillis " + slowCallMillis + " <= 0");
+        }
+        checkRate(slowCallRateThreshold, "slowCallRateThreshold");
+        if (openMillis < 0) {
+            throw new IllegalArgumentException("Invalid openMillis " + openMillis + " < 0");
+        }
+        Objects.requireNonNull(listener, "listener");
+        Objects.requireNonNull(nanoTime, "nanoTime");
+
+        return new FetchJavaNetHttpClientCircuitBreaker(fetch,
+                customizer,
+                windowSize,
+                failureRateThreshold,
+                slowCallMillis,
+                slowCallRateThreshold,
+                openMillis,
+                listener,
+                nanoTime);
+    }
+
+    private static void checkRate(final double rate,
+                                  final String label) {
+        if (!(rate > 0 && rate <= 1)) {
+            throw new IllegalArgumentException("Invalid " + label + " " + rate + " not between 0 and 1");
+        }
+    }
+
+    private FetchJavaNetHttpClientCircuitBreaker(final Function<HttpRequest, HttpResponse> fetch,
+                                                 final FetchCustomizer customizer,
+                                                 final int windowSize,
+                                                 final double failureRateThreshold,
+                                                 final long slowCallMillis,
+                                                 final double slowCallRateThreshold,
+                                                 final long openMillis,
+                                                 final FetchCircuitBreakerListener listener,
+                                                 final LongSupplier nanoTime) {
+        super();
+        this.fetch = fetch;
+        this.customizer = customizer;
+        this.windowSize = windowSize;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(slowCallMillis);
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+        this.listener = listener;
+        this.nanoTime = nanoTime;
+    }
+
+    @Override
+    public HttpResponse apply(final HttpRequest request) {
+        Objects.requireNonNull(request, "request");
+
+        final String origin = FetchJavaNetHttpClientStreamLimiter.origin(URI.create(this.customizer.httpClientUrl(request).value()));
+
+        Circuit circuit;
+        long generation;
+        do {
+            circuit = this.circuit(origin);
+            generation = circuit.acquire();
+        } while (Circuit.RETIRED == generation);
+
+        final long start = this.nanoTime.getAsLong();
+
+        // recorded in a finally so an Error also releases a half open probe
+        boolean failure = true;
+        try {
+            final HttpResponse response = this.fetch.apply(request);
+            failure = response.status()
+                    .map(s -> s.value().code() >= 500)
+                    .orElse(false);
+            return response;
+        } finally {
+            circuit.record(generation, failure, this.nanoTime.getAsLong() - start);
+        }
+    }
+
+    /**
+     * Returns the current state of the circuit for the given origin.
+     */
+    // @VisibleForTesting
+    FetchCircuitBreakerState state(final String origin) {
+        final Circuit circuit = this.circuits.get(origin);
+        return null != circuit ?
+                circuit.state() :
+                FetchCircuitBreakerState.CLOSED;
+    }
+
+    /**
+     * Returns the circuit for the given origin, removing idle circuits before creating a new one.
+     */
+    private Circuit circuit(final String origin) {
+        final ConcurrentMap<String, Circuit> circuits = this.circuits;
+
+        Circuit circuit = circuits.get(origin);
+        if (null == circuit) {
+            final long now = this.nanoTime.getAsLong();
+            for (final Circuit idle : circuits.values()) {
+                if (idle.retireIfIdle(now)) {
+                    circuits.remove(idle.origin, idle);
+                }
+            }
+            circuit = circuits.computeIfAbsent(origin, Circuit::new);
+        }
+        return circuit;
+    }
+
+    /**
+     * Returns the number of origins with a circuit.
+     */
+    // @VisibleForTesting
+    int origins() {
+        return this.circuits.size();
+    }
+
+    private final ConcurrentMap<String, Circuit> circuits = new ConcurrentHashMap<>();
+
+    /**
+     * The state and sliding window of outcomes for a single origin.
+     */
+    private final class Circuit {
+
+        /**
+         * Returned by {@link #acquire()} when the circuit was removed, in which case the caller must get a new circuit.
+         */
+        final static long RETIRED = -1;
+
+        Circuit(final String origin) {
+            super();
+            this.origin = origin;
+            this.outcomes = new byte[FetchJavaNetHttpClientCircuitBreaker.this.windowSize];
+            this.usedAt = FetchJavaNetHttpClientCircuitBreaker.this.nanoTime.getAsLong();
+        }
+
+        /**
+         * Returns the generation the request belongs to or throws if the circuit is open. Probes that have not all
+         * returned within the cool off are abandoned and the circuit opens again, so a probe that never returns cannot
+         * leave the circuit half open forever. {@link #RETIRED} is returned if the circuit was removed.
+         */
+        long acquire() {
+            final FetchJavaNetHttpClientCircuitBreaker breaker = FetchJavaNetHttpClientCircuitBreaker.this;
+            final long generation;
+            FetchCircuitBreakerOpenException rejected = null;
+
+            final ReentrantLock lock = this.lock;
+            lock.lock();
+            try {
+                if (this.retired) {
+                    return RETIRED;
+                }
+
+                final long now = breaker.nanoTime.getAsLong();
+                this.usedAt = now;
+
+                if (FetchCircuitBreakerState.HALF_OPEN == this.state && this.probes >= PROBES && now - this.changedAt >= breaker.openNanos) {
+                    this.transition(FetchCircuitBreakerState.OPEN);
+                }
+                if (FetchCircuitBreakerState.OPEN == this.state) {
+                    if (now - this.changedAt < breaker.openNanos) {
+                        rejected = new FetchCircuitBreakerOpenException("Circuit open for " + this.origin);
+                    } else {
+                        this.transition(FetchCircuitBreakerState.HALF_OPEN);
+                    }
+                }
+                if (FetchCircuitBreakerState.HALF_OPEN == this.state) {
+                    if (this.probes >= PROBES) {
+                        rejected = new FetchCircuitBreakerOpenException("Circuit half open for " + this.origin + ", waiting for probes");
+                    } else {
+                        this.probes++;
+                    }
+                }
+                if (null == rejected) {
+                    this.inFlight++;
+                }
+                generation = this.generation;
+            } finally {
+                lock.unlock();
+            }
+
+            this.deliver();
+
+            if (null != rejected) {
+                throw rejected;
+            }
+            return generation;
+        }
+
+        /**
+         * Records the outcome of a request that took the given nanos, ignoring requests sent before the last change of state.
+         */
+        void record(final long generation,
+                    final boolean failure,
+                    final long duration) {
+            final FetchJavaNetHttpClientCircuitBreaker breaker = FetchJavaNetHttpClientCircuitBreaker.this;
+            final boolean slow = duration >= breaker.slowCallNanos;
+
+            final ReentrantLock lock = this.lock;
+            lock.lock();
+            try {
+                this.inFlight--;
+                this.usedAt = breaker.nanoTime.getAsLong();
+
+                final FetchCircuitBreakerState from = this.state;
+                FetchCircuitBreakerState to = null;
+
+                if (generation == this.generation) {
+                    switch (from) {
+                        case CLOSED:
+                            this.add(failure, slow);
+                            if (this.isTripped()) {
+                                to = FetchCircuitBreakerState.OPEN;
+                            }
+                            break;
+                        case HALF_OPEN:
+                            if (failure || slow) {
+                                to = FetchCircuitBreakerState.OPEN;
+                            } else {
+                                this.successes++;
+                                if (this.successes >= PROBES) {
+                                    to = FetchCircuitBreakerState.CLOSED;
+                                }
+                            }
+                            break;
+                        default:
+                            break;
+                    }
+                    if (null != to) {
+                        this.transition(to);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            this.deliver();
+        }
+
+        /**
+         * Adds an outcome to the window, replacing the oldest once it is full.
+         */
+        private void add(final boolean failure,
+                         final boolean slow) {
+            final byte[] outcomes = this.outcomes;
+            final int index = this.index;
+
+            if (this.count == outcomes.length) {
+                final byte oldest = outcomes[index];
+                this.failures -= oldest & FAILURE;
+                this.slows -= (oldest & SLOW) >> 1;
+            } else {
+                this.count++;
+            }
+
+            outcomes[index] = (byte) ((failure ? FAILURE : 0) | (slow ? SLOW : 0));
+            this.failures += failure ? 1 : 0;
+            this.slows += slow ? 1 : 0;
+            this.index = (index + 1) % outcomes.length;
+        }
+
+        private boolean isTripped() {
+            final FetchJavaNetHttpClientCircuitBreaker breaker = FetchJavaNetHttpClientCircuitBreaker.this;
+            final int count = this.count;
+
+            return count == this.outcomes.length &&
+                    (this.failures >= breaker.failureRateThreshold * count || this.slows >= breaker.slowCallRateThreshold * count);
+        }
+
+        /**
+         * Changes the state and queues the change for the listener, must be called while holding the {@link #lock}.
+         */
+        private void transition(final FetchCircuitBreakerState to) {
+            this.transitions.add(new FetchCircuitBreakerState[]{this.state, to});
+            this.state = to;
+            this.generation++;
+
+            Arrays.fill(this.outcomes, (byte) 0);
+            this.count = 0;
+            this.index = 0;
+            this.failures = 0;
+            this.slows = 0;
+            this.probes = 0;
+            this.successes = 0;
+
+            this.changedAt = FetchJavaNetHttpClientCircuitBreaker.this.nanoTime.getAsLong();
+        }
+
+        /**
+         * Reports queued changes of state to the listener in order. Only one thread delivers at a time, and any changes
+         * queued by other threads meanwhile are delivered by that thread before it returns.
+         */
+        private void deliver() {
+            final FetchCircuitBreakerListener listener = FetchJavaNetHttpClientCircuitBreaker.this.listener;
+            final ReentrantLock lock = this.lock;
+
+            lock.lock();
+            try {
+                if (this.delivering || this.transitions.isEmpty()) {
+                    return;
+                }
+                this.delivering = true;
+            } finally {
+                lock.unlock();
+            }
+
+            for (; ; ) {
+                final FetchCircuitBreakerState[] transition;
+                lock.lock();
+                try {
+                    transition = this.transitions.poll();
+                    if (null == transition) {
+                        this.delivering = false;
+                        break;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+
+                try {
+                    listener.onStateChange(this.origin, transition[0], transition[1]);
+                } catch (final RuntimeException ignore) {
+                    // a failing listener must not fail the request or stop later changes being reported
+                }
+            }
+        }
+
+        /**
+         * Retires the circuit if nothing is in flight and it has not been used for at least the cool off, returning
+         * true if it should be removed.
+         */
+        boolean retireIfIdle(final long now) {
+            final ReentrantLock lock = this.lock;
+            lock.lock();
+            try {
+                if (0 == this.inFlight && now - this.usedAt >= FetchJavaNetHttpClientCircuitBreaker.this.openNanos) {
+                    this.retired = true;
+                }
+                return this.retired;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        FetchCircuitBreakerState state() {
+            final ReentrantLock lock = this.lock;
+            lock.lock();
+            try {
+                return this.state;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Guards the state and window, a {@link ReentrantLock} is used so virtual threads are never pinned.
+         */
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private final String origin;
+
+        private FetchCircuitBreakerState state = FetchCircuitBreakerState.CLOSED;
+
+        /**
+         * Incremented on every change of state, so outcomes of requests sent in an earlier state are ignored.
+         */
+        private long generation;
+
+        /**
+         * The {@link #nanoTime} of the last change of state, which starts the cool off when opened and the probes when half open.
+         */
+        private long changedAt;
+
+        private final byte[] outcomes;
+        private int count;
+        private int index;
+        private int failures;
+        private int slows;
+
+        private int probes;
+        private int successes;
+
+        /**
+         * Changes of state, each holding the from and to state, waiting to be reported to the listener.
+         */
+        private final Queue<FetchCircuitBreakerState[]> transitions = new ArrayDeque<>();
+
+        private boolean delivering;
+
+        /**
+         * The number of requests sent and not yet recorded.
+         */
+        private int inFlight;
+
+        /**
+         * The {@link #nanoTime} of the last request sent, rejected or recorded.
+         */
+        private long usedAt;
+
+        /**
+         * Set once the circuit is removed, after which it is never used again.
+         */
+        private boolean retired;
+    }
+
+    private final static int FAILURE = 1;
+    private final static int SLOW = 2;
+
+    private final Function<HttpRequest, HttpResponse> fetch;
+
+    private final FetchCustomizer customizer;
+
+    private final int windowSize;
+
+    private final double failureRateThreshold;
+
+    private final long slowCallNanos;
+
+    private final double slowCallRateThreshold;
+
+    private final long openNanos;
+
+    private final FetchCircuitBreakerListener listener;
+
+    /**
+     * Measures call durations and the cool off, unaffected by changes to the wall clock.
+     */
+    private final LongSupplier nanoTime;
+
+    @Override
+    public void close() throws Exception {
+        if (this.fetch instanceof AutoCloseable) {
+            ((AutoCloseable) this.fetch).close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.fetch + " circuit breaker " + this.circuits.keySet();
+    }
+}
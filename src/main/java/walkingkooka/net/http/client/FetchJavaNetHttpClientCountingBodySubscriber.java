@@ -0,0 +1,91 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.net.http.client;
+
+import java.net.http.HttpResponse.BodySubscriber;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * A {@link BodySubscriber} that adds the size of each received {@link ByteBuffer} to a {@link FetchTimer} before passing
+ * them unchanged to another {@link BodySubscriber}.
+ */
+final class FetchJavaNetHttpClientCountingBodySubscriber<T> implements BodySubscriber<T> {
+
+    static <T> FetchJavaNetHttpClientCountingBodySubscriber<T> with(final FetchTimer timer,
+                                                                    final BodySubscriber<T> subscriber) {
+        Objects.requireNonNull(timer, "timer");
+        Objects.requireNonNull(subscriber, "subscriber");
+
+        return new FetchJavaNetHttpClientCountingBodySubscriber<>(timer, subscriber);
+    }
+
+    private FetchJavaNetHttpClientCountingBodySubscriber(final FetchTimer timer,
+                                                         final BodySubscriber<T> subscriber) {
+        super();
+        this.timer = timer;
+        this.subscriber = subscriber;
+    }
+
+    @Override
+    public CompletionStage<T> getBody() {
+        return this.subscriber.getBody();
+    }
+
+    /**
+     * Records zero bytes so an empty body is counted as zero rather than unknown.
+     */
+    @Override
+    public void onSubscribe(final Flow.Subscription subscription) {
+        this.timer.received(0);
+        this.subscriber.onSubscribe(subscription);
+    }
+
+    @Override
+    public void onNext(final List<ByteBuffer> items) {
+        long bytes = 0;
+        for (final ByteBuffer item : items) {
+            bytes += item.remaining();
+        }
+        this.timer.received(bytes);
+
+        this.subscriber.onNext(items);
+    }
+
+    @Override
+    public void onError(final Throwable cause) {
+        this.subscriber.onError(cause);
+    }
+
+    @Override
+    public void onComplete() {
+        this.subscriber.onComplete();
+    }
+
+    private final FetchTimer timer;
+
+    private final BodySubscriber<T> subscriber;
+
+    @Override
+    public String toString() {
+        return this.subscriber.toString();
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.net.http.client;
+
+import walkingkooka.net.http.server.HttpRequest;
+import walkingkooka.net.http.server.HttpResponse;
+
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * A {@link Function} that writes each response body to the file selected by another {@link Function} using
+ * {@link FetchJavaNetHttpClient#applyFile(HttpRequest, Path)}.
+ */
+final class FetchJavaNetHttpClientFile implements Function<HttpRequest, HttpResponse>, AutoCloseable {
+
+    static FetchJavaNetHttpClientFile with(final FetchJavaNetHttpClient fetch,
+                                           final Function<HttpRequest, Path> file) {
+        Objects.requireNonNull(file, "file");
+
+        return new FetchJavaNetHttpClientFile(fetch, file);
+    }
+
+    private FetchJavaNetHttpClientFile(final FetchJavaNetHttpClient fetch,
+                                       final Function<HttpRequest, Path> file) {
+        super();
+        this.fetch = fetch;
+        this.file = file;
+    }
+
+    @Override
+    public HttpResponse apply(final HttpRequest request) {
+        Objects.requireNonNull(request, "request");
+
+        return this.fetch.applyFile(request,
+                Objects.requireNonNull(this.file.apply(request), "file"));
+    }
+
+    @Override
+    public void close() {
+        this.fetch.close();
+    }
+
+    private final FetchJavaNetHttpClient fetch;
+
+    private final Function<HttpRequest, Path> file;
+
+    @Override
+    public String toString() {
+        return this.fetch.toString();
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.net.http.client;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.Flow;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * A {@link Flow.Publisher} that gzips a {@link ByteBuffer} as it is sent, each chunk is only compressed when requested
+ * by the subscriber, which means a compressed copy of the entire body is never held in memory. The length of the
+ * compressed body is not known in advance, so the body is sent without a content-length.
+ * <br>
+ * Each subscriber receives its own {@link Deflater} and view of the buffer, so the same publisher may be sent again
+ * for example when following a redirect.
+ */
+final class FetchJavaNetHttpClientGzipPublisher implements Flow.Publisher<ByteBuffer> {
+
+    // @VisibleForTesting
+    final static int CHUNK = 64 * 1024;
+
+    static FetchJavaNetHttpClientGzipPublisher with(final ByteBuffer buffer) {
+        Objects.requireNonNull(buffer, "buffer");
+
+        return new FetchJavaNetHttpClientGzipPublisher(buffer.asReadOnlyBuffer());
+    }
+
+    private FetchJavaNetHttpClientGzipPublisher(final ByteBuffer buffer) {
+        super();
+        this.buffer = buffer;
+    }
+
+    @Override
+    public void subscribe(final Flow.Subscriber<? super ByteBuffer> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber");
+
+        subscriber.onSubscribe(new Subscription(subscriber, this.buffer.duplicate()));
+    }
+
+    private final ByteBuffer buffer;
+
+    /**
+     * The fixed gzip header, with no file name, modification time or flags.
+     */
+    private final static byte[] HEADER = new byte[]{
+            0x1f, (byte) 0x8b, // magic
+            8, // deflate
+            0, // flags
+            0, 0, 0, 0, // modification time
+            0, // extra flags
+            (byte) 0xff // unknown operating system
+    };
+
+    /**
+     * Compresses the buffer for a single subscriber, releasing the {@link Deflater} once done.
+     */
+    private static final class Subscription extends FetchJavaNetHttpClientSubscription {
+
+        Subscription(final Flow.Subscriber<? super ByteBuffer> subscriber,
+                     final ByteBuffer buffer) {
+            super(subscriber);
+            this.buffer = buffer;
+        }
+
+        @Override
+        boolean hasNext() {
+            return !this.trailerWritten;
+        }
+
+        @Override
+        void release() {
+            this.deflater.end();
+        }
+
+        /**
+         * Compresses the next chunk, beginning with the header and ending with the CRC32 and size trailer.
+         */
+        @Override
+        ByteBuffer next() {
+            final byte[] output = new byte[CHUNK];
+            int length = 0;
+
+            if (!this.headerWritten) {
+                System.arraycopy(HEADER, 0, output, 0, HEADER.length);
+                length = HEADER.length;
+                this.headerWritten = true;
+            }
+
+            final Deflater deflater = this.deflater;
+            while (length < output.length && !deflater.finished()) {
+                if (deflater.needsInput()) {
+                    this.input();
+                }
+                length += deflater.deflate(output, length, output.length - length);
+            }
+
+            if (deflater.finished() && output.length - length >= 8) {
+                length = littleEndian(this.crc.getValue(), output, length);
+                length = littleEndian(deflater.getBytesRead(), output, length);
+                this.trailerWritten = true;
+            }
+
+            return ByteBuffer.wrap(output, 0, length)
+                    .slice();
+        }
+
+        /**
+         * Gives the {@link Deflater} the next piece of the buffer, or finishes once it is empty.
+         */
+        private void input() {
+            final ByteBuffer buffer = this.buffer;
+            final int length = Math.min(buffer.remaining(), CHUNK);
+            if (0 == length) {
+                this.deflater.finish();
+            } else {
+                // the first piece is the largest so the array may be reused
+                byte[] input = this.input;
+                if (null == input) {
+                    input = new byte[length];
+                    this.input = input;
+                }
+                buffer.get(input, 0, length);
+                this.crc.update(input, 0, length);
+                this.deflater.setInput(input, 0, length);
+            }
+        }
+
+        private static int littleEndian(final long value,
+                                        final byte[] bytes,
+                                        final int offset) {
+            bytes[offset] = (byte) value;
+            bytes[offset + 1] = (byte) (value >> 8);
+            bytes[offset + 2] = (byte) (value >> 16);
+            bytes[offset + 3] = (byte) (value >> 24);
+            return offset + 4;
+        }
+
+        private final ByteBuffer buffer;
+
+        private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        private final CRC32 crc = new CRC32();
+        private byte[] input;
+        private boolean headerWritten;
+        private boolean trailerWritten;
+    }
+
+    @Override
+    public String toString() {
+        return "gzip " + this.buffer.remaining() + " bytes";
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.net.http.client;
+
+import walkingkooka.net.http.HttpMethod;
+import walkingkooka.net.http.server.HttpRequest;
+import walkingkooka.net.http.server.HttpResponse;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Wraps an asynchronous fetch, sending a second identical GET or HEAD request if no response has arrived within a
+ * delay, typically the 95th percentile latency of the server. Whichever request succeeds first completes the returned
+ * {@link CompletableFuture} and the other is cancelled, while a failure is only reported once both have failed.
+ * <br>
+ * The extra load is capped by a budget, each request earns a fraction of a hedge up to {@link #MAX_TOKENS} and each
+ * hedge spends one, so a ratio of 0.05 allows no more than 5% additional requests over time, and a slow server does not
+ * receive double the load.
+ */
+final class FetchJavaNetHttpClientHedge implements Function<HttpRequest, CompletableFuture<HttpResponse>>, AutoCloseable {
+
+    /**
+     * The largest number of hedges that may be saved up, which limits bursts after a quiet period.
+     */
+    // @VisibleForTesting
+    final static double MAX_TOKENS = 10;
+
+    static FetchJavaNetHttpClientHedge with(final Function<HttpRequest, CompletableFuture<HttpResponse>> fetch,
+                                            final long delayMillis,
+                                            final double maxHedgeRatio,
+                                            final FetchHedgeListener listener) {
+        if (delayMillis < 0) {
+            throw new IllegalArgumentException("Invalid delayMillis " + delayMillis + " < 0");
+        }
+
+        return with(fetch,
+                maxHedgeRatio,
+                listener,
+                CompletableFuture.delayedExecutor(delayMillis, TimeUnit.MILLISECONDS));
+    }
+
+    // @VisibleForTesting
+    static FetchJavaNetHttpClientHedge with(final Function<HttpRequest, CompletableFuture<HttpResponse>> fetch,
+                                            final double maxHedgeRatio,
+                                            final FetchHedgeListener listener,
+                                            final Executor delayed) {
+        Objects.requireNonNull(fetch, "fetch");
+        if (!(maxHedgeRatio > 0 && maxHedgeRatio <= 1)) {
+            throw new IllegalArgumentException("Invalid maxHedgeRatio " + maxHedgeRatio + " not between 0 and 1");
+        }
+        Objects.requireNonNull(listener, "listener");
+        Objects.requireNonNull(delayed, "delayed");
+
+        return new FetchJavaNetHttpClientHedge(fetch,
+                maxHedgeRatio,
+                listener,
+                delayed);
+    }
+
+    private FetchJavaNetHttpClientHedge(final Function<HttpRequest, CompletableFuture<HttpResponse>> fetch,
+                                        final double maxHedgeRatio,
+                                        final FetchHedgeListener listener,
+                                        final Executor delayed) {
+        super();
+        this.fetch = fetch;
+        this.maxHedgeRatio = maxHedgeRatio;
+        this.listener = listener;
+        this.delayed = delayed;
+    }
+
+    @Override
+    public CompletableFuture<HttpResponse> apply(final HttpRequest request) {
+        Objects.requireNonNull(request, "request");
+
+        final HttpMethod method = request.method();
+        final CompletableFuture<HttpResponse> response;
+
+        if (HttpMethod.GET.equals(method) || HttpMethod.HEAD.equals(method)) {
+            this.deposit();
+            response = new Exchange(request).start();
+        } else {
+            response = this.fetch.apply(request);
+        }
+        return response;
+    }
+
+    /**
+     * Every request earns a fraction of a hedge.
+     */
+    private void deposit() {
+        this.deposit(this.maxHedgeRatio);
+    }
+
+    /**
+     * Adds the given number of tokens up to {@link #MAX_TOKENS}.
+     */
+    private void deposit(final double amount) {
+        final AtomicLong tokens = this.tokens;
+        for (; ; ) {
+            final long bits = tokens.get();
+            final double updated = Math.min(MAX_TOKENS, Double.longBitsToDouble(bits) + amount);
+            if (tokens.compareAndSet(bits, Double.doubleToRawLongBits(updated))) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Spends a whole token returning true if a hedge may be sent.
+     */
+    private boolean withdraw() {
+        final AtomicLong tokens = this.tokens;
+        for (; ; ) {
+            final long bits = tokens.get();
+            final double available = Double.longBitsToDouble(bits);
+            if (available < 1) {
+                return false;
+            }
+            if (tokens.compareAndSet(bits, Double.doubleToRawLongBits(available - 1))) {
+                return true;
+            }
+        }
+    }
+
+    // @VisibleForTesting
+    double tokens() {
+        return Double.longBitsToDouble(this.tokens.get());
+    }
+
+    /**
+     * The raw bits of the double number of tokens, updated without a lock so virtual threads are never pinned.
+     */
+    private final AtomicLong tokens = new AtomicLong(Double.doubleToRawLongBits(0));
+
+    /**
+     * Holds the primary request and any hedge for a single call.
+     */
+    private final class Exchange {
+
+        Exchange(final HttpRequest request) {
+            super();
+            this.request = request;
+        }
+
+        CompletableFuture<HttpResponse> start() {
+            final CompletableFuture<HttpResponse> result = this.result;
+
+            this.primary = this.send(false);
+            if (!result.isDone()) {
+                FetchJavaNetHttpClientHedge.this.delayed.execute(this::hedge);
+            }
+            result.whenComplete((r, cause) -> this.cancel());
+            return result;
+        }
+
+        /**
+         * Called once the delay has elapsed, sending a hedge if the primary is still waiting and the budget allows.
+         */
+        private void hedge() {
+            if (this.result.isDone() || !FetchJavaNetHttpClientHedge.this.withdraw()) {
+                return;
+            }
+            // the primary may have failed meanwhile, in which case the result is complete and the token is returned
+            if (0 == this.pending.getAndUpdate(p -> 0 == p ? 0 : p + 1)) {
+                FetchJavaNetHttpClientHedge.this.deposit(1);
+                return;
+            }
+
+            FetchJavaNetHttpClientHedge.this.listener.onHedge(this.request);
+            this.hedge = this.send(true);
+
+            if (this.result.isDone()) {
+                this.cancel(); // completed while the hedge was being sent
+            }
+        }
+
+        private CompletableFuture<HttpResponse> send(final boolean hedge) {
+            CompletableFuture<HttpResponse> future;
+            try {
+                future = FetchJavaNetHttpClientHedge.this.fetch.apply(this.request);
+            } catch (final RuntimeException cause) {
+                future = new CompletableFuture<>();
+                future.completeExceptionally(cause);
+            }
+            future.whenComplete((r, cause) -> this.onComplete(hedge, r, cause));
+            return future;
+        }
+
+        private void onComplete(final boolean hedge,
+                                final HttpResponse response,
+                                final Throwable cause) {
+            if (null == cause) {
+                if (this.result.complete(response) && hedge) {
+                    FetchJavaNetHttpClientHedge.this.listener.onHedgeWon(this.request);
+                }
+            } else {
+                if (0 == this.pending.decrementAndGet()) {
+                    this.result.completeExceptionally(cause);
+                }
+            }
+        }
+
+        /**
+         * Cancels any request that is still in flight, once a response was returned or the caller cancelled.
+         */
+        private void cancel() {
+            cancel(this.primary);
+            cancel(this.hedge);
+        }
+
+        private void cancel(final CompletableFuture<HttpResponse> future) {
+            if (null != future) {
+                future.cancel(false);
+            }
+        }
+
+        private final HttpRequest request;
+
+        private final CompletableFuture<HttpResponse> result = new CompletableFuture<>();
+
+        private volatile CompletableFuture<HttpResponse> primary;
+
+        private volatile CompletableFuture<HttpResponse> hedge;
+
+        /**
+         * The number of requests that have not yet failed.
+         */
+        private final AtomicInteger pending = new AtomicInteger(1);
+    }
+
+    private final Function<HttpRequest, CompletableFuture<HttpResponse>> fetch;
+
+    private final double maxHedgeRatio;
+
+    private final FetchHedgeListener listener;
+
+    private final Executor delayed;
+
+    @Override
+    public void close() throws Exception {
+        if (this.fetch instanceof AutoCloseable) {
+            ((AutoCloseable) this.fetch).close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.fetch + " hedge " + this.maxHedgeRatio;
+    }
+}
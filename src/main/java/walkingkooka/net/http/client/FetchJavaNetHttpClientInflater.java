@@ -0,0 +1,416 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.net.http.client;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Incrementally decompresses a gzip or deflate body as each {@link ByteBuffer} arrives, without ever holding the
+ * entire compressed or decompressed body. The gzip header is parsed one byte at a time by a small state machine and
+ * the trailer CRC and size of each member are verified, a body with several gzip members is decompressed as their
+ * concatenation. Deflate accepts both zlib wrapped and raw deflate data as sent by different servers. Any bytes that
+ * follow the compressed data and are not another gzip member fail with an {@link IOException}.
+ */
+final class FetchJavaNetHttpClientInflater {
+
+    /**
+     * Returns an inflater for the given content-encoding or null if it is not gzip, x-gzip or deflate.
+     */
+    static FetchJavaNetHttpClientInflater with(final String contentEncoding) {
+        final FetchJavaNetHttpClientInflater inflater;
+
+        switch (contentEncoding.trim().toLowerCase(Locale.ENGLISH)) {
+            case "gzip":
+            case "x-gzip":
+                inflater = new FetchJavaNetHttpClientInflater(true);
+                break;
+            case "deflate":
+                inflater = new FetchJavaNetHttpClientInflater(false);
+                break;
+            default:
+                inflater = null;
+                break;
+        }
+        return inflater;
+    }
+
+    private FetchJavaNetHttpClientInflater(final boolean gzip) {
+        super();
+        this.gzip = gzip;
+        this.state = gzip ?
+                State.ID1 :
+                State.DEFLATE_HEADER;
+    }
+
+    /**
+     * The steps of decompressing a body, the gzip header steps follow the layout in RFC 1952.
+     */
+    private enum State {
+        ID1,
+        ID2,
+        METHOD,
+        FLAGS,
+        /**
+         * The modification time, extra flags and operating system which are ignored.
+         */
+        FIXED,
+        EXTRA_LENGTH,
+        EXTRA,
+        NAME,
+        COMMENT,
+        HEADER_CRC,
+        DATA,
+        TRAILER,
+        /**
+         * A complete gzip member was verified, any further bytes must begin another member.
+         */
+        MEMBER_END,
+        DEFLATE_HEADER,
+        /**
+         * The deflate body is complete, any further bytes are invalid.
+         */
+        DEFLATE_END
+    }
+
+    /**
+     * Decompresses the given bytes, returning any output which may be empty if more input is required.
+     */
+    List<ByteBuffer> inflate(final ByteBuffer input) throws IOException {
+        final List<ByteBuffer> output = new ArrayList<>(1);
+
+        while (input.hasRemaining()) {
+            switch (this.state) {
+                case DATA:
+                    this.inflate(input, output);
+                    break;
+                case EXTRA:
+                    this.extra(input);
+                    break;
+                case TRAILER:
+                    this.trailer(input);
+                    break;
+                case MEMBER_END:
+                    this.state = State.ID1;
+                    break;
+                case DEFLATE_HEADER:
+                    this.deflateHeader(input);
+                    break;
+                case DEFLATE_END:
+                    throw new IOException("Unexpected " + input.remaining() + " bytes after deflate body");
+                default:
+                    this.header(input.get() & 0xff);
+                    break;
+            }
+        }
+        return output;
+    }
+
+    /**
+     * Consumes a single byte of the gzip header.
+     */
+    private void header(final int b) throws IOException {
+        switch (this.state) {
+            case ID1:
+                if (0x1f != b) {
+                    throw new IOException("Invalid gzip header");
+                }
+                this.state = State.ID2;
+                break;
+            case ID2:
+                if (0x8b != b) {
+                    throw new IOException("Invalid gzip header");
+                }
+                this.state = State.METHOD;
+                break;
+            case METHOD:
+                if (8 != b) {
+                    throw new IOException("Unsupported gzip compression method " + b);
+                }
+                this.state = State.FLAGS;
+                break;
+            case FLAGS:
+                this.flags = b;
+                this.count = 0;
+                this.state = State.FIXED;
+                break;
+            case FIXED:
+                this.count++;
+                if (6 == this.count) {
+                    this.next(State.FIXED);
+                }
+                break;
+            case EXTRA_LENGTH:
+                this.length |= b << (8 * this.count);
+                this.count++;
+                if (2 == this.count) {
+                    this.count = 0;
+                    if (0 == this.length) {
+                        this.next(State.EXTRA);
+                    } else {
+                        this.state = State.EXTRA;
+                    }
+                }
+                break;
+            case NAME:
+            case COMMENT:
+                if (0 == b) {
+                    this.next(this.state);
+                }
+                break;
+            case HEADER_CRC:
+                this.count++;
+                if (2 == this.count) {
+                    this.next(State.HEADER_CRC);
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unexpected state " + this.state);
+        }
+    }
+
+    /**
+     * Moves to the first optional part of the gzip header after the given state that is present according to the
+     * flags, or the compressed data once the header is complete.
+     */
+    private void next(final State after) {
+        final int flags = this.flags;
+        State next = State.DATA;
+
+        switch (after) {
+            case FIXED:
+                if (0 != (flags & FEXTRA)) {
+                    next = State.EXTRA_LENGTH;
+                    break;
+                }
+                // fall through
+            case EXTRA:
+                if (0 != (flags & FNAME)) {
+                    next = State.NAME;
+                    break;
+                }
+                // fall through
+            case NAME:
+                if (0 != (flags & FCOMMENT)) {
+                    next = State.COMMENT;
+                    break;
+                }
+                // fall through
+            case COMMENT:
+                if (0 != (flags & FHCRC)) {
+                    next = State.HEADER_CRC;
+                    break;
+                }
+                // fall through
+            default:
+                break;
+        }
+
+        this.count = 0;
+        this.length = 0;
+        this.state = next;
+
+        if (State.DATA == next) {
+            this.member();
+        }
+    }
+
+    /**
+     * Skips the extra field of the gzip header without examining each byte.
+     */
+    private void extra(final ByteBuffer input) {
+        final int skip = Math.min(this.length - this.count, input.remaining());
+        input.position(input.position() + skip);
+        this.count += skip;
+
+        if (this.count == this.length) {
+            this.next(State.EXTRA);
+        }
+    }
+
+    /**
+     * Prepares the {@link Inflater} for the compressed data of a new gzip member.
+     */
+    private void member() {
+        if (null == this.inflater) {
+            this.inflater = new Inflater(true);
+        } else {
+            this.inflater.reset();
+        }
+        this.crc.reset();
+        this.size = 0;
+    }
+
+    private final static int FHCRC = 2;
+    private final static int FEXTRA = 4;
+    private final static int FNAME = 8;
+    private final static int FCOMMENT = 16;
+
+    /**
+     * Collects the first two bytes of deflate to select between zlib and raw deflate.
+     */
+    private void deflateHeader(final ByteBuffer input) {
+        final byte[] bytes = this.bytes;
+        bytes[this.count++] = input.get();
+
+        if (2 == this.count) {
+            final int cmf = bytes[0] & 0xff;
+            final int flg = bytes[1] & 0xff;
+            final boolean zlib = 8 == (cmf & 0x0f) && 0 == ((cmf << 8) | flg) % 31;
+            this.inflater = new Inflater(!zlib);
+            this.inflater.setInput(bytes, 0, 2);
+            this.count = 0;
+            this.state = State.DATA;
+        }
+    }
+
+    private void inflate(final ByteBuffer input,
+                         final List<ByteBuffer> output) throws IOException {
+        final Inflater inflater = this.inflater;
+
+        if (inflater.needsInput()) {
+            final int length = Math.min(input.remaining(), this.buffer.length);
+            final byte[] bytes = new byte[length];
+            input.get(bytes);
+            inflater.setInput(bytes, 0, length);
+        }
+
+        try {
+            for (; ; ) {
+                final int count = inflater.inflate(this.buffer);
+                if (count > 0) {
+                    final byte[] inflated = new byte[count];
+                    System.arraycopy(this.buffer, 0, inflated, 0, count);
+                    output.add(ByteBuffer.wrap(inflated));
+
+                    this.crc.update(inflated, 0, count);
+                    this.size += count;
+                }
+                if (inflater.finished() || inflater.needsInput()) {
+                    break;
+                }
+                if (0 == count && inflater.needsDictionary()) {
+                    throw new IOException("Deflate preset dictionary not supported");
+                }
+            }
+        } catch (final DataFormatException cause) {
+            throw new IOException("Invalid compressed body, " + cause.getMessage(), cause);
+        }
+
+        if (inflater.finished()) {
+            // bytes following the compressed data belong to the gzip trailer or are invalid, the input is always taken
+            // from the current buffer as the inflater only stops before finishing when it needs more input
+            input.position(input.position() - inflater.getRemaining());
+
+            this.count = 0;
+            this.state = this.gzip ?
+                    State.TRAILER :
+                    State.DEFLATE_END;
+        }
+    }
+
+    /**
+     * Collects and verifies the gzip trailer with the CRC32 and size of the decompressed data of the member.
+     */
+    private void trailer(final ByteBuffer input) throws IOException {
+        final byte[] trailer = this.bytes;
+        trailer[this.count++] = input.get();
+
+        if (8 == this.count) {
+            final long crc = littleEndian(trailer, 0);
+            final long size = littleEndian(trailer, 4);
+
+            if (crc != this.crc.getValue()) {
+                throw new IOException("Invalid gzip CRC");
+            }
+            if (size != (this.size & 0xffffffffL)) {
+                throw new IOException("Invalid gzip size");
+            }
+            this.count = 0;
+            this.state = State.MEMBER_END;
+        }
+    }
+
+    private static long littleEndian(final byte[] bytes,
+                                     final int offset) {
+        return (bytes[offset] & 0xffL) |
+                (bytes[offset + 1] & 0xffL) << 8 |
+                (bytes[offset + 2] & 0xffL) << 16 |
+                (bytes[offset + 3] & 0xffL) << 24;
+    }
+
+    /**
+     * Returns true when the entire compressed body has been decompressed.
+     */
+    boolean isFinished() {
+        return State.MEMBER_END == this.state || State.DEFLATE_END == this.state;
+    }
+
+    /**
+     * Releases the native resources of the {@link Inflater}.
+     */
+    void end() {
+        final Inflater inflater = this.inflater;
+        if (null != inflater) {
+            inflater.end();
+        }
+    }
+
+    private final boolean gzip;
+
+    private State state;
+
+    /**
+     * The gzip header flags.
+     */
+    private int flags;
+
+    /**
+     * The number of bytes consumed of the current fixed length part of the header or trailer.
+     */
+    private int count;
+
+    /**
+     * The length of the gzip header extra field.
+     */
+    private int length;
+
+    /**
+     * Holds the first two bytes of deflate or the gzip trailer.
+     */
+    private final byte[] bytes = new byte[8];
+
+    private Inflater inflater;
+
+    private final byte[] buffer = new byte[8192];
+
+    private final CRC32 crc = new CRC32();
+
+    private long size;
+
+    @Override
+    public String toString() {
+        return this.gzip ? "gzip" : "deflate";
+    }
+}
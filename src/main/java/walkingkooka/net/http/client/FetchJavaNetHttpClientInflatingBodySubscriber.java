@@ -0,0 +1,129 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.net.http.client;
+
+import java.io.IOException;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * A {@link BodySubscriber} that decompresses each received {@link ByteBuffer} and passes the output to another
+ * {@link BodySubscriber}, which means any charset decoding happens after decompression and the body is never
+ * buffered in its compressed form.
+ */
+final class FetchJavaNetHttpClientInflatingBodySubscriber<T> implements BodySubscriber<T> {
+
+    static <T> FetchJavaNetHttpClientInflatingBodySubscriber<T> with(final FetchJavaNetHttpClientInflater inflater,
+                                                                     final BodySubscriber<T> subscriber) {
+        Objects.requireNonNull(inflater, "inflater");
+        Objects.requireNonNull(subscriber, "subscriber");
+
+        return new FetchJavaNetHttpClientInflatingBodySubscriber<>(inflater, subscriber);
+    }
+
+    private FetchJavaNetHttpClientInflatingBodySubscriber(final FetchJavaNetHttpClientInflater inflater,
+                                                          final BodySubscriber<T> subscriber) {
+        super();
+        this.inflater = inflater;
+        this.subscriber = subscriber;
+    }
+
+    @Override
+    public CompletionStage<T> getBody() {
+        return this.subscriber.getBody();
+    }
+
+    @Override
+    public void onSubscribe(final Flow.Subscription subscription) {
+        this.subscription = subscription;
+        this.subscriber.onSubscribe(subscription);
+    }
+
+    /**
+     * Decompresses the buffers, when no output is produced another item is requested as the downstream subscriber
+     * is still waiting for the item it requested.
+     */
+    @Override
+    public void onNext(final List<ByteBuffer> items) {
+        if (!this.failed) {
+            final List<ByteBuffer> inflated = new ArrayList<>();
+            try {
+                for (final ByteBuffer item : items) {
+                    this.received |= item.hasRemaining();
+                    inflated.addAll(this.inflater.inflate(item));
+                }
+            } catch (final IOException cause) {
+                this.failed = true;
+                this.inflater.end();
+                this.subscription.cancel();
+                this.subscriber.onError(cause);
+                return;
+            }
+
+            if (inflated.isEmpty()) {
+                this.subscription.request(1);
+            } else {
+                this.subscriber.onNext(inflated);
+            }
+        }
+    }
+
+    @Override
+    public void onError(final Throwable cause) {
+        if (!this.failed) {
+            this.failed = true;
+            this.inflater.end();
+            this.subscriber.onError(cause);
+        }
+    }
+
+    @Override
+    public void onComplete() {
+        if (!this.failed) {
+            this.inflater.end();
+
+            // responses such as HEAD have a content-encoding but no body
+            if (this.inflater.isFinished() || !this.received) {
+                this.subscriber.onComplete();
+            } else {
+                this.failed = true;
+                this.subscriber.onError(new IOException("Truncated " + this.inflater + " body"));
+            }
+        }
+    }
+
+    private final FetchJavaNetHttpClientInflater inflater;
+
+    private final BodySubscriber<T> subscriber;
+
+    private Flow.Subscription subscription;
+
+    private boolean received;
+
+    private boolean failed;
+
+    @Override
+    public String toString() {
+        return this.inflater + " " + this.subscriber;
+    }
+}
@@ -0,0 +1,326 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.net.http.client;
+
+import walkingkooka.net.http.HttpEntity;
+import walkingkooka.net.http.HttpMethod;
+import walkingkooka.net.http.server.HttpRequest;
+import walkingkooka.net.http.server.HttpResponse;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Wraps a blocking fetch, retrying idempotent requests that failed to connect or were answered with a status that
+ * suggests the server or a gateway is temporarily unavailable.
+ * <ul>
+ * <li>Only GET, HEAD, OPTIONS, TRACE, PUT and DELETE are retried, other methods are sent once.</li>
+ * <li>A {@link FetchException} caused by an {@link IOException}, such as a refused or reset connection or a timeout,
+ * is retried, while one caused by an interrupt is not.</li>
+ * <li>Responses with a status of 429, 502, 503 or 504 are retried.</li>
+ * <li>Delays grow exponentially from the base delay up to the maximum, with full jitter so the actual delay is a
+ * random value up to that limit, which spreads the retries of many clients that failed at the same time.</li>
+ * <li>A Retry-After in seconds or as a http date is honoured by waiting at least that long.</li>
+ * <li>No retry is attempted if its delay would exceed the time budget for the request, in which case the last response
+ * is returned or the last {@link FetchException} thrown.</li>
+ * </ul>
+ */
+final class FetchJavaNetHttpClientRetry implements Function<HttpRequest, HttpResponse>, AutoCloseable {
+
+    static FetchJavaNetHttpClientRetry with(final Function<HttpRequest, HttpResponse> fetch,
+                                            final int maxAttempts,
+                                            final long baseDelayMillis,
+                                            final long maxDelayMillis,
+                                            final long budgetMillis,
+                                            final FetchRetryListener listener) {
+        return with(fetch,
+                maxAttempts,
+                baseDelayMillis,
+                maxDelayMillis,
+                budgetMillis,
+                listener,
+                System::nanoTime,
+                System::currentTimeMillis,
+                (bound) -> ThreadLocalRandom.current().nextLong(bound + 1),
+                FetchJavaNetHttpClientRetry::sleep);
+    }
+
+    // @VisibleForTesting
+    static FetchJavaNetHttpClientRetry with(final Function<HttpRequest, HttpResponse> fetch,
+                                            final int maxAttempts,
+                                            final long baseDelayMillis,
+                                            final long maxDelayMillis,
+                                            final long budgetMillis,
+                                            final FetchRetryListener listener,
+                                            final LongSupplier nanoTime,
+                                            final LongSupplier clock,
+                                            final LongUnaryOperator random,
+                                            final LongConsumer sleep) {
+        Objects.requireNonNull(fetch, "fetch");
+        if (maxAttempts <= 0) {
+            throw new IllegalArgumentException("Invalid maxAttempts " + maxAttempts + " <= 0");
+        }
+        if (baseDelayMillis < 0) {
+            throw new IllegalArgumentException("Invalid baseDelayMillis " + baseDelayMillis + " < 0");
+        }
+        if (maxDelayMillis < baseDelayMillis) {
+            throw new IllegalArgumentException("Invalid maxDelayMillis " + maxDelayMillis + " < baseDelayMillis " + baseDelayMillis);
+        }
+        if (budgetMillis < 0) {
+            throw new IllegalArgumentException("Invalid budgetMillis " + budgetMillis + " < 0");
+        }
+        Objects.requireNonNull(listener, "listener");
+        Objects.requireNonNull(nanoTime, "nanoTime");
+        Objects.requireNonNull(clock, "clock");
+        Objects.requireNonNull(random, "random");
+        Objects.requireNonNull(sleep, "sleep");
+
+        return new FetchJavaNetHttpClientRetry(fetch,
+                maxAttempts,
+                baseDelayMillis,
+                maxDelayMillis,
+                budgetMillis,
+                listener,
+                nanoTime,
+                clock,
+                random,
+                sleep);
+    }
+
+    private FetchJavaNetHttpClientRetry(final Function<HttpRequest, HttpResponse> fetch,
+                                        final int maxAttempts,
+                                        final long baseDelayMillis,
+                                        final long maxDelayMillis,
+                                        final long budgetMillis,
+                                        final FetchRetryListener listener,
+                                        final LongSupplier nanoTime,
+                                        final LongSupplier clock,
+                                        final LongUnaryOperator random,
+                                        final LongConsumer sleep) {
+        super();
+        this.fetch = fetch;
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.budgetMillis = budgetMillis;
+        this.listener = listener;
+        this.nanoTime = nanoTime;
+        this.clock = clock;
+        this.random = random;
+        this.sleep = sleep;
+    }
+
+    @Override
+    public HttpResponse apply(final HttpRequest request) {
+        Objects.requireNonNull(request, "request");
+
+        return isIdempotent(request.method()) ?
+                this.retry(request) :
+                this.fetch.apply(request);
+    }
+
+    private HttpResponse retry(final HttpRequest request) {
+        final long start = this.nanoTime.getAsLong();
+        int attempt = 1;
+
+        for (; ; ) {
+            HttpResponse response = null;
+            FetchException failure = null;
+
+            try {
+                response = this.fetch.apply(request);
+                if (!isRetryable(statusCode(response))) {
+                    return response;
+                }
+            } catch (final FetchException cause) {
+                if (!isRetryable(cause)) {
+                    throw cause;
+                }
+                failure = cause;
+            }
+
+            final long elapsed = (this.nanoTime.getAsLong() - start) / 1_000_000;
+            final long delay = null != response ?
+                    Math.max(this.backoff(attempt), retryAfter(response, this.clock.getAsLong())) :
+                    this.backoff(attempt);
+
+            if (attempt >= this.maxAttempts || delay > this.budgetMillis - elapsed) {
+                if (null != failure) {
+                    throw failure;
+                }
+                return response;
+            }
+
+            attempt++;
+            this.listener.onRetry(request, attempt, Duration.ofMillis(delay));
+            this.sleep.accept(delay);
+        }
+    }
+
+    /**
+     * Returns a random delay up to the exponential backoff limit for the given attempt, also known as full jitter.
+     */
+    private long backoff(final int attempt) {
+        final long base = this.baseDelayMillis;
+        final long max = this.maxDelayMillis;
+
+        final int shift = Math.min(attempt - 1, 62);
+        final long limit = base > (max >> shift) ?
+                max :
+                Math.min(max, base << shift);
+        return this.random.applyAsLong(limit);
+    }
+
+    private final Function<HttpRequest, HttpResponse> fetch;
+
+    private final int maxAttempts;
+
+    private final long baseDelayMillis;
+
+    private final long maxDelayMillis;
+
+    private final long budgetMillis;
+
+    private final FetchRetryListener listener;
+
+    /**
+     * Measures the time spent against the budget, unaffected by changes to the wall clock.
+     */
+    private final LongSupplier nanoTime;
+
+    /**
+     * The wall clock in millis, only used to convert a Retry-After http date into a delay.
+     */
+    private final LongSupplier clock;
+
+    /**
+     * Returns a random value between 0 and the given bound inclusive.
+     */
+    private final LongUnaryOperator random;
+
+    private final LongConsumer sleep;
+
+    @Override
+    public void close() throws Exception {
+        if (this.fetch instanceof AutoCloseable) {
+            ((AutoCloseable) this.fetch).close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.fetch + " retry " + this.maxAttempts + " attempts " + this.budgetMillis + "ms";
+    }
+
+    // helpers..........................................................................................................
+
+    /**
+     * Methods which may be sent again without changing the outcome, from RFC 7231 section 4.2.2.
+     */
+    // @VisibleForTesting
+    static boolean isIdempotent(final HttpMethod method) {
+        return HttpMethod.GET.equals(method) ||
+                HttpMethod.HEAD.equals(method) ||
+                HttpMethod.OPTIONS.equals(method) ||
+                HttpMethod.TRACE.equals(method) ||
+                HttpMethod.PUT.equals(method) ||
+                HttpMethod.DELETE.equals(method);
+    }
+
+    private static boolean isRetryable(final int status) {
+        switch (status) {
+            case 429: // Too Many Requests
+            case 502: // Bad Gateway
+            case 503: // Service Unavailable
+            case 504: // Gateway Timeout
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Only failures caused by an {@link IOException} are retried, an {@link InterruptedException} or other cause is not.
+     */
+    private static boolean isRetryable(final FetchException failure) {
+        Throwable cause = failure.getCause();
+        while (null != cause && !(cause instanceof IOException) && !(cause instanceof InterruptedException)) {
+            cause = cause.getCause();
+        }
+        return cause instanceof IOException;
+    }
+
+    private static int statusCode(final HttpResponse response) {
+        return response.status()
+                .map(s -> s.value().code())
+                .orElse(0);
+    }
+
+    /**
+     * Returns the Retry-After as a delay, or 0 if absent or invalid.
+     */
+    // @VisibleForTesting
+    static long retryAfter(final HttpResponse response,
+                           final long now) {
+        final List<HttpEntity> entities = response.entities();
+
+        long delay = 0;
+        if (!entities.isEmpty()) {
+            final Optional<String> retryAfter = FetchHeaders.text(entities.get(0), "Retry-After");
+            if (retryAfter.isPresent()) {
+                final String text = retryAfter.get().trim();
+                try {
+                    delay = Math.max(0, Math.min(Long.parseLong(text), Long.MAX_VALUE / 1000) * 1000);
+                } catch (final NumberFormatException notSeconds) {
+                    try {
+                        delay = Math.max(0,
+                                ZonedDateTime.parse(text, DateTimeFormatter.RFC_1123_DATE_TIME)
+                                        .toInstant()
+                                        .toEpochMilli() - now);
+                    } catch (final DateTimeParseException invalid) {
+                        delay = 0;
+                    }
+                }
+            }
+        }
+        return delay;
+    }
+
+    /**
+     * Sleeps for the given delay, an interrupt fails the request and leaves the thread interrupted.
+     */
+    private static void sleep(final long delay) {
+        try {
+            Thread.sleep(delay);
+        } catch (final InterruptedException cause) {
+            Thread.currentThread().interrupt();
+            throw new FetchException(cause.getMessage(), cause);
+        }
+    }
+}
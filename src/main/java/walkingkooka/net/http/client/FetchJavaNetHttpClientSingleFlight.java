@@ -0,0 +1,229 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.net.http.client;
+
+import walkingkooka.Cast;
+import walkingkooka.net.header.HttpHeaderName;
+import walkingkooka.net.http.HttpEntity;
+import walkingkooka.net.http.HttpMethod;
+import walkingkooka.net.http.server.HttpRequest;
+import walkingkooka.net.http.server.HttpResponse;
+import walkingkooka.net.http.server.HttpResponses;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * A {@link Function} that coalesces concurrent identical GET and HEAD requests, so only the first is sent and the
+ * others wait for and share its outcome. Requests are identical when they have the same method, the same
+ * {@link FetchCustomizer#httpClientUrl(HttpRequest)} and the same headers, which includes any named by a Vary response.
+ * Requests with a body and all other methods are always sent.
+ * <br>
+ * Each waiting caller receives its own {@link HttpResponse} or {@link FetchException}, as {@link HttpResponse} is mutable.
+ * Exceptions are created by {@link FetchException#copy()}, so sub classes such as {@link FetchBulkheadFullException}
+ * survive. Any other {@link RuntimeException} is wrapped in a {@link FetchException} for every caller including the one
+ * that sent the request, while an {@link Error} is rethrown as is to every caller.
+ */
+final class FetchJavaNetHttpClientSingleFlight implements Function<HttpRequest, HttpResponse>, AutoCloseable {
+
+    static FetchJavaNetHttpClientSingleFlight with(final Function<HttpRequest, HttpResponse> fetch,
+                                                   final FetchCustomizer customizer) {
+        Objects.requireNonNull(fetch, "fetch");
+        Objects.requireNonNull(customizer, "customizer");
+
+        return new FetchJavaNetHttpClientSingleFlight(fetch, customizer);
+    }
+
+    private FetchJavaNetHttpClientSingleFlight(final Function<HttpRequest, HttpResponse> fetch,
+                                               final FetchCustomizer customizer) {
+        super();
+        this.fetch = fetch;
+        this.customizer = customizer;
+    }
+
+    @Override
+    public HttpResponse apply(final HttpRequest request) {
+        Objects.requireNonNull(request, "request");
+
+        return isCoalesced(request) ?
+                this.coalesce(request) :
+                this.fetch.apply(request);
+    }
+
+    private static boolean isCoalesced(final HttpRequest request) {
+        final HttpMethod method = request.method();
+        return (HttpMethod.GET.equals(method) || HttpMethod.HEAD.equals(method)) &&
+                0 == request.bodyLength();
+    }
+
+    private HttpResponse coalesce(final HttpRequest request) {
+        final String key = this.key(request);
+        final CompletableFuture<HttpResponse> flight = new CompletableFuture<>();
+        final CompletableFuture<HttpResponse> existing = this.inFlight.putIfAbsent(key, flight);
+
+        return null == existing ?
+                this.lead(request, key, flight) :
+                this.follow(existing);
+    }
+
+    /**
+     * Sends the request, sharing the outcome with any requests that arrived while it was in flight.
+     */
+    private HttpResponse lead(final HttpRequest request,
+                              final String key,
+                              final CompletableFuture<HttpResponse> flight) {
+        try {
+            final HttpResponse response = this.fetch.apply(request);
+            this.inFlight.remove(key, flight);
+            flight.complete(copy(response));
+            return response;
+        } catch (final FetchException cause) {
+            throw this.fail(key, flight, cause);
+        } catch (final RuntimeException cause) {
+            throw this.fail(key, flight, new FetchException(cause.getMessage(), cause));
+        } catch (final Error cause) {
+            throw this.fail(key, flight, cause);
+        }
+    }
+
+    /**
+     * Completes the request in flight with the given failure, which is returned so the leader may throw it.
+     */
+    private <T extends Throwable> T fail(final String key,
+                                         final CompletableFuture<HttpResponse> flight,
+                                         final T failure) {
+        this.inFlight.remove(key, flight);
+        flight.completeExceptionally(failure);
+        return failure;
+    }
+
+    /**
+     * Waits for the request in flight, returning a copy of its response or throwing a copy of its exception. An interrupt
+     * stops waiting with a {@link FetchException} and leaves the thread interrupted, while the request continues for
+     * any other callers.
+     */
+    private HttpResponse follow(final CompletableFuture<HttpResponse> flight) {
+        this.followers.incrementAndGet();
+        try {
+            return copy(flight.get());
+        } catch (final InterruptedException cause) {
+            Thread.currentThread().interrupt();
+            throw new FetchException(cause.getMessage(), cause);
+        } catch (final ExecutionException cause) {
+            final Throwable failure = cause.getCause();
+            if (failure instanceof Error) {
+                throw (Error) failure;
+            }
+            throw ((FetchException) failure).copy();
+        } finally {
+            this.followers.decrementAndGet();
+        }
+    }
+
+    /**
+     * Creates a copy of the given {@link HttpResponse}, sharing the immutable {@link HttpEntity entities}.
+     */
+    private static HttpResponse copy(final HttpResponse response) {
+        final HttpResponse copy = HttpResponses.recording();
+        response.version().ifPresent(copy::setVersion);
+        response.status().ifPresent(copy::setStatus);
+        for (final HttpEntity entity : response.entities()) {
+            copy.addEntity(entity);
+        }
+        return copy;
+    }
+
+    /**
+     * Builds a key from the method, url and all headers with names in lower case and sorted, so the order headers
+     * were added does not matter.
+     */
+    private String key(final HttpRequest request) {
+        final Map<String, String> headers = new TreeMap<>();
+        for (final Entry<HttpHeaderName<?>, List<?>> headerAndValues : request.headers().entrySet()) {
+            final HttpHeaderName<?> header = headerAndValues.getKey();
+
+            final StringBuilder values = new StringBuilder();
+            for (final Object value : headerAndValues.getValue()) {
+                values.append(header.headerText(Cast.to(value)))
+                        .append('\n');
+            }
+            headers.put(header.value().toLowerCase(Locale.ENGLISH), values.toString());
+        }
+
+        final StringBuilder key = new StringBuilder();
+        key.append(request.method().value())
+                .append(' ')
+                .append(this.customizer.httpClientUrl(request))
+                .append('\n');
+        for (final Entry<String, String> nameAndValues : headers.entrySet()) {
+            key.append(nameAndValues.getKey())
+                    .append(':')
+                    .append(nameAndValues.getValue());
+        }
+        return key.toString();
+    }
+
+    /**
+     * The number of requests currently in flight.
+     */
+    // @VisibleForTesting
+    int inFlight() {
+        return this.inFlight.size();
+    }
+
+    private final ConcurrentMap<String, CompletableFuture<HttpResponse>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * The number of callers currently waiting for a request in flight.
+     */
+    // @VisibleForTesting
+    int followers() {
+        return this.followers.get();
+    }
+
+    private final AtomicInteger followers = new AtomicInteger();
+
+    private final Function<HttpRequest, HttpResponse> fetch;
+
+    private final FetchCustomizer customizer;
+
+    /**
+     * Closes the wrapped fetch if it is {@link AutoCloseable}.
+     */
+    @Override
+    public void close() throws Exception {
+        if (this.fetch instanceof AutoCloseable) {
+            ((AutoCloseable) this.fetch).close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.fetch.toString();
+    }
+}
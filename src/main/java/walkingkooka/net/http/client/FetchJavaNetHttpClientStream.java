@@ -0,0 +1,65 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.net.http.client;
+
+import walkingkooka.net.http.server.HttpRequest;
+import walkingkooka.net.http.server.HttpResponse;
+
+import java.io.InputStream;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * A {@link Function} that streams each response body to a {@link BiConsumer} using {@link FetchJavaNetHttpClient#applyStream(HttpRequest, BiConsumer)}.
+ */
+final class FetchJavaNetHttpClientStream implements Function<HttpRequest, HttpResponse>, AutoCloseable {
+
+    static FetchJavaNetHttpClientStream with(final FetchJavaNetHttpClient fetch,
+                                             final BiConsumer<HttpResponse, InputStream> body) {
+        Objects.requireNonNull(body, "body");
+
+        return new FetchJavaNetHttpClientStream(fetch, body);
+    }
+
+    private FetchJavaNetHttpClientStream(final FetchJavaNetHttpClient fetch,
+                                         final BiConsumer<HttpResponse, InputStream> body) {
+        super();
+        this.fetch = fetch;
+        this.body = body;
+    }
+
+    @Override
+    public HttpResponse apply(final HttpRequest request) {
+        return this.fetch.applyStream(request, this.body);
+    }
+
+    @Override
+    public void close() {
+        this.fetch.close();
+    }
+
+    private final FetchJavaNetHttpClient fetch;
+
+    private final BiConsumer<HttpResponse, InputStream> body;
+
+    @Override
+    public String toString() {
+        return this.fetch.toString();
+    }
+}
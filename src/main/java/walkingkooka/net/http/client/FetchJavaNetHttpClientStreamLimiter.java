@@ -0,0 +1,146 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.net.http.client;
+
+import java.net.URI;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limits the number of concurrent requests, which for HTTP/2 are streams multiplexed over a single connection, to each
+ * origin. Requests above the limit wait in a queue without blocking a thread, and are given the permit released by
+ * an earlier request. All state is managed using atomics and concurrent collections without locks.
+ */
+final class FetchJavaNetHttpClientStreamLimiter {
+
+    static FetchJavaNetHttpClientStreamLimiter create() {
+        return new FetchJavaNetHttpClientStreamLimiter();
+    }
+
+    private FetchJavaNetHttpClientStreamLimiter() {
+        super();
+    }
+
+    /**
+     * Returns the origin for the given {@link URI}, which is the lower cased scheme and host and the port, with a missing
+     * port replaced by the default of 443 for https and 80 otherwise, so equivalent URLs always share the same origin.
+     */
+    static String origin(final URI uri) {
+        final String scheme = String.valueOf(uri.getScheme()).toLowerCase(Locale.ROOT);
+
+        int port = uri.getPort();
+        if (-1 == port) {
+            port = "https".equals(scheme) ? 443 : 80;
+        }
+
+        return scheme + "://" + String.valueOf(uri.getHost()).toLowerCase(Locale.ROOT) + ":" + port;
+    }
+
+    /**
+     * Returns a future that completes once a permit to send a request to the origin is available. The caller must
+     * {@link #release(String, int)} the permit when the request completes. Waiters that are no longer interested should
+     * cancel the future, and release the permit if the cancel failed because the permit was already granted.
+     */
+    CompletableFuture<Void> acquire(final String origin,
+                                    final int max) {
+        final Lane lane = this.lanes.computeIfAbsent(origin, (o) -> new Lane());
+
+        final CompletableFuture<Void> permit;
+        if (lane.waiters.isEmpty() && lane.tryAcquire(max)) {
+            permit = CompletableFuture.completedFuture(null);
+        } else {
+            permit = new CompletableFuture<>();
+            lane.waiters.add(permit);
+            lane.drain(max);
+        }
+
+        return permit;
+    }
+
+    /**
+     * Releases a permit for the origin, handing it to the next waiter if any.
+     */
+    void release(final String origin,
+                 final int max) {
+        final Lane lane = this.lanes.get(origin);
+        if (null == lane) {
+            throw new IllegalStateException("Unknown origin " + origin);
+        }
+
+        lane.inFlight.decrementAndGet();
+        lane.drain(max);
+    }
+
+    /**
+     * Returns the number of requests currently holding a permit for the given origin.
+     */
+    int inFlight(final String origin) {
+        final Lane lane = this.lanes.get(origin);
+        return null != lane ?
+                lane.inFlight.get() :
+                0;
+    }
+
+    private final ConcurrentMap<String, Lane> lanes = new ConcurrentHashMap<>();
+
+    /**
+     * The permits and waiters for a single origin.
+     */
+    private static final class Lane {
+
+        boolean tryAcquire(final int max) {
+            for (; ; ) {
+                final int current = this.inFlight.get();
+                if (current >= max) {
+                    return false;
+                }
+                if (this.inFlight.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Hands free permits to waiters. This is called after every waiter is added and every permit is released,
+         * so a waiter added while a permit is released is never forgotten.
+         */
+        void drain(final int max) {
+            while (!this.waiters.isEmpty() && this.tryAcquire(max)) {
+                final CompletableFuture<Void> waiter = this.waiters.poll();
+                if (null == waiter || !waiter.complete(null)) {
+                    // another thread took the waiter or it was cancelled
+                    this.inFlight.decrementAndGet();
+                }
+            }
+        }
+
+        final AtomicInteger inFlight = new AtomicInteger();
+
+        final Queue<CompletableFuture<Void>> waiters = new ConcurrentLinkedQueue<>();
+    }
+
+    @Override
+    public String toString() {
+        return this.lanes.keySet().toString();
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package walkingkooka.net.http.client;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Base {@link Flow.Subscription} for the request body publishers, tracking the demand of a single subscriber. Every
+ * signal to the subscriber, including the error for an invalid {@link #request(long)}, happens within the drain loop
+ * guarded by {@link #wip}, so {@link #request(long)} and {@link #cancel()} may be called from within
+ * {@link Flow.Subscriber#onNext(Object)} or from any thread without signals overlapping.
+ */
+abstract class FetchJavaNetHttpClientSubscription implements Flow.Subscription {
+
+    FetchJavaNetHttpClientSubscription(final Flow.Subscriber<? super ByteBuffer> subscriber) {
+        super();
+        this.subscriber = Objects.requireNonNull(subscriber, "subscriber");
+    }
+
+    @Override
+    public final void request(final long n) {
+        if (n <= 0) {
+            this.error = new IllegalArgumentException("Invalid request " + n + " <= 0");
+        } else {
+            this.demand.updateAndGet(d -> d + n < 0 ? Long.MAX_VALUE : d + n);
+        }
+        this.drain();
+    }
+
+    @Override
+    public final void cancel() {
+        this.cancelled = true;
+        this.drain();
+    }
+
+    private void drain() {
+        if (0 == this.wip.getAndIncrement()) {
+            final Flow.Subscriber<? super ByteBuffer> subscriber = this.subscriber;
+
+            int missed = 1;
+            for (; ; ) {
+                while (!this.done) {
+                    final Throwable error = this.error;
+                    if (this.cancelled) {
+                        this.finish();
+                    } else if (null != error) {
+                        this.finish();
+                        subscriber.onError(error);
+                    } else if (!this.hasNext()) {
+                        this.finish();
+                        subscriber.onComplete();
+                    } else if (0 == this.demand.get()) {
+                        break;
+                    } else {
+                        this.demand.decrementAndGet();
+                        subscriber.onNext(this.next());
+                    }
+                }
+
+                missed = this.wip.addAndGet(-missed);
+                if (0 == missed) {
+                    break;
+                }
+            }
+        }
+    }
+
+    private void finish() {
+        this.done = true;
+        this.release();
+    }
+
+    /**
+     * Returns true if there is another {@link ByteBuffer} to publish.
+     */
+    abstract boolean hasNext();
+
+    /**
+     * Returns the next {@link ByteBuffer}, only called after {@link #hasNext()} returns true.
+     */
+    abstract ByteBuffer next();
+
+    /**
+     * Called once when the subscription completes, fails or is cancelled. The default does nothing.
+     */
+    void release() {
+        // nop
+    }
+
+    private final Flow.Subscriber<? super ByteBuffer> subscriber;
+
+    private final AtomicLong demand = new AtomicLong();
+    private final AtomicInteger wip = new AtomicInteger();
+
+    /**
+     * Only read and written within the drain loop.
+     */
+    private boolean done;
+
+    private volatile boolean cancelled;
+    private volatile Throwable error;
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.net.http.client;
+
+import walkingkooka.net.http.server.HttpRequest;
+import walkingkooka.net.http.server.HttpResponse;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+
+/**
+ * A {@link Function} that runs each request of a blocking fetch on its own virtual thread, allowing synchronous call
+ * sites to have many requests in flight without a platform thread for each.
+ * <br>
+ * Virtual threads are only available from JDK 21, they are located using reflection as this project is compiled for
+ * an earlier release.
+ */
+final class FetchJavaNetHttpClientVirtualThreads implements Function<HttpRequest, CompletableFuture<HttpResponse>> {
+
+    /**
+     * Returns true if this JVM supports virtual threads.
+     */
+    static boolean isSupported() {
+        return null != Holder.EXECUTOR;
+    }
+
+    /**
+     * Returns a shared executor that starts a new virtual thread for each task. The same instance is always returned
+     * so it may be given to {@link java.net.http.HttpClient.Builder#executor(java.util.concurrent.Executor)} without
+     * defeating the reuse of {@link java.net.http.HttpClient} by {@link FetchJavaNetHttpClient}.
+     */
+    static ExecutorService executor() {
+        final ExecutorService executor = Holder.EXECUTOR;
+        if (null == executor) {
+            throw new UnsupportedOperationException("Virtual threads require JDK 21 or later");
+        }
+        return executor;
+    }
+
+    /**
+     * Lazily creates the executor the first time it is needed.
+     */
+    private static final class Holder {
+        final static ExecutorService EXECUTOR = newVirtualThreadPerTaskExecutor();
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        ExecutorService executor;
+        try {
+            executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+        } catch (final ReflectiveOperationException | RuntimeException unsupported) {
+            executor = null; // earlier JDK or preview features not enabled
+        }
+        return executor;
+    }
+
+    static FetchJavaNetHttpClientVirtualThreads with(final Function<HttpRequest, HttpResponse> fetch) {
+        Objects.requireNonNull(fetch, "fetch");
+
+        return new FetchJavaNetHttpClientVirtualThreads(fetch, executor());
+    }
+
+    private FetchJavaNetHttpClientVirtualThreads(final Function<HttpRequest, HttpResponse> fetch,
+                                                 final ExecutorService executor) {
+        super();
+        this.fetch = fetch;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<HttpResponse> apply(final HttpRequest request) {
+        Objects.requireNonNull(request, "request");
+
+        final CompletableFuture<HttpResponse> future = new CompletableFuture<>();
+        try {
+            this.executor.execute(() -> {
+                try {
+                    future.complete(this.fetch.apply(request));
+                } catch (final FetchException cause) {
+                    future.completeExceptionally(cause);
+                } catch (final Throwable cause) {
+                    future.completeExceptionally(new FetchException(cause.getMessage(), cause));
+                }
+            });
+        } catch (final RejectedExecutionException cause) {
+            future.completeExceptionally(new FetchException(cause.getMessage(), cause));
+        }
+        return future;
+    }
+
+    private final Function<HttpRequest, HttpResponse> fetch;
+
+    private final ExecutorService executor;
+
+    @Override
+    public String toString() {
+        return this.fetch.toString();
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.net.http.client;
+
+import walkingkooka.net.http.server.HttpRequest;
+import walkingkooka.net.http.server.HttpResponse;
+
+/**
+ * Receives the {@link FetchTimings} of every request sent by a fetch whose {@link FetchCustomizer#fetchListener()}
+ * returns a listener. Exactly one method is called once for each request, on the thread that completed the request,
+ * and should return quickly. Any exception thrown by a listener is ignored and does not change the outcome of the request.
+ */
+public interface FetchListener {
+
+    /**
+     * Called after the response and its body were received.
+     */
+    void onResponse(final HttpRequest request,
+                    final HttpResponse response,
+                    final FetchTimings timings);
+
+    /**
+     * Called when the request failed for any reason, with the timings of the steps that completed.
+     */
+    void onFailure(final HttpRequest request,
+                   final Throwable cause,
+                   final FetchTimings timings);
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.net.http.client;
+
+import walkingkooka.net.http.server.HttpRequest;
+import walkingkooka.net.http.server.HttpResponse;
+
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.LongSupplier;
+
+/**
+ * Records when each step of a single request happened and reports the {@link FetchTimings} to a {@link FetchListener}.
+ * When there is no listener the shared {@link #NONE} is used, whose methods do nothing, so requests pay neither for
+ * reading the clock nor for any allocation.
+ */
+final class FetchTimer {
+
+    /**
+     * Starts timing a request if the {@link FetchCustomizer} has a {@link FetchListener}.
+     */
+    static FetchTimer start(final FetchCustomizer customizer) {
+        final Optional<FetchListener> listener = customizer.fetchListener();
+        return listener.isPresent() ?
+                with(listener.get(), System::nanoTime) :
+                NONE;
+    }
+
+    // @VisibleForTesting
+    static FetchTimer with(final FetchListener listener,
+                           final LongSupplier nanoTime) {
+        Objects.requireNonNull(listener, "listener");
+        Objects.requireNonNull(nanoTime, "nanoTime");
+
+        return new FetchTimer(listener, nanoTime);
+    }
+
+    /**
+     * The {@link FetchTimer} used when there is no {@link FetchListener}.
+     */
+    final static FetchTimer NONE = new FetchTimer(null, null);
+
+    private FetchTimer(final FetchListener listener,
+                       final LongSupplier nanoTime) {
+        super();
+        this.listener = listener;
+        this.nanoTime = nanoTime;
+        this.start = null != nanoTime ?
+                nanoTime.getAsLong() :
+                UNSET;
+    }
+
+    /**
+     * Returns true if the timings will be reported, fetchers should test this before computing anything only needed
+     * for the timings.
+     */
+    boolean isActive() {
+        return null != this.listener;
+    }
+
+    /**
+     * Marks that the request was built.
+     */
+    void built() {
+        if (null != this.listener) {
+            this.built = this.nanoTime.getAsLong();
+        }
+    }
+
+    /**
+     * Marks that the request is being sent, after any queueing.
+     */
+    void sending() {
+        if (null != this.listener) {
+            this.sending = this.nanoTime.getAsLong();
+        }
+    }
+
+    /**
+     * Marks that the response headers were received.
+     */
+    void headers() {
+        if (null != this.listener) {
+            this.headers = this.nanoTime.getAsLong();
+        }
+    }
+
+    /**
+     * Records the number of request body bytes, which should be {@link FetchTimings#UNKNOWN} if unknown.
+     */
+    void requestBytes(final long requestBytes) {
+        if (null != this.listener) {
+            this.requestBytes = requestBytes;
+        }
+    }
+
+    /**
+     * Adds to the number of response body bytes received.
+     */
+    void received(final long bytes) {
+        if (null != this.listener) {
+            this.responseBytes = Math.max(this.responseBytes, 0) + bytes;
+        }
+    }
+
+    /**
+     * Reports the timings of a successful request to the {@link FetchListener}, ignoring any exception it throws so
+     * the request still succeeds.
+     */
+    void response(final HttpRequest request,
+                  final HttpResponse response) {
+        final FetchListener listener = this.listener;
+        if (null != listener) {
+            try {
+                listener.onResponse(request, response, this.timings());
+            } catch (final RuntimeException ignore) {
+                // the listener must not change the outcome of the request
+            }
+        }
+    }
+
+    /**
+     * Reports the timings of a failed request to the {@link FetchListener}, ignoring any exception it throws so the
+     * original cause is the one reported to the caller.
+     */
+    void failure(final HttpRequest request,
+                 final Throwable cause) {
+        final FetchListener listener = this.listener;
+        if (null != listener) {
+            try {
+                listener.onFailure(request, cause, this.timings());
+            } catch (final RuntimeException ignore) {
+                // the listener must not change the outcome of the request
+            }
+        }
+    }
+
+    private FetchTimings timings() {
+        final long end = this.nanoTime.getAsLong();
+        final long start = this.start;
+        final long built = this.built;
+        final long sending = this.sending;
+        final long headers = this.headers;
+
+        return FetchTimings.with(between(start, built),
+                between(built, sending),
+                FetchTimings.UNKNOWN,
+                between(sending, headers),
+                between(headers, end),
+                end - start,
+                this.requestBytes,
+                this.responseBytes);
+    }
+
+    private static long between(final long from,
+                                final long to) {
+        return UNSET == from || UNSET == to ?
+                FetchTimings.UNKNOWN :
+                to - from;
+    }
+
+    /**
+     * Marks a step that has not happened.
+     */
+    private final static long UNSET = Long.MIN_VALUE;
+
+    private final FetchListener listener;
+
+    private final LongSupplier nanoTime;
+
+    private final long start;
+
+    private long built = UNSET;
+
+    private long sending = UNSET;
+
+    /**
+     * Written by the thread receiving the response, which may not be the thread completing the request.
+     */
+    private volatile long headers = UNSET;
+
+    private long requestBytes = FetchTimings.UNKNOWN;
+
+    private volatile long responseBytes = FetchTimings.UNKNOWN;
+
+    @Override
+    public String toString() {
+        return String.valueOf(this.listener);
+    }
+}
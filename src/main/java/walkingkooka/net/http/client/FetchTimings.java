@@ -0,0 +1,178 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.net.http.client;
+
+/**
+ * The time in nanoseconds spent in each step of a single request along with the number of body bytes sent and received.
+ * Any step that did not happen or cannot be measured by a fetcher is -1, browsers for example never report the connect
+ * time or the number of response bytes, and neither does {@link java.net.http.HttpClient} report the connect time.
+ */
+public final class FetchTimings {
+
+    /**
+     * Marks a time or count that is not available.
+     */
+    public final static long UNKNOWN = -1;
+
+    public static FetchTimings with(final long buildNanos,
+                                    final long queueNanos,
+                                    final long connectNanos,
+                                    final long headersNanos,
+                                    final long bodyNanos,
+                                    final long totalNanos,
+                                    final long requestBytes,
+                                    final long responseBytes) {
+        return new FetchTimings(buildNanos,
+                queueNanos,
+                connectNanos,
+                headersNanos,
+                bodyNanos,
+                totalNanos,
+                requestBytes,
+                responseBytes);
+    }
+
+    private FetchTimings(final long buildNanos,
+                         final long queueNanos,
+                         final long connectNanos,
+                         final long headersNanos,
+                         final long bodyNanos,
+                         final long totalNanos,
+                         final long requestBytes,
+                         final long responseBytes) {
+        super();
+        this.buildNanos = buildNanos;
+        this.queueNanos = queueNanos;
+        this.connectNanos = connectNanos;
+        this.headersNanos = headersNanos;
+        this.bodyNanos = bodyNanos;
+        this.totalNanos = totalNanos;
+        this.requestBytes = requestBytes;
+        this.responseBytes = responseBytes;
+    }
+
+    /**
+     * The time spent converting the {@link walkingkooka.net.http.server.HttpRequest} into the request actually sent.
+     */
+    public long buildNanos() {
+        return this.buildNanos;
+    }
+
+    private final long buildNanos;
+
+    /**
+     * The time spent waiting for a permit to send when the number of concurrent requests to an origin is limited.
+     */
+    public long queueNanos() {
+        return this.queueNanos;
+    }
+
+    private final long queueNanos;
+
+    /**
+     * The time spent opening a connection.
+     */
+    public long connectNanos() {
+        return this.connectNanos;
+    }
+
+    private final long connectNanos;
+
+    /**
+     * The time from sending the request until the response headers were received, which includes any connect time
+     * and the time the server took to respond.
+     */
+    public long headersNanos() {
+        return this.headersNanos;
+    }
+
+    private final long headersNanos;
+
+    /**
+     * The time from receiving the response headers until the body was read.
+     */
+    public long bodyNanos() {
+        return this.bodyNanos;
+    }
+
+    private final long bodyNanos;
+
+    /**
+     * The time from the start of the fetch until the response or failure.
+     */
+    public long totalNanos() {
+        return this.totalNanos;
+    }
+
+    private final long totalNanos;
+
+    /**
+     * The number of request body bytes, which is unknown for streamed or compressed bodies.
+     */
+    public long requestBytes() {
+        return this.requestBytes;
+    }
+
+    private final long requestBytes;
+
+    /**
+     * The number of response body bytes received before any decompression.
+     */
+    public long responseBytes() {
+        return this.responseBytes;
+    }
+
+    private final long responseBytes;
+
+    // Object...........................................................................................................
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(this.totalNanos);
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        return this == other ||
+                other instanceof FetchTimings && this.equals0((FetchTimings) other);
+    }
+
+    private boolean equals0(final FetchTimings other) {
+        return this.buildNanos == other.buildNanos &&
+                this.queueNanos == other.queueNanos &&
+                this.connectNanos == other.connectNanos &&
+                this.headersNanos == other.headersNanos &&
+                this.bodyNanos == other.bodyNanos &&
+                this.totalNanos == other.totalNanos &&
+                this.requestBytes == other.requestBytes &&
+                this.responseBytes == other.responseBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "build=" + this.buildNanos +
+                "ns queue=" + this.queueNanos +
+                "ns connect=" + this.connectNanos +
+                "ns headers=" + this.headersNanos +
+                "ns body=" + this.bodyNanos +
+                "ns total=" + this.totalNanos +
+                "ns request=" + this.requestBytes +
+                "B response=" + this.responseBytes +
+                "B";
+    }
+}
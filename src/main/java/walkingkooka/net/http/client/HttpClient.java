@@ -17,21 +17,269 @@
 
 package walkingkooka.net.http.client;
 
+import javaemul.internal.annotations.GwtIncompatible;
 import walkingkooka.net.http.server.HttpRequest;
 import walkingkooka.net.http.server.HttpResponse;
 import walkingkooka.reflect.PublicStaticHelper;
 
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
 import java.util.function.Function;
 
 public final class HttpClient implements PublicStaticHelper {
 
     /**
      * {@see Fetch}
+     * <br>
+     * The returned {@link Function} should be kept and reused, as it holds connections which are shared by requests.
+     * It also implements {@link AutoCloseable}, which should be called to release those connections once it is no longer needed.
      */
     public static Function<HttpRequest, HttpResponse> fetch(final FetchCustomizer customizer) {
         return FetchSelector2.fetch(customizer);
     }
 
+    /**
+     * Returns a {@link Function} which sends requests without blocking the caller, completing the returned
+     * {@link CompletableFuture} with the {@link HttpResponse} or a {@link FetchException} if the request failed.
+     * Like {@link #fetch(FetchCustomizer)} the returned {@link Function} should be reused and implements {@link AutoCloseable}.
+     */
+    @GwtIncompatible
+    public static Function<HttpRequest, CompletableFuture<HttpResponse>> fetchAsync(final FetchCustomizer customizer) {
+        return FetchJavaNetHttpClientAsync.with(FetchJavaNetHttpClient.with(customizer));
+    }
+
+    /**
+     * Returns a {@link BiConsumer} which sends requests without blocking, reporting the outcome to the given {@link FetchCallback}.
+     * Unlike {@link #fetchAsync(FetchCustomizer)} this is available in both the JVM and the browser, where it uses an
+     * asynchronous XMLHttpRequest which is safe to use from the UI thread.
+     * The returned {@link BiConsumer} should be reused and implements {@link AutoCloseable}.
+     */
+    public static BiConsumer<HttpRequest, FetchCallback> fetchCallback(final FetchCustomizer customizer) {
+        return FetchBiConsumer.with(FetchSelector2.fetch(customizer));
+    }
+
+    /**
+     * Returns a {@link Function} that never buffers response bodies, instead giving each body as an {@link InputStream}
+     * to the {@link BiConsumer} as soon as the headers are received. The {@link HttpResponse} has the status and headers
+     * but no body, and the {@link InputStream} is closed when the {@link BiConsumer} returns. This should be used for
+     * large responses, such as exports where memory should remain bounded no matter the size of the body.
+     */
+    @GwtIncompatible
+    public static Function<HttpRequest, HttpResponse> fetchStream(final FetchCustomizer customizer,
+                                                                  final BiConsumer<HttpResponse, InputStream> body) {
+        return FetchJavaNetHttpClientStream.with(FetchJavaNetHttpClient.with(customizer), body);
+    }
+
+    /**
+     * Returns a {@link Function} that writes each response body directly to the file selected for the request by the given
+     * {@link Function}, replacing any previous content. The {@link HttpResponse} has the status and headers but no body,
+     * which means large downloads never need to fit in the heap. The body is written for all statuses, callers should
+     * check the status before using the file.
+     */
+    @GwtIncompatible
+    public static Function<HttpRequest, HttpResponse> fetchFile(final FetchCustomizer customizer,
+                                                                final Function<HttpRequest, Path> file) {
+        return FetchJavaNetHttpClientFile.with(FetchJavaNetHttpClient.with(customizer), file);
+    }
+
+    /**
+     * Returns a {@link Function} that sends a batch of requests sharing a single {@link java.net.http.HttpClient},
+     * with no more than the given number in flight at any time. The returned futures are in the same order as the requests,
+     * each completing as soon as its own response arrives. A failed request completes its future with a {@link FetchException}
+     * without cancelling the rest of the batch.
+     */
+    @GwtIncompatible
+    public static Function<Collection<HttpRequest>, List<CompletableFuture<HttpResponse>>> fetchBatch(final FetchCustomizer customizer,
+                                                                                                   final int maxInFlight) {
+        return batch(fetchAsync(customizer), maxInFlight);
+    }
+
+    /**
+     * Sends batches of requests using the given asynchronous fetch, such as one from {@link #fetchAsync(FetchCustomizer)}
+     * or {@link #virtualThreads(Function)}, never having more than the given number of requests in flight.
+     */
+    @GwtIncompatible
+    public static Function<Collection<HttpRequest>, List<CompletableFuture<HttpResponse>>> batch(final Function<HttpRequest, CompletableFuture<HttpResponse>> fetch,
+                                                                                              final int maxInFlight) {
+        return FetchJavaNetHttpClientBatch.with(fetch, maxInFlight);
+    }
+
+    /**
+     * Wraps a fetch, typically one from {@link #fetch(FetchCustomizer)}, with an in memory RFC 7234 cache of GET responses
+     * keyed by the {@link FetchCustomizer#httpClientUrl(HttpRequest)}. Fresh responses are returned without contacting
+     * the server, while stale responses with an ETag or Last-Modified are revalidated. Once either limit is exceeded the
+     * least recently used responses are removed. The {@link FetchCacheListener} is notified of every hit, miss and revalidation.
+     */
+    @GwtIncompatible
+    public static Function<HttpRequest, HttpResponse> cache(final Function<HttpRequest, HttpResponse> fetch,
+                                                            final FetchCustomizer customizer,
+                                                            final int maxEntries,
+                                                            final long maxBytes,
+                                                            final FetchCacheListener listener) {
+        return FetchJavaNetHttpClientCache.with(fetch,
+                customizer,
+                maxEntries,
+                maxBytes,
+                listener);
+    }
+
+    /**
+     * Wraps a blocking fetch so concurrent identical GET and HEAD requests share a single upstream request, protecting
+     * servers from a thundering herd such as many threads requesting the same url on a cold cache. Requests are identical
+     * when they have the same method, {@link FetchCustomizer#httpClientUrl(HttpRequest)} and headers. Each caller
+     * receives its own copy of the {@link HttpResponse} or {@link FetchException}.
+     */
+    @GwtIncompatible
+    public static Function<HttpRequest, HttpResponse> singleFlight(final Function<HttpRequest, HttpResponse> fetch,
+                                                                   final FetchCustomizer customizer) {
+        return FetchJavaNetHttpClientSingleFlight.with(fetch, customizer);
+    }
+
+    /**
+     * Wraps a blocking fetch, typically one from {@link #fetch(FetchCustomizer)}, limiting the requests in flight to each
+     * origin of the {@link FetchCustomizer#httpClientUrl(HttpRequest)}, so one slow origin cannot tie up every caller
+     * thread. Callers above the limit wait up to the maximum wait, but once the maximum number are already waiting or
+     * the wait expires a {@link FetchBulkheadFullException} is thrown without sending the request.
+     */
+    @GwtIncompatible
+    public static Function<HttpRequest, HttpResponse> bulkhead(final Function<HttpRequest, HttpResponse> fetch,
+                                                               final FetchCustomizer customizer,
+                                                               final int maxConcurrent,
+                                                               final int maxWaiting,
+                                                               final long maxWaitMillis) {
+        return FetchJavaNetHttpClientBulkhead.with(fetch,
+                customizer,
+                maxConcurrent,
+                maxWaiting,
+                maxWaitMillis);
+    }
+
+    /**
+     * Wraps a blocking fetch with a circuit breaker for each origin of the {@link FetchCustomizer#httpClientUrl(HttpRequest)}.
+     * A sliding window holds the outcomes of the most recent requests, and once it is full and the rate of failures, a
+     * {@link FetchException} or 5xx status, or calls slower than the slow call duration reaches its threshold the
+     * circuit opens. Requests then fail immediately with a {@link FetchCircuitBreakerOpenException} until the open duration
+     * has elapsed, after which a few probes are sent to decide whether to close the circuit again. Every change of
+     * state is reported to the {@link FetchCircuitBreakerListener}.
+     */
+    @GwtIncompatible
+    public static Function<HttpRequest, HttpResponse> circuitBreaker(final Function<HttpRequest, HttpResponse> fetch,
+                                                                     final FetchCustomizer customizer,
+                                                                     final int windowSize,
+                                                                     final double failureRateThreshold,
+                                                                     final long slowCallMillis,
+                                                                     final double slowCallRateThreshold,
+                                                                     final long openMillis,
+                                                                     final FetchCircuitBreakerListener listener) {
+        return FetchJavaNetHttpClientCircuitBreaker.with(fetch,
+                customizer,
+                windowSize,
+                failureRateThreshold,
+                slowCallMillis,
+                slowCallRateThreshold,
+                openMillis,
+                listener);
+    }
+
+    /**
+     * Wraps an asynchronous fetch, typically one from {@link #fetchAsync(FetchCustomizer)}, sending a second identical
+     * GET or HEAD request if no response has arrived after the delay, such as the observed 95th percentile latency.
+     * Whichever succeeds first is returned and the other is cancelled. Hedges are limited to the given ratio of all
+     * requests, for example 0.05 adds no more than 5% load. The {@link FetchHedgeListener} is notified of each hedge
+     * sent and each hedge that won.
+     */
+    @GwtIncompatible
+    public static Function<HttpRequest, CompletableFuture<HttpResponse>> hedge(final Function<HttpRequest, CompletableFuture<HttpResponse>> fetch,
+                                                                             final long delayMillis,
+                                                                             final double maxHedgeRatio,
+                                                                             final FetchHedgeListener listener) {
+        return FetchJavaNetHttpClientHedge.with(fetch,
+                delayMillis,
+                maxHedgeRatio,
+                listener);
+    }
+
+    /**
+     * Wraps a blocking fetch, retrying idempotent requests that failed to connect or received a 429, 502, 503 or 504, up
+     * to the maximum number of attempts. Each retry waits a random delay up to an exponential backoff that starts at the
+     * base delay and is capped by the maximum delay, or longer if the response has a Retry-After. No retry is sent once
+     * its delay would exceed the time budget, and the last response is returned or {@link FetchException} thrown.
+     * The {@link FetchRetryListener} is notified before each retry with its attempt number.
+     */
+    @GwtIncompatible
+    public static Function<HttpRequest, HttpResponse> retry(final Function<HttpRequest, HttpResponse> fetch,
+                                                            final int maxAttempts,
+                                                            final long baseDelayMillis,
+                                                            final long maxDelayMillis,
+                                                            final long budgetMillis,
+                                                            final FetchRetryListener listener) {
+        return FetchJavaNetHttpClientRetry.with(fetch,
+                maxAttempts,
+                baseDelayMillis,
+                maxDelayMillis,
+                budgetMillis,
+                listener);
+    }
+
+    /**
+     * Returns a shared {@link Executor} that runs each task on a new virtual thread. It may be passed to
+     * {@link java.net.http.HttpClient.Builder#executor(Executor)} within {@link FetchCustomizer#prepareHttpClient(java.net.http.HttpClient.Builder, java.net.http.HttpRequest.Builder)}
+     * to opt in to virtual threads for the {@link java.net.http.HttpClient} used by {@link #fetch(FetchCustomizer)} and
+     * {@link #fetchAsync(FetchCustomizer)}. An {@link UnsupportedOperationException} is thrown if the JVM is older than JDK 21.
+     */
+    @GwtIncompatible
+    public static Executor virtualThreadExecutor() {
+        return FetchJavaNetHttpClientVirtualThreads.executor();
+    }
+
+    /**
+     * Runs each request given to the blocking fetch, typically one from {@link #fetch(FetchCustomizer)}, on a new virtual
+     * thread. Synchronous code can then start many requests and wait on the futures without tying up a platform thread
+     * for each. Failures complete the future with a {@link FetchException}. An {@link UnsupportedOperationException}
+     * is thrown if the JVM is older than JDK 21.
+     */
+    @GwtIncompatible
+    public static Function<HttpRequest, CompletableFuture<HttpResponse>> virtualThreads(final Function<HttpRequest, HttpResponse> fetch) {
+        return FetchJavaNetHttpClientVirtualThreads.with(fetch);
+    }
+
+    /**
+     * Returns a {@link java.net.http.HttpRequest.BodyPublisher} that streams the given file, for use by
+     * {@link FetchCustomizer#httpClientBody(HttpRequest)}. The file is read as the request is sent and never loaded into the heap.
+     */
+    @GwtIncompatible
+    public static java.net.http.HttpRequest.BodyPublisher fileBody(final Path file) {
+        return FetchJavaNetHttpClientBodyPublishers.file(file);
+    }
+
+    /**
+     * Returns a {@link java.net.http.HttpRequest.BodyPublisher} that sends a memory mapped region of the given {@link FileChannel},
+     * for use by {@link FetchCustomizer#httpClientBody(HttpRequest)}. The region is sent in chunks without being copied into the heap.
+     */
+    @GwtIncompatible
+    public static java.net.http.HttpRequest.BodyPublisher fileChannelBody(final FileChannel channel,
+                                                                          final long position,
+                                                                          final long size) {
+        return FetchJavaNetHttpClientBodyPublishers.fileChannel(channel, position, size);
+    }
+
+    /**
+     * Returns a {@link java.net.http.HttpRequest.BodyPublisher} that sends the remaining bytes of the given {@link ByteBuffer}
+     * in chunks, for use by {@link FetchCustomizer#httpClientBody(HttpRequest)}. The position of the given {@link ByteBuffer}
+     * is not changed, so the same publisher may be sent more than once.
+     */
+    @GwtIncompatible
+    public static java.net.http.HttpRequest.BodyPublisher byteBufferBody(final ByteBuffer buffer) {
+        return FetchJavaNetHttpClientBodyPublishers.byteBuffer(buffer);
+    }
+
     /**
      * Stop creation
      */
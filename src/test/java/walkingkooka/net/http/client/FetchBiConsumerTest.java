@@ -0,0 +1,63 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.net.http.client;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.net.Url;
+import walkingkooka.net.http.HttpEntity;
+import walkingkooka.net.http.HttpMethod;
+import walkingkooka.net.http.HttpProtocolVersion;
+import walkingkooka.net.http.HttpTransport;
+import walkingkooka.net.http.server.HttpRequests;
+import walkingkooka.reflect.ClassTesting2;
+import walkingkooka.reflect.JavaVisibility;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class FetchBiConsumerTest implements ClassTesting2<FetchBiConsumer> {
+
+    @Test
+    public void testAcceptNullRequestFails() {
+        assertThrows(NullPointerException.class, () -> this.createBiConsumer().accept(null, new FakeFetchCallback()));
+    }
+
+    @Test
+    public void testAcceptNullCallbackFails() {
+        assertThrows(NullPointerException.class, () -> this.createBiConsumer()
+                .accept(HttpRequests.value(HttpMethod.GET,
+                        HttpTransport.UNSECURED,
+                        Url.parseRelative("/"),
+                        HttpProtocolVersion.VERSION_1_1,
+                        HttpEntity.EMPTY),
+                        null));
+    }
+
+    private FetchBiConsumer createBiConsumer() {
+        return FetchBiConsumer.with(FetchJavaNetHttpClient.with(new FakeFetchCustomizer()));
+    }
+
+    @Override
+    public Class<FetchBiConsumer> type() {
+        return FetchBiConsumer.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PACKAGE_PRIVATE;
+    }
+}
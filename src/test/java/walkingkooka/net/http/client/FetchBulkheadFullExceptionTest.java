@@ -0,0 +1,59 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.net.http.client;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.reflect.JavaVisibility;
+import walkingkooka.reflect.StandardThrowableTesting;
+
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+final public class FetchBulkheadFullExceptionTest implements StandardThrowableTesting<FetchBulkheadFullException> {
+
+    @Test
+    public void testCopy() {
+        final FetchBulkheadFullException thrown = new FetchBulkheadFullException("Message123");
+        final FetchException copy = thrown.copy();
+
+        assertNotSame(thrown, copy);
+        this.checkEquals(FetchBulkheadFullException.class, copy.getClass(), "class");
+        this.checkEquals("Message123", copy.getMessage(), "message");
+        assertSame(thrown, copy.getCause(), "cause");
+    }
+
+    @Override
+    public FetchBulkheadFullException createThrowable(final String message) {
+        return new FetchBulkheadFullException(message);
+    }
+
+    @Override
+    public FetchBulkheadFullException createThrowable(final String message, final Throwable cause) {
+        return new FetchBulkheadFullException(message, cause);
+    }
+
+    @Override
+    public Class<FetchBulkheadFullException> type() {
+        return FetchBulkheadFullException.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PUBLIC;
+    }
+}
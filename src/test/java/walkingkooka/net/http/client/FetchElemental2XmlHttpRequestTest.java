@@ -18,10 +18,18 @@
 package walkingkooka.net.http.client;
 
 import org.junit.jupiter.api.Test;
+import walkingkooka.Binary;
+import walkingkooka.net.Url;
 import walkingkooka.net.header.ContentEncoding;
 import walkingkooka.net.header.HttpHeaderName;
 import walkingkooka.net.header.MediaType;
 import walkingkooka.net.http.HttpEntity;
+import walkingkooka.net.http.HttpMethod;
+import walkingkooka.net.http.HttpProtocolVersion;
+import walkingkooka.net.http.HttpTransport;
+import walkingkooka.net.http.server.HttpRequest;
+import walkingkooka.net.http.server.HttpRequests;
+
 
 public final class
 FetchElemental2XmlHttpRequestTest extends FetchTestCase<FetchElemental2XmlHttpRequest> {
@@ -69,6 +77,65 @@ FetchElemental2XmlHttpRequestTest extends FetchTestCase<FetchElemental2XmlHttpRe
                         .addHeader(HttpHeaderName.CONTENT_ENCODING, ContentEncoding.COMPRESS));
     }
 
+    @Test
+    public void testParseHeadersEmpty() {
+        this.parseHeadersAndCheck("",
+                HttpEntity.EMPTY);
+    }
+
+    @Test
+    public void testParseHeadersOnlyLineEnding() {
+        this.parseHeadersAndCheck("\r\n",
+                HttpEntity.EMPTY);
+    }
+
+    @Test
+    public void testParseHeadersBareLineFeed() {
+        this.parseHeadersAndCheck("Content-type: text/plain\nContent-Length: 123\n",
+                HttpEntity.EMPTY.addHeader(HttpHeaderName.CONTENT_TYPE, MediaType.TEXT_PLAIN)
+                        .addHeader(HttpHeaderName.CONTENT_LENGTH, 123L));
+    }
+
+    @Test
+    public void testParseHeadersMixedLineEndings() {
+        this.parseHeadersAndCheck("Content-type: text/plain\nContent-Length: 123\r\nServer: Server456",
+                HttpEntity.EMPTY.addHeader(HttpHeaderName.CONTENT_TYPE, MediaType.TEXT_PLAIN)
+                        .addHeader(HttpHeaderName.CONTENT_LENGTH, 123L)
+                        .addHeader(HttpHeaderName.SERVER, "Server456"));
+    }
+
+    @Test
+    public void testParseHeadersWhitespace() {
+        this.parseHeadersAndCheck("  Content-type  :   text/plain  \r\n",
+                HttpEntity.EMPTY.addHeader(HttpHeaderName.CONTENT_TYPE, MediaType.TEXT_PLAIN));
+    }
+
+    @Test
+    public void testParseHeadersValueIncludesColon() {
+        this.parseHeadersAndCheck("Server: Server:456",
+                HttpEntity.EMPTY.addHeader(HttpHeaderName.SERVER, "Server:456"));
+    }
+
+    @Test
+    public void testParseHeadersMalformedLineIgnored() {
+        this.parseHeadersAndCheck("Content-type: text/plain\r\nmalformed\r\nContent-Length: 123",
+                HttpEntity.EMPTY.addHeader(HttpHeaderName.CONTENT_TYPE, MediaType.TEXT_PLAIN)
+                        .addHeader(HttpHeaderName.CONTENT_LENGTH, 123L));
+    }
+
+    @Test
+    public void testParseHeadersMalformedLastLineIgnored() {
+        this.parseHeadersAndCheck("Content-type: text/plain\r\nmalformed",
+                HttpEntity.EMPTY.addHeader(HttpHeaderName.CONTENT_TYPE, MediaType.TEXT_PLAIN));
+    }
+
+    @Test
+    public void testParseHeadersEmptyLinesIgnored() {
+        this.parseHeadersAndCheck("\r\nContent-type: text/plain\r\n\r\n\nContent-Length: 123\r\n\r\n",
+                HttpEntity.EMPTY.addHeader(HttpHeaderName.CONTENT_TYPE, MediaType.TEXT_PLAIN)
+                        .addHeader(HttpHeaderName.CONTENT_LENGTH, 123L));
+    }
+
     private void parseHeadersAndCheck(final String headerText,
                                       final HttpEntity expected) {
         this.checkEquals(expected,
@@ -76,6 +143,57 @@ FetchElemental2XmlHttpRequestTest extends FetchTestCase<FetchElemental2XmlHttpRe
                 () -> "parseHeaders\n" + headerText + "\nfailed");
     }
 
+    @Test
+    public void testTextWithoutContentType() {
+        this.textAndCheck(HttpEntity.EMPTY.setBodyText("abc123"), "abc123");
+    }
+
+    @Test
+    public void testTextTextPlain() {
+        this.textAndCheck(HttpEntity.EMPTY.addHeader(HttpHeaderName.CONTENT_TYPE, MediaType.TEXT_PLAIN)
+                        .setBodyText("caf\u00e9"),
+                "caf\u00e9");
+    }
+
+    @Test
+    public void testTextUtf8Charset() {
+        this.textAndCheck(HttpEntity.EMPTY.addHeader(HttpHeaderName.CONTENT_TYPE, MediaType.parse("application/json;charset=UTF-8"))
+                        .setBodyText("{}"),
+                "{}");
+    }
+
+    @Test
+    public void testTextOtherCharset() {
+        this.textAndCheck(HttpEntity.EMPTY.addHeader(HttpHeaderName.CONTENT_TYPE, MediaType.parse("text/plain;charset=ISO-8859-1"))
+                        .setBody(Binary.with(new byte[]{'a', 'b', 'c'})),
+                null);
+    }
+
+    @Test
+    public void testTextBinaryContentType() {
+        this.textAndCheck(HttpEntity.EMPTY.addHeader(HttpHeaderName.CONTENT_TYPE, MediaType.BINARY)
+                        .setBody(Binary.with(new byte[]{'a', 'b', 'c'})),
+                null);
+    }
+
+    @Test
+    public void testTextInvalidUtf8WithoutContentType() {
+        this.textAndCheck(HttpEntity.EMPTY.setBody(Binary.with(new byte[]{'a', (byte) 0xff, (byte) 0xc0})),
+                null);
+    }
+
+    private void textAndCheck(final HttpEntity entity,
+                              final String expected) {
+        final HttpRequest request = HttpRequests.value(HttpMethod.POST,
+                HttpTransport.UNSECURED,
+                Url.parseRelative("/"),
+                HttpProtocolVersion.VERSION_1_1,
+                entity);
+        this.checkEquals(expected,
+                FetchElemental2XmlHttpRequest.text(request, request.body()),
+                () -> "text " + request);
+    }
+
     @Override
     public Class<FetchElemental2XmlHttpRequest> type() {
         return FetchElemental2XmlHttpRequest.class;
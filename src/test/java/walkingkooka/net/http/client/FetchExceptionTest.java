@@ -17,11 +17,26 @@
 
 package walkingkooka.net.http.client;
 
+import org.junit.jupiter.api.Test;
 import walkingkooka.reflect.JavaVisibility;
 import walkingkooka.reflect.StandardThrowableTesting;
 
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
 final public class FetchExceptionTest implements StandardThrowableTesting<FetchException> {
 
+    @Test
+    public void testCopy() {
+        final FetchException thrown = new FetchException("Message123");
+        final FetchException copy = thrown.copy();
+
+        assertNotSame(thrown, copy);
+        this.checkEquals(FetchException.class, copy.getClass(), "class");
+        this.checkEquals("Message123", copy.getMessage(), "message");
+        assertSame(thrown, copy.getCause(), "cause");
+    }
+
     @Override
     public FetchException createThrowable(final String message) {
         return new FetchException(message);
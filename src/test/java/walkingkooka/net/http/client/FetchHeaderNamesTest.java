@@ -0,0 +1,125 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.net.http.client;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.net.header.HttpHeaderName;
+import walkingkooka.reflect.ClassTesting2;
+import walkingkooka.reflect.JavaVisibility;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class FetchHeaderNamesTest implements ClassTesting2<FetchHeaderNames> {
+
+    @Test
+    public void testWithZeroCapacityFails() {
+        assertThrows(IllegalArgumentException.class, () -> FetchHeaderNames.with(0));
+    }
+
+    @Test
+    public void testWithNotPowerOfTwoCapacityFails() {
+        assertThrows(IllegalArgumentException.class, () -> FetchHeaderNames.with(12));
+    }
+
+    @Test
+    public void testGetNullFails() {
+        assertThrows(NullPointerException.class, () -> this.names().get(null));
+    }
+
+    @Test
+    public void testGetWellKnown() {
+        this.checkEquals(HttpHeaderName.CONTENT_TYPE, this.names().get("Content-Type"));
+    }
+
+    @Test
+    public void testGetWellKnownLowerCase() {
+        this.checkEquals(HttpHeaderName.CONTENT_TYPE, this.names().get("content-type"));
+    }
+
+    @Test
+    public void testGetWellKnownOtherCase() {
+        final FetchHeaderNames names = this.names();
+        assertSame(names.get("Content-Length"), names.get("CONTENT-LENGTH"));
+    }
+
+    @Test
+    public void testGetWellKnownNotCached() {
+        final FetchHeaderNames names = this.names();
+        names.get("Content-Type");
+        names.get("CONTENT-TYPE");
+
+        this.checkEquals(0, names.size());
+    }
+
+    @Test
+    public void testGetSameInstance() {
+        final FetchHeaderNames names = this.names();
+        final String name = "X-Custom";
+        assertSame(names.get(name), names.get(name));
+    }
+
+    @Test
+    public void testGetSameInstanceDifferentCase() {
+        final FetchHeaderNames names = this.names();
+        final String name = "X-Custom";
+        assertSame(names.get(name), names.get(name.toUpperCase()));
+    }
+
+    @Test
+    public void testGetBounded() {
+        final FetchHeaderNames names = FetchHeaderNames.with(16);
+
+        for (int i = 0; i < 1000; i++) {
+            final String name = "X-Random-" + i;
+            this.checkEquals(HttpHeaderName.with(name), names.get(name));
+            this.checkEquals(true, names.size() <= 16, () -> "size " + names);
+        }
+    }
+
+    @Test
+    public void testGetCachedAgainAfterFlood() {
+        final FetchHeaderNames names = FetchHeaderNames.with(16);
+        for (int i = 0; i < 1000; i++) {
+            names.get("X-Random-" + i);
+        }
+
+        final String name = "X-Custom";
+        assertSame(names.get(name), names.get(name));
+    }
+
+    @Test
+    public void testHeaderName() {
+        final String name = "X-" + this.getClass().getSimpleName();
+        this.checkEquals(HttpHeaderName.with(name), FetchHeaderNames.headerName(name));
+    }
+
+    private FetchHeaderNames names() {
+        return FetchHeaderNames.with(FetchHeaderNames.MAX);
+    }
+
+    @Override
+    public Class<FetchHeaderNames> type() {
+        return FetchHeaderNames.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PACKAGE_PRIVATE;
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.net.http.client;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.Cast;
+import walkingkooka.net.header.ContentEncoding;
+import walkingkooka.net.header.HttpHeaderName;
+import walkingkooka.net.header.MediaType;
+import walkingkooka.net.http.HttpEntity;
+import walkingkooka.reflect.ClassTesting2;
+import walkingkooka.reflect.JavaVisibility;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class FetchHeadersTest implements ClassTesting2<FetchHeaders> {
+
+    @Test
+    public void testAddNullNameFails() {
+        assertThrows(NullPointerException.class, () -> FetchHeaders.empty().add(null, "value"));
+    }
+
+    @Test
+    public void testAddNullValueFails() {
+        assertThrows(NullPointerException.class, () -> FetchHeaders.empty().add("name", null));
+    }
+
+    @Test
+    public void testFirst() {
+        this.checkEquals(Optional.of("text/plain"),
+                FetchHeaders.empty()
+                        .add("Content-Length", "123")
+                        .add("Content-Type", "text/plain")
+                        .first("Content-Type"));
+    }
+
+    @Test
+    public void testFirstIgnoresCase() {
+        this.checkEquals(Optional.of("text/plain"),
+                FetchHeaders.empty()
+                        .add("content-type", "text/plain")
+                        .first("Content-Type"));
+    }
+
+    @Test
+    public void testFirstSeveralValues() {
+        this.checkEquals(Optional.of("gzip"),
+                FetchHeaders.empty()
+                        .add("Content-Encoding", "gzip")
+                        .add("Content-Encoding", "compress")
+                        .first("Content-Encoding"));
+    }
+
+    @Test
+    public void testFirstMissing() {
+        this.checkEquals(Optional.empty(),
+                FetchHeaders.empty()
+                        .add("Content-Type", "text/plain")
+                        .first("Content-Length"));
+    }
+
+    @Test
+    public void testFirstNotParsed() {
+        // an invalid value is returned as is and does not fail
+        this.checkEquals(Optional.of("not a number"),
+                FetchHeaders.empty()
+                        .add("Content-Length", "not a number")
+                        .first("Content-Length"));
+    }
+
+    @Test
+    public void testSize() {
+        this.checkEquals(2,
+                FetchHeaders.empty()
+                        .add("Content-Encoding", "gzip")
+                        .add("Content-Encoding", "compress")
+                        .size());
+    }
+
+    @Test
+    public void testRemove() {
+        final FetchHeaders headers = FetchHeaders.empty()
+                .add("Content-Encoding", "gzip")
+                .add("Content-Type", "text/plain")
+                .add("content-encoding", "deflate")
+                .remove("CONTENT-ENCODING");
+
+        this.checkEquals(1, headers.size(), "size");
+        this.checkEquals(Optional.empty(), headers.first("Content-Encoding"), "content-encoding");
+        this.checkEquals(Optional.of("text/plain"), headers.first("Content-Type"), "content-type");
+    }
+
+    @Test
+    public void testRemoveMissing() {
+        this.checkEquals(1,
+                FetchHeaders.empty()
+                        .add("Content-Type", "text/plain")
+                        .remove("Content-Encoding")
+                        .size());
+    }
+
+    @Test
+    public void testEntityEmpty() {
+        this.checkEquals(HttpEntity.EMPTY,
+                FetchHeaders.empty().entity());
+    }
+
+    @Test
+    public void testEntity() {
+        this.checkEquals(HttpEntity.EMPTY.addHeader(HttpHeaderName.CONTENT_TYPE, MediaType.TEXT_PLAIN)
+                        .addHeader(HttpHeaderName.CONTENT_LENGTH, 123L),
+                FetchHeaders.empty()
+                        .add("Content-Type", "text/plain")
+                        .add("Content-Length", "123")
+                        .entity());
+    }
+
+    @Test
+    public void testEntitySeveralValues() {
+        this.checkEquals(HttpEntity.EMPTY.addHeader(HttpHeaderName.CONTENT_ENCODING, ContentEncoding.GZIP)
+                        .addHeader(HttpHeaderName.CONTENT_ENCODING, ContentEncoding.COMPRESS),
+                FetchHeaders.empty()
+                        .add("Content-Encoding", "gzip")
+                        .add("Content-Encoding", "compress")
+                        .entity());
+    }
+
+    @Test
+    public void testEntitySeveralValuesInterleaved() {
+        this.checkEquals(HttpEntity.EMPTY.addHeader(HttpHeaderName.CONTENT_ENCODING, ContentEncoding.GZIP)
+                        .addHeader(HttpHeaderName.CONTENT_LENGTH, 123L)
+                        .addHeader(HttpHeaderName.CONTENT_ENCODING, ContentEncoding.COMPRESS),
+                FetchHeaders.empty()
+                        .add("Content-Encoding", "gzip")
+                        .add("Content-Length", "123")
+                        .add("Content-Encoding", "compress")
+                        .entity());
+    }
+
+    @Test
+    public void testEntityManyHeaders() {
+        final FetchHeaders headers = FetchHeaders.empty();
+        HttpEntity expected = HttpEntity.EMPTY;
+
+        for (int i = 0; i < 100; i++) {
+            final String name = "X-Header-" + i;
+            headers.add(name, "value-" + i);
+            expected = expected.addHeader(HttpHeaderName.with(name), Cast.to("value-" + i));
+        }
+
+        this.checkEquals(expected, headers.entity());
+    }
+
+    @Test
+    public void testToString() {
+        this.checkEquals("Content-Type: text/plain\r\nContent-Length: 123\r\n",
+                FetchHeaders.empty()
+                        .add("Content-Type", "text/plain")
+                        .add("Content-Length", "123")
+                        .toString());
+    }
+
+    @Override
+    public Class<FetchHeaders> type() {
+        return FetchHeaders.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PACKAGE_PRIVATE;
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.net.http.client;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.net.Url;
+import walkingkooka.net.http.HttpEntity;
+import walkingkooka.net.http.HttpMethod;
+import walkingkooka.net.http.HttpProtocolVersion;
+import walkingkooka.net.http.HttpStatusCode;
+import walkingkooka.net.http.HttpTransport;
+import walkingkooka.net.http.server.HttpRequest;
+import walkingkooka.net.http.server.HttpRequests;
+import walkingkooka.net.http.server.HttpResponse;
+import walkingkooka.net.http.server.HttpResponses;
+import walkingkooka.reflect.ClassTesting2;
+import walkingkooka.reflect.JavaVisibility;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class FetchJavaNetHttpClientBatchTest implements ClassTesting2<FetchJavaNetHttpClientBatch> {
+
+    @Test
+    public void testWithNullFetchFails() {
+        assertThrows(NullPointerException.class, () -> FetchJavaNetHttpClientBatch.with(null, 1));
+    }
+
+    @Test
+    public void testWithInvalidMaxInFlightFails() {
+        assertThrows(IllegalArgumentException.class, () -> FetchJavaNetHttpClientBatch.with((r) -> null, 0));
+    }
+
+    @Test
+    public void testApplyEmpty() {
+        this.checkEquals(0, FetchJavaNetHttpClientBatch.with((r) -> null, 1).apply(new ArrayList<>()).size());
+    }
+
+    @Test
+    public void testApplyMaxInFlight() throws Exception {
+        final List<HttpRequest> sent = new ArrayList<>();
+        final List<CompletableFuture<HttpResponse>> pending = new ArrayList<>();
+
+        final HttpRequest request1 = this.request("/1");
+        final HttpRequest request2 = this.request("/2");
+        final HttpRequest request3 = this.request("/3");
+
+        final List<CompletableFuture<HttpResponse>> responses = FetchJavaNetHttpClientBatch.with((r) -> {
+            sent.add(r);
+            final CompletableFuture<HttpResponse> future = new CompletableFuture<>();
+            pending.add(future);
+            return future;
+        }, 2).apply(Arrays.asList(request1, request2, request3));
+
+        this.checkEquals(Arrays.asList(request1, request2), sent, "only 2 requests should be in flight");
+
+        final HttpResponse response2 = this.response();
+        pending.get(1).complete(response2);
+
+        this.checkEquals(Arrays.asList(request1, request2, request3), sent, "3rd request should be sent after 2nd completes");
+        assertSame(response2, responses.get(1).get());
+        this.checkEquals(false, responses.get(0).isDone(), "1st response should not be done");
+
+        final HttpResponse response1 = this.response();
+        final HttpResponse response3 = this.response();
+        pending.get(2).complete(response3);
+        pending.get(0).complete(response1);
+
+        assertSame(response1, responses.get(0).get());
+        assertSame(response3, responses.get(2).get());
+    }
+
+    @Test
+    public void testApplyFailureDoesntCancelBatch() throws Exception {
+        final HttpResponse response = this.response();
+
+        final List<CompletableFuture<HttpResponse>> responses = FetchJavaNetHttpClientBatch.with((r) -> {
+            if (r.url().value().equals("/1")) {
+                throw new IllegalStateException("Fail123");
+            }
+            return CompletableFuture.completedFuture(response);
+        }, 1).apply(Arrays.asList(this.request("/1"), this.request("/2")));
+
+        final ExecutionException thrown = assertThrows(ExecutionException.class, () -> responses.get(0).get());
+        this.checkEquals(FetchException.class, thrown.getCause().getClass(), () -> "" + thrown.getCause());
+
+        assertSame(response, responses.get(1).get());
+    }
+
+    private HttpRequest request(final String url) {
+        return HttpRequests.value(HttpMethod.GET,
+                HttpTransport.UNSECURED,
+                Url.parseRelative(url),
+                HttpProtocolVersion.VERSION_1_1,
+                HttpEntity.EMPTY);
+    }
+
+    private HttpResponse response() {
+        final HttpResponse response = HttpResponses.recording();
+        response.setStatus(HttpStatusCode.OK.status());
+        return response;
+    }
+
+    @Override
+    public Class<FetchJavaNetHttpClientBatch> type() {
+        return FetchJavaNetHttpClientBatch.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PACKAGE_PRIVATE;
+    }
+}
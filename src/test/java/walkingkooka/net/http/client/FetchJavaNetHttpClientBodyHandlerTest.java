@@ -17,14 +17,15 @@
 
 package walkingkooka.net.http.client;
 
+import walkingkooka.Cast;
 import walkingkooka.reflect.ClassTesting2;
 import walkingkooka.reflect.JavaVisibility;
 
-public final class FetchJavaNetHttpClientBodyHandlerTest implements ClassTesting2<FetchJavaNetHttpClientBodyHandler> {
+public final class FetchJavaNetHttpClientBodyHandlerTest implements ClassTesting2<FetchJavaNetHttpClientBodyHandler<?>> {
 
     @Override
-    public Class<FetchJavaNetHttpClientBodyHandler> type() {
-        return FetchJavaNetHttpClientBodyHandler.class;
+    public Class<FetchJavaNetHttpClientBodyHandler<?>> type() {
+        return Cast.to(FetchJavaNetHttpClientBodyHandler.class);
     }
 
     @Override
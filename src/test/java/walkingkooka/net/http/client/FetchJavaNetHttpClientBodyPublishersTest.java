@@ -0,0 +1,109 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.net.http.client;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.reflect.ClassTesting2;
+import walkingkooka.reflect.JavaVisibility;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class FetchJavaNetHttpClientBodyPublishersTest implements ClassTesting2<FetchJavaNetHttpClientBodyPublishers> {
+
+    @Test
+    public void testFileNullFails() {
+        assertThrows(NullPointerException.class, () -> FetchJavaNetHttpClientBodyPublishers.file(null));
+    }
+
+    @Test
+    public void testFileMissingFails() {
+        assertThrows(FetchException.class, () -> FetchJavaNetHttpClientBodyPublishers.file(Paths.get("/does/not/exist/file123")));
+    }
+
+    @Test
+    public void testFileContentLength() throws IOException {
+        final Path file = Files.createTempFile(this.getClass().getSimpleName(), ".bin");
+        try {
+            Files.write(file, new byte[123]);
+
+            this.checkEquals(123L, FetchJavaNetHttpClientBodyPublishers.file(file).contentLength());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testFileChannelContentLength() throws IOException {
+        final Path file = Files.createTempFile(this.getClass().getSimpleName(), ".bin");
+        try {
+            Files.write(file, new byte[123]);
+
+            try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                this.checkEquals(100L, FetchJavaNetHttpClientBodyPublishers.fileChannel(channel, 23, 100).contentLength());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testFileChannelInvalidPositionFails() throws IOException {
+        final Path file = Files.createTempFile(this.getClass().getSimpleName(), ".bin");
+        try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            assertThrows(IllegalArgumentException.class, () -> FetchJavaNetHttpClientBodyPublishers.fileChannel(channel, -1, 1));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testByteBufferNullFails() {
+        assertThrows(NullPointerException.class, () -> FetchJavaNetHttpClientBodyPublishers.byteBuffer(null));
+    }
+
+    @Test
+    public void testByteBufferContentLength() {
+        final ByteBuffer buffer = ByteBuffer.allocate(100);
+        buffer.position(10);
+
+        this.checkEquals(90L, FetchJavaNetHttpClientBodyPublishers.byteBuffer(buffer).contentLength());
+    }
+
+    @Test
+    public void testByteBufferEmpty() {
+        this.checkEquals(0L, FetchJavaNetHttpClientBodyPublishers.byteBuffer(ByteBuffer.allocate(0)).contentLength());
+    }
+
+    @Override
+    public Class<FetchJavaNetHttpClientBodyPublishers> type() {
+        return FetchJavaNetHttpClientBodyPublishers.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PACKAGE_PRIVATE;
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.net.http.client;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.reflect.ClassTesting2;
+import walkingkooka.reflect.JavaVisibility;
+
+import java.net.http.HttpClient.Redirect;
+import java.net.http.HttpClient.Version;
+import java.time.Duration;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class FetchJavaNetHttpClientBuilderTest implements ClassTesting2<FetchJavaNetHttpClientBuilder> {
+
+    @Test
+    public void testPriorityInvalidFails() {
+        assertThrows(IllegalArgumentException.class, () -> FetchJavaNetHttpClientBuilder.empty().priority(0));
+    }
+
+    @Test
+    public void testEqualsEmpty() {
+        this.checkEquals(FetchJavaNetHttpClientBuilder.empty(), FetchJavaNetHttpClientBuilder.empty());
+    }
+
+    @Test
+    public void testEqualsSameConfiguration() {
+        final Executor executor = Runnable::run;
+
+        this.checkEquals(this.createBuilder(executor), this.createBuilder(executor));
+        this.checkEquals(this.createBuilder(executor).hashCode(), this.createBuilder(executor).hashCode());
+    }
+
+    @Test
+    public void testEqualsDifferentExecutor() {
+        this.checkNotEquals(this.createBuilder(Runnable::run), this.createBuilder(Runnable::run));
+    }
+
+    @Test
+    public void testEqualsDifferentVersion() {
+        final Executor executor = Runnable::run;
+
+        this.checkNotEquals(this.createBuilder(executor),
+                this.createBuilder(executor).version(Version.HTTP_2));
+    }
+
+    @Test
+    public void testEqualsDifferentConnectTimeout() {
+        final Executor executor = Runnable::run;
+
+        this.checkNotEquals(this.createBuilder(executor),
+                this.createBuilder(executor).connectTimeout(Duration.ofSeconds(2)));
+    }
+
+    private FetchJavaNetHttpClientBuilder createBuilder(final Executor executor) {
+        final FetchJavaNetHttpClientBuilder builder = FetchJavaNetHttpClientBuilder.empty();
+        builder.connectTimeout(Duration.ofSeconds(1))
+                .executor(executor)
+                .followRedirects(Redirect.NEVER)
+                .version(Version.HTTP_1_1);
+        return builder;
+    }
+
+    @Override
+    public Class<FetchJavaNetHttpClientBuilder> type() {
+        return FetchJavaNetHttpClientBuilder.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PACKAGE_PRIVATE;
+    }
+}
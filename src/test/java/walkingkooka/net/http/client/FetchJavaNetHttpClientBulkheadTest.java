@@ -0,0 +1,293 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.net.http.client;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.net.AbsoluteUrl;
+import walkingkooka.net.Url;
+import walkingkooka.net.http.HttpEntity;
+import walkingkooka.net.http.HttpMethod;
+import walkingkooka.net.http.HttpProtocolVersion;
+import walkingkooka.net.http.HttpStatusCode;
+import walkingkooka.net.http.HttpTransport;
+import walkingkooka.net.http.server.HttpRequest;
+import walkingkooka.net.http.server.HttpRequests;
+import walkingkooka.net.http.server.HttpResponse;
+import walkingkooka.reflect.ClassTesting2;
+import walkingkooka.reflect.JavaVisibility;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class FetchJavaNetHttpClientBulkheadTest implements ClassTesting2<FetchJavaNetHttpClientBulkhead> {
+
+    private final static String HOST1 = "http://host1:80";
+
+    @Test
+    public void testWithNullFetchFails() {
+        assertThrows(NullPointerException.class, () -> FetchJavaNetHttpClientBulkhead.with(null, this.customizer(), 1, 1, 1));
+    }
+
+    @Test
+    public void testWithNullCustomizerFails() {
+        assertThrows(NullPointerException.class, () -> FetchJavaNetHttpClientBulkhead.with(this::fetch, null, 1, 1, 1));
+    }
+
+    @Test
+    public void testWithInvalidMaxConcurrentFails() {
+        assertThrows(IllegalArgumentException.class, () -> FetchJavaNetHttpClientBulkhead.with(this::fetch, this.customizer(), 0, 1, 1));
+    }
+
+    @Test
+    public void testWithInvalidMaxWaitingFails() {
+        assertThrows(IllegalArgumentException.class, () -> FetchJavaNetHttpClientBulkhead.with(this::fetch, this.customizer(), 1, -1, 1));
+    }
+
+    @Test
+    public void testWithInvalidMaxWaitFails() {
+        assertThrows(IllegalArgumentException.class, () -> FetchJavaNetHttpClientBulkhead.with(this::fetch, this.customizer(), 1, 1, -1));
+    }
+
+    @Test
+    public void testWithinLimit() {
+        this.release.countDown();
+
+        final FetchJavaNetHttpClientBulkhead bulkhead = this.bulkhead(1, 0, 0);
+        this.checkEquals("/host1/path", bulkhead.apply(this.request("/host1/path")).entities().get(0).bodyText());
+        this.checkEquals("/host1/path", bulkhead.apply(this.request("/host1/path")).entities().get(0).bodyText());
+
+        this.checkEquals(0, bulkhead.inFlight(HOST1), "in flight");
+        this.checkEquals(2, this.sent.get(), "sent");
+    }
+
+    @Test
+    public void testFullFailsFast() throws Exception {
+        final FetchJavaNetHttpClientBulkhead bulkhead = this.bulkhead(1, 0, 5000);
+        final CompletableFuture<HttpResponse> first = this.sendAsync(bulkhead, "/host1/first");
+        this.waitFor(() -> bulkhead.inFlight(HOST1), 1);
+
+        final FetchBulkheadFullException thrown = assertThrows(FetchBulkheadFullException.class, () -> bulkhead.apply(this.request("/host1/second")));
+        this.checkEquals("Bulkhead full for " + HOST1 + ", 1 in flight and 0 waiting", thrown.getMessage());
+
+        this.release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        this.checkEquals(1, this.sent.get(), "sent");
+    }
+
+    @Test
+    public void testWaiterProceeds() throws Exception {
+        final FetchJavaNetHttpClientBulkhead bulkhead = this.bulkhead(1, 1, 5000);
+        final CompletableFuture<HttpResponse> first = this.sendAsync(bulkhead, "/host1/first");
+        this.waitFor(() -> bulkhead.inFlight(HOST1), 1);
+
+        final CompletableFuture<HttpResponse> second = this.sendAsync(bulkhead, "/host1/second");
+        this.waitFor(() -> bulkhead.waiting(HOST1), 1);
+
+        // waiting queue is full
+        assertThrows(FetchBulkheadFullException.class, () -> bulkhead.apply(this.request("/host1/third")));
+
+        this.release.countDown();
+        this.checkEquals("/host1/first", first.get(5, TimeUnit.SECONDS).entities().get(0).bodyText());
+        this.checkEquals("/host1/second", second.get(5, TimeUnit.SECONDS).entities().get(0).bodyText());
+
+        this.checkEquals(2, this.sent.get(), "sent");
+        this.checkEquals(0, bulkhead.inFlight(HOST1), "in flight");
+        this.checkEquals(0, bulkhead.waiting(HOST1), "waiting");
+    }
+
+    @Test
+    public void testWaitTimeout() throws Exception {
+        final FetchJavaNetHttpClientBulkhead bulkhead = this.bulkhead(1, 1, 10);
+        final CompletableFuture<HttpResponse> first = this.sendAsync(bulkhead, "/host1/first");
+        this.waitFor(() -> bulkhead.inFlight(HOST1), 1);
+
+        final FetchBulkheadFullException thrown = assertThrows(FetchBulkheadFullException.class, () -> bulkhead.apply(this.request("/host1/second")));
+        this.checkEquals("Bulkhead full for " + HOST1 + ", waited 10ms", thrown.getMessage());
+        this.checkEquals(0, bulkhead.waiting(HOST1), "waiting");
+
+        this.release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testOriginsIndependent() throws Exception {
+        final FetchJavaNetHttpClientBulkhead bulkhead = this.bulkhead(1, 0, 0);
+        final CompletableFuture<HttpResponse> first = this.sendAsync(bulkhead, "/host1/first");
+        this.waitFor(() -> bulkhead.inFlight(HOST1), 1);
+
+        final CompletableFuture<HttpResponse> second = this.sendAsync(bulkhead, "/host2/second");
+        this.waitFor(() -> bulkhead.inFlight("http://host2:80"), 1);
+
+        this.release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+        this.checkEquals(2, this.sent.get(), "sent");
+    }
+
+    @Test
+    public void testFailureReleasesPermit() {
+        final FetchJavaNetHttpClientBulkhead bulkhead = FetchJavaNetHttpClientBulkhead.with((r) -> {
+                    throw new FetchException("Connection refused");
+                },
+                this.customizer(),
+                1,
+                0,
+                0);
+
+        assertThrows(FetchException.class, () -> bulkhead.apply(this.request("/host1/path")));
+        assertThrows(FetchException.class, () -> bulkhead.apply(this.request("/host1/path")));
+        this.checkEquals(0, bulkhead.inFlight(HOST1), "in flight");
+    }
+
+    @Test
+    public void testIdleOriginRemoved() throws Exception {
+        final FetchJavaNetHttpClientBulkhead bulkhead = this.bulkhead(1, 1, 5000);
+        final CompletableFuture<HttpResponse> first = this.sendAsync(bulkhead, "/host1/first");
+        this.waitFor(() -> bulkhead.inFlight(HOST1), 1);
+
+        final CompletableFuture<HttpResponse> second = this.sendAsync(bulkhead, "/host1/second");
+        this.waitFor(() -> bulkhead.waiting(HOST1), 1);
+
+        final CompletableFuture<HttpResponse> third = this.sendAsync(bulkhead, "/host2/third");
+        this.waitFor(bulkhead::origins, 2);
+
+        this.release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+        third.get(5, TimeUnit.SECONDS);
+
+        this.checkEquals(0, bulkhead.origins(), "origins");
+    }
+
+    @Test
+    public void testFailureRemovesIdleOrigin() {
+        final FetchJavaNetHttpClientBulkhead bulkhead = FetchJavaNetHttpClientBulkhead.with((r) -> {
+                    throw new FetchException("Connection refused");
+                },
+                this.customizer(),
+                1,
+                0,
+                0);
+
+        assertThrows(FetchException.class, () -> bulkhead.apply(this.request("/host1/path")));
+        this.checkEquals(0, bulkhead.origins(), "origins");
+    }
+
+    @Test
+    public void testManyConcurrentRequestsToManyOrigins() throws Exception {
+        this.release.countDown();
+
+        final FetchJavaNetHttpClientBulkhead bulkhead = this.bulkhead(2, 100, 5000);
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<HttpResponse>> futures = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                final String url = "/host" + (i % 3) + "/path" + i;
+                futures.add(executor.submit(() -> bulkhead.apply(this.request(url))));
+            }
+            for (final Future<HttpResponse> future : futures) {
+                future.get(5, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        this.checkEquals(1000, this.sent.get(), "sent");
+        this.checkEquals(0, bulkhead.origins(), "origins");
+    }
+
+    private FetchJavaNetHttpClientBulkhead bulkhead(final int maxConcurrent,
+                                                    final int maxWaiting,
+                                                    final long maxWaitMillis) {
+        return FetchJavaNetHttpClientBulkhead.with(this::fetch,
+                this.customizer(),
+                maxConcurrent,
+                maxWaiting,
+                maxWaitMillis);
+    }
+
+    private HttpResponse fetch(final HttpRequest request) {
+        this.sent.incrementAndGet();
+        try {
+            if (!this.release.await(5, TimeUnit.SECONDS)) {
+                throw new FetchException("Not released");
+            }
+        } catch (final InterruptedException cause) {
+            throw new FetchException(cause.getMessage(), cause);
+        }
+        return Fetch.response(HttpStatusCode.OK.status(), HttpEntity.EMPTY.setBodyText(request.url().toString()));
+    }
+
+    private CompletableFuture<HttpResponse> sendAsync(final FetchJavaNetHttpClientBulkhead bulkhead,
+                                                      final String url) {
+        // each request needs its own thread as they block
+        return CompletableFuture.supplyAsync(() -> bulkhead.apply(this.request(url)),
+                (r) -> new Thread(r).start());
+    }
+
+    private void waitFor(final IntSupplier actual,
+                         final int expected) throws InterruptedException {
+        final long end = System.currentTimeMillis() + 5000;
+        while (actual.getAsInt() != expected && System.currentTimeMillis() < end) {
+            Thread.sleep(1);
+        }
+        this.checkEquals(expected, actual.getAsInt());
+    }
+
+    private FetchCustomizer customizer() {
+        return new FakeFetchCustomizer() {
+            @Override
+            public AbsoluteUrl httpClientUrl(final HttpRequest request) {
+                // the first path component is the host
+                return Url.parseAbsolute("http:/" + request.url());
+            }
+        };
+    }
+
+    private HttpRequest request(final String url) {
+        return HttpRequests.value(HttpMethod.GET,
+                HttpTransport.UNSECURED,
+                Url.parseRelative(url),
+                HttpProtocolVersion.VERSION_1_1,
+                HttpEntity.EMPTY);
+    }
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private final AtomicInteger sent = new AtomicInteger();
+
+    @Override
+    public Class<FetchJavaNetHttpClientBulkhead> type() {
+        return FetchJavaNetHttpClientBulkhead.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PACKAGE_PRIVATE;
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.net.http.client;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.reflect.ClassTesting2;
+import walkingkooka.reflect.JavaVisibility;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Flow;
+
+public final class FetchJavaNetHttpClientByteBufferPublisherTest implements ClassTesting2<FetchJavaNetHttpClientByteBufferPublisher> {
+
+    @Test
+    public void testContentLength() {
+        this.checkEquals(5L + 7L,
+                FetchJavaNetHttpClientByteBufferPublisher.with(ByteBuffer.allocate(5), ByteBuffer.allocate(7))
+                        .contentLength());
+    }
+
+    @Test
+    public void testPublishesChunks() {
+        final byte[] bytes = bytes(FetchJavaNetHttpClientByteBufferPublisher.CHUNK * 2 + 123);
+
+        final Collector collector = new Collector(Long.MAX_VALUE);
+        FetchJavaNetHttpClientByteBufferPublisher.with(ByteBuffer.wrap(bytes))
+                .subscribe(collector);
+
+        this.checkEquals(3, collector.chunks.size(), "chunks");
+        this.checkEquals(FetchJavaNetHttpClientByteBufferPublisher.CHUNK, collector.chunks.get(0), "first chunk size");
+        this.checkEquals(123, collector.chunks.get(2), "last chunk size");
+        this.checkEquals(true, collector.completed, "completed");
+        this.checkBytes(bytes, collector);
+    }
+
+    @Test
+    public void testPublishesSeveralBuffers() {
+        final byte[] bytes = bytes(10);
+
+        final Collector collector = new Collector(Long.MAX_VALUE);
+        FetchJavaNetHttpClientByteBufferPublisher.with(ByteBuffer.wrap(bytes, 0, 3),
+                ByteBuffer.allocate(0),
+                ByteBuffer.wrap(bytes, 3, 7))
+                .subscribe(collector);
+
+        this.checkEquals(true, collector.completed, "completed");
+        this.checkBytes(bytes, collector);
+    }
+
+    @Test
+    public void testRespectsDemand() {
+        final byte[] bytes = bytes(FetchJavaNetHttpClientByteBufferPublisher.CHUNK * 3);
+
+        final Collector collector = new Collector(1);
+        FetchJavaNetHttpClientByteBufferPublisher.with(ByteBuffer.wrap(bytes))
+                .subscribe(collector);
+
+        this.checkEquals(1, collector.chunks.size(), "chunks after first request");
+        this.checkEquals(false, collector.completed, "completed");
+
+        collector.subscription.request(5);
+        this.checkEquals(3, collector.chunks.size(), "chunks after second request");
+        this.checkEquals(true, collector.completed, "completed");
+        this.checkBytes(bytes, collector);
+    }
+
+    @Test
+    public void testCancel() {
+        final Collector collector = new Collector(0);
+        FetchJavaNetHttpClientByteBufferPublisher.with(ByteBuffer.wrap(bytes(FetchJavaNetHttpClientByteBufferPublisher.CHUNK * 2)))
+                .subscribe(collector);
+
+        collector.subscription.cancel();
+        collector.subscription.request(1);
+
+        this.checkEquals(0, collector.chunks.size(), "chunks");
+        this.checkEquals(false, collector.completed, "completed");
+    }
+
+    @Test
+    public void testInvalidRequest() {
+        final Collector collector = new Collector(0);
+        FetchJavaNetHttpClientByteBufferPublisher.with(ByteBuffer.wrap(bytes(1)))
+                .subscribe(collector);
+
+        collector.subscription.request(0);
+        this.checkEquals(true, collector.error instanceof IllegalArgumentException, "error " + collector.error);
+    }
+
+    @Test
+    public void testSubscribeTwice() {
+        final byte[] bytes = bytes(100);
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        final FetchJavaNetHttpClientByteBufferPublisher publisher = FetchJavaNetHttpClientByteBufferPublisher.with(buffer);
+
+        final Collector first = new Collector(Long.MAX_VALUE);
+        publisher.subscribe(first);
+
+        final Collector second = new Collector(Long.MAX_VALUE);
+        publisher.subscribe(second);
+
+        this.checkBytes(bytes, first);
+        this.checkBytes(bytes, second);
+        this.checkEquals(0, buffer.position(), "original buffer position");
+    }
+
+    private static byte[] bytes(final int length) {
+        final byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) i;
+        }
+        return bytes;
+    }
+
+    private void checkBytes(final byte[] expected,
+                            final Collector collector) {
+        this.checkEquals(true,
+                Arrays.equals(expected, collector.bytes.toByteArray()),
+                "bytes");
+    }
+
+    private final static class Collector implements Flow.Subscriber<ByteBuffer> {
+
+        Collector(final long initial) {
+            this.initial = initial;
+        }
+
+        @Override
+        public void onSubscribe(final Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (this.initial > 0) {
+                subscription.request(this.initial);
+            }
+        }
+
+        @Override
+        public void onNext(final ByteBuffer item) {
+            this.chunks.add(item.remaining());
+            while (item.hasRemaining()) {
+                this.bytes.write(item.get());
+            }
+        }
+
+        @Override
+        public void onError(final Throwable throwable) {
+            this.error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            this.completed = true;
+        }
+
+        private final long initial;
+        Flow.Subscription subscription;
+        final List<Integer> chunks = new ArrayList<>();
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Throwable error;
+        boolean completed;
+    }
+
+    @Override
+    public Class<FetchJavaNetHttpClientByteBufferPublisher> type() {
+        return FetchJavaNetHttpClientByteBufferPublisher.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PACKAGE_PRIVATE;
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.net.http.client;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.reflect.ClassTesting2;
+import walkingkooka.reflect.JavaVisibility;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class FetchJavaNetHttpClientCharsetsTest implements ClassTesting2<FetchJavaNetHttpClientCharsets> {
+
+    private final static Charset DEFAULT = StandardCharsets.UTF_16;
+
+    @Test
+    public void testWithZeroCapacityFails() {
+        assertThrows(IllegalArgumentException.class, () -> FetchJavaNetHttpClientCharsets.with(0));
+    }
+
+    @Test
+    public void testWithNotPowerOfTwoCapacityFails() {
+        assertThrows(IllegalArgumentException.class, () -> FetchJavaNetHttpClientCharsets.with(12));
+    }
+
+    @Test
+    public void testCharsetNullFails() {
+        assertThrows(NullPointerException.class, () -> FetchJavaNetHttpClientCharsets.charset(null, DEFAULT));
+    }
+
+    @Test
+    public void testCharsetWithoutCharset() {
+        this.charsetAndCheck("text/plain", DEFAULT);
+    }
+
+    @Test
+    public void testCharsetUtf8() {
+        this.charsetAndCheck("text/plain;charset=UTF-8", StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testCharsetUtf8LowerCase() {
+        this.charsetAndCheck("text/plain; charset=utf-8", StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testCharsetIso88591() {
+        this.charsetAndCheck("text/html;charset=ISO-8859-1", StandardCharsets.ISO_8859_1);
+    }
+
+    @Test
+    public void testCharsetUsAscii() {
+        this.charsetAndCheck("text/html;charset=US-ASCII", StandardCharsets.US_ASCII);
+    }
+
+    @Test
+    public void testCharsetOther() {
+        this.charsetAndCheck("text/plain;charset=UTF-16LE", StandardCharsets.UTF_16LE);
+    }
+
+    @Test
+    public void testCharsetDifferentDefaults() {
+        this.checkEquals(StandardCharsets.UTF_16,
+                FetchJavaNetHttpClientCharsets.charset("application/json", StandardCharsets.UTF_16));
+        this.checkEquals(StandardCharsets.UTF_8,
+                FetchJavaNetHttpClientCharsets.charset("application/json", StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testGetCached() {
+        final FetchJavaNetHttpClientCharsets charsets = this.charsets();
+        final String contentType = "text/plain;charset=UTF-16BE";
+        this.checkEquals(StandardCharsets.UTF_16BE, charsets.get(contentType, DEFAULT));
+        this.checkEquals(StandardCharsets.UTF_16BE, charsets.get(contentType, DEFAULT));
+        this.checkEquals(1, charsets.size());
+    }
+
+    @Test
+    public void testGetWithoutParametersCached() {
+        final FetchJavaNetHttpClientCharsets charsets = this.charsets();
+        this.checkEquals(DEFAULT, charsets.get("application/json", DEFAULT));
+        this.checkEquals(1, charsets.size());
+    }
+
+    @Test
+    public void testGetDifferentDefaultsCachedSeparately() {
+        final FetchJavaNetHttpClientCharsets charsets = this.charsets();
+        this.checkEquals(StandardCharsets.UTF_16, charsets.get("application/json", StandardCharsets.UTF_16));
+        this.checkEquals(StandardCharsets.UTF_8, charsets.get("application/json", StandardCharsets.UTF_8));
+        this.checkEquals(StandardCharsets.UTF_16, charsets.get("application/json", StandardCharsets.UTF_16));
+    }
+
+    @Test
+    public void testGetStandardCharsetNotCached() {
+        final FetchJavaNetHttpClientCharsets charsets = this.charsets();
+        this.checkEquals(StandardCharsets.UTF_8, charsets.get("text/plain;charset=UTF-8", DEFAULT));
+        this.checkEquals(0, charsets.size());
+    }
+
+    @Test
+    public void testGetOtherParametersNotCached() {
+        final FetchJavaNetHttpClientCharsets charsets = this.charsets();
+        this.checkEquals(DEFAULT, charsets.get("multipart/form-data; boundary=123", DEFAULT));
+        this.checkEquals(0, charsets.size());
+    }
+
+    @Test
+    public void testGetMissingDefaultNotCached() {
+        final FetchJavaNetHttpClientCharsets charsets = this.charsets();
+        this.checkEquals(null, charsets.get("application/octet-stream", null));
+        this.checkEquals(0, charsets.size());
+    }
+
+    @Test
+    public void testGetBounded() {
+        final FetchJavaNetHttpClientCharsets charsets = FetchJavaNetHttpClientCharsets.with(16);
+
+        for (int i = 0; i < 1000; i++) {
+            final String contentType = "application/x-random-" + i;
+            this.checkEquals(DEFAULT, charsets.get(contentType, DEFAULT));
+            this.checkEquals(true, charsets.size() <= 16, () -> "size " + charsets);
+        }
+    }
+
+    @Test
+    public void testGetCachedAgainAfterFlood() {
+        final FetchJavaNetHttpClientCharsets charsets = FetchJavaNetHttpClientCharsets.with(16);
+        for (int i = 0; i < 1000; i++) {
+            charsets.get("application/x-random-" + i, DEFAULT);
+        }
+
+        final String contentType = "text/plain;charset=UTF-16LE";
+        charsets.get(contentType, DEFAULT);
+        final int size = charsets.size();
+        this.checkEquals(StandardCharsets.UTF_16LE, charsets.get(contentType, DEFAULT));
+        this.checkEquals(size, charsets.size());
+    }
+
+    private FetchJavaNetHttpClientCharsets charsets() {
+        return FetchJavaNetHttpClientCharsets.with(FetchJavaNetHttpClientCharsets.MAX);
+    }
+
+    private void charsetAndCheck(final String contentType,
+                                 final Charset expected) {
+        this.checkEquals(expected,
+                FetchJavaNetHttpClientCharsets.charset(contentType, DEFAULT),
+                () -> "charset " + contentType);
+    }
+
+    @Test
+    public void testCacheableWithoutParameters() {
+        this.cacheableAndCheck("text/plain", true);
+    }
+
+    @Test
+    public void testCacheableCharset() {
+        this.cacheableAndCheck("text/plain; CHARSET=UTF-16", true);
+    }
+
+    @Test
+    public void testCacheableOtherParameter() {
+        this.cacheableAndCheck("multipart/form-data;boundary=123", false);
+    }
+
+    @Test
+    public void testCacheableSeveralParameters() {
+        this.cacheableAndCheck("text/plain;charset=UTF-16;x=1", false);
+    }
+
+    private void cacheableAndCheck(final String contentType,
+                                   final boolean expected) {
+        this.checkEquals(expected,
+                FetchJavaNetHttpClientCharsets.cacheable(contentType),
+                () -> "cacheable " + contentType);
+    }
+
+    @Test
+    public void testStandardCharsetNone() {
+        this.standardCharsetAndCheck("text/plain", null);
+    }
+
+    @Test
+    public void testStandardCharsetUtf8() {
+        this.standardCharsetAndCheck("text/plain; charset=utf-8 ", StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testStandardCharsetOther() {
+        this.standardCharsetAndCheck("text/plain;charset=UTF-16", null);
+    }
+
+    @Test
+    public void testStandardCharsetQuoted() {
+        this.standardCharsetAndCheck("text/plain;charset=\"UTF-8\"", null);
+    }
+
+    @Test
+    public void testStandardCharsetSeveralParameters() {
+        this.standardCharsetAndCheck("text/plain;charset=UTF-8;x=1", null);
+    }
+
+    @Test
+    public void testStandardCharsetPrefixOnly() {
+        this.standardCharsetAndCheck("text/plain;charset=UTF-8X", null);
+    }
+
+    private void standardCharsetAndCheck(final String contentType,
+                                         final Charset expected) {
+        this.checkEquals(expected,
+                FetchJavaNetHttpClientCharsets.standardCharset(contentType),
+                () -> "standardCharset " + contentType);
+    }
+
+    @Override
+    public Class<FetchJavaNetHttpClientCharsets> type() {
+        return FetchJavaNetHttpClientCharsets.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PACKAGE_PRIVATE;
+    }
+}
@@ -0,0 +1,612 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.net.http.client;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.net.AbsoluteUrl;
+import walkingkooka.net.Url;
+import walkingkooka.net.http.HttpEntity;
+import walkingkooka.net.http.HttpMethod;
+import walkingkooka.net.http.HttpProtocolVersion;
+import walkingkooka.net.http.HttpStatus;
+import walkingkooka.net.http.HttpStatusCode;
+import walkingkooka.net.http.HttpTransport;
+import walkingkooka.net.http.server.HttpRequest;
+import walkingkooka.net.http.server.HttpRequests;
+import walkingkooka.net.http.server.HttpResponse;
+import walkingkooka.net.http.server.HttpResponses;
+import walkingkooka.reflect.ClassTesting2;
+import walkingkooka.reflect.JavaVisibility;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public final class FetchJavaNetHttpClientCircuitBreakerTest implements ClassTesting2<FetchJavaNetHttpClientCircuitBreaker> {
+
+    private final static String HOST1 = "http://host1:80";
+    private final static String HOST2 = "http://host2:80";
+
+    private final static int WINDOW = 4;
+    private final static double FAILURE_RATE = 0.5;
+    private final static long SLOW = 1000;
+    private final static double SLOW_RATE = 0.75;
+    private final static long OPEN = 30_000;
+
+    @Test
+    public void testWithNullFetchFails() {
+        assertThrows(NullPointerException.class, () -> FetchJavaNetHttpClientCircuitBreaker.with(null, this.customizer(), WINDOW, FAILURE_RATE, SLOW, SLOW_RATE, OPEN, this.listener()));
+    }
+
+    @Test
+    public void testWithNullCustomizerFails() {
+        assertThrows(NullPointerException.class, () -> FetchJavaNetHttpClientCircuitBreaker.with(this::fetch, null, WINDOW, FAILURE_RATE, SLOW, SLOW_RATE, OPEN, this.listener()));
+    }
+
+    @Test
+    public void testWithInvalidWindowSizeFails() {
+        assertThrows(IllegalArgumentException.class, () -> FetchJavaNetHttpClientCircuitBreaker.with(this::fetch, this.customizer(), 0, FAILURE_RATE, SLOW, SLOW_RATE, OPEN, this.listener()));
+    }
+
+    @Test
+    public void testWithInvalidFailureRateFails() {
+        assertThrows(IllegalArgumentException.class, () -> FetchJavaNetHttpClientCircuitBreaker.with(this::fetch, this.customizer(), WINDOW, 0, SLOW, SLOW_RATE, OPEN, this.listener()));
+    }
+
+    @Test
+    public void testWithInvalidSlowCallMillisFails() {
+        assertThrows(IllegalArgumentException.class, () -> FetchJavaNetHttpClientCircuitBreaker.with(this::fetch, this.customizer(), WINDOW, FAILURE_RATE, 0, SLOW_RATE, OPEN, this.listener()));
+    }
+
+    @Test
+    public void testWithInvalidSlowCallRateFails() {
+        assertThrows(IllegalArgumentException.class, () -> FetchJavaNetHttpClientCircuitBreaker.with(this::fetch, this.customizer(), WINDOW, FAILURE_RATE, SLOW, 1.5, OPEN, this.listener()));
+    }
+
+    @Test
+    public void testWithInvalidOpenMillisFails() {
+        assertThrows(IllegalArgumentException.class, () -> FetchJavaNetHttpClientCircuitBreaker.with(this::fetch, this.customizer(), WINDOW, FAILURE_RATE, SLOW, SLOW_RATE, -1, this.listener()));
+    }
+
+    @Test
+    public void testWithNullListenerFails() {
+        assertThrows(NullPointerException.class, () -> FetchJavaNetHttpClientCircuitBreaker.with(this::fetch, this.customizer(), WINDOW, FAILURE_RATE, SLOW, SLOW_RATE, OPEN, null));
+    }
+
+    @Test
+    public void testBelowFailureRate() {
+        final FetchJavaNetHttpClientCircuitBreaker breaker = this.breaker();
+        this.send(breaker, failure(), ok(), ok(), ok(), ok());
+
+        this.checkState(breaker, HOST1, FetchCircuitBreakerState.CLOSED);
+        this.checkEvents();
+    }
+
+    @Test
+    public void testWindowNotFull() {
+        final FetchJavaNetHttpClientCircuitBreaker breaker = this.breaker();
+        this.send(breaker, failure(), failure(), failure());
+
+        this.checkState(breaker, HOST1, FetchCircuitBreakerState.CLOSED);
+    }
+
+    @Test
+    public void testOpensOnFailureRate() {
+        final FetchJavaNetHttpClientCircuitBreaker breaker = this.breaker();
+        this.send(breaker, ok(), failure(), ok(), failure());
+
+        this.checkState(breaker, HOST1, FetchCircuitBreakerState.OPEN);
+        this.checkEvents(HOST1 + " CLOSED OPEN");
+
+        final FetchCircuitBreakerOpenException thrown = assertThrows(FetchCircuitBreakerOpenException.class, () -> breaker.apply(this.request("/host1/path")));
+        this.checkEquals("Circuit open for " + HOST1, thrown.getMessage());
+        this.checkEquals(4, this.sent, "sent");
+    }
+
+    @Test
+    public void testOpensOnServerErrorStatus() {
+        final FetchJavaNetHttpClientCircuitBreaker breaker = this.breaker();
+        this.send(breaker, ok(), status(HttpStatusCode.BAD_GATEWAY.status()), ok(), status(HttpStatusCode.SERVICE_UNAVAILABLE.status()));
+
+        this.checkState(breaker, HOST1, FetchCircuitBreakerState.OPEN);
+    }
+
+    @Test
+    public void testOpensOnSlowCallRate() {
+        final FetchJavaNetHttpClientCircuitBreaker breaker = this.breaker();
+        this.send(breaker, slow(), slow(), ok(), slow());
+
+        this.checkState(breaker, HOST1, FetchCircuitBreakerState.OPEN);
+        this.checkEvents(HOST1 + " CLOSED OPEN");
+    }
+
+    @Test
+    public void testSlidingWindowForgetsOldest() {
+        final FetchJavaNetHttpClientCircuitBreaker breaker = this.breaker();
+        this.send(breaker, failure(), ok(), ok(), ok(), ok(), failure());
+        this.checkState(breaker, HOST1, FetchCircuitBreakerState.CLOSED);
+
+        this.send(breaker, failure());
+        this.checkState(breaker, HOST1, FetchCircuitBreakerState.OPEN);
+    }
+
+    @Test
+    public void testStillOpenBeforeCoolOff() {
+        final FetchJavaNetHttpClientCircuitBreaker breaker = this.open();
+        this.now += OPEN - 1;
+
+        assertThrows(FetchCircuitBreakerOpenException.class, () -> breaker.apply(this.request("/host1/path")));
+        this.checkState(breaker, HOST1, FetchCircuitBreakerState.OPEN);
+    }
+
+    @Test
+    public void testHalfOpenProbesClose() {
+        final FetchJavaNetHttpClientCircuitBreaker breaker = this.open();
+        this.now += OPEN;
+
+        this.send(breaker, ok());
+        this.checkState(breaker, HOST1, FetchCircuitBreakerState.HALF_OPEN);
+
+        for (int i = 1; i < FetchJavaNetHttpClientCircuitBreaker.PROBES; i++) {
+            this.send(breaker, ok());
+        }
+        this.checkState(breaker, HOST1, FetchCircuitBreakerState.CLOSED);
+        this.checkEvents(HOST1 + " CLOSED OPEN", HOST1 + " OPEN HALF_OPEN", HOST1 + " HALF_OPEN CLOSED");
+    }
+
+    @Test
+    public void testHalfOpenProbeFailureReopens() {
+        final FetchJavaNetHttpClientCircuitBreaker breaker = this.open();
+        this.now += OPEN;
+
+        this.send(breaker, ok(), failure());
+        this.checkState(breaker, HOST1, FetchCircuitBreakerState.OPEN);
+        this.checkEvents(HOST1 + " CLOSED OPEN", HOST1 + " OPEN HALF_OPEN", HOST1 + " HALF_OPEN OPEN");
+
+        // a new cool off starts
+        assertThrows(FetchCircuitBreakerOpenException.class, () -> breaker.apply(this.request("/host1/path")));
+    }
+
+    @Test
+    public void testHalfOpenSlowProbeReopens() {
+        final FetchJavaNetHttpClientCircuitBreaker breaker = this.open();
+        this.now += OPEN;
+
+        this.send(breaker, slow());
+        this.checkState(breaker, HOST1, FetchCircuitBreakerState.OPEN);
+    }
+
+    @Test
+    public void testHalfOpenLimitsProbes() {
+        final FetchJavaNetHttpClientCircuitBreaker breaker = this.open();
+        this.now += OPEN;
+
+        final List<FetchCircuitBreakerOpenException> rejected = new ArrayList<>();
+
+        // while the first probe is in flight the remaining probes are sent and any more are rejected
+        this.outcomes.add((r) -> {
+            for (int i = 1; i < FetchJavaNetHttpClientCircuitBreaker.PROBES; i++) {
+                this.outcomes.add(ok());
+                breaker.apply(this.request("/host1/probe"));
+            }
+            rejected.add(assertThrows(FetchCircuitBreakerOpenException.class, () -> breaker.apply(this.request("/host1/rejected"))));
+            return ok().apply(r);
+        });
+        breaker.apply(this.request("/host1/first"));
+
+        this.checkEquals(1, rejected.size(), "rejected");
+        this.checkEquals("Circuit half open for " + HOST1 + ", waiting for probes", rejected.get(0).getMessage());
+        this.checkState(breaker, HOST1, FetchCircuitBreakerState.CLOSED);
+    }
+
+    @Test
+    public void testHalfOpenProbeErrorReopens() {
+        final FetchJavaNetHttpClientCircuitBreaker breaker = this.open();
+        this.now += OPEN;
+
+        final Error error = new Error("probe");
+        this.outcomes.add((r) -> {
+            throw error;
+        });
+        assertSame(error, assertThrows(Error.class, () -> breaker.apply(this.request("/host1/probe"))));
+
+        this.checkState(breaker, HOST1, FetchCircuitBreakerState.OPEN);
+        this.checkEvents(HOST1 + " CLOSED OPEN", HOST1 + " OPEN HALF_OPEN", HOST1 + " HALF_OPEN OPEN");
+    }
+
+    @Test
+    public void testHalfOpenProbesNotReturnedReopens() {
+        final FetchJavaNetHttpClientCircuitBreaker breaker = this.open();
+        this.now += OPEN;
+
+        final List<FetchCircuitBreakerOpenException> rejected = new ArrayList<>();
+
+        // the probes are still in flight after another cool off, the next request abandons them and the circuit opens again
+        this.outcomes.add((r) -> {
+            for (int i = 1; i < FetchJavaNetHttpClientCircuitBreaker.PROBES; i++) {
+                this.outcomes.add(ok());
+                breaker.apply(this.request("/host1/probe"));
+            }
+            this.now += OPEN;
+            rejected.add(assertThrows(FetchCircuitBreakerOpenException.class, () -> breaker.apply(this.request("/host1/rejected"))));
+            return ok().apply(r);
+        });
+        breaker.apply(this.request("/host1/first"));
+
+        this.checkEquals(1, rejected.size(), "rejected");
+        this.checkEquals("Circuit open for " + HOST1, rejected.get(0).getMessage());
+        this.checkState(breaker, HOST1, FetchCircuitBreakerState.OPEN);
+
+        this.now += OPEN;
+        this.send(breaker, ok());
+        this.checkState(breaker, HOST1, FetchCircuitBreakerState.HALF_OPEN);
+    }
+
+    @Test
+    public void testOutcomeFromEarlierStateIgnored() {
+        final FetchJavaNetHttpClientCircuitBreaker breaker = this.breaker();
+
+        // the first request is still in flight when the circuit opens, its failure must not restart the cool off
+        this.outcomes.add((r) -> {
+            this.send(breaker, failure(), failure(), failure(), failure());
+            this.now += OPEN;
+            throw new FetchException("Connection reset");
+        });
+        assertThrows(FetchException.class, () -> breaker.apply(this.request("/host1/first")));
+
+        this.send(breaker, ok());
+        this.checkState(breaker, HOST1, FetchCircuitBreakerState.HALF_OPEN);
+    }
+
+    @Test
+    public void testOriginsIndependent() {
+        final FetchJavaNetHttpClientCircuitBreaker breaker = this.open();
+
+        this.outcomes.add(ok());
+        this.checkEquals(200,
+                breaker.apply(this.request("/host2/path")).status().get().value().code());
+        this.checkState(breaker, HOST1, FetchCircuitBreakerState.OPEN);
+        this.checkState(breaker, HOST2, FetchCircuitBreakerState.CLOSED);
+    }
+
+    @Test
+    public void testListenerFailureIgnored() {
+        final FetchJavaNetHttpClientCircuitBreaker breaker = this.breaker(new FakeFetchCircuitBreakerListener() {
+            @Override
+            public void onStateChange(final String origin,
+                                      final FetchCircuitBreakerState from,
+                                      final FetchCircuitBreakerState to) {
+                FetchJavaNetHttpClientCircuitBreakerTest.this.events.add(origin + " " + from + " " + to);
+                throw new UnsupportedOperationException();
+            }
+        });
+        this.send(breaker, failure(), failure(), failure(), failure());
+        this.now += OPEN;
+
+        this.outcomes.add(ok());
+        this.checkEquals(200,
+                breaker.apply(this.request("/host1/path")).status().get().value().code());
+        this.checkEvents(HOST1 + " CLOSED OPEN", HOST1 + " OPEN HALF_OPEN");
+    }
+
+    @Test
+    public void testListenerChangeWithinListenerDeliveredInOrder() {
+        final List<FetchJavaNetHttpClientCircuitBreaker> breakers = new ArrayList<>();
+
+        // the probe sent from within the listener half opens the circuit before the first change is recorded
+        final FetchJavaNetHttpClientCircuitBreaker breaker = this.breaker(new FakeFetchCircuitBreakerListener() {
+            @Override
+            public void onStateChange(final String origin,
+                                      final FetchCircuitBreakerState from,
+                                      final FetchCircuitBreakerState to) {
+                final FetchJavaNetHttpClientCircuitBreakerTest test = FetchJavaNetHttpClientCircuitBreakerTest.this;
+                if (FetchCircuitBreakerState.OPEN == to) {
+                    test.now += OPEN;
+                    test.outcomes.add(ok());
+                    breakers.get(0).apply(test.request("/host1/probe"));
+                }
+                test.events.add(origin + " " + from + " " + to);
+            }
+        });
+        breakers.add(breaker);
+
+        this.send(breaker, failure(), failure(), failure(), failure());
+
+        this.checkState(breaker, HOST1, FetchCircuitBreakerState.HALF_OPEN);
+        this.checkEvents(HOST1 + " CLOSED OPEN", HOST1 + " OPEN HALF_OPEN");
+    }
+
+    @Test
+    public void testManyConcurrentVirtualThreadRequests() throws Exception {
+        assumeTrue(FetchJavaNetHttpClientVirtualThreads.isSupported(), "virtual threads not supported");
+
+        final HttpResponse response = HttpResponses.recording();
+        response.setStatus(HttpStatusCode.OK.status());
+
+        final FetchJavaNetHttpClientCircuitBreaker breaker = FetchJavaNetHttpClientCircuitBreaker.with((r) -> response,
+                this.customizer(),
+                100,
+                FAILURE_RATE,
+                SLOW,
+                SLOW_RATE,
+                OPEN,
+                this.listener(),
+                this::nanoTime);
+        final Function<HttpRequest, CompletableFuture<HttpResponse>> virtualThreads = FetchJavaNetHttpClientVirtualThreads.with(breaker);
+
+        final List<CompletableFuture<HttpResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            futures.add(virtualThreads.apply(this.request("/host1/path")));
+        }
+        for (final CompletableFuture<HttpResponse> future : futures) {
+            assertSame(response, future.get(60, TimeUnit.SECONDS));
+        }
+
+        this.checkState(breaker, HOST1, FetchCircuitBreakerState.CLOSED);
+        this.checkEvents();
+    }
+
+    @Test
+    public void testIdleCircuitRemovedWhenOriginAdded() {
+        final FetchJavaNetHttpClientCircuitBreaker breaker = this.breaker();
+        this.send(breaker, ok());
+        this.now += OPEN;
+
+        this.outcomes.add(ok());
+        breaker.apply(this.request("/host2/path"));
+
+        this.checkEquals(1, breaker.origins(), "origins");
+        this.checkState(breaker, HOST2, FetchCircuitBreakerState.CLOSED);
+    }
+
+    @Test
+    public void testRecentlyUsedCircuitKept() {
+        final FetchJavaNetHttpClientCircuitBreaker breaker = this.breaker();
+        this.send(breaker, ok());
+        this.now += OPEN - 1;
+
+        this.outcomes.add(ok());
+        breaker.apply(this.request("/host2/path"));
+
+        this.checkEquals(2, breaker.origins(), "origins");
+    }
+
+    @Test
+    public void testOpenCircuitKeptDuringCoolOff() {
+        final FetchJavaNetHttpClientCircuitBreaker breaker = this.open();
+        this.now += OPEN - 1;
+
+        this.outcomes.add(ok());
+        breaker.apply(this.request("/host2/path"));
+
+        this.checkState(breaker, HOST1, FetchCircuitBreakerState.OPEN);
+    }
+
+    @Test
+    public void testInFlightCircuitKept() {
+        final FetchJavaNetHttpClientCircuitBreaker breaker = this.breaker();
+
+        // host1 is still in flight when host2 is added long after it was sent
+        this.outcomes.add((r) -> {
+            this.now += OPEN;
+            this.outcomes.add(ok());
+            breaker.apply(this.request("/host2/path"));
+            this.checkEquals(2, breaker.origins(), "origins");
+            return failure().apply(r);
+        });
+        assertThrows(FetchException.class, () -> breaker.apply(this.request("/host1/path")));
+
+        this.checkEquals(2, breaker.origins(), "origins");
+    }
+
+    @Test
+    public void testManyOriginsRemoved() {
+        final FetchJavaNetHttpClientCircuitBreaker breaker = this.breaker();
+
+        for (int i = 0; i < 100; i++) {
+            this.outcomes.add(ok());
+            breaker.apply(this.request("/host" + i + "/path"));
+            this.now += OPEN;
+        }
+
+        this.checkEquals(1, breaker.origins(), "origins");
+    }
+
+    @Test
+    public void testManyConcurrentRequestsToManyOriginsRemoved() throws Exception {
+        final HttpResponse response = HttpResponses.recording();
+        response.setStatus(HttpStatusCode.OK.status());
+
+        // without a cool off every circuit with nothing in flight is idle and removed as others are added
+        final FetchJavaNetHttpClientCircuitBreaker breaker = FetchJavaNetHttpClientCircuitBreaker.with((r) -> response,
+                this.customizer(),
+                WINDOW,
+                FAILURE_RATE,
+                SLOW,
+                SLOW_RATE,
+                0,
+                this.listener(),
+                this::nanoTime);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<HttpResponse>> futures = new ArrayList<>();
+            for (int i = 0; i < 10_000; i++) {
+                final String url = "/host" + (i % 16) + "/path";
+                futures.add(executor.submit(() -> breaker.apply(this.request(url))));
+            }
+            for (final Future<HttpResponse> future : futures) {
+                assertSame(response, future.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        this.checkEvents();
+    }
+
+    @Test
+    public void testUnknownOriginClosed() {
+        this.checkState(this.breaker(), HOST1, FetchCircuitBreakerState.CLOSED);
+    }
+
+    private FetchJavaNetHttpClientCircuitBreaker open() {
+        final FetchJavaNetHttpClientCircuitBreaker breaker = this.breaker();
+        this.send(breaker, failure(), failure(), failure(), failure());
+        this.checkState(breaker, HOST1, FetchCircuitBreakerState.OPEN);
+        return breaker;
+    }
+
+    private FetchJavaNetHttpClientCircuitBreaker breaker() {
+        return this.breaker(this.listener());
+    }
+
+    private FetchJavaNetHttpClientCircuitBreaker breaker(final FetchCircuitBreakerListener listener) {
+        return FetchJavaNetHttpClientCircuitBreaker.with(this::fetch,
+                this.customizer(),
+                WINDOW,
+                FAILURE_RATE,
+                SLOW,
+                SLOW_RATE,
+                OPEN,
+                listener,
+                this::nanoTime);
+    }
+
+    /**
+     * Sends a request to host1 for each outcome, ignoring any {@link FetchException}.
+     */
+    @SafeVarargs
+    private final void send(final FetchJavaNetHttpClientCircuitBreaker breaker,
+                            final Function<HttpRequest, HttpResponse>... outcomes) {
+        for (final Function<HttpRequest, HttpResponse> outcome : outcomes) {
+            this.outcomes.add(outcome);
+            try {
+                breaker.apply(this.request("/host1/path"));
+            } catch (final FetchCircuitBreakerOpenException rejected) {
+                this.outcomes.remove(outcome);
+                throw rejected;
+            } catch (final FetchException ignore) {
+                // expected
+            }
+        }
+    }
+
+    private long nanoTime() {
+        return this.now * 1_000_000;
+    }
+
+    private HttpResponse fetch(final HttpRequest request) {
+        this.sent++;
+        return this.outcomes.remove()
+                .apply(request);
+    }
+
+    private static Function<HttpRequest, HttpResponse> ok() {
+        return status(HttpStatusCode.OK.status());
+    }
+
+    private static Function<HttpRequest, HttpResponse> failure() {
+        return (r) -> {
+            throw new FetchException("Connection refused");
+        };
+    }
+
+    private Function<HttpRequest, HttpResponse> slow() {
+        return (r) -> {
+            this.now += SLOW;
+            return ok().apply(r);
+        };
+    }
+
+    private static Function<HttpRequest, HttpResponse> status(final HttpStatus status) {
+        return (r) -> Fetch.response(status, HttpEntity.EMPTY);
+    }
+
+    private FetchCircuitBreakerListener listener() {
+        return new FakeFetchCircuitBreakerListener() {
+            @Override
+            public void onStateChange(final String origin,
+                                      final FetchCircuitBreakerState from,
+                                      final FetchCircuitBreakerState to) {
+                FetchJavaNetHttpClientCircuitBreakerTest.this.events.add(origin + " " + from + " " + to);
+            }
+        };
+    }
+
+    private void checkState(final FetchJavaNetHttpClientCircuitBreaker breaker,
+                            final String origin,
+                            final FetchCircuitBreakerState state) {
+        this.checkEquals(state, breaker.state(origin), origin);
+    }
+
+    private void checkEvents(final String... events) {
+        final List<String> expected = new ArrayList<>();
+        for (final String event : events) {
+            expected.add(event);
+        }
+        this.checkEquals(expected, this.events, "events");
+    }
+
+    private FetchCustomizer customizer() {
+        return new FakeFetchCustomizer() {
+            @Override
+            public AbsoluteUrl httpClientUrl(final HttpRequest request) {
+                // the first path component is the host
+                return Url.parseAbsolute("http:/" + request.url());
+            }
+        };
+    }
+
+    private HttpRequest request(final String url) {
+        return HttpRequests.value(HttpMethod.GET,
+                HttpTransport.UNSECURED,
+                Url.parseRelative(url),
+                HttpProtocolVersion.VERSION_1_1,
+                HttpEntity.EMPTY);
+    }
+
+    private final Queue<Function<HttpRequest, HttpResponse>> outcomes = new LinkedList<>();
+
+    private final List<String> events = new ArrayList<>();
+
+    private int sent;
+
+    private long now = 1000;
+
+    @Override
+    public Class<FetchJavaNetHttpClientCircuitBreaker> type() {
+        return FetchJavaNetHttpClientCircuitBreaker.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PACKAGE_PRIVATE;
+    }
+}
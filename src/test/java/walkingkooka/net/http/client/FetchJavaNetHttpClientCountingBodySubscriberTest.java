@@ -0,0 +1,127 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.net.http.client;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.Cast;
+import walkingkooka.net.http.server.HttpRequest;
+import walkingkooka.net.http.server.HttpResponse;
+import walkingkooka.reflect.ClassTesting2;
+import walkingkooka.reflect.JavaVisibility;
+
+import java.net.http.HttpResponse.BodySubscriber;
+import java.net.http.HttpResponse.BodySubscribers;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.Flow;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class FetchJavaNetHttpClientCountingBodySubscriberTest implements ClassTesting2<FetchJavaNetHttpClientCountingBodySubscriber<?>> {
+
+    @Test
+    public void testWithNullTimerFails() {
+        assertThrows(
+                NullPointerException.class,
+                () -> FetchJavaNetHttpClientCountingBodySubscriber.with(null, BodySubscribers.ofString(StandardCharsets.UTF_8))
+        );
+    }
+
+    @Test
+    public void testWithNullSubscriberFails() {
+        assertThrows(
+                NullPointerException.class,
+                () -> FetchJavaNetHttpClientCountingBodySubscriber.with(this.timer(), null)
+        );
+    }
+
+    @Test
+    public void testCount() throws Exception {
+        final FetchTimer timer = this.timer();
+        final BodySubscriber<String> subscriber = FetchJavaNetHttpClientCountingBodySubscriber.with(timer,
+                BodySubscribers.ofString(StandardCharsets.UTF_8));
+        subscriber.onSubscribe(new Subscription());
+        subscriber.onNext(Arrays.asList(buffer("abc"), buffer("de")));
+        subscriber.onNext(Collections.singletonList(buffer("fghij")));
+        subscriber.onComplete();
+
+        this.checkEquals("abcdefghij",
+                subscriber.getBody().toCompletableFuture().get());
+        this.checkResponseBytes(10, timer);
+    }
+
+    @Test
+    public void testEmptyBody() throws Exception {
+        final FetchTimer timer = this.timer();
+        final BodySubscriber<String> subscriber = FetchJavaNetHttpClientCountingBodySubscriber.with(timer,
+                BodySubscribers.ofString(StandardCharsets.UTF_8));
+        subscriber.onSubscribe(new Subscription());
+        subscriber.onComplete();
+
+        this.checkEquals("",
+                subscriber.getBody().toCompletableFuture().get());
+        this.checkResponseBytes(0, timer);
+    }
+
+    private static ByteBuffer buffer(final String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private FetchTimer timer() {
+        return FetchTimer.with(new FakeFetchListener() {
+                    @Override
+                    public void onResponse(final HttpRequest request,
+                                           final HttpResponse response,
+                                           final FetchTimings timings) {
+                        FetchJavaNetHttpClientCountingBodySubscriberTest.this.timings = timings;
+                    }
+                },
+                () -> 0);
+    }
+
+    private void checkResponseBytes(final long expected,
+                                    final FetchTimer timer) {
+        timer.response(null, null);
+        this.checkEquals(expected, this.timings.responseBytes(), "responseBytes");
+    }
+
+    private FetchTimings timings;
+
+    private final static class Subscription implements Flow.Subscription {
+
+        @Override
+        public void request(final long n) {
+        }
+
+        @Override
+        public void cancel() {
+        }
+    }
+
+    @Override
+    public Class<FetchJavaNetHttpClientCountingBodySubscriber<?>> type() {
+        return Cast.to(FetchJavaNetHttpClientCountingBodySubscriber.class);
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PACKAGE_PRIVATE;
+    }
+}
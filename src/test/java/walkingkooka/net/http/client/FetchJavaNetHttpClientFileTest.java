@@ -0,0 +1,51 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.net.http.client;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.reflect.ClassTesting2;
+import walkingkooka.reflect.JavaVisibility;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class FetchJavaNetHttpClientFileTest implements ClassTesting2<FetchJavaNetHttpClientFile> {
+
+    @Test
+    public void testWithNullFileFails() {
+        assertThrows(NullPointerException.class,
+                () -> FetchJavaNetHttpClientFile.with(FetchJavaNetHttpClient.with(new FakeFetchCustomizer()), null));
+    }
+
+    @Test
+    public void testApplyNullRequestFails() {
+        assertThrows(NullPointerException.class,
+                () -> FetchJavaNetHttpClientFile.with(FetchJavaNetHttpClient.with(new FakeFetchCustomizer()), (r) -> {
+                    throw new UnsupportedOperationException();
+                }).apply(null));
+    }
+
+    @Override
+    public Class<FetchJavaNetHttpClientFile> type() {
+        return FetchJavaNetHttpClientFile.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PACKAGE_PRIVATE;
+    }
+}
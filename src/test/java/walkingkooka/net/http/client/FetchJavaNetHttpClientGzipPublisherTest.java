@@ -0,0 +1,202 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.net.http.client;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.reflect.ClassTesting2;
+import walkingkooka.reflect.JavaVisibility;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Flow;
+import java.util.zip.GZIPInputStream;
+
+public final class FetchJavaNetHttpClientGzipPublisherTest implements ClassTesting2<FetchJavaNetHttpClientGzipPublisher> {
+
+    @Test
+    public void testEmpty() throws IOException {
+        this.publishAndCheck(new byte[0]);
+    }
+
+    @Test
+    public void testSmall() throws IOException {
+        this.publishAndCheck("Hello gzip, hello gzip, hello gzip".getBytes());
+    }
+
+    @Test
+    public void testCompressible() throws IOException {
+        final byte[] bytes = new byte[FetchJavaNetHttpClientGzipPublisher.CHUNK * 10];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) ('0' + i % 10);
+        }
+
+        final Collector collector = this.publishAndCheck(bytes);
+        this.checkEquals(1, collector.chunks.size(), "chunks");
+    }
+
+    @Test
+    public void testIncompressible() throws IOException {
+        final byte[] bytes = new byte[FetchJavaNetHttpClientGzipPublisher.CHUNK * 3 + 123];
+        new Random(1).nextBytes(bytes);
+
+        final Collector collector = this.publishAndCheck(bytes);
+        this.checkEquals(true, collector.chunks.size() > 3, "chunks " + collector.chunks);
+    }
+
+    @Test
+    public void testRespectsDemand() throws IOException {
+        final byte[] bytes = new byte[FetchJavaNetHttpClientGzipPublisher.CHUNK * 2];
+        new Random(2).nextBytes(bytes);
+
+        final Collector collector = new Collector(1);
+        FetchJavaNetHttpClientGzipPublisher.with(ByteBuffer.wrap(bytes))
+                .subscribe(collector);
+
+        this.checkEquals(1, collector.chunks.size(), "chunks after first request");
+        this.checkEquals(false, collector.completed, "completed");
+
+        collector.subscription.request(Long.MAX_VALUE);
+        this.checkEquals(true, collector.completed, "completed");
+        this.checkBytes(bytes, collector);
+    }
+
+    @Test
+    public void testCancel() {
+        final Collector collector = new Collector(0);
+        FetchJavaNetHttpClientGzipPublisher.with(ByteBuffer.wrap(new byte[100]))
+                .subscribe(collector);
+
+        collector.subscription.cancel();
+        collector.subscription.request(1);
+
+        this.checkEquals(0, collector.chunks.size(), "chunks");
+        this.checkEquals(false, collector.completed, "completed");
+    }
+
+    @Test
+    public void testInvalidRequest() {
+        final Collector collector = new Collector(0);
+        FetchJavaNetHttpClientGzipPublisher.with(ByteBuffer.wrap(new byte[1]))
+                .subscribe(collector);
+
+        collector.subscription.request(0);
+        this.checkEquals(true, collector.error instanceof IllegalArgumentException, "error " + collector.error);
+    }
+
+    @Test
+    public void testSubscribeTwice() throws IOException {
+        final byte[] bytes = "abc123abc123abc123".getBytes();
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        final FetchJavaNetHttpClientGzipPublisher publisher = FetchJavaNetHttpClientGzipPublisher.with(buffer);
+
+        final Collector first = new Collector(Long.MAX_VALUE);
+        publisher.subscribe(first);
+
+        final Collector second = new Collector(Long.MAX_VALUE);
+        publisher.subscribe(second);
+
+        this.checkBytes(bytes, first);
+        this.checkBytes(bytes, second);
+        this.checkEquals(0, buffer.position(), "original buffer position");
+    }
+
+    @Test
+    public void testToString() {
+        this.checkEquals("gzip 123 bytes",
+                FetchJavaNetHttpClientGzipPublisher.with(ByteBuffer.allocate(123)).toString());
+    }
+
+    private Collector publishAndCheck(final byte[] bytes) throws IOException {
+        final Collector collector = new Collector(Long.MAX_VALUE);
+        FetchJavaNetHttpClientGzipPublisher.with(ByteBuffer.wrap(bytes))
+                .subscribe(collector);
+
+        this.checkEquals(true, collector.completed, "completed");
+        this.checkBytes(bytes, collector);
+        return collector;
+    }
+
+    private void checkBytes(final byte[] expected,
+                            final Collector collector) throws IOException {
+        final ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+        try (final InputStream gzip = new GZIPInputStream(new ByteArrayInputStream(collector.bytes.toByteArray()))) {
+            gzip.transferTo(decompressed);
+        }
+
+        this.checkEquals(true,
+                Arrays.equals(expected, decompressed.toByteArray()),
+                "bytes");
+    }
+
+    private final static class Collector implements Flow.Subscriber<ByteBuffer> {
+
+        Collector(final long initial) {
+            this.initial = initial;
+        }
+
+        @Override
+        public void onSubscribe(final Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (this.initial > 0) {
+                subscription.request(this.initial);
+            }
+        }
+
+        @Override
+        public void onNext(final ByteBuffer item) {
+            this.chunks.add(item.remaining());
+            while (item.hasRemaining()) {
+                this.bytes.write(item.get());
+            }
+        }
+
+        @Override
+        public void onError(final Throwable throwable) {
+            this.error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            this.completed = true;
+        }
+
+        private final long initial;
+        Flow.Subscription subscription;
+        final List<Integer> chunks = new ArrayList<>();
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Throwable error;
+        boolean completed;
+    }
+
+    @Override
+    public Class<FetchJavaNetHttpClientGzipPublisher> type() {
+        return FetchJavaNetHttpClientGzipPublisher.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PACKAGE_PRIVATE;
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.net.http.client;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.net.Url;
+import walkingkooka.net.http.HttpEntity;
+import walkingkooka.net.http.HttpMethod;
+import walkingkooka.net.http.HttpProtocolVersion;
+import walkingkooka.net.http.HttpStatusCode;
+import walkingkooka.net.http.HttpTransport;
+import walkingkooka.net.http.server.HttpRequest;
+import walkingkooka.net.http.server.HttpRequests;
+import walkingkooka.net.http.server.HttpResponse;
+import walkingkooka.reflect.ClassTesting2;
+import walkingkooka.reflect.JavaVisibility;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class FetchJavaNetHttpClientHedgeTest implements ClassTesting2<FetchJavaNetHttpClientHedge> {
+
+    @Test
+    public void testWithNullFetchFails() {
+        assertThrows(NullPointerException.class, () -> FetchJavaNetHttpClientHedge.with(null, 10, 0.05, this.listener()));
+    }
+
+    @Test
+    public void testWithInvalidDelayFails() {
+        assertThrows(IllegalArgumentException.class, () -> FetchJavaNetHttpClientHedge.with(this::fetch, -1, 0.05, this.listener()));
+    }
+
+    @Test
+    public void testWithZeroRatioFails() {
+        assertThrows(IllegalArgumentException.class, () -> FetchJavaNetHttpClientHedge.with(this::fetch, 10, 0, this.listener()));
+    }
+
+    @Test
+    public void testWithRatioGreaterThanOneFails() {
+        assertThrows(IllegalArgumentException.class, () -> FetchJavaNetHttpClientHedge.with(this::fetch, 10, 1.5, this.listener()));
+    }
+
+    @Test
+    public void testWithNullListenerFails() {
+        assertThrows(NullPointerException.class, () -> FetchJavaNetHttpClientHedge.with(this::fetch, 10, 0.05, null));
+    }
+
+    @Test
+    public void testResponseBeforeDelay() throws Exception {
+        final CompletableFuture<HttpResponse> result = this.hedge(1).apply(this.request(HttpMethod.GET));
+        final HttpResponse response = response("primary");
+        this.sent.get(0).complete(response);
+
+        this.elapse();
+
+        assertSame(response, result.get());
+        this.checkCounts(1, 0, 0);
+    }
+
+    @Test
+    public void testHedgeWins() throws Exception {
+        final CompletableFuture<HttpResponse> result = this.hedge(1).apply(this.request(HttpMethod.GET));
+        this.elapse();
+        this.checkCounts(2, 1, 0);
+
+        final HttpResponse response = response("hedge");
+        this.sent.get(1).complete(response);
+
+        assertSame(response, result.get());
+        this.checkEquals(true, this.sent.get(0).isCancelled(), "primary cancelled");
+        this.checkCounts(2, 1, 1);
+    }
+
+    @Test
+    public void testPrimaryWinsAfterHedge() throws Exception {
+        final CompletableFuture<HttpResponse> result = this.hedge(1).apply(this.request(HttpMethod.GET));
+        this.elapse();
+
+        final HttpResponse response = response("primary");
+        this.sent.get(0).complete(response);
+
+        assertSame(response, result.get());
+        this.checkEquals(true, this.sent.get(1).isCancelled(), "hedge cancelled");
+        this.checkCounts(2, 1, 0);
+    }
+
+    @Test
+    public void testPrimaryFailsHedgeSucceeds() throws Exception {
+        final CompletableFuture<HttpResponse> result = this.hedge(1).apply(this.request(HttpMethod.GET));
+        this.elapse();
+
+        this.sent.get(0).completeExceptionally(new FetchException("Connection reset"));
+        this.checkEquals(false, result.isDone(), "waiting for hedge");
+
+        final HttpResponse response = response("hedge");
+        this.sent.get(1).complete(response);
+
+        assertSame(response, result.get());
+        this.checkCounts(2, 1, 1);
+    }
+
+    @Test
+    public void testBothFail() {
+        final CompletableFuture<HttpResponse> result = this.hedge(1).apply(this.request(HttpMethod.GET));
+        this.elapse();
+
+        this.sent.get(0).completeExceptionally(new FetchException("Connection reset 1"));
+        final FetchException last = new FetchException("Connection reset 2");
+        this.sent.get(1).completeExceptionally(last);
+
+        final ExecutionException thrown = assertThrows(ExecutionException.class, result::get);
+        assertSame(last, thrown.getCause());
+    }
+
+    @Test
+    public void testPrimaryFailsBeforeDelay() {
+        final CompletableFuture<HttpResponse> result = this.hedge(1).apply(this.request(HttpMethod.GET));
+        final FetchException failure = new FetchException("Connection refused");
+        this.sent.get(0).completeExceptionally(failure);
+
+        final ExecutionException thrown = assertThrows(ExecutionException.class, result::get);
+        assertSame(failure, thrown.getCause());
+
+        this.elapse();
+        this.checkCounts(1, 0, 0);
+    }
+
+    @Test
+    public void testBudget() {
+        final FetchJavaNetHttpClientHedge hedge = this.hedge(0.5);
+
+        hedge.apply(this.request(HttpMethod.GET));
+        this.elapse();
+        this.checkCounts(1, 0, 0);
+
+        hedge.apply(this.request(HttpMethod.GET));
+        this.elapse();
+        this.checkCounts(3, 1, 0);
+
+        hedge.apply(this.request(HttpMethod.GET));
+        this.elapse();
+        this.checkCounts(4, 1, 0);
+    }
+
+    @Test
+    public void testBudgetMaxTokens() {
+        final FetchJavaNetHttpClientHedge hedge = this.hedge(1);
+        for (int i = 0; i < 100; i++) {
+            hedge.apply(this.request(HttpMethod.GET))
+                    .cancel(false);
+        }
+        this.checkEquals(FetchJavaNetHttpClientHedge.MAX_TOKENS, hedge.tokens());
+    }
+
+    @Test
+    public void testPostNotHedged() {
+        final FetchJavaNetHttpClientHedge hedge = this.hedge(1);
+        final CompletableFuture<HttpResponse> result = hedge.apply(this.request(HttpMethod.POST));
+
+        assertSame(this.sent.get(0), result);
+        this.checkEquals(0, this.delayed.size(), "delayed");
+        this.checkEquals(0.0, hedge.tokens(), "tokens");
+    }
+
+    @Test
+    public void testCancel() {
+        final CompletableFuture<HttpResponse> result = this.hedge(1).apply(this.request(HttpMethod.GET));
+        this.elapse();
+
+        result.cancel(false);
+
+        this.checkEquals(true, this.sent.get(0).isCancelled(), "primary cancelled");
+        this.checkEquals(true, this.sent.get(1).isCancelled(), "hedge cancelled");
+    }
+
+    @Test
+    public void testCancelBeforeDelay() {
+        final CompletableFuture<HttpResponse> result = this.hedge(1).apply(this.request(HttpMethod.GET));
+        result.cancel(false);
+
+        this.elapse();
+
+        this.checkEquals(true, this.sent.get(0).isCancelled(), "primary cancelled");
+        this.checkCounts(1, 0, 0);
+    }
+
+    private FetchJavaNetHttpClientHedge hedge(final double maxHedgeRatio) {
+        return FetchJavaNetHttpClientHedge.with(this::fetch,
+                maxHedgeRatio,
+                this.listener(),
+                this.delayed::add);
+    }
+
+    private CompletableFuture<HttpResponse> fetch(final HttpRequest request) {
+        final CompletableFuture<HttpResponse> future = new CompletableFuture<>();
+        this.sent.add(future);
+        return future;
+    }
+
+    /**
+     * Runs all tasks waiting for the hedge delay.
+     */
+    private void elapse() {
+        final List<Runnable> delayed = new ArrayList<>(this.delayed);
+        this.delayed.clear();
+        delayed.forEach(Runnable::run);
+    }
+
+    private FetchHedgeListener listener() {
+        return new FakeFetchHedgeListener() {
+            @Override
+            public void onHedge(final HttpRequest request) {
+                FetchJavaNetHttpClientHedgeTest.this.hedges++;
+            }
+
+            @Override
+            public void onHedgeWon(final HttpRequest request) {
+                FetchJavaNetHttpClientHedgeTest.this.won++;
+            }
+        };
+    }
+
+    private void checkCounts(final int sent,
+                             final int hedges,
+                             final int won) {
+        this.checkEquals(sent, this.sent.size(), "sent");
+        this.checkEquals(hedges, this.hedges, "hedges");
+        this.checkEquals(won, this.won, "won");
+    }
+
+    private static HttpResponse response(final String body) {
+        return Fetch.response(HttpStatusCode.OK.status(), HttpEntity.EMPTY.setBodyText(body));
+    }
+
+    private HttpRequest request(final HttpMethod method) {
+        return HttpRequests.value(method,
+                HttpTransport.UNSECURED,
+                Url.parseRelative("/path1"),
+                HttpProtocolVersion.VERSION_1_1,
+                HttpEntity.EMPTY);
+    }
+
+    private final List<CompletableFuture<HttpResponse>> sent = new ArrayList<>();
+
+    private final List<Runnable> delayed = new ArrayList<>();
+
+    private int hedges;
+
+    private int won;
+
+    @Override
+    public Class<FetchJavaNetHttpClientHedge> type() {
+        return FetchJavaNetHttpClientHedge.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PACKAGE_PRIVATE;
+    }
+}
@@ -0,0 +1,351 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.net.http.client;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.reflect.ClassTesting2;
+import walkingkooka.reflect.JavaVisibility;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class FetchJavaNetHttpClientInflaterTest implements ClassTesting2<FetchJavaNetHttpClientInflater> {
+
+    private final static byte[] TEXT = text();
+
+    private static byte[] text() {
+        final StringBuilder b = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            b.append("Line ").append(i).append(" of the body\r\n");
+        }
+        return b.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testWithUnknownContentEncoding() {
+        this.checkEquals(null, FetchJavaNetHttpClientInflater.with("br"));
+    }
+
+    @Test
+    public void testWithIdentity() {
+        this.checkEquals(null, FetchJavaNetHttpClientInflater.with("identity"));
+    }
+
+    @Test
+    public void testGzip() throws IOException {
+        this.inflateAndCheck("gzip", TEXT, gzip(TEXT), 65536);
+    }
+
+    @Test
+    public void testGzipUpperCase() throws IOException {
+        this.inflateAndCheck("GZIP", TEXT, gzip(TEXT), 65536);
+    }
+
+    @Test
+    public void testXGzip() throws IOException {
+        this.inflateAndCheck("x-gzip", TEXT, gzip(TEXT), 65536);
+    }
+
+    @Test
+    public void testGzipOneByteChunks() throws IOException {
+        this.inflateAndCheck("gzip", TEXT, gzip(TEXT), 1);
+    }
+
+    @Test
+    public void testGzipOddChunks() throws IOException {
+        this.inflateAndCheck("gzip", TEXT, gzip(TEXT), 7);
+    }
+
+    @Test
+    public void testGzipEmpty() throws IOException {
+        this.inflateAndCheck("gzip", new byte[0], gzip(new byte[0]), 3);
+    }
+
+    @Test
+    public void testGzipInvalidCrc() throws IOException {
+        final byte[] gzip = gzip(TEXT);
+        gzip[gzip.length - 8] ^= 1;
+
+        final IOException thrown = assertThrows(
+                IOException.class,
+                () -> this.inflateAndCheck("gzip", TEXT, gzip, 100)
+        );
+        this.checkEquals("Invalid gzip CRC", thrown.getMessage());
+    }
+
+    @Test
+    public void testGzipInvalidHeader() {
+        assertThrows(
+                IOException.class,
+                () -> this.inflateAndCheck("gzip", TEXT, TEXT, 100)
+        );
+    }
+
+    @Test
+    public void testDeflateZlib() throws IOException {
+        this.inflateAndCheck("deflate", TEXT, deflate(TEXT, false), 100);
+    }
+
+    @Test
+    public void testDeflateZlibOneByteChunks() throws IOException {
+        this.inflateAndCheck("deflate", TEXT, deflate(TEXT, false), 1);
+    }
+
+    @Test
+    public void testDeflateRaw() throws IOException {
+        this.inflateAndCheck("deflate", TEXT, deflate(TEXT, true), 100);
+    }
+
+    @Test
+    public void testDeflateRawOneByteChunks() throws IOException {
+        this.inflateAndCheck("deflate", TEXT, deflate(TEXT, true), 1);
+    }
+
+    @Test
+    public void testDeflateInvalid() {
+        final byte[] deflate = deflate(TEXT, false);
+        Arrays.fill(deflate, 2, 20, (byte) 0xff);
+
+        assertThrows(
+                IOException.class,
+                () -> this.inflateAndCheck("deflate", TEXT, deflate, 100)
+        );
+    }
+
+    @Test
+    public void testUnfinished() throws IOException {
+        final byte[] gzip = gzip(TEXT);
+        final FetchJavaNetHttpClientInflater inflater = FetchJavaNetHttpClientInflater.with("gzip");
+        inflater.inflate(ByteBuffer.wrap(gzip, 0, gzip.length / 2));
+
+        this.checkEquals(false, inflater.isFinished());
+        inflater.end();
+    }
+
+    @Test
+    public void testGzipHeaderIncomplete() throws IOException {
+        final FetchJavaNetHttpClientInflater inflater = FetchJavaNetHttpClientInflater.with("gzip");
+        this.checkEquals(0, inflater.inflate(ByteBuffer.wrap(new byte[]{0x1f, (byte) 0x8b, 8, 0})).size());
+
+        this.checkEquals(false, inflater.isFinished());
+        inflater.end();
+    }
+
+    @Test
+    public void testGzipHeaderFilename() throws IOException {
+        this.gzipHeaderAndCheck(new byte[]{0x1f, (byte) 0x8b, 8, 8, 0, 0, 0, 0, 0, 0, 'a', 'b', 'c', 0});
+    }
+
+    @Test
+    public void testGzipHeaderExtra() throws IOException {
+        this.gzipHeaderAndCheck(new byte[]{0x1f, (byte) 0x8b, 8, 4, 0, 0, 0, 0, 0, 0, 3, 0, 1, 2, 3});
+    }
+
+    @Test
+    public void testGzipHeaderEmptyExtra() throws IOException {
+        this.gzipHeaderAndCheck(new byte[]{0x1f, (byte) 0x8b, 8, 4, 0, 0, 0, 0, 0, 0, 0, 0});
+    }
+
+    @Test
+    public void testGzipHeaderAllFields() throws IOException {
+        this.gzipHeaderAndCheck(new byte[]{0x1f, (byte) 0x8b, 8, 2 | 4 | 8 | 16, 0, 0, 0, 0, 0, 0,
+                2, 0, 'x', 'y',
+                'n', 'a', 'm', 'e', 0,
+                'c', 'o', 'm', 'm', 'e', 'n', 't', 0,
+                0x12, 0x34});
+    }
+
+    @Test
+    public void testGzipHeaderLongFilename() throws IOException {
+        final byte[] name = new byte[1024 * 1024];
+        Arrays.fill(name, (byte) 'a');
+
+        final ByteArrayOutputStream header = new ByteArrayOutputStream();
+        header.write(new byte[]{0x1f, (byte) 0x8b, 8, 8, 0, 0, 0, 0, 0, 0});
+        header.write(name);
+        header.write(0);
+
+        this.inflateAndCheck("gzip", TEXT, gzip(header.toByteArray(), TEXT), 4096);
+    }
+
+    @Test
+    public void testGzipUnsupportedMethod() {
+        final IOException thrown = assertThrows(
+                IOException.class,
+                () -> this.inflateAndCheck("gzip", TEXT, new byte[]{0x1f, (byte) 0x8b, 7}, 1)
+        );
+        this.checkEquals("Unsupported gzip compression method 7", thrown.getMessage());
+    }
+
+    @Test
+    public void testGzipMultipleMembers() throws IOException {
+        this.gzipMultipleMembersAndCheck(65536);
+    }
+
+    @Test
+    public void testGzipMultipleMembersOneByteChunks() throws IOException {
+        this.gzipMultipleMembersAndCheck(1);
+    }
+
+    @Test
+    public void testGzipMultipleMembersOddChunks() throws IOException {
+        this.gzipMultipleMembersAndCheck(7);
+    }
+
+    private void gzipMultipleMembersAndCheck(final int chunk) throws IOException {
+        final byte[] first = "First member\r\n".getBytes(StandardCharsets.UTF_8);
+
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write(first);
+        expected.write(TEXT);
+        expected.write(first);
+
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        compressed.write(gzip(first));
+        compressed.write(gzip(TEXT));
+        compressed.write(gzip(first));
+
+        this.inflateAndCheck("gzip", expected.toByteArray(), compressed.toByteArray(), chunk);
+    }
+
+    @Test
+    public void testGzipTrailingBytes() throws IOException {
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        compressed.write(gzip(TEXT));
+        compressed.write(new byte[]{0, 0, 0, 0});
+
+        final IOException thrown = assertThrows(
+                IOException.class,
+                () -> this.inflateAndCheck("gzip", TEXT, compressed.toByteArray(), 100)
+        );
+        this.checkEquals("Invalid gzip header", thrown.getMessage());
+    }
+
+    @Test
+    public void testDeflateTrailingBytes() {
+        final byte[] deflate = deflate(TEXT, false);
+        final byte[] compressed = Arrays.copyOf(deflate, deflate.length + 3);
+
+        final IOException thrown = assertThrows(
+                IOException.class,
+                () -> this.inflateAndCheck("deflate", TEXT, compressed, 65536)
+        );
+        this.checkEquals("Unexpected 3 bytes after deflate body", thrown.getMessage());
+    }
+
+    @Test
+    public void testToString() {
+        this.checkEquals("gzip", FetchJavaNetHttpClientInflater.with("x-gzip").toString());
+    }
+
+    private void inflateAndCheck(final String contentEncoding,
+                                 final byte[] expected,
+                                 final byte[] compressed,
+                                 final int chunk) throws IOException {
+        final FetchJavaNetHttpClientInflater inflater = FetchJavaNetHttpClientInflater.with(contentEncoding);
+        final ByteArrayOutputStream inflated = new ByteArrayOutputStream();
+
+        try {
+            for (int i = 0; i < compressed.length; i += chunk) {
+                for (final ByteBuffer buffer : inflater.inflate(ByteBuffer.wrap(compressed, i, Math.min(chunk, compressed.length - i)))) {
+                    while (buffer.hasRemaining()) {
+                        inflated.write(buffer.get());
+                    }
+                }
+            }
+        } finally {
+            inflater.end();
+        }
+
+        this.checkEquals(true, inflater.isFinished(), "finished");
+        this.checkEquals(new String(expected, StandardCharsets.UTF_8),
+                new String(inflated.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    private void gzipHeaderAndCheck(final byte[] header) throws IOException {
+        final byte[] gzip = gzip(header, TEXT);
+
+        this.inflateAndCheck("gzip", TEXT, gzip, 1);
+        this.inflateAndCheck("gzip", TEXT, gzip, 7);
+        this.inflateAndCheck("gzip", TEXT, gzip, 65536);
+    }
+
+    /**
+     * Creates a gzip member with the given header followed by the raw deflate data and the CRC32 and size trailer.
+     */
+    private static byte[] gzip(final byte[] header,
+                               final byte[] bytes) throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        output.write(header);
+        output.write(deflate(bytes, true));
+
+        final CRC32 crc = new CRC32();
+        crc.update(bytes);
+        littleEndian(crc.getValue(), output);
+        littleEndian(bytes.length, output);
+        return output.toByteArray();
+    }
+
+    private static void littleEndian(final long value,
+                                     final ByteArrayOutputStream output) {
+        for (int i = 0; i < 4; i++) {
+            output.write((int) (value >> (8 * i)));
+        }
+    }
+
+    private static byte[] gzip(final byte[] bytes) throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (final GZIPOutputStream gzip = new GZIPOutputStream(output)) {
+            gzip.write(bytes);
+        }
+        return output.toByteArray();
+    }
+
+    private static byte[] deflate(final byte[] bytes,
+                                  final boolean raw) {
+        final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, raw);
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (final DeflaterOutputStream deflate = new DeflaterOutputStream(output, deflater)) {
+            deflate.write(bytes);
+        } catch (final IOException cause) {
+            throw new Error(cause);
+        } finally {
+            deflater.end();
+        }
+        return output.toByteArray();
+    }
+
+    @Override
+    public Class<FetchJavaNetHttpClientInflater> type() {
+        return FetchJavaNetHttpClientInflater.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PACKAGE_PRIVATE;
+    }
+}
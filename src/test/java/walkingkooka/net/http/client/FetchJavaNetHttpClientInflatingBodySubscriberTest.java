@@ -0,0 +1,161 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.net.http.client;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.Cast;
+import walkingkooka.reflect.ClassTesting2;
+import walkingkooka.reflect.JavaVisibility;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.net.http.HttpResponse.BodySubscribers;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class FetchJavaNetHttpClientInflatingBodySubscriberTest implements ClassTesting2<FetchJavaNetHttpClientInflatingBodySubscriber<?>> {
+
+    private final static String TEXT = "Hello gzip, hello gzip, hello gzip 123";
+
+    @Test
+    public void testWithNullInflaterFails() {
+        assertThrows(
+                NullPointerException.class,
+                () -> FetchJavaNetHttpClientInflatingBodySubscriber.with(null, BodySubscribers.ofString(StandardCharsets.UTF_8))
+        );
+    }
+
+    @Test
+    public void testWithNullSubscriberFails() {
+        assertThrows(
+                NullPointerException.class,
+                () -> FetchJavaNetHttpClientInflatingBodySubscriber.with(FetchJavaNetHttpClientInflater.with("gzip"), null)
+        );
+    }
+
+    @Test
+    public void testInflate() throws Exception {
+        final byte[] gzip = gzip(TEXT);
+        final List<ByteBuffer> first = Collections.singletonList(ByteBuffer.wrap(gzip, 0, 5));
+        final List<ByteBuffer> second = Collections.singletonList(ByteBuffer.wrap(gzip, 5, gzip.length - 5));
+
+        final Subscription subscription = new Subscription();
+        final BodySubscriber<String> subscriber = subscriber();
+        subscriber.onSubscribe(subscription);
+
+        final int requests = subscription.requests;
+        subscriber.onNext(first);
+        this.checkEquals(requests + 1, subscription.requests, "header only should request another item");
+
+        subscriber.onNext(second);
+        subscriber.onComplete();
+
+        this.checkEquals(TEXT,
+                subscriber.getBody().toCompletableFuture().get());
+    }
+
+    @Test
+    public void testTruncated() throws Exception {
+        final byte[] gzip = gzip(TEXT);
+
+        final BodySubscriber<String> subscriber = subscriber();
+        subscriber.onSubscribe(new Subscription());
+        subscriber.onNext(Collections.singletonList(ByteBuffer.wrap(gzip, 0, gzip.length - 4)));
+        subscriber.onComplete();
+
+        final ExecutionException thrown = assertThrows(
+                ExecutionException.class,
+                () -> subscriber.getBody().toCompletableFuture().get()
+        );
+        this.checkEquals("Truncated gzip body", thrown.getCause().getMessage());
+    }
+
+    @Test
+    public void testInvalid() {
+        final Subscription subscription = new Subscription();
+        final BodySubscriber<String> subscriber = subscriber();
+        subscriber.onSubscribe(subscription);
+        subscriber.onNext(Collections.singletonList(ByteBuffer.wrap(TEXT.getBytes(StandardCharsets.UTF_8))));
+        subscriber.onComplete();
+
+        this.checkEquals(true, subscription.cancelled, "cancelled");
+
+        final ExecutionException thrown = assertThrows(
+                ExecutionException.class,
+                () -> subscriber.getBody().toCompletableFuture().get()
+        );
+        this.checkEquals(IOException.class, thrown.getCause().getClass());
+    }
+
+    @Test
+    public void testEmptyBody() throws Exception {
+        final BodySubscriber<String> subscriber = subscriber();
+        subscriber.onSubscribe(new Subscription());
+        subscriber.onComplete();
+
+        this.checkEquals("",
+                subscriber.getBody().toCompletableFuture().get());
+    }
+
+    private static BodySubscriber<String> subscriber() {
+        return FetchJavaNetHttpClientInflatingBodySubscriber.with(FetchJavaNetHttpClientInflater.with("gzip"),
+                BodySubscribers.ofString(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] gzip(final String text) throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (final GZIPOutputStream gzip = new GZIPOutputStream(output)) {
+            gzip.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+        return output.toByteArray();
+    }
+
+    private final static class Subscription implements Flow.Subscription {
+
+        @Override
+        public void request(final long n) {
+            this.requests++;
+        }
+
+        @Override
+        public void cancel() {
+            this.cancelled = true;
+        }
+
+        int requests;
+        boolean cancelled;
+    }
+
+    @Override
+    public Class<FetchJavaNetHttpClientInflatingBodySubscriber<?>> type() {
+        return Cast.to(FetchJavaNetHttpClientInflatingBodySubscriber.class);
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PACKAGE_PRIVATE;
+    }
+}
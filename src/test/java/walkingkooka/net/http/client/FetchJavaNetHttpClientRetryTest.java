@@ -0,0 +1,372 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.net.http.client;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.net.Url;
+import walkingkooka.net.http.HttpMethod;
+import walkingkooka.net.http.HttpProtocolVersion;
+import walkingkooka.net.http.HttpStatus;
+import walkingkooka.net.http.HttpStatusCode;
+import walkingkooka.net.http.HttpTransport;
+import walkingkooka.net.http.server.HttpRequest;
+import walkingkooka.net.http.server.HttpRequests;
+import walkingkooka.net.http.server.HttpResponse;
+import walkingkooka.reflect.ClassTesting2;
+import walkingkooka.reflect.JavaVisibility;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class FetchJavaNetHttpClientRetryTest implements ClassTesting2<FetchJavaNetHttpClientRetry> {
+
+    private final static int MAX_ATTEMPTS = 4;
+    private final static long BASE = 100;
+    private final static long MAX = 1000;
+    private final static long BUDGET = 10_000;
+
+    @Test
+    public void testWithNullFetchFails() {
+        assertThrows(NullPointerException.class, () -> FetchJavaNetHttpClientRetry.with(null, MAX_ATTEMPTS, BASE, MAX, BUDGET, this.listener()));
+    }
+
+    @Test
+    public void testWithInvalidMaxAttemptsFails() {
+        assertThrows(IllegalArgumentException.class, () -> FetchJavaNetHttpClientRetry.with(this::fetch, 0, BASE, MAX, BUDGET, this.listener()));
+    }
+
+    @Test
+    public void testWithInvalidBaseDelayFails() {
+        assertThrows(IllegalArgumentException.class, () -> FetchJavaNetHttpClientRetry.with(this::fetch, MAX_ATTEMPTS, -1, MAX, BUDGET, this.listener()));
+    }
+
+    @Test
+    public void testWithMaxDelayLessThanBaseFails() {
+        assertThrows(IllegalArgumentException.class, () -> FetchJavaNetHttpClientRetry.with(this::fetch, MAX_ATTEMPTS, BASE, BASE - 1, BUDGET, this.listener()));
+    }
+
+    @Test
+    public void testWithInvalidBudgetFails() {
+        assertThrows(IllegalArgumentException.class, () -> FetchJavaNetHttpClientRetry.with(this::fetch, MAX_ATTEMPTS, BASE, MAX, -1, this.listener()));
+    }
+
+    @Test
+    public void testWithNullListenerFails() {
+        assertThrows(NullPointerException.class, () -> FetchJavaNetHttpClientRetry.with(this::fetch, MAX_ATTEMPTS, BASE, MAX, BUDGET, null));
+    }
+
+    @Test
+    public void testSuccess() {
+        final HttpResponse ok = ok();
+        this.outcomes.add(ok);
+
+        assertSame(ok, this.retry().apply(this.request(HttpMethod.GET)));
+        this.checkRetries();
+    }
+
+    @Test
+    public void testRetryServiceUnavailable() {
+        final HttpResponse ok = ok();
+        this.outcomes.add(response(HttpStatusCode.SERVICE_UNAVAILABLE.status()));
+        this.outcomes.add(response(HttpStatusCode.BAD_GATEWAY.status()));
+        this.outcomes.add(response(HttpStatusCode.GATEWAY_TIMEOUT.status()));
+        this.outcomes.add(ok);
+
+        assertSame(ok, this.retry().apply(this.request(HttpMethod.GET)));
+        this.checkRetries(BASE, BASE * 2, BASE * 4);
+    }
+
+    @Test
+    public void testRetryConnectionFailure() {
+        final HttpResponse ok = ok();
+        this.outcomes.add(new FetchException("Connection refused", new ConnectException("Connection refused")));
+        this.outcomes.add(ok);
+
+        assertSame(ok, this.retry().apply(this.request(HttpMethod.PUT)));
+        this.checkRetries(BASE);
+    }
+
+    @Test
+    public void testInterruptedNotRetried() {
+        final FetchException interrupted = new FetchException("Interrupted", new InterruptedException());
+        this.outcomes.add(interrupted);
+
+        assertSame(interrupted, assertThrows(FetchException.class, () -> this.retry().apply(this.request(HttpMethod.GET))));
+        this.checkRetries();
+    }
+
+    @Test
+    public void testFailureWithoutCauseNotRetried() {
+        final FetchException failure = new FetchException("Invalid url");
+        this.outcomes.add(failure);
+
+        assertSame(failure, assertThrows(FetchException.class, () -> this.retry().apply(this.request(HttpMethod.GET))));
+        this.checkRetries();
+    }
+
+    @Test
+    public void testServerErrorNotRetried() {
+        final HttpResponse error = response(HttpStatusCode.INTERNAL_SERVER_ERROR.status());
+        this.outcomes.add(error);
+
+        assertSame(error, this.retry().apply(this.request(HttpMethod.GET)));
+        this.checkRetries();
+    }
+
+    @Test
+    public void testPostNotRetried() {
+        final HttpResponse unavailable = response(HttpStatusCode.SERVICE_UNAVAILABLE.status());
+        this.outcomes.add(unavailable);
+
+        assertSame(unavailable, this.retry().apply(this.request(HttpMethod.POST)));
+        this.checkRetries();
+    }
+
+    @Test
+    public void testMaxAttemptsReturnsLastResponse() {
+        for (int i = 0; i < MAX_ATTEMPTS; i++) {
+            this.outcomes.add(response(HttpStatusCode.SERVICE_UNAVAILABLE.status()));
+        }
+        final HttpResponse last = this.outcomes.stream()
+                .reduce((first, second) -> second)
+                .map(HttpResponse.class::cast)
+                .get();
+
+        assertSame(last, this.retry().apply(this.request(HttpMethod.GET)));
+        this.checkRetries(BASE, BASE * 2, BASE * 4);
+    }
+
+    @Test
+    public void testMaxAttemptsThrowsLastFailure() {
+        FetchException last = null;
+        for (int i = 0; i < MAX_ATTEMPTS; i++) {
+            last = new FetchException("Connection reset " + i, new IOException("Connection reset"));
+            this.outcomes.add(last);
+        }
+
+        assertSame(last, assertThrows(FetchException.class, () -> this.retry().apply(this.request(HttpMethod.GET))));
+        this.checkRetries(BASE, BASE * 2, BASE * 4);
+    }
+
+    @Test
+    public void testBackoffCappedByMaxDelay() {
+        for (int i = 0; i < 6; i++) {
+            this.outcomes.add(response(HttpStatusCode.SERVICE_UNAVAILABLE.status()));
+        }
+        this.outcomes.add(ok());
+
+        FetchJavaNetHttpClientRetry.with(this::fetch, 7, BASE, 500, BUDGET, this.listener(), this::nanoTime, () -> this.now, (b) -> b, this::sleep)
+                .apply(this.request(HttpMethod.GET));
+        this.checkRetries(BASE, BASE * 2, BASE * 4, 500, 500, 500);
+    }
+
+    @Test
+    public void testFullJitter() {
+        this.outcomes.add(response(HttpStatusCode.SERVICE_UNAVAILABLE.status()));
+        this.outcomes.add(ok());
+
+        FetchJavaNetHttpClientRetry.with(this::fetch, MAX_ATTEMPTS, BASE, MAX, BUDGET, this.listener(), this::nanoTime, () -> this.now, (b) -> b / 4, this::sleep)
+                .apply(this.request(HttpMethod.GET));
+        this.checkRetries(BASE / 4);
+    }
+
+    @Test
+    public void testRetryAfterSeconds() {
+        this.outcomes.add(response(HttpStatusCode.SERVICE_UNAVAILABLE.status(), "Retry-After", "3"));
+        this.outcomes.add(ok());
+
+        this.retry().apply(this.request(HttpMethod.GET));
+        this.checkRetries(3000);
+    }
+
+    @Test
+    public void testRetryAfterLessThanBackoff() {
+        this.outcomes.add(response(HttpStatusCode.SERVICE_UNAVAILABLE.status(), "Retry-After", "0"));
+        this.outcomes.add(ok());
+
+        this.retry().apply(this.request(HttpMethod.GET));
+        this.checkRetries(BASE);
+    }
+
+    @Test
+    public void testRetryAfterBeyondBudget() {
+        final HttpResponse unavailable = response(HttpStatusCode.SERVICE_UNAVAILABLE.status(), "Retry-After", "3600");
+        this.outcomes.add(unavailable);
+
+        assertSame(unavailable, this.retry().apply(this.request(HttpMethod.GET)));
+        this.checkRetries();
+    }
+
+    @Test
+    public void testBudgetExhausted() {
+        for (int i = 0; i < 3; i++) {
+            this.outcomes.add(response(HttpStatusCode.SERVICE_UNAVAILABLE.status()));
+        }
+
+        // 100 + 200 fit within 350, the third delay of 400 does not
+        FetchJavaNetHttpClientRetry.with(this::fetch, 10, BASE, MAX, 350, this.listener(), this::nanoTime, () -> this.now, (b) -> b, this::sleep)
+                .apply(this.request(HttpMethod.GET));
+        this.checkRetries(BASE, BASE * 2);
+    }
+
+    @Test
+    public void testBudgetIgnoresWallClock() {
+        for (int i = 0; i < 3; i++) {
+            this.outcomes.add(response(HttpStatusCode.SERVICE_UNAVAILABLE.status()));
+        }
+
+        // the wall clock going backwards must not extend the budget
+        FetchJavaNetHttpClientRetry.with(this::fetch, 10, BASE, MAX, 350, this.listener(), this::nanoTime, () -> -this.now, (b) -> b, this::sleep)
+                .apply(this.request(HttpMethod.GET));
+        this.checkRetries(BASE, BASE * 2);
+    }
+
+    @Test
+    public void testRetryAfterHttpDate() {
+        this.checkEquals(2000L,
+                FetchJavaNetHttpClientRetry.retryAfter(response(HttpStatusCode.SERVICE_UNAVAILABLE.status(), "Retry-After", "Sun, 06 Nov 1994 08:49:39 GMT"),
+                        784111777000L));
+    }
+
+    @Test
+    public void testRetryAfterHttpDatePast() {
+        this.checkEquals(0L,
+                FetchJavaNetHttpClientRetry.retryAfter(response(HttpStatusCode.SERVICE_UNAVAILABLE.status(), "Retry-After", "Sun, 06 Nov 1994 08:49:37 GMT"),
+                        784111779000L));
+    }
+
+    @Test
+    public void testRetryAfterInvalid() {
+        this.checkEquals(0L,
+                FetchJavaNetHttpClientRetry.retryAfter(response(HttpStatusCode.SERVICE_UNAVAILABLE.status(), "Retry-After", "soon"),
+                        0));
+    }
+
+    @Test
+    public void testRetryAfterMissing() {
+        this.checkEquals(0L,
+                FetchJavaNetHttpClientRetry.retryAfter(response(HttpStatusCode.SERVICE_UNAVAILABLE.status()), 0));
+    }
+
+    @Test
+    public void testIsIdempotent() {
+        for (final HttpMethod method : Arrays.asList(HttpMethod.GET, HttpMethod.HEAD, HttpMethod.OPTIONS, HttpMethod.TRACE, HttpMethod.PUT, HttpMethod.DELETE)) {
+            this.checkEquals(true, FetchJavaNetHttpClientRetry.isIdempotent(method), method::toString);
+        }
+        for (final HttpMethod method : Arrays.asList(HttpMethod.POST, HttpMethod.with("PATCH"))) {
+            this.checkEquals(false, FetchJavaNetHttpClientRetry.isIdempotent(method), method::toString);
+        }
+    }
+
+    private FetchJavaNetHttpClientRetry retry() {
+        return FetchJavaNetHttpClientRetry.with(this::fetch,
+                MAX_ATTEMPTS,
+                BASE,
+                MAX,
+                BUDGET,
+                this.listener(),
+                this::nanoTime,
+                () -> this.now,
+                (bound) -> bound,
+                this::sleep);
+    }
+
+    private long nanoTime() {
+        return this.now * 1_000_000;
+    }
+
+    private HttpResponse fetch(final HttpRequest request) {
+        final Object outcome = this.outcomes.remove();
+        if (outcome instanceof FetchException) {
+            throw (FetchException) outcome;
+        }
+        return (HttpResponse) outcome;
+    }
+
+    private FetchRetryListener listener() {
+        return new FakeFetchRetryListener() {
+            @Override
+            public void onRetry(final HttpRequest request,
+                                final int attempt,
+                                final Duration delay) {
+                FetchJavaNetHttpClientRetryTest.this.checkEquals(FetchJavaNetHttpClientRetryTest.this.delays.size() + 2, attempt, "attempt");
+                FetchJavaNetHttpClientRetryTest.this.delays.add(delay.toMillis());
+            }
+        };
+    }
+
+    private void sleep(final long delay) {
+        this.checkEquals(this.delays.get(this.delays.size() - 1), delay, "sleep");
+        this.now += delay;
+    }
+
+    private void checkRetries(final long... delays) {
+        final List<Long> expected = new ArrayList<>();
+        for (final long delay : delays) {
+            expected.add(delay);
+        }
+        this.checkEquals(expected, this.delays, "retry delays");
+        this.checkEquals(0, this.outcomes.size(), "unused outcomes");
+    }
+
+    private static HttpResponse ok() {
+        return response(HttpStatusCode.OK.status());
+    }
+
+    private static HttpResponse response(final HttpStatus status,
+                                         final String... headers) {
+        final FetchHeaders fetchHeaders = FetchHeaders.empty();
+        for (int i = 0; i < headers.length; i += 2) {
+            fetchHeaders.add(headers[i], headers[i + 1]);
+        }
+        return Fetch.response(status, fetchHeaders.entity());
+    }
+
+    private HttpRequest request(final HttpMethod method) {
+        return HttpRequests.value(method,
+                HttpTransport.UNSECURED,
+                Url.parseRelative("/path1"),
+                HttpProtocolVersion.VERSION_1_1,
+                FetchHeaders.empty().entity());
+    }
+
+    private final Queue<Object> outcomes = new LinkedList<>();
+
+    private final List<Long> delays = new ArrayList<>();
+
+    private long now = 1000;
+
+    @Override
+    public Class<FetchJavaNetHttpClientRetry> type() {
+        return FetchJavaNetHttpClientRetry.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PACKAGE_PRIVATE;
+    }
+}
@@ -0,0 +1,386 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.net.http.client;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.net.AbsoluteUrl;
+import walkingkooka.net.Url;
+import walkingkooka.net.http.HttpEntity;
+import walkingkooka.net.http.HttpMethod;
+import walkingkooka.net.http.HttpProtocolVersion;
+import walkingkooka.net.http.HttpStatusCode;
+import walkingkooka.net.http.HttpTransport;
+import walkingkooka.net.http.server.HttpRequest;
+import walkingkooka.net.http.server.HttpRequests;
+import walkingkooka.net.http.server.HttpResponse;
+import walkingkooka.reflect.ClassTesting2;
+import walkingkooka.reflect.JavaVisibility;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class FetchJavaNetHttpClientSingleFlightTest implements ClassTesting2<FetchJavaNetHttpClientSingleFlight> {
+
+    private final static int THREADS = 8;
+
+    @Test
+    public void testWithNullFetchFails() {
+        assertThrows(NullPointerException.class, () -> FetchJavaNetHttpClientSingleFlight.with(null, this.customizer()));
+    }
+
+    @Test
+    public void testWithNullCustomizerFails() {
+        assertThrows(NullPointerException.class, () -> FetchJavaNetHttpClientSingleFlight.with((r) -> null, null));
+    }
+
+    @Test
+    public void testConcurrentIdenticalRequestsCoalesced() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger sent = new AtomicInteger();
+
+        final FetchJavaNetHttpClientSingleFlight singleFlight = FetchJavaNetHttpClientSingleFlight.with((r) -> {
+                    sent.incrementAndGet();
+                    await(release);
+                    return Fetch.response(HttpStatusCode.OK.status(), HttpEntity.EMPTY.setBodyText("body123"));
+                },
+                this.customizer());
+
+        final List<HttpResponse> responses = this.sendConcurrently(singleFlight,
+                this.request(HttpMethod.GET, "/path1"),
+                release);
+
+        this.checkEquals(1, sent.get(), "upstream requests");
+        this.checkEquals(0, singleFlight.inFlight(), "in flight");
+        this.checkEquals(0, singleFlight.followers(), "followers");
+
+        for (final HttpResponse response : responses) {
+            this.checkEquals("body123", response.entities().get(0).bodyText(), "body");
+        }
+        for (int i = 1; i < responses.size(); i++) {
+            assertNotSame(responses.get(0), responses.get(i), "each caller should have its own response");
+        }
+    }
+
+    @Test
+    public void testConcurrentIdenticalRequestsFailure() throws Exception {
+        this.concurrentFailureAndCheck(new FetchException("Connection refused"));
+    }
+
+    @Test
+    public void testConcurrentIdenticalRequestsBulkheadFull() throws Exception {
+        this.concurrentFailureAndCheck(new FetchBulkheadFullException("Bulkhead full"));
+    }
+
+    @Test
+    public void testConcurrentIdenticalRequestsCircuitBreakerOpen() throws Exception {
+        this.concurrentFailureAndCheck(new FetchCircuitBreakerOpenException("Circuit open"));
+    }
+
+    private void concurrentFailureAndCheck(final FetchException failure) throws Exception {
+        final List<Throwable> failures = this.sendConcurrentlyAndFail(failure);
+
+        for (final Throwable cause : failures) {
+            this.checkEquals(failure.getClass(), cause.getClass(), "cause");
+            this.checkEquals(failure.getMessage(), cause.getMessage(), "message");
+        }
+        this.checkEquals((long) THREADS, failures.stream().distinct().count(), "each caller should have its own exception");
+    }
+
+    @Test
+    public void testConcurrentIdenticalRequestsRuntimeExceptionWrapped() throws Exception {
+        final IllegalStateException failure = new IllegalStateException("Invalid state");
+        final List<Throwable> failures = this.sendConcurrentlyAndFail(failure);
+
+        // the leader as well as every follower receives a FetchException
+        for (final Throwable cause : failures) {
+            this.checkEquals(FetchException.class, cause.getClass(), "cause");
+            this.checkEquals("Invalid state", cause.getMessage(), "message");
+
+            Throwable root = cause;
+            while (null != root.getCause()) {
+                root = root.getCause();
+            }
+            assertSame(failure, root, "root cause");
+        }
+        this.checkEquals((long) THREADS, failures.stream().distinct().count(), "each caller should have its own exception");
+    }
+
+    @Test
+    public void testConcurrentIdenticalRequestsErrorRethrown() throws Exception {
+        final Error failure = new Error("Fatal");
+        final List<Throwable> failures = this.sendConcurrentlyAndFail(failure);
+
+        for (final Throwable cause : failures) {
+            assertSame(failure, cause);
+        }
+    }
+
+    /**
+     * Sends identical requests from {@link #THREADS} threads, with the only request sent failing, returning what each
+     * caller received.
+     */
+    private List<Throwable> sendConcurrentlyAndFail(final Throwable failure) throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger sent = new AtomicInteger();
+
+        final FetchJavaNetHttpClientSingleFlight singleFlight = FetchJavaNetHttpClientSingleFlight.with((r) -> {
+                    sent.incrementAndGet();
+                    await(release);
+                    if (failure instanceof Error) {
+                        throw (Error) failure;
+                    }
+                    throw (RuntimeException) failure;
+                },
+                this.customizer());
+
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            final List<CompletableFuture<HttpResponse>> futures = new ArrayList<>();
+            final HttpRequest request = this.request(HttpMethod.GET, "/path1");
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(CompletableFuture.supplyAsync(() -> singleFlight.apply(request), executor));
+            }
+            this.waitForFollowers(singleFlight);
+            release.countDown();
+
+            final List<Throwable> failures = new ArrayList<>();
+            for (final CompletableFuture<HttpResponse> future : futures) {
+                final ExecutionException thrown = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+                failures.add(thrown.getCause());
+            }
+            this.checkEquals(1, sent.get(), "upstream requests");
+            return failures;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFollowerInterrupted() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger sent = new AtomicInteger();
+
+        final FetchJavaNetHttpClientSingleFlight singleFlight = FetchJavaNetHttpClientSingleFlight.with((r) -> {
+                    sent.incrementAndGet();
+                    await(release);
+                    return Fetch.response(HttpStatusCode.OK.status(), HttpEntity.EMPTY);
+                },
+                this.customizer());
+        final HttpRequest request = this.request(HttpMethod.GET, "/path1");
+
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final CompletableFuture<HttpResponse> leader = CompletableFuture.supplyAsync(() -> singleFlight.apply(request), executor);
+            while (0 == sent.get()) {
+                Thread.sleep(1);
+            }
+
+            final CompletableFuture<Boolean> interrupted = new CompletableFuture<>();
+            final Thread follower = new Thread(() -> {
+                try {
+                    singleFlight.apply(request);
+                    interrupted.complete(false);
+                } catch (final FetchException expected) {
+                    interrupted.complete(expected.getCause() instanceof InterruptedException && Thread.currentThread().isInterrupted());
+                }
+            });
+            follower.start();
+            while (0 == singleFlight.followers()) {
+                Thread.sleep(1);
+            }
+            follower.interrupt();
+
+            // the follower gives up while the leader is still waiting
+            this.checkEquals(true, interrupted.get(5, TimeUnit.SECONDS), "interrupted");
+            this.checkEquals(0, singleFlight.followers(), "followers");
+            this.checkEquals(false, leader.isDone(), "leader done");
+
+            release.countDown();
+            leader.get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        this.checkEquals(1, sent.get(), "upstream requests");
+    }
+
+    @Test
+    public void testSequentialRequestsNotCoalesced() {
+        final AtomicInteger sent = new AtomicInteger();
+        final FetchJavaNetHttpClientSingleFlight singleFlight = this.counting(sent);
+
+        singleFlight.apply(this.request(HttpMethod.GET, "/path1"));
+        singleFlight.apply(this.request(HttpMethod.GET, "/path1"));
+
+        this.checkEquals(2, sent.get(), "upstream requests");
+    }
+
+    @Test
+    public void testPostNotCoalesced() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger sent = new AtomicInteger();
+
+        final FetchJavaNetHttpClientSingleFlight singleFlight = FetchJavaNetHttpClientSingleFlight.with((r) -> {
+                    sent.incrementAndGet();
+                    await(release);
+                    return Fetch.response(HttpStatusCode.OK.status(), HttpEntity.EMPTY);
+                },
+                this.customizer());
+
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final HttpRequest request = this.request(HttpMethod.POST, "/path1");
+            final CompletableFuture<HttpResponse> first = CompletableFuture.supplyAsync(() -> singleFlight.apply(request), executor);
+            final CompletableFuture<HttpResponse> second = CompletableFuture.supplyAsync(() -> singleFlight.apply(request), executor);
+
+            while (sent.get() < 2) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+            first.get(5, TimeUnit.SECONDS);
+            second.get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        this.checkEquals(2, sent.get(), "upstream requests");
+    }
+
+    @Test
+    public void testDifferentHeadersNotCoalesced() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger sent = new AtomicInteger();
+
+        final FetchJavaNetHttpClientSingleFlight singleFlight = FetchJavaNetHttpClientSingleFlight.with((r) -> {
+                    sent.incrementAndGet();
+                    await(release);
+                    return Fetch.response(HttpStatusCode.OK.status(), HttpEntity.EMPTY);
+                },
+                this.customizer());
+
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final CompletableFuture<HttpResponse> english = CompletableFuture.supplyAsync(() -> singleFlight.apply(this.request(HttpMethod.GET, "/path1", "Accept-Language", "en")), executor);
+            final CompletableFuture<HttpResponse> french = CompletableFuture.supplyAsync(() -> singleFlight.apply(this.request(HttpMethod.GET, "/path1", "Accept-Language", "fr")), executor);
+
+            while (sent.get() < 2) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+            english.get(5, TimeUnit.SECONDS);
+            french.get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        this.checkEquals(2, sent.get(), "upstream requests");
+    }
+
+    // helpers..........................................................................................................
+
+    private List<HttpResponse> sendConcurrently(final FetchJavaNetHttpClientSingleFlight singleFlight,
+                                                final HttpRequest request,
+                                                final CountDownLatch release) throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            final List<CompletableFuture<HttpResponse>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(CompletableFuture.supplyAsync(() -> singleFlight.apply(request), executor));
+            }
+            this.waitForFollowers(singleFlight);
+            release.countDown();
+
+            final List<HttpResponse> responses = new ArrayList<>();
+            for (final CompletableFuture<HttpResponse> future : futures) {
+                responses.add(future.get(5, TimeUnit.SECONDS));
+            }
+            return responses;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Waits until every thread but the one sending the request is waiting for it, so none can become a second leader.
+     */
+    private void waitForFollowers(final FetchJavaNetHttpClientSingleFlight singleFlight) throws InterruptedException {
+        final long end = System.currentTimeMillis() + 5000;
+        while (singleFlight.followers() < THREADS - 1 && System.currentTimeMillis() < end) {
+            Thread.sleep(1);
+        }
+        this.checkEquals(THREADS - 1, singleFlight.followers(), "followers");
+    }
+
+    private FetchJavaNetHttpClientSingleFlight counting(final AtomicInteger sent) {
+        return FetchJavaNetHttpClientSingleFlight.with((r) -> {
+                    sent.incrementAndGet();
+                    return Fetch.response(HttpStatusCode.OK.status(), HttpEntity.EMPTY);
+                },
+                this.customizer());
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (final InterruptedException cause) {
+            throw new FetchException(cause.getMessage(), cause);
+        }
+    }
+
+    private FetchCustomizer customizer() {
+        return new FakeFetchCustomizer() {
+            @Override
+            public AbsoluteUrl httpClientUrl(final HttpRequest request) {
+                return Url.parseAbsolute("http://example.com" + request.url());
+            }
+        };
+    }
+
+    private HttpRequest request(final HttpMethod method,
+                                final String url,
+                                final String... headers) {
+        final FetchHeaders fetchHeaders = FetchHeaders.empty();
+        for (int i = 0; i < headers.length; i += 2) {
+            fetchHeaders.add(headers[i], headers[i + 1]);
+        }
+        return HttpRequests.value(method,
+                HttpTransport.UNSECURED,
+                Url.parseRelative(url),
+                HttpProtocolVersion.VERSION_1_1,
+                fetchHeaders.entity());
+    }
+
+    @Override
+    public Class<FetchJavaNetHttpClientSingleFlight> type() {
+        return FetchJavaNetHttpClientSingleFlight.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PACKAGE_PRIVATE;
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.net.http.client;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.reflect.ClassTesting2;
+import walkingkooka.reflect.JavaVisibility;
+
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class FetchJavaNetHttpClientStreamLimiterTest implements ClassTesting2<FetchJavaNetHttpClientStreamLimiter> {
+
+    private final static String ORIGIN = "http://example.com:80";
+
+    private final static String ORIGIN2 = "http://example2.com:80";
+
+    @Test
+    public void testOrigin() {
+        this.checkEquals("https://example.com:8443",
+                FetchJavaNetHttpClientStreamLimiter.origin(URI.create("https://example.com:8443/path1?query2")));
+    }
+
+    @Test
+    public void testOriginHttpDefaultPort() {
+        this.checkEquals("http://example.com:80",
+                FetchJavaNetHttpClientStreamLimiter.origin(URI.create("http://example.com/path1")));
+    }
+
+    @Test
+    public void testOriginHttpsDefaultPort() {
+        this.checkEquals("https://example.com:443",
+                FetchJavaNetHttpClientStreamLimiter.origin(URI.create("https://example.com/path1")));
+    }
+
+    @Test
+    public void testOriginDefaultAndExplicitPortSame() {
+        this.checkEquals(FetchJavaNetHttpClientStreamLimiter.origin(URI.create("http://example.com:80/path1")),
+                FetchJavaNetHttpClientStreamLimiter.origin(URI.create("http://example.com/path2")));
+    }
+
+    @Test
+    public void testOriginLowerCased() {
+        this.checkEquals("https://example.com:443",
+                FetchJavaNetHttpClientStreamLimiter.origin(URI.create("HTTPS://Example.COM/path1")));
+    }
+
+    @Test
+    public void testAcquireBelowMax() {
+        final FetchJavaNetHttpClientStreamLimiter limiter = FetchJavaNetHttpClientStreamLimiter.create();
+
+        this.checkEquals(true, limiter.acquire(ORIGIN, 2).isDone());
+        this.checkEquals(true, limiter.acquire(ORIGIN, 2).isDone());
+        this.checkEquals(2, limiter.inFlight(ORIGIN));
+    }
+
+    @Test
+    public void testAcquireAboveMaxWaitsUntilRelease() {
+        final FetchJavaNetHttpClientStreamLimiter limiter = FetchJavaNetHttpClientStreamLimiter.create();
+
+        limiter.acquire(ORIGIN, 1);
+        final CompletableFuture<Void> waiter = limiter.acquire(ORIGIN, 1);
+        this.checkEquals(false, waiter.isDone(), "waiter should not have permit");
+
+        limiter.release(ORIGIN, 1);
+        this.checkEquals(true, waiter.isDone(), "waiter should have permit");
+        this.checkEquals(1, limiter.inFlight(ORIGIN));
+
+        limiter.release(ORIGIN, 1);
+        this.checkEquals(0, limiter.inFlight(ORIGIN));
+    }
+
+    @Test
+    public void testOriginsIndependent() {
+        final FetchJavaNetHttpClientStreamLimiter limiter = FetchJavaNetHttpClientStreamLimiter.create();
+
+        limiter.acquire(ORIGIN, 1);
+        this.checkEquals(true, limiter.acquire(ORIGIN2, 1).isDone());
+    }
+
+    @Test
+    public void testCancelledWaiterSkipped() {
+        final FetchJavaNetHttpClientStreamLimiter limiter = FetchJavaNetHttpClientStreamLimiter.create();
+
+        limiter.acquire(ORIGIN, 1);
+        final CompletableFuture<Void> cancelled = limiter.acquire(ORIGIN, 1);
+        final CompletableFuture<Void> waiter = limiter.acquire(ORIGIN, 1);
+
+        cancelled.cancel(false);
+        limiter.release(ORIGIN, 1);
+
+        this.checkEquals(true, waiter.isDone(), "waiter should have permit");
+        this.checkEquals(1, limiter.inFlight(ORIGIN));
+    }
+
+    @Test
+    public void testReleaseUnknownOriginFails() {
+        assertThrows(IllegalStateException.class, () -> FetchJavaNetHttpClientStreamLimiter.create().release(ORIGIN, 1));
+    }
+
+    @Override
+    public Class<FetchJavaNetHttpClientStreamLimiter> type() {
+        return FetchJavaNetHttpClientStreamLimiter.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PACKAGE_PRIVATE;
+    }
+}
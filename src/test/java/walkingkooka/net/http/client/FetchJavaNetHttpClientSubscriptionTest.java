@@ -0,0 +1,193 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package walkingkooka.net.http.client;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.collect.list.Lists;
+import walkingkooka.reflect.ClassTesting2;
+import walkingkooka.reflect.JavaVisibility;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class FetchJavaNetHttpClientSubscriptionTest implements ClassTesting2<FetchJavaNetHttpClientSubscription> {
+
+    @Test
+    public void testNullSubscriberFails() {
+        assertThrows(NullPointerException.class, () -> new TestSubscription(null, 1));
+    }
+
+    @Test
+    public void testCompletes() {
+        final Recorder recorder = new Recorder(Long.MAX_VALUE);
+        final TestSubscription subscription = new TestSubscription(recorder, 3);
+        recorder.onSubscribe(subscription);
+
+        this.checkEquals(Lists.of("next", "next", "next", "complete"), recorder.signals);
+        this.checkEquals(1, subscription.released, "released");
+    }
+
+    @Test
+    public void testInvalidRequest() {
+        final Recorder recorder = new Recorder(0);
+        final TestSubscription subscription = new TestSubscription(recorder, 3);
+        recorder.onSubscribe(subscription);
+
+        subscription.request(-1);
+        subscription.request(1);
+
+        this.checkEquals(Lists.of("error Invalid request -1 <= 0"), recorder.signals);
+        this.checkEquals(1, subscription.released, "released");
+    }
+
+    @Test
+    public void testInvalidRequestWithinOnNext() {
+        final Recorder recorder = new Recorder(2) {
+            @Override
+            public void onNext(final ByteBuffer item) {
+                this.active++;
+                super.onNext(item);
+                this.subscription.request(0);
+                this.active--;
+            }
+        };
+        final TestSubscription subscription = new TestSubscription(recorder, 3);
+        recorder.onSubscribe(subscription);
+
+        // the error is only signalled after onNext returns and no further items follow
+        this.checkEquals(Lists.of("next", "error Invalid request 0 <= 0"), recorder.signals);
+        this.checkEquals(false, recorder.overlapped, "signals overlapped");
+        this.checkEquals(1, subscription.released, "released");
+    }
+
+    @Test
+    public void testCancel() {
+        final Recorder recorder = new Recorder(0);
+        final TestSubscription subscription = new TestSubscription(recorder, 3);
+        recorder.onSubscribe(subscription);
+
+        subscription.cancel();
+        subscription.request(1);
+        subscription.request(0);
+
+        this.checkEquals(Lists.of(), recorder.signals);
+        this.checkEquals(1, subscription.released, "released");
+    }
+
+    @Test
+    public void testCancelWithinOnNext() {
+        final Recorder recorder = new Recorder(Long.MAX_VALUE) {
+            @Override
+            public void onNext(final ByteBuffer item) {
+                super.onNext(item);
+                this.subscription.cancel();
+            }
+        };
+        final TestSubscription subscription = new TestSubscription(recorder, 3);
+        recorder.onSubscribe(subscription);
+
+        this.checkEquals(Lists.of("next"), recorder.signals);
+        this.checkEquals(1, subscription.released, "released");
+    }
+
+    private static final class TestSubscription extends FetchJavaNetHttpClientSubscription {
+
+        TestSubscription(final Flow.Subscriber<? super ByteBuffer> subscriber,
+                         final int count) {
+            super(subscriber);
+            this.count = count;
+        }
+
+        @Override
+        boolean hasNext() {
+            return this.count > 0;
+        }
+
+        @Override
+        ByteBuffer next() {
+            this.count--;
+            return ByteBuffer.allocate(1);
+        }
+
+        @Override
+        void release() {
+            this.released++;
+        }
+
+        private int count;
+        int released;
+    }
+
+    private static class Recorder implements Flow.Subscriber<ByteBuffer> {
+
+        Recorder(final long initial) {
+            this.initial = initial;
+        }
+
+        @Override
+        public void onSubscribe(final Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (this.initial > 0) {
+                subscription.request(this.initial);
+            }
+        }
+
+        @Override
+        public void onNext(final ByteBuffer item) {
+            this.signal("next");
+        }
+
+        @Override
+        public void onError(final Throwable throwable) {
+            this.signal("error " + throwable.getMessage());
+        }
+
+        @Override
+        public void onComplete() {
+            this.signal("complete");
+        }
+
+        private void signal(final String signal) {
+            if (this.active > 1) {
+                this.overlapped = true;
+            }
+            this.signals.add(signal);
+        }
+
+        private final long initial;
+        Flow.Subscription subscription;
+        final List<String> signals = new ArrayList<>();
+        int active;
+        boolean overlapped;
+    }
+
+    @Override
+    public Class<FetchJavaNetHttpClientSubscription> type() {
+        return FetchJavaNetHttpClientSubscription.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PACKAGE_PRIVATE;
+    }
+}
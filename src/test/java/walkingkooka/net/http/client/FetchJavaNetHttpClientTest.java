@@ -29,6 +29,7 @@ import walkingkooka.net.RelativeUrl;
 import walkingkooka.net.Url;
 import walkingkooka.net.UrlCredentials;
 import walkingkooka.net.UrlScheme;
+import walkingkooka.net.header.ContentEncoding;
 import walkingkooka.net.header.HttpHeaderName;
 import walkingkooka.net.header.MediaType;
 import walkingkooka.net.http.HttpEntity;
@@ -43,22 +44,47 @@ import walkingkooka.net.http.server.HttpResponse;
 import walkingkooka.net.http.server.HttpServer;
 import walkingkooka.net.http.server.jetty.JettyHttpServer;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.io.Reader;
 import java.io.StringWriter;
 import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpClient.Redirect;
 import java.net.http.HttpClient.Version;
+import java.net.http.HttpRequest.BodyPublisher;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 public final class FetchJavaNetHttpClientTest extends FetchTestCase<FetchJavaNetHttpClient> {
 
@@ -152,6 +178,984 @@ public final class FetchJavaNetHttpClientTest extends FetchTestCase<FetchJavaNet
                 bodyTextOut);
     }
 
+    @Test
+    public void testPostRequestWithTextBodyWithoutCharsetEncodedWithDefaultCharset() {
+        final HttpMethod method = HttpMethod.POST;
+        final RelativeUrl url = Url.parseRelative("/resource1");
+        final HttpHeaderName<MediaType> contentTypeHeader = HttpHeaderName.CONTENT_TYPE;
+        final String bodyTextIn = "caf\u00e9";
+
+        final HttpStatus status = HttpStatusCode.OK.setMessage("OK Message 123");
+        final String bodyTextOut = "BodyText123456-OUT";
+
+        final IpPort port = this.server((req, resp) -> {
+            this.checkEquals(Binary.with(bodyTextIn.getBytes(StandardCharsets.ISO_8859_1)),
+                    Binary.with(req.body()),
+                    () -> "bad request body\n" + req);
+
+            resp.setStatus(status);
+            resp.addEntity(HttpEntity.EMPTY
+                    .addHeader(contentTypeHeader, MediaType.TEXT_PLAIN)
+                    .setBodyText(bodyTextOut));
+        });
+
+        final FetchJavaNetHttpClient fetch = this.customizer(port)
+                .defaultCharset(StandardCharsets.ISO_8859_1)
+                .fetch();
+        this.checkResponse(fetch.apply(this.request(method,
+                url,
+                HttpEntity.EMPTY
+                        .addHeader(contentTypeHeader, MediaType.TEXT_PLAIN)
+                        .setBodyText(bodyTextIn))),
+                status,
+                Maps.of(contentTypeHeader, list(MediaType.TEXT_PLAIN)),
+                bodyTextOut);
+    }
+
+    @Test
+    public void testPostRequestWithBinaryBody() {
+        final HttpMethod method = HttpMethod.POST;
+        final RelativeUrl url = Url.parseRelative("/resource1");
+        final HttpHeaderName<MediaType> contentTypeHeader = HttpHeaderName.CONTENT_TYPE;
+        final MediaType contentTypeValueIn = MediaType.parse("application/octet-stream");
+
+        // includes bytes that are not valid UTF-8 and would be corrupted by a String round trip
+        final byte[] bodyIn = new byte[256];
+        for (int i = 0; i < bodyIn.length; i++) {
+            bodyIn[i] = (byte) i;
+        }
+
+        final HttpStatus status = HttpStatusCode.OK.setMessage("OK Message 123");
+        final String bodyTextOut = "BodyText123456-OUT";
+
+        final IpPort port = this.server((req, resp) -> {
+            this.checkEquals(method, req.method(), () -> "method\n" + req);
+            this.checkEquals(Optional.of(contentTypeValueIn),
+                    contentTypeHeader.header(req),
+                    () -> "incorrect header " + contentTypeHeader + "\n" + req);
+            this.checkEquals(Binary.with(bodyIn),
+                    Binary.with(req.body()),
+                    () -> "bad request body\n" + req);
+
+            resp.setStatus(status);
+            resp.addEntity(HttpEntity.EMPTY
+                    .addHeader(contentTypeHeader, MediaType.TEXT_PLAIN)
+                    .setBodyText(bodyTextOut));
+        });
+
+        final FetchJavaNetHttpClient fetch = this.fetch(port);
+        this.checkResponse(fetch.apply(this.request(method,
+                url,
+                HttpEntity.EMPTY
+                        .addHeader(contentTypeHeader, contentTypeValueIn)
+                        .setBody(Binary.with(bodyIn)))),
+                status,
+                Maps.of(contentTypeHeader, list(MediaType.TEXT_PLAIN)),
+                bodyTextOut);
+    }
+
+    @Test
+    public void testPostRequestWithBinaryBodyWithoutContentType() {
+        final HttpMethod method = HttpMethod.POST;
+        final RelativeUrl url = Url.parseRelative("/resource1");
+
+        // the body is binary even without a content-type and must not be sent as text
+        final byte[] bodyIn = new byte[256];
+        for (int i = 0; i < bodyIn.length; i++) {
+            bodyIn[i] = (byte) i;
+        }
+
+        final HttpStatus status = HttpStatusCode.OK.setMessage("OK Message 123");
+        final HttpHeaderName<MediaType> contentTypeHeader = HttpHeaderName.CONTENT_TYPE;
+        final String bodyTextOut = "BodyText123456-OUT";
+
+        final IpPort port = this.server((req, resp) -> {
+            this.checkEquals(Binary.with(bodyIn),
+                    Binary.with(req.body()),
+                    () -> "bad request body\n" + req);
+
+            resp.setStatus(status);
+            resp.addEntity(HttpEntity.EMPTY
+                    .addHeader(contentTypeHeader, MediaType.TEXT_PLAIN)
+                    .setBodyText(bodyTextOut));
+        });
+
+        final FetchJavaNetHttpClient fetch = this.fetch(port);
+        this.checkResponse(fetch.apply(this.request(method,
+                url,
+                HttpEntity.EMPTY
+                        .setBody(Binary.with(bodyIn)))),
+                status,
+                Maps.of(contentTypeHeader, list(MediaType.TEXT_PLAIN)),
+                bodyTextOut);
+    }
+
+    @Test
+    public void testPostRequestWithFileBody() throws IOException {
+        final HttpHeaderName<MediaType> contentTypeHeader = HttpHeaderName.CONTENT_TYPE;
+        final HttpStatus status = HttpStatusCode.OK.setMessage("OK Message 123");
+        final int length = 8 * 1024 * 1024;
+
+        final Path file = Files.createTempFile(this.getClass().getSimpleName(), ".bin");
+        try {
+            try (final OutputStream output = Files.newOutputStream(file)) {
+                final byte[] buffer = new byte[4096];
+                for (int i = 0; i < length; i += buffer.length) {
+                    Arrays.fill(buffer, (byte) (i / buffer.length));
+                    output.write(buffer);
+                }
+            }
+
+            final IpPort port = this.server((req, resp) -> {
+                this.checkEquals(Optional.of(Long.valueOf(length)),
+                        HttpHeaderName.CONTENT_LENGTH.header(req),
+                        () -> "content-length\n" + req);
+                this.checkEquals(length, req.body().length, "request body length");
+
+                resp.setStatus(status);
+                resp.addEntity(HttpEntity.EMPTY
+                        .addHeader(contentTypeHeader, MediaType.TEXT_PLAIN)
+                        .setBodyText("" + Arrays.hashCode(req.body())));
+            });
+
+            try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                final String expected = "" + Arrays.hashCode(Files.readAllBytes(file));
+
+                this.checkResponse(this.customizer(port).body((r) -> Optional.of(FetchJavaNetHttpClientBodyPublishers.file(file))).fetch()
+                                .apply(this.request(HttpMethod.POST, Url.parseRelative("/upload"), HttpEntity.EMPTY)),
+                        status,
+                        Maps.of(contentTypeHeader, list(MediaType.TEXT_PLAIN)),
+                        expected);
+
+                this.checkResponse(this.customizer(port).body((r) -> Optional.of(FetchJavaNetHttpClientBodyPublishers.fileChannel(channel, 0, length))).fetch()
+                                .apply(this.request(HttpMethod.POST, Url.parseRelative("/upload"), HttpEntity.EMPTY)),
+                        status,
+                        Maps.of(contentTypeHeader, list(MediaType.TEXT_PLAIN)),
+                        expected);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testPostRequestCompressed() {
+        this.postRequestCompressedAndCheck(100, digits(1000), true);
+    }
+
+    @Test
+    public void testPostRequestBelowCompressThreshold() {
+        this.postRequestCompressedAndCheck(100, digits(10), false);
+    }
+
+    @Test
+    public void testPostRequestCompressDisabled() {
+        this.postRequestCompressedAndCheck(-1, digits(1000), false);
+    }
+
+    private static String digits(final int length) {
+        final StringBuilder b = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            b.append(i % 10);
+        }
+        return b.toString();
+    }
+
+    private void postRequestCompressedAndCheck(final long threshold,
+                                               final String bodyTextIn,
+                                               final boolean compressed) {
+        final HttpHeaderName<MediaType> contentTypeHeader = HttpHeaderName.CONTENT_TYPE;
+        final MediaType contentType = MediaType.parse("text/plain;charset=UTF-8");
+        final HttpStatus status = HttpStatusCode.OK.setMessage("OK Message 123");
+
+        final IpPort port = this.server((req, resp) -> {
+            this.checkEquals(compressed ? Optional.of("gzip") : Optional.empty(),
+                    FetchHeaders.text(req, "Content-Encoding"),
+                    () -> "content-encoding\n" + req);
+
+            final byte[] body;
+            if (compressed) {
+                try (final InputStream gzip = new GZIPInputStream(new ByteArrayInputStream(req.body()))) {
+                    body = gzip.readAllBytes();
+                } catch (final IOException cause) {
+                    throw new Error(cause);
+                }
+            } else {
+                body = req.body();
+            }
+            this.checkEquals(bodyTextIn, new String(body, StandardCharsets.UTF_8), "request body");
+
+            resp.setStatus(status);
+            resp.addEntity(HttpEntity.EMPTY
+                    .addHeader(contentTypeHeader, contentType)
+                    .setBodyText("OK"));
+        });
+
+        this.checkResponse(this.customizer(port).compressThreshold(threshold).fetch()
+                        .apply(this.request(HttpMethod.POST,
+                                Url.parseRelative("/upload"),
+                                HttpEntity.EMPTY
+                                        .addHeader(contentTypeHeader, contentType)
+                                        .setBodyText(bodyTextIn))),
+                status,
+                Maps.of(contentTypeHeader, list(contentType)),
+                "OK");
+    }
+
+    @Test
+    public void testRetryFlakyServer() {
+        final HttpHeaderName<MediaType> contentTypeHeader = HttpHeaderName.CONTENT_TYPE;
+        final HttpStatus status = HttpStatusCode.OK.setMessage("OK Message 123");
+        final AtomicInteger received = new AtomicInteger();
+
+        final IpPort port = this.server((req, resp) -> {
+            if (received.incrementAndGet() < 3) {
+                resp.setStatus(HttpStatusCode.SERVICE_UNAVAILABLE.status());
+                resp.addEntity(HttpEntity.EMPTY);
+            } else {
+                resp.setStatus(status);
+                resp.addEntity(HttpEntity.EMPTY
+                        .addHeader(contentTypeHeader, MediaType.TEXT_PLAIN)
+                        .setBodyText("attempt " + received.get()));
+            }
+        });
+
+        final List<Integer> attempts = new ArrayList<>();
+        final Function<HttpRequest, HttpResponse> retry = FetchJavaNetHttpClientRetry.with(this.fetch(port),
+                5,
+                1,
+                10,
+                5000,
+                new FakeFetchRetryListener() {
+                    @Override
+                    public void onRetry(final HttpRequest request,
+                                        final int attempt,
+                                        final Duration delay) {
+                        attempts.add(attempt);
+                    }
+                });
+
+        this.checkResponse(retry.apply(this.request(HttpMethod.GET, Url.parseRelative("/flaky"), HttpEntity.EMPTY)),
+                status,
+                Maps.of(contentTypeHeader, list(MediaType.TEXT_PLAIN)),
+                "attempt 3");
+        this.checkEquals(Lists.of(2, 3), attempts, "retry attempts");
+    }
+
+    @Test
+    public void testHttpClientReused() {
+        final HttpHeaderName<MediaType> contentTypeHeader = HttpHeaderName.CONTENT_TYPE;
+        final MediaType contentType = MediaType.TEXT_PLAIN;
+        final HttpStatus status = HttpStatusCode.OK.setMessage("OK Message 123");
+        final String bodyText = "BodyText123456";
+
+        final IpPort port = this.server((req, resp) -> {
+            resp.setStatus(status);
+            resp.addEntity(HttpEntity.EMPTY
+                    .addHeader(contentTypeHeader, contentType)
+                    .setBodyText(bodyText));
+        });
+
+        final FetchJavaNetHttpClient fetch = this.fetch(port);
+
+        for (int i = 0; i < 3; i++) {
+            this.checkResponse(fetch.apply(this.request(HttpMethod.GET,
+                    Url.parseRelative("/resource" + i),
+                    HttpEntity.EMPTY)),
+                    status,
+                    Maps.of(contentTypeHeader, list(contentType)),
+                    bodyText);
+        }
+
+        this.checkEquals(1, fetch.clients.size(), () -> "clients " + fetch.clients);
+    }
+
+    @Test
+    public void testHttpClientDifferentConfigurationNotShared() {
+        final IpPort port = this.server((req, resp) -> {
+            resp.setStatus(HttpStatusCode.OK.status());
+            resp.addEntity(HttpEntity.EMPTY);
+        });
+
+        final FetchJavaNetHttpClient fetch = FetchJavaNetHttpClient.with(new FakeFetchCustomizer() {
+            @Override
+            public AbsoluteUrl httpClientUrl(final HttpRequest request) {
+                return request.url()
+                        .set(UrlScheme.HTTP, UrlCredentials.NO_CREDENTIALS, SERVER, Optional.of(port));
+            }
+
+            @Override
+            public Charset defaultCharset() {
+                return Charset.defaultCharset();
+            }
+
+            @Override
+            public void prepareHttpClient(final HttpClient.Builder client,
+                                          final java.net.http.HttpRequest.Builder request) {
+                client.version(Version.HTTP_1_1);
+                client.connectTimeout(Duration.ofMillis(500 + this.counter++));
+                request.timeout(Duration.ofMillis(500));
+            }
+
+            private int counter;
+        });
+
+        fetch.apply(this.request(HttpMethod.GET, Url.parseRelative("/resource1"), HttpEntity.EMPTY));
+        fetch.apply(this.request(HttpMethod.GET, Url.parseRelative("/resource2"), HttpEntity.EMPTY));
+
+        this.checkEquals(2, fetch.clients.size(), () -> "clients " + fetch.clients);
+    }
+
+    @Test
+    public void testCloseReleasesHttpClients() {
+        final IpPort port = this.server((req, resp) -> {
+            resp.setStatus(HttpStatusCode.OK.status());
+            resp.addEntity(HttpEntity.EMPTY);
+        });
+
+        final FetchJavaNetHttpClient fetch = this.fetch(port);
+        fetch.apply(this.request(HttpMethod.GET, Url.parseRelative("/resource1"), HttpEntity.EMPTY));
+        fetch.close();
+
+        this.checkEquals(0, fetch.clients.size(), () -> "clients " + fetch.clients);
+
+        final FetchException thrown = assertThrows(FetchException.class,
+                () -> fetch.apply(this.request(HttpMethod.GET, Url.parseRelative("/resource2"), HttpEntity.EMPTY)));
+        this.checkEquals("Fetch closed", thrown.getMessage());
+    }
+
+    @Test
+    public void testCloseApplyAsyncFails() {
+        final FetchJavaNetHttpClient fetch = this.fetch(IpPort.free());
+        fetch.close();
+
+        final ExecutionException thrown = assertThrows(ExecutionException.class,
+                () -> fetch.applyAsync(this.request(HttpMethod.GET, Url.parseRelative("/resource1"), HttpEntity.EMPTY))
+                        .get(5, TimeUnit.SECONDS));
+        this.checkEquals(FetchException.class, thrown.getCause().getClass(), () -> "cause " + thrown.getCause());
+        this.checkEquals("Fetch closed", thrown.getCause().getMessage());
+    }
+
+    @Test
+    public void testHttpClientsBounded() {
+        final IpPort port = this.server((req, resp) -> {
+            resp.setStatus(HttpStatusCode.OK.status());
+            resp.addEntity(HttpEntity.EMPTY);
+        });
+
+        // a new executor for every request never matches a cached client
+        final FetchJavaNetHttpClient fetch = FetchJavaNetHttpClient.with(new FakeFetchCustomizer() {
+            @Override
+            public AbsoluteUrl httpClientUrl(final HttpRequest request) {
+                return request.url()
+                        .set(UrlScheme.HTTP, UrlCredentials.NO_CREDENTIALS, SERVER, Optional.of(port));
+            }
+
+            @Override
+            public Charset defaultCharset() {
+                return Charset.defaultCharset();
+            }
+
+            @Override
+            public void prepareHttpClient(final HttpClient.Builder client,
+                                          final java.net.http.HttpRequest.Builder request) {
+                client.version(Version.HTTP_1_1);
+                client.executor((r) -> new Thread(r).start());
+                request.timeout(Duration.ofMillis(500));
+            }
+        });
+
+        for (int i = 0; i < FetchJavaNetHttpClient.MAX_CLIENTS + 5; i++) {
+            fetch.apply(this.request(HttpMethod.GET, Url.parseRelative("/resource" + i), HttpEntity.EMPTY));
+        }
+
+        this.checkEquals(FetchJavaNetHttpClient.MAX_CLIENTS, fetch.clients.size(), () -> "clients " + fetch.clients);
+    }
+
+    @Test
+    public void testConnectionReused() throws Exception {
+        final AtomicInteger connections = new AtomicInteger();
+        final AtomicInteger requests = new AtomicInteger();
+
+        try (final ServerSocket serverSocket = new ServerSocket(IpPort.free().value())) {
+            final Thread acceptor = new Thread(() -> {
+                while (!serverSocket.isClosed()) {
+                    try {
+                        final Socket socket = serverSocket.accept();
+                        connections.incrementAndGet();
+                        new Thread(() -> keepAlive(socket, requests)).start();
+                    } catch (final IOException closed) {
+                        break;
+                    }
+                }
+            });
+            acceptor.setDaemon(true);
+            acceptor.start();
+
+            final FetchJavaNetHttpClient fetch = this.fetch(IpPort.with(serverSocket.getLocalPort()));
+            for (int i = 0; i < 3; i++) {
+                final HttpResponse response = fetch.apply(this.request(HttpMethod.GET,
+                        Url.parseRelative("/resource" + i),
+                        HttpEntity.EMPTY));
+                this.checkEquals(Optional.of(HttpStatusCode.OK),
+                        response.status().map(HttpStatus::value),
+                        "status");
+                this.checkEquals("OK", response.entities().get(0).bodyText(), "body");
+            }
+
+            this.checkEquals(3, requests.get(), "requests");
+            this.checkEquals(1, connections.get(), "connections");
+        }
+    }
+
+    /**
+     * Answers every request on the connection with a keep-alive 200 OK until the client closes it.
+     */
+    private static void keepAlive(final Socket socket,
+                                  final AtomicInteger requests) {
+        try (final Socket s = socket) {
+            final InputStream input = s.getInputStream();
+            final OutputStream output = s.getOutputStream();
+
+            int matched = 0;
+            for (; ; ) {
+                final int c = input.read();
+                if (-1 == c) {
+                    break;
+                }
+                // a GET has no body so the request ends with the blank line after the headers
+                matched = "\r\n\r\n".charAt(matched) == c ?
+                        matched + 1 :
+                        '\r' == c ? 1 : 0;
+                if (4 == matched) {
+                    matched = 0;
+                    requests.incrementAndGet();
+                    output.write("HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nOK".getBytes(StandardCharsets.US_ASCII));
+                    output.flush();
+                }
+            }
+        } catch (final IOException ignore) {
+            // client went away
+        }
+    }
+
+    @Test
+    public void testApplyAsyncGetRequest() throws Exception {
+        final HttpMethod method = HttpMethod.GET;
+        final RelativeUrl url = Url.parseRelative("/resource1");
+        final HttpHeaderName<MediaType> contentTypeHeader = HttpHeaderName.CONTENT_TYPE;
+        final MediaType contentType = MediaType.parse("text/plain;y=2");
+        final HttpStatus status = HttpStatusCode.OK.setMessage("OK Message 123");
+        final String bodyText = "BodyText123456";
+
+        final IpPort port = this.server((req, resp) -> {
+            this.checkEquals(method, req.method(), () -> "method\n" + req);
+            this.checkEquals(url, req.url(), () -> "url\n" + req);
+
+            resp.setStatus(status);
+            resp.addEntity(HttpEntity.EMPTY
+                    .addHeader(contentTypeHeader, contentType)
+                    .setBodyText(bodyText));
+        });
+
+        final CompletableFuture<HttpResponse> future = this.fetch(port)
+                .applyAsync(this.request(method, url, HttpEntity.EMPTY));
+
+        this.checkResponse(future.get(5, TimeUnit.SECONDS),
+                status,
+                Maps.of(contentTypeHeader, list(contentType)),
+                bodyText);
+    }
+
+    @Test
+    public void testApplyAsyncConnectionRefused() {
+        final CompletableFuture<HttpResponse> future = this.fetch(IpPort.free())
+                .applyAsync(this.request(HttpMethod.GET, Url.parseRelative("/does-not-exist"), HttpEntity.EMPTY));
+
+        final ExecutionException thrown = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        this.checkEquals(FetchException.class, thrown.getCause().getClass(), () -> "cause " + thrown.getCause());
+    }
+
+    @Test
+    public void testApplyCallbackGetRequest() throws Exception {
+        final HttpStatus status = HttpStatusCode.OK.setMessage("OK Message 123");
+        final String bodyText = "BodyText123456";
+
+        final IpPort port = this.server((req, resp) -> {
+            resp.setStatus(status);
+            resp.addEntity(HttpEntity.EMPTY
+                    .addHeader(HttpHeaderName.CONTENT_TYPE, MediaType.TEXT_PLAIN)
+                    .setBodyText(bodyText));
+        });
+
+        final CompletableFuture<HttpResponse> future = new CompletableFuture<>();
+        this.fetch(port)
+                .applyCallback(this.request(HttpMethod.GET, Url.parseRelative("/resource1"), HttpEntity.EMPTY),
+                        new FakeFetchCallback() {
+                            @Override
+                            public void onResponse(final HttpResponse response) {
+                                future.complete(response);
+                            }
+                        });
+
+        this.checkResponse(future.get(5, TimeUnit.SECONDS),
+                status,
+                Maps.of(HttpHeaderName.CONTENT_TYPE, list(MediaType.TEXT_PLAIN)),
+                bodyText);
+    }
+
+    @Test
+    public void testApplyCallbackConnectionRefused() throws Exception {
+        final CompletableFuture<FetchException> future = new CompletableFuture<>();
+        this.fetch(IpPort.free())
+                .applyCallback(this.request(HttpMethod.GET, Url.parseRelative("/does-not-exist"), HttpEntity.EMPTY),
+                        new FakeFetchCallback() {
+                            @Override
+                            public void onFailure(final FetchException cause) {
+                                future.complete(cause);
+                            }
+                        });
+
+        this.checkEquals(FetchException.class, future.get(5, TimeUnit.SECONDS).getClass());
+    }
+
+    @Test
+    public void testVirtualThreadsManyConcurrentRequests() throws Exception {
+        assumeTrue(FetchJavaNetHttpClientVirtualThreads.isSupported(), "virtual threads not supported");
+
+        final HttpStatus status = HttpStatusCode.OK.setMessage("OK Message 123");
+        final String bodyText = "BodyText123456";
+
+        final IpPort port = this.server((req, resp) -> {
+            resp.setStatus(status);
+            resp.addEntity(HttpEntity.EMPTY
+                    .addHeader(HttpHeaderName.CONTENT_TYPE, MediaType.TEXT_PLAIN)
+                    .setBodyText(bodyText));
+        });
+
+        final FetchJavaNetHttpClient fetch = FetchJavaNetHttpClient.with(new FakeFetchCustomizer() {
+            @Override
+            public AbsoluteUrl httpClientUrl(final HttpRequest request) {
+                return request.url()
+                        .set(UrlScheme.HTTP, UrlCredentials.NO_CREDENTIALS, SERVER, Optional.of(port));
+            }
+
+            @Override
+            public Charset defaultCharset() {
+                return Charset.defaultCharset();
+            }
+
+            @Override
+            public void prepareHttpClient(final HttpClient.Builder client,
+                                          final java.net.http.HttpRequest.Builder request) {
+                client.version(Version.HTTP_1_1);
+                client.executor(walkingkooka.net.http.client.HttpClient.virtualThreadExecutor());
+                request.timeout(Duration.ofSeconds(30));
+            }
+        });
+
+        final Function<HttpRequest, CompletableFuture<HttpResponse>> virtualThreads = FetchJavaNetHttpClientVirtualThreads.with(fetch);
+
+        final List<CompletableFuture<HttpResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            futures.add(virtualThreads.apply(this.request(HttpMethod.GET, Url.parseRelative("/resource" + i), HttpEntity.EMPTY)));
+        }
+
+        for (final CompletableFuture<HttpResponse> future : futures) {
+            this.checkResponse(future.get(60, TimeUnit.SECONDS),
+                    status,
+                    Maps.of(HttpHeaderName.CONTENT_TYPE, list(MediaType.TEXT_PLAIN)),
+                    bodyText);
+        }
+
+        this.checkEquals(1, fetch.clients.size(), () -> "clients " + fetch.clients);
+    }
+
+    @Test
+    public void testResponseVersion() {
+        final IpPort port = this.server((req, resp) -> {
+            resp.setStatus(HttpStatusCode.OK.status());
+            resp.addEntity(HttpEntity.EMPTY);
+        });
+
+        this.checkEquals(Optional.of(HttpProtocolVersion.VERSION_1_1),
+                this.fetch(port)
+                        .apply(this.request(HttpMethod.GET, Url.parseRelative("/resource1"), HttpEntity.EMPTY))
+                        .version());
+    }
+
+    @Test
+    public void testHttp2ServerWithoutHttp2() {
+        final HttpStatus status = HttpStatusCode.OK.setMessage("OK Message 123");
+        final String bodyText = "BodyText123456";
+
+        final IpPort port = this.server((req, resp) -> {
+            resp.setStatus(status);
+            resp.addEntity(HttpEntity.EMPTY
+                    .addHeader(HttpHeaderName.CONTENT_TYPE, MediaType.TEXT_PLAIN)
+                    .setBodyText(bodyText));
+        });
+
+        final FetchJavaNetHttpClient fetch = this.customizer(port).version(Version.HTTP_2).fetch();
+        final HttpResponse response = fetch.apply(this.request(HttpMethod.GET, Url.parseRelative("/resource1"), HttpEntity.EMPTY));
+
+        this.checkResponse(response,
+                status,
+                Maps.of(HttpHeaderName.CONTENT_TYPE, list(MediaType.TEXT_PLAIN)),
+                bodyText);
+        this.checkNotEquals(Optional.empty(), response.version(), "version");
+    }
+
+    @Test
+    public void testMaxConcurrentStreams() throws Exception {
+        final int max = 2;
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+
+        final IpPort port = this.server((req, resp) -> {
+            final int current = inFlight.incrementAndGet();
+            maxInFlight.accumulateAndGet(current, Math::max);
+            try {
+                Thread.sleep(50);
+            } catch (final InterruptedException ignore) {
+                // nop
+            }
+            inFlight.decrementAndGet();
+
+            resp.setStatus(HttpStatusCode.OK.status());
+            resp.addEntity(HttpEntity.EMPTY);
+        });
+
+        final FetchJavaNetHttpClient fetch = this.customizer(port).maxConcurrentStreams(max).fetch();
+
+        final List<CompletableFuture<HttpResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(fetch.applyAsync(this.request(HttpMethod.GET, Url.parseRelative("/resource" + i), HttpEntity.EMPTY)));
+        }
+        for (final CompletableFuture<HttpResponse> future : futures) {
+            this.checkEquals(Optional.of(HttpStatusCode.OK),
+                    future.get(5, TimeUnit.SECONDS).status().map(HttpStatus::value));
+        }
+
+        this.checkEquals(true, maxInFlight.get() <= max, () -> "max in flight " + maxInFlight.get());
+        this.checkEquals(0, fetch.streams.inFlight(FetchJavaNetHttpClientStreamLimiter.origin(URI.create("http://localhost:" + port.value()))));
+    }
+
+    @Test
+    public void testApplyStream() {
+        final HttpHeaderName<MediaType> contentTypeHeader = HttpHeaderName.CONTENT_TYPE;
+        final MediaType contentType = MediaType.parse("text/plain;charset=UTF-8");
+        final HttpStatus status = HttpStatusCode.OK.setMessage("OK Message 123");
+
+        final StringBuilder b = new StringBuilder();
+        for (int i = 0; i < 100_000; i++) {
+            b.append(i % 10);
+        }
+        final String bodyText = b.toString();
+
+        final IpPort port = this.server((req, resp) -> {
+            resp.setStatus(status);
+            resp.addEntity(HttpEntity.EMPTY
+                    .addHeader(contentTypeHeader, contentType)
+                    .setBodyText(bodyText));
+        });
+
+        final StringBuilder streamed = new StringBuilder();
+        final HttpResponse response = this.fetch(port)
+                .applyStream(this.request(HttpMethod.GET, Url.parseRelative("/resource1"), HttpEntity.EMPTY),
+                        (r, inputStream) -> {
+                            this.checkEquals(Optional.of(status.value()), r.status().map(HttpStatus::value), "status");
+
+                            try (final Reader reader = new InputStreamReader(inputStream, StandardCharsets.UTF_8)) {
+                                final char[] buffer = new char[4096];
+                                for (; ; ) {
+                                    final int read = reader.read(buffer);
+                                    if (-1 == read) {
+                                        break;
+                                    }
+                                    streamed.append(buffer, 0, read);
+                                }
+                            } catch (final IOException cause) {
+                                throw new Error(cause);
+                            }
+                        });
+
+        this.checkEquals(bodyText, streamed.toString(), "streamed body");
+        this.checkResponse(response,
+                status,
+                Maps.of(contentTypeHeader, list(contentType)),
+                "");
+    }
+
+    @Test
+    public void testApplyFile() throws IOException {
+        final HttpHeaderName<MediaType> contentTypeHeader = HttpHeaderName.CONTENT_TYPE;
+        final MediaType contentType = MediaType.parse("text/plain;charset=UTF-8");
+        final HttpStatus status = HttpStatusCode.OK.setMessage("OK Message 123");
+
+        final StringBuilder b = new StringBuilder();
+        for (int i = 0; i < 100_000; i++) {
+            b.append(i % 10);
+        }
+        final String bodyText = b.toString();
+
+        final IpPort port = this.server((req, resp) -> {
+            resp.setStatus(status);
+            resp.addEntity(HttpEntity.EMPTY
+                    .addHeader(contentTypeHeader, contentType)
+                    .setBodyText(bodyText));
+        });
+
+        final Path file = Files.createTempFile(this.getClass().getSimpleName(), ".txt");
+        try {
+            // longer previous content must be replaced not overwritten
+            Files.write(file, (bodyText + bodyText).getBytes(StandardCharsets.UTF_8));
+
+            final HttpResponse response = this.fetch(port)
+                    .applyFile(this.request(HttpMethod.GET, Url.parseRelative("/resource1"), HttpEntity.EMPTY),
+                            file);
+
+            this.checkResponse(response,
+                    status,
+                    Maps.of(contentTypeHeader, list(contentType)),
+                    "");
+            this.checkEquals(bodyText,
+                    new String(Files.readAllBytes(file), StandardCharsets.UTF_8),
+                    "file content");
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testDecompressGzipResponse() throws IOException {
+        final HttpHeaderName<MediaType> contentTypeHeader = HttpHeaderName.CONTENT_TYPE;
+        final MediaType contentType = MediaType.parse("text/plain;charset=UTF-8");
+        final HttpStatus status = HttpStatusCode.OK.setMessage("OK Message 123");
+
+        final StringBuilder b = new StringBuilder();
+        for (int i = 0; i < 100_000; i++) {
+            b.append(i % 10);
+        }
+        final String bodyText = b.toString();
+
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (final GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(bodyText.getBytes(StandardCharsets.UTF_8));
+        }
+
+        final IpPort port = this.server((req, resp) -> {
+            this.checkEquals(Optional.of("gzip, deflate"),
+                    FetchHeaders.text(req, "Accept-Encoding"),
+                    () -> "accept-encoding\n" + req);
+
+            resp.setStatus(status);
+            resp.addEntity(HttpEntity.EMPTY
+                    .addHeader(contentTypeHeader, contentType)
+                    .addHeader(HttpHeaderName.CONTENT_ENCODING, ContentEncoding.GZIP)
+                    .setBody(Binary.with(compressed.toByteArray())));
+        });
+
+        final HttpResponse response = this.customizer(port).decompress(true).fetch()
+                .apply(this.request(HttpMethod.GET, Url.parseRelative("/resource1"), HttpEntity.EMPTY));
+        this.checkResponse(response,
+                status,
+                Maps.of(contentTypeHeader, list(contentType)),
+                bodyText);
+        this.checkEquals(Optional.empty(),
+                FetchHeaders.text(response.entities().get(0), "Content-Encoding"),
+                "content-encoding removed");
+    }
+
+    @Test
+    public void testListenerResponse() {
+        final String bodyTextIn = "BodyText123456-IN";
+        final String bodyTextOut = "BodyText123456-OUT";
+
+        final IpPort port = this.server((req, resp) -> {
+            resp.setStatus(HttpStatusCode.OK.status());
+            resp.addEntity(HttpEntity.EMPTY
+                    .addHeader(HttpHeaderName.CONTENT_TYPE, MediaType.TEXT_PLAIN)
+                    .setBodyText(bodyTextOut));
+        });
+
+        final List<FetchTimings> timings = new ArrayList<>();
+        final HttpRequest request = this.request(HttpMethod.POST,
+                Url.parseRelative("/resource1"),
+                HttpEntity.EMPTY
+                        .addHeader(HttpHeaderName.CONTENT_TYPE, MediaType.TEXT_PLAIN)
+                        .setBodyText(bodyTextIn));
+        this.customizer(port)
+                .listener(new FakeFetchListener() {
+                    @Override
+                    public void onResponse(final HttpRequest r,
+                                           final HttpResponse rr,
+                                           final FetchTimings t) {
+                        assertSame(request, r, "request");
+                        timings.add(t);
+                    }
+                }).fetch()
+                .apply(request);
+
+        this.checkEquals(1, timings.size(), "timings");
+        final FetchTimings t = timings.get(0);
+
+        this.checkTimings(t);
+        this.checkEquals(FetchTimings.UNKNOWN, t.connectNanos(), "connect");
+        this.checkEquals((long) bodyTextIn.length(), t.requestBytes(), "requestBytes");
+        this.checkEquals((long) bodyTextOut.length(), t.responseBytes(), "responseBytes");
+    }
+
+    @Test
+    public void testListenerApplyAsync() throws Exception {
+        final IpPort port = this.server((req, resp) -> {
+            resp.setStatus(HttpStatusCode.OK.status());
+            resp.addEntity(HttpEntity.EMPTY
+                    .addHeader(HttpHeaderName.CONTENT_TYPE, MediaType.TEXT_PLAIN)
+                    .setBodyText("BodyText123456"));
+        });
+
+        final CompletableFuture<FetchTimings> timings = new CompletableFuture<>();
+        this.customizer(port)
+                .listener(new FakeFetchListener() {
+                    @Override
+                    public void onResponse(final HttpRequest request,
+                                           final HttpResponse response,
+                                           final FetchTimings t) {
+                        timings.complete(t);
+                    }
+                }).fetch()
+                .applyAsync(this.request(HttpMethod.GET, Url.parseRelative("/resource1"), HttpEntity.EMPTY))
+                .get(5, TimeUnit.SECONDS);
+
+        final FetchTimings t = timings.get(5, TimeUnit.SECONDS);
+        this.checkTimings(t);
+        this.checkEquals(0L, t.requestBytes(), "requestBytes");
+        this.checkEquals((long) "BodyText123456".length(), t.responseBytes(), "responseBytes");
+    }
+
+    @Test
+    public void testListenerFailureIgnored() throws Exception {
+        final IpPort port = this.server((req, resp) -> {
+            resp.setStatus(HttpStatusCode.OK.status());
+            resp.addEntity(HttpEntity.EMPTY
+                    .addHeader(HttpHeaderName.CONTENT_TYPE, MediaType.TEXT_PLAIN)
+                    .setBodyText("BodyText123456"));
+        });
+
+        final AtomicInteger calls = new AtomicInteger();
+        final FetchJavaNetHttpClient fetch = this.customizer(port)
+                .listener(new FakeFetchListener() {
+                    @Override
+                    public void onResponse(final HttpRequest request,
+                                           final HttpResponse response,
+                                           final FetchTimings t) {
+                        calls.incrementAndGet();
+                        throw new UnsupportedOperationException();
+                    }
+                }).fetch();
+        final HttpRequest request = this.request(HttpMethod.GET, Url.parseRelative("/resource1"), HttpEntity.EMPTY);
+
+        this.checkEquals(HttpStatusCode.OK,
+                fetch.apply(request).status().get().value(),
+                "apply");
+        this.checkEquals(HttpStatusCode.OK,
+                fetch.applyAsync(request).get(5, TimeUnit.SECONDS).status().get().value(),
+                "applyAsync");
+        this.checkEquals(2, calls.get(), "listener calls");
+    }
+
+    @Test
+    public void testListenerConnectionRefused() {
+        final List<FetchTimings> timings = new ArrayList<>();
+
+        assertThrows(FetchException.class, () -> this.customizer(IpPort.free())
+                .listener(new FakeFetchListener() {
+                    @Override
+                    public void onFailure(final HttpRequest request,
+                                          final Throwable cause,
+                                          final FetchTimings t) {
+                        checkEquals(FetchException.class, cause.getClass(), "cause");
+                        timings.add(t);
+                    }
+                }).fetch()
+                .apply(this.request(HttpMethod.GET, Url.parseRelative("/does-not-exist"), HttpEntity.EMPTY)));
+
+        this.checkEquals(1, timings.size(), "timings");
+        final FetchTimings t = timings.get(0);
+        this.checkEquals(FetchTimings.UNKNOWN, t.headersNanos(), "headers");
+        this.checkEquals(FetchTimings.UNKNOWN, t.bodyNanos(), "body");
+        this.checkEquals(FetchTimings.UNKNOWN, t.responseBytes(), "responseBytes");
+    }
+
+    @Test
+    public void testCircuitBreakerServerStoppedAndRestarted() throws Exception {
+        final BiConsumer<HttpRequest, HttpResponse> handler = (req, resp) -> {
+            resp.setStatus(HttpStatusCode.OK.status());
+            resp.addEntity(HttpEntity.EMPTY);
+        };
+        final IpPort port = this.server(handler);
+        final String origin = "http://" + SERVER + ":" + port.value();
+        final long openMillis = 250;
+
+        final List<String> events = new ArrayList<>();
+        final FetchJavaNetHttpClient fetch = this.fetch(port);
+        final FetchJavaNetHttpClientCircuitBreaker breaker = FetchJavaNetHttpClientCircuitBreaker.with(fetch,
+                fetch.customizer,
+                4,
+                0.5,
+                10_000,
+                1.0,
+                openMillis,
+                new FakeFetchCircuitBreakerListener() {
+                    @Override
+                    public void onStateChange(final String o,
+                                              final FetchCircuitBreakerState from,
+                                              final FetchCircuitBreakerState to) {
+                        events.add(from + " " + to);
+                    }
+                });
+        final HttpRequest request = this.request(HttpMethod.GET, Url.parseRelative("/circuit"), HttpEntity.EMPTY);
+
+        this.checkEquals(HttpStatusCode.OK, breaker.apply(request).status().get().value(), "status");
+
+        // stopping the server fills the window with failures and opens the circuit
+        this.shutdownServerIfNecessary();
+        for (int i = 0; i < 3; i++) {
+            final FetchException failed = assertThrows(FetchException.class, () -> breaker.apply(request));
+            this.checkEquals(FetchException.class, failed.getClass(), () -> "failure " + failed);
+        }
+        this.checkEquals(FetchCircuitBreakerState.OPEN, breaker.state(origin), "state");
+
+        // while open requests fail without connecting
+        final long start = System.currentTimeMillis();
+        final FetchCircuitBreakerOpenException rejected = assertThrows(FetchCircuitBreakerOpenException.class, () -> breaker.apply(request));
+        this.checkEquals("Circuit open for " + origin, rejected.getMessage());
+        this.checkEquals(true, System.currentTimeMillis() - start < openMillis, "failed fast");
+
+        // once the server is back and the cool off passes the probes close the circuit
+        this.server(port, handler);
+        Thread.sleep(openMillis);
+
+        for (int i = 0; i < FetchJavaNetHttpClientCircuitBreaker.PROBES; i++) {
+            this.checkEquals(HttpStatusCode.OK, breaker.apply(request).status().get().value(), "probe status");
+        }
+        this.checkEquals(FetchCircuitBreakerState.CLOSED, breaker.state(origin), "state");
+        this.checkEquals(Lists.of("CLOSED OPEN", "OPEN HALF_OPEN", "HALF_OPEN CLOSED"), events, "events");
+
+        breaker.close();
+    }
+
+    private void checkTimings(final FetchTimings timings) {
+        this.checkEquals(true, timings.buildNanos() >= 0, () -> "build " + timings);
+        this.checkEquals(true, timings.queueNanos() >= 0, () -> "queue " + timings);
+        this.checkEquals(true, timings.headersNanos() > 0, () -> "headers " + timings);
+        this.checkEquals(true, timings.bodyNanos() >= 0, () -> "body " + timings);
+        this.checkEquals(true,
+                timings.totalNanos() >= timings.buildNanos() + timings.queueNanos() + timings.headersNanos() + timings.bodyNanos(),
+                () -> "total " + timings);
+    }
+
     private HttpRequest request(final HttpMethod method,
                                 final RelativeUrl url,
                                 final HttpEntity entity) {
@@ -163,9 +1167,13 @@ public final class FetchJavaNetHttpClientTest extends FetchTestCase<FetchJavaNet
     }
 
     private IpPort server(final BiConsumer<HttpRequest, HttpResponse> handler) {
+        return this.server(IpPort.free(), handler);
+    }
+
+    private IpPort server(final IpPort port,
+                          final BiConsumer<HttpRequest, HttpResponse> handler) {
         assertNull(this.server, "server from previous wasnt shutdown");
 
-        final IpPort port = IpPort.free();
         this.server = JettyHttpServer.with(SERVER,
                 port,
                 (req, resp) -> {
@@ -206,27 +1214,124 @@ public final class FetchJavaNetHttpClientTest extends FetchTestCase<FetchJavaNet
     private HttpServer server;
 
     private FetchJavaNetHttpClient fetch(final IpPort port) {
-        return FetchJavaNetHttpClient.with(new FakeFetchCustomizer() {
-            @Override
-            public AbsoluteUrl httpClientUrl(final HttpRequest request) {
-                return request.url()
-                        .set(UrlScheme.HTTP, UrlCredentials.NO_CREDENTIALS, SERVER, Optional.of(port));
-            }
+        return this.customizer(port)
+                .fetch();
+    }
 
-            @Override
-            public Charset defaultCharset() {
-                return Charset.defaultCharset();
-            }
+    private TestFetchCustomizer customizer(final IpPort port) {
+        return new TestFetchCustomizer(port);
+    }
 
-            @Override
-            public void prepareHttpClient(final HttpClient.Builder client,
-                                          final java.net.http.HttpRequest.Builder request) {
-                client.version(Version.HTTP_1_1);
-                client.connectTimeout(Duration.ofMillis(500));
-                client.followRedirects(Redirect.NEVER);
-                request.timeout(Duration.ofMillis(500));
-            }
-        });
+    /**
+     * A {@link FetchCustomizer} that sends requests to the test server, where each test replaces only the defaults it
+     * needs before creating the {@link FetchJavaNetHttpClient} with {@link #fetch()}.
+     */
+    private final static class TestFetchCustomizer extends FakeFetchCustomizer {
+
+        TestFetchCustomizer(final IpPort port) {
+            super();
+            this.port = port;
+        }
+
+        TestFetchCustomizer defaultCharset(final Charset defaultCharset) {
+            this.defaultCharset = defaultCharset;
+            return this;
+        }
+
+        TestFetchCustomizer version(final Version version) {
+            this.version = version;
+            return this;
+        }
+
+        TestFetchCustomizer maxConcurrentStreams(final int maxConcurrentStreams) {
+            this.maxConcurrentStreams = maxConcurrentStreams;
+            return this;
+        }
+
+        TestFetchCustomizer body(final Function<HttpRequest, Optional<BodyPublisher>> body) {
+            this.body = body;
+            return this;
+        }
+
+        TestFetchCustomizer decompress(final boolean decompress) {
+            this.decompress = decompress;
+            return this;
+        }
+
+        TestFetchCustomizer compressThreshold(final long compressThreshold) {
+            this.compressThreshold = compressThreshold;
+            return this;
+        }
+
+        TestFetchCustomizer listener(final FetchListener listener) {
+            this.listener = Optional.of(listener);
+            return this;
+        }
+
+        FetchJavaNetHttpClient fetch() {
+            return FetchJavaNetHttpClient.with(this);
+        }
+
+        @Override
+        public AbsoluteUrl httpClientUrl(final HttpRequest request) {
+            return request.url()
+                    .set(UrlScheme.HTTP, UrlCredentials.NO_CREDENTIALS, SERVER, Optional.of(this.port));
+        }
+
+        private final IpPort port;
+
+        @Override
+        public Charset defaultCharset() {
+            return this.defaultCharset;
+        }
+
+        private Charset defaultCharset = Charset.defaultCharset();
+
+        @Override
+        public void prepareHttpClient(final HttpClient.Builder client,
+                                      final java.net.http.HttpRequest.Builder request) {
+            client.version(this.version);
+            client.connectTimeout(Duration.ofMillis(500));
+            client.followRedirects(Redirect.NEVER);
+            request.timeout(Duration.ofMillis(500));
+        }
+
+        private Version version = Version.HTTP_1_1;
+
+        @Override
+        public int httpClientMaxConcurrentStreams() {
+            return this.maxConcurrentStreams;
+        }
+
+        private int maxConcurrentStreams = 0;
+
+        @Override
+        public Optional<BodyPublisher> httpClientBody(final HttpRequest request) {
+            return this.body.apply(request);
+        }
+
+        private Function<HttpRequest, Optional<BodyPublisher>> body = (r) -> Optional.empty();
+
+        @Override
+        public boolean httpClientDecompress() {
+            return this.decompress;
+        }
+
+        private boolean decompress = false;
+
+        @Override
+        public long httpClientCompressThreshold(final HttpRequest request) {
+            return this.compressThreshold;
+        }
+
+        private long compressThreshold = -1;
+
+        @Override
+        public Optional<FetchListener> fetchListener() {
+            return this.listener;
+        }
+
+        private Optional<FetchListener> listener = Optional.empty();
     }
 
     private void checkResponse(final HttpResponse response,
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.net.http.client;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.net.Url;
+import walkingkooka.net.http.HttpEntity;
+import walkingkooka.net.http.HttpMethod;
+import walkingkooka.net.http.HttpProtocolVersion;
+import walkingkooka.net.http.HttpStatusCode;
+import walkingkooka.net.http.HttpTransport;
+import walkingkooka.net.http.server.HttpRequest;
+import walkingkooka.net.http.server.HttpRequests;
+import walkingkooka.net.http.server.HttpResponse;
+import walkingkooka.net.http.server.HttpResponses;
+import walkingkooka.reflect.ClassTesting2;
+import walkingkooka.reflect.JavaVisibility;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public final class FetchJavaNetHttpClientVirtualThreadsTest implements ClassTesting2<FetchJavaNetHttpClientVirtualThreads> {
+
+    @Test
+    public void testExecutorUnsupported() {
+        assumeTrue(!FetchJavaNetHttpClientVirtualThreads.isSupported(), "virtual threads supported");
+
+        assertThrows(UnsupportedOperationException.class, FetchJavaNetHttpClientVirtualThreads::executor);
+    }
+
+    @Test
+    public void testExecutorShared() {
+        assumeTrue(FetchJavaNetHttpClientVirtualThreads.isSupported(), "virtual threads not supported");
+
+        assertSame(FetchJavaNetHttpClientVirtualThreads.executor(), FetchJavaNetHttpClientVirtualThreads.executor());
+    }
+
+    @Test
+    public void testApply() throws Exception {
+        assumeTrue(FetchJavaNetHttpClientVirtualThreads.isSupported(), "virtual threads not supported");
+
+        final HttpResponse response = HttpResponses.recording();
+        response.setStatus(HttpStatusCode.OK.status());
+
+        assertSame(response,
+                FetchJavaNetHttpClientVirtualThreads.with((r) -> response)
+                        .apply(this.request())
+                        .get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testApplyFailureWrappedInFetchException() {
+        assumeTrue(FetchJavaNetHttpClientVirtualThreads.isSupported(), "virtual threads not supported");
+
+        final ExecutionException thrown = assertThrows(ExecutionException.class,
+                () -> FetchJavaNetHttpClientVirtualThreads.with((r) -> {
+                    throw new IllegalStateException("Fail123");
+                }).apply(this.request())
+                        .get(5, TimeUnit.SECONDS));
+        this.checkEquals(FetchException.class, thrown.getCause().getClass(), () -> "" + thrown.getCause());
+    }
+
+    private HttpRequest request() {
+        return HttpRequests.value(HttpMethod.GET,
+                HttpTransport.UNSECURED,
+                Url.parseRelative("/"),
+                HttpProtocolVersion.VERSION_1_1,
+                HttpEntity.EMPTY);
+    }
+
+    @Override
+    public Class<FetchJavaNetHttpClientVirtualThreads> type() {
+        return FetchJavaNetHttpClientVirtualThreads.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PACKAGE_PRIVATE;
+    }
+}
@@ -17,11 +17,60 @@
 
 package walkingkooka.net.http.client;
 
+import org.junit.jupiter.api.Test;
+import walkingkooka.net.header.MediaType;
 import walkingkooka.reflect.ClassTesting2;
 import walkingkooka.reflect.JavaVisibility;
 
 public final class FetchTest implements ClassTesting2<Fetch> {
 
+    @Test
+    public void testIsTextTextPlain() {
+        this.isTextAndCheck("text/plain", true);
+    }
+
+    @Test
+    public void testIsTextTextHtmlWithCharset() {
+        this.isTextAndCheck("text/html;charset=UTF-8", true);
+    }
+
+    @Test
+    public void testIsTextApplicationJson() {
+        this.isTextAndCheck("application/json", true);
+    }
+
+    @Test
+    public void testIsTextApplicationXml() {
+        this.isTextAndCheck("application/xml", true);
+    }
+
+    @Test
+    public void testIsTextApplicationVendorJson() {
+        this.isTextAndCheck("application/vnd.api+json", true);
+    }
+
+    @Test
+    public void testIsTextFormUrlEncoded() {
+        this.isTextAndCheck("application/x-www-form-urlencoded", true);
+    }
+
+    @Test
+    public void testIsTextOctetStream() {
+        this.isTextAndCheck("application/octet-stream", false);
+    }
+
+    @Test
+    public void testIsTextImagePng() {
+        this.isTextAndCheck("image/png", false);
+    }
+
+    private void isTextAndCheck(final String contentType,
+                                final boolean expected) {
+        this.checkEquals(expected,
+                Fetch.isText(MediaType.parse(contentType)),
+                () -> "isText " + contentType);
+    }
+
     @Override
     public Class<Fetch> type() {
         return Fetch.class;
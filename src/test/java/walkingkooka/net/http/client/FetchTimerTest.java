@@ -0,0 +1,221 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.net.http.client;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.net.Url;
+import walkingkooka.net.http.HttpEntity;
+import walkingkooka.net.http.HttpMethod;
+import walkingkooka.net.http.HttpProtocolVersion;
+import walkingkooka.net.http.HttpStatusCode;
+import walkingkooka.net.http.HttpTransport;
+import walkingkooka.net.http.server.HttpRequest;
+import walkingkooka.net.http.server.HttpRequests;
+import walkingkooka.net.http.server.HttpResponse;
+import walkingkooka.reflect.ClassTesting2;
+import walkingkooka.reflect.JavaVisibility;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class FetchTimerTest implements ClassTesting2<FetchTimer> {
+
+    @Test
+    public void testWithNullListenerFails() {
+        assertThrows(NullPointerException.class, () -> FetchTimer.with(null, () -> 0));
+    }
+
+    @Test
+    public void testWithNullNanoTimeFails() {
+        assertThrows(NullPointerException.class, () -> FetchTimer.with(new FakeFetchListener(), null));
+    }
+
+    @Test
+    public void testStartWithoutListener() {
+        assertSame(FetchTimer.NONE,
+                FetchTimer.start(new FakeFetchCustomizer() {
+                    @Override
+                    public Optional<FetchListener> fetchListener() {
+                        return Optional.empty();
+                    }
+                }));
+    }
+
+    @Test
+    public void testStartWithListener() {
+        final FetchTimer timer = FetchTimer.start(new FakeFetchCustomizer() {
+            @Override
+            public Optional<FetchListener> fetchListener() {
+                return Optional.of(new FakeFetchListener());
+            }
+        });
+        this.checkEquals(true, timer.isActive());
+    }
+
+    @Test
+    public void testNoneInactive() {
+        final FetchTimer timer = FetchTimer.NONE;
+        timer.built();
+        timer.sending();
+        timer.headers();
+        timer.requestBytes(1);
+        timer.received(2);
+        timer.response(this.request(), null);
+        timer.failure(this.request(), new FetchException("Failed"));
+
+        this.checkEquals(false, timer.isActive());
+    }
+
+    @Test
+    public void testResponse() {
+        final HttpRequest request = this.request();
+        final HttpResponse response = Fetch.response(HttpStatusCode.OK.status(), HttpEntity.EMPTY);
+
+        final FetchTimer timer = this.timer();
+        this.now = 110;
+        timer.built();
+        this.now = 130;
+        timer.sending();
+        this.now = 1130;
+        timer.headers();
+        timer.requestBytes(50);
+        timer.received(0);
+        timer.received(200);
+        timer.received(300);
+
+        this.now = 1500;
+        timer.response(request, response);
+
+        assertSame(request, this.request, "request");
+        assertSame(response, this.response, "response");
+        this.checkEquals(FetchTimings.with(10, 20, FetchTimings.UNKNOWN, 1000, 370, 1400, 50, 500),
+                this.timings);
+    }
+
+    @Test
+    public void testFailureBeforeHeaders() {
+        final HttpRequest request = this.request();
+        final FetchException cause = new FetchException("Connection refused");
+
+        final FetchTimer timer = this.timer();
+        this.now = 110;
+        timer.built();
+        timer.sending();
+
+        this.now = 200;
+        timer.failure(request, cause);
+
+        assertSame(request, this.request, "request");
+        assertSame(cause, this.cause, "cause");
+        this.checkEquals(FetchTimings.with(10, 0, FetchTimings.UNKNOWN, FetchTimings.UNKNOWN, FetchTimings.UNKNOWN, 100, FetchTimings.UNKNOWN, FetchTimings.UNKNOWN),
+                this.timings);
+    }
+
+    @Test
+    public void testFailureBeforeBuilt() {
+        final FetchTimer timer = this.timer();
+        this.now = 105;
+        timer.failure(this.request(), new FetchException("Invalid url"));
+
+        this.checkEquals(FetchTimings.with(FetchTimings.UNKNOWN, FetchTimings.UNKNOWN, FetchTimings.UNKNOWN, FetchTimings.UNKNOWN, FetchTimings.UNKNOWN, 5, FetchTimings.UNKNOWN, FetchTimings.UNKNOWN),
+                this.timings);
+    }
+
+    @Test
+    public void testResponseListenerFailureIgnored() {
+        FetchTimer.with(new FakeFetchListener() {
+                    @Override
+                    public void onResponse(final HttpRequest request,
+                                           final HttpResponse response,
+                                           final FetchTimings timings) {
+                        throw new UnsupportedOperationException();
+                    }
+                },
+                () -> 0)
+                .response(this.request(), null);
+    }
+
+    @Test
+    public void testFailureListenerFailureIgnored() {
+        FetchTimer.with(new FakeFetchListener() {
+                    @Override
+                    public void onFailure(final HttpRequest request,
+                                          final Throwable cause,
+                                          final FetchTimings timings) {
+                        throw new UnsupportedOperationException();
+                    }
+                },
+                () -> 0)
+                .failure(this.request(), new FetchException("Connection refused"));
+    }
+
+    private FetchTimer timer() {
+        this.now = 100;
+
+        return FetchTimer.with(new FetchListener() {
+                    @Override
+                    public void onResponse(final HttpRequest request,
+                                           final HttpResponse response,
+                                           final FetchTimings timings) {
+                        FetchTimerTest.this.request = request;
+                        FetchTimerTest.this.response = response;
+                        FetchTimerTest.this.timings = timings;
+                    }
+
+                    @Override
+                    public void onFailure(final HttpRequest request,
+                                          final Throwable cause,
+                                          final FetchTimings timings) {
+                        FetchTimerTest.this.request = request;
+                        FetchTimerTest.this.cause = cause;
+                        FetchTimerTest.this.timings = timings;
+                    }
+                },
+                () -> this.now);
+    }
+
+    private HttpRequest request() {
+        return HttpRequests.value(HttpMethod.GET,
+                HttpTransport.UNSECURED,
+                Url.parseRelative("/path"),
+                HttpProtocolVersion.VERSION_1_1,
+                HttpEntity.EMPTY);
+    }
+
+    private long now;
+
+    private HttpRequest request;
+
+    private HttpResponse response;
+
+    private Throwable cause;
+
+    private FetchTimings timings;
+
+    @Override
+    public Class<FetchTimer> type() {
+        return FetchTimer.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PACKAGE_PRIVATE;
+    }
+}
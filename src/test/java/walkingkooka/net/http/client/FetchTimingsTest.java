@@ -0,0 +1,70 @@
+/*
+ * Copyright 2020 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.net.http.client;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.reflect.ClassTesting2;
+import walkingkooka.reflect.JavaVisibility;
+
+public final class FetchTimingsTest implements ClassTesting2<FetchTimings> {
+
+    @Test
+    public void testWith() {
+        final FetchTimings timings = this.timings();
+
+        this.checkEquals(1L, timings.buildNanos(), "buildNanos");
+        this.checkEquals(2L, timings.queueNanos(), "queueNanos");
+        this.checkEquals(FetchTimings.UNKNOWN, timings.connectNanos(), "connectNanos");
+        this.checkEquals(4L, timings.headersNanos(), "headersNanos");
+        this.checkEquals(5L, timings.bodyNanos(), "bodyNanos");
+        this.checkEquals(12L, timings.totalNanos(), "totalNanos");
+        this.checkEquals(100L, timings.requestBytes(), "requestBytes");
+        this.checkEquals(200L, timings.responseBytes(), "responseBytes");
+    }
+
+    @Test
+    public void testEquals() {
+        this.checkEquals(this.timings(), this.timings());
+    }
+
+    @Test
+    public void testEqualsDifferent() {
+        this.checkNotEquals(this.timings(),
+                FetchTimings.with(1, 2, FetchTimings.UNKNOWN, 4, 5, 12, 100, 201));
+    }
+
+    @Test
+    public void testToString() {
+        this.checkEquals("build=1ns queue=2ns connect=-1ns headers=4ns body=5ns total=12ns request=100B response=200B",
+                this.timings().toString());
+    }
+
+    private FetchTimings timings() {
+        return FetchTimings.with(1, 2, FetchTimings.UNKNOWN, 4, 5, 12, 100, 200);
+    }
+
+    @Override
+    public Class<FetchTimings> type() {
+        return FetchTimings.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PUBLIC;
+    }
+}